@@ -0,0 +1,90 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.w3c.dom.Element;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.Balana;
+import org.wso2.balana.DOMHelper;
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.Policy;
+import org.wso2.balana.PolicySet;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+/**
+ * Helpers that are shared by the benchmarks
+ */
+public class BenchmarkSupport {
+
+    /**
+     * the seed of all generated policies and requests
+     */
+    public static final long SEED = 20130101L;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Parses the given policy or policy set
+     *
+     * @param policy the XML form of the policy
+     * @return the policy
+     * @throws Exception if the policy is not valid
+     */
+    public static AbstractPolicy parsePolicy(String policy) throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Element root = factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(policy.getBytes("UTF-8"))).getDocumentElement();
+        if ("PolicySet".equals(DOMHelper.getLocalName(root))) {
+            return PolicySet.getInstance(root);
+        }
+        return Policy.getInstance(root);
+    }
+
+    /**
+     * Creates the evaluation context of the given request, with the default configuration
+     *
+     * @param request the XML form of the request
+     * @return the evaluation context
+     * @throws Exception if the request is not valid
+     */
+    public static EvaluationCtx createContext(String request) throws Exception {
+        return createContext(request, Balana.getInstance().getPdpConfig());
+    }
+
+    /**
+     * Creates the evaluation context of the given request
+     *
+     * @param request the XML form of the request
+     * @param pdpConfig the configuration of the PDP
+     * @return the evaluation context
+     * @throws Exception if the request is not valid
+     */
+    public static EvaluationCtx createContext(String request, PDPConfig pdpConfig) throws Exception {
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(
+                RequestCtxFactory.getFactory().getRequestCtx(request), pdpConfig);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each of the standard rule and policy combining algorithms. The rule combining
+ * algorithms combine the rules of a single policy, and the policy combining algorithms combine
+ * the policies of a policy set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CombiningAlgorithmBenchmark {
+
+    /**
+     * the number of rules, or policies, that are combined
+     */
+    private static final int ELEMENT_COUNT = 16;
+
+    private static final String XACML_NS = "urn:oasis:names:tc:xacml:";
+
+    @State(Scope.Benchmark)
+    public static class RuleCombining {
+
+        /**
+         * the version of the algorithm and its name
+         */
+        @Param({"3.0:deny-overrides", "3.0:permit-overrides", "3.0:ordered-deny-overrides",
+                "3.0:ordered-permit-overrides", "3.0:deny-unless-permit", "3.0:permit-unless-deny",
+                "1.0:deny-overrides", "1.0:permit-overrides", "1.0:first-applicable",
+                "1.1:ordered-deny-overrides", "1.1:ordered-permit-overrides"})
+        public String algorithm;
+
+        private AbstractPolicy policy;
+
+        private EvaluationCtx context;
+
+        @Setup
+        public void setUp() throws Exception {
+            PolicyGenerator generator = new PolicyGenerator(BenchmarkSupport.SEED);
+            policy = BenchmarkSupport.parsePolicy(generator.createRuleCombiningPolicy("policy",
+                    getAlgorithmId(algorithm, "rule-combining-algorithm"), ELEMENT_COUNT));
+            context = BenchmarkSupport.createContext(generator.createRequest("user-1", 1));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PolicyCombining {
+
+        /**
+         * the version of the algorithm and its name
+         */
+        @Param({"3.0:deny-overrides", "3.0:permit-overrides", "3.0:ordered-deny-overrides",
+                "3.0:ordered-permit-overrides", "3.0:deny-unless-permit", "3.0:permit-unless-deny",
+                "1.0:deny-overrides", "1.0:permit-overrides", "1.0:first-applicable",
+                "1.0:only-one-applicable", "1.1:ordered-deny-overrides", "1.1:ordered-permit-overrides"})
+        public String algorithm;
+
+        private AbstractPolicy policySet;
+
+        private EvaluationCtx context;
+
+        @Setup
+        public void setUp() throws Exception {
+            PolicyGenerator generator = new PolicyGenerator(BenchmarkSupport.SEED);
+            policySet = BenchmarkSupport.parsePolicy(generator.createPolicySet(
+                    getAlgorithmId(algorithm, "policy-combining-algorithm"), ELEMENT_COUNT));
+            context = BenchmarkSupport.createContext(generator.createRequest("user-1", 1));
+        }
+    }
+
+    @Benchmark
+    public AbstractResult combineRules(RuleCombining state) {
+        return state.policy.evaluate(state.context);
+    }
+
+    @Benchmark
+    public AbstractResult combinePolicies(PolicyCombining state) {
+        return state.policySet.evaluate(state.context);
+    }
+
+    private static String getAlgorithmId(String algorithm, String type) {
+        int index = algorithm.indexOf(':');
+        return XACML_NS + algorithm.substring(0, index) + ":" + type + ":" + algorithm.substring(index + 1);
+    }
+}
@@ -0,0 +1,544 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.wso2.balana.utils.exception.PolicyBuilderException;
+import org.wso2.balana.utils.policy.PolicyBuilder;
+import org.wso2.balana.utils.policy.dto.AllOfElementDTO;
+import org.wso2.balana.utils.policy.dto.AnyOfElementDTO;
+import org.wso2.balana.utils.policy.dto.ApplyElementDTO;
+import org.wso2.balana.utils.policy.dto.AttributeAssignmentElementDTO;
+import org.wso2.balana.utils.policy.dto.AttributeDesignatorDTO;
+import org.wso2.balana.utils.policy.dto.AttributeElementDTO;
+import org.wso2.balana.utils.policy.dto.AttributeSelectorDTO;
+import org.wso2.balana.utils.policy.dto.AttributeValueElementDTO;
+import org.wso2.balana.utils.policy.dto.AttributesElementDTO;
+import org.wso2.balana.utils.policy.dto.ConditionElementDT0;
+import org.wso2.balana.utils.policy.dto.MatchElementDTO;
+import org.wso2.balana.utils.policy.dto.ObligationElementDTO;
+import org.wso2.balana.utils.policy.dto.PolicyElementDTO;
+import org.wso2.balana.utils.policy.dto.PolicySetElementDTO;
+import org.wso2.balana.utils.policy.dto.RequestElementDTO;
+import org.wso2.balana.utils.policy.dto.RuleElementDTO;
+import org.wso2.balana.utils.policy.dto.TargetElementDTO;
+
+import javax.xml.transform.TransformerFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates large corpora of XACML 3.0 policies and requests for load and soak testing, with the
+ * <code>PolicyBuilder</code> of balana-utils.
+ * <p>
+ * The policies of each tenant are combined by a top-level policy set, whose children are nested
+ * policy sets up to the given depth. The leaf policies use a mix of target shapes (a single match,
+ * matches of several categories, several alternatives and regular expressions), have obligations
+ * and advice, and some of them select from the content of the request. A part of the leaf
+ * policies are written to their own files and are referred to by <code>PolicyIdReference</code>.
+ * <p>
+ * The policies are written to a <code>policies</code> directory, that can be loaded by
+ * <code>FileBasedPolicyFinderModule</code>, and the requests to a <code>requests</code> directory,
+ * that can be replayed by <code>ReplayDriver</code>. The same seed always gives the same corpus.
+ */
+public class CorpusGenerator {
+
+    public static final String POLICY_DIRECTORY = "policies";
+
+    public static final String REQUEST_DIRECTORY = "requests";
+
+    public static final String TENANT_ID = "urn:benchmark:resource:tenant";
+
+    public static final String ROLE_ID = "urn:benchmark:subject:role";
+
+    public static final String[] ROLES = {"employee", "manager", "auditor", "contractor", "guest"};
+
+    public static final String[] CLASSIFICATIONS = {"public", "internal", "secret"};
+
+    private static final String[] RULE_ALGORITHMS = {
+            "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides",
+            "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:permit-overrides",
+            "urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable",
+            "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit"};
+
+    private static final String[] POLICY_ALGORITHMS = {
+            "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides",
+            "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:permit-overrides",
+            "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable"};
+
+    private static final String CLASSIFICATION_PATH = "/record/classification/text()";
+
+    private static final String XPATH_VERSION = "http://www.w3.org/TR/1999/REC-xpath-19991116";
+
+    /**
+     * the number of leaf policies of each tenant
+     */
+    private static final int POLICIES_PER_TENANT = 50;
+
+    /**
+     * one in this many leaf policies is referred to, instead of being inlined
+     */
+    private static final int REFERENCE_RATIO = 5;
+
+    private static final String TRANSFORMER_FACTORY_PROPERTY = "org.wso2.balana.TransformerFactory";
+
+    private final Random random;
+
+    private final PolicyBuilder builder = PolicyBuilder.getInstance();
+
+    /**
+     * the number of leaf policies, and so of resources
+     */
+    private int policyCount;
+
+    /**
+     * the actions that are permitted on each resource
+     */
+    private String[] permittedActions;
+
+    /**
+     * the roles that are permitted on each resource
+     */
+    private String[][] permittedRoles;
+
+    /**
+     * Creates a generator that always generates the same corpus for the same seed
+     *
+     * @param seed seed of the random generator
+     */
+    public CorpusGenerator(long seed) {
+        random = new Random(seed);
+        // balana-utils defaults to xalan, which is not a dependency of the benchmarks
+        if (System.getProperty(TRANSFORMER_FACTORY_PROPERTY) == null) {
+            System.setProperty(TRANSFORMER_FACTORY_PROPERTY,
+                    TransformerFactory.newInstance().getClass().getName());
+        }
+    }
+
+    /**
+     * Generates a corpus into the given directory
+     *
+     * @param directory the directory of the corpus, <code>policies</code> and
+     *                  <code>requests</code> directories are created in it
+     * @param policyCount the number of leaf policies
+     * @param requestCount the number of requests
+     * @param depth the maximum depth of nested policy sets below the policy set of a tenant
+     * @throws IOException if the corpus can not be written
+     * @throws PolicyBuilderException if a policy or request can not be built
+     */
+    public void generate(File directory, int policyCount, int requestCount, int depth)
+            throws IOException, PolicyBuilderException {
+
+        File policyDirectory = createDirectory(new File(directory, POLICY_DIRECTORY));
+        File requestDirectory = createDirectory(new File(directory, REQUEST_DIRECTORY));
+
+        this.policyCount = policyCount;
+        int tenantCount = (policyCount + POLICIES_PER_TENANT - 1) / POLICIES_PER_TENANT;
+        permittedActions = new String[policyCount];
+        permittedRoles = new String[policyCount][];
+
+        for (int tenant = 0; tenant < tenantCount; tenant++) {
+            int first = tenant * POLICIES_PER_TENANT;
+            int last = Math.min(first + POLICIES_PER_TENANT, policyCount);
+            List<String> children = new ArrayList<String>();
+            List<String> references = new ArrayList<String>();
+            for (int i = first; i < last; i++) {
+                if (i % REFERENCE_RATIO == REFERENCE_RATIO - 1) {
+                    write(new File(policyDirectory, "policy-" + i + ".xml"), createLeafPolicy(i, true));
+                    references.add(getPolicyId(i));
+                } else {
+                    children.add(createLeafPolicy(i, false));
+                }
+            }
+            PolicySetElementDTO policySet = createPolicySet("tenant-" + tenant, children, depth);
+            policySet.setTargetElementDTO(createTarget(createMatch(PolicyGenerator.FUNCTION + "string-equal",
+                    "tenant-" + tenant, PolicyGenerator.RESOURCE_CATEGORY, TENANT_ID)));
+            policySet.setPolicyIdReferences(references);
+            write(new File(policyDirectory, "tenant-" + tenant + ".xml"), builder.build(policySet));
+        }
+
+        for (int i = 0; i < requestCount; i++) {
+            write(new File(requestDirectory, String.format("request-%06d.xml", i)), createRequest());
+        }
+    }
+
+    /**
+     * Creates a leaf policy of the given resource
+     *
+     * @param index the index of the policy and of its resource
+     * @param referenced whether the policy is referred to, then the policy is loaded as a
+     *                   top-level policy as well, so its target includes the tenant
+     * @return the policy
+     * @throws PolicyBuilderException if the policy can not be built
+     */
+    private String createLeafPolicy(int index, boolean referenced) throws PolicyBuilderException {
+
+        String resource = getResource(index);
+        String action = PolicyGenerator.ACTIONS[random.nextInt(PolicyGenerator.ACTIONS.length)];
+        permittedActions[index] = action;
+
+        PolicyElementDTO policy = new PolicyElementDTO();
+        policy.setPolicyName(getPolicyId(index));
+        String algorithm = RULE_ALGORITHMS[random.nextInt(RULE_ALGORITHMS.length)];
+        policy.setRuleCombiningAlgorithms(algorithm);
+
+        AllOfElementDTO allOf = new AllOfElementDTO();
+        AnyOfElementDTO anyOf = new AnyOfElementDTO();
+        switch (random.nextInt(4)) {
+            case 0:
+                allOf.addMatchElementDTO(createResourceMatch(resource));
+                anyOf.addAllOfElementDTO(allOf);
+                break;
+            case 1:
+                allOf.addMatchElementDTO(createResourceMatch(resource));
+                allOf.addMatchElementDTO(createMatch(PolicyGenerator.FUNCTION + "string-equal", action,
+                        PolicyGenerator.ACTION_CATEGORY, PolicyGenerator.ACTION_ID));
+                anyOf.addAllOfElementDTO(allOf);
+                break;
+            case 2:
+                // the resource, or one of its aliases
+                allOf.addMatchElementDTO(createResourceMatch(resource));
+                anyOf.addAllOfElementDTO(allOf);
+                for (int i = 0; i < 3; i++) {
+                    AllOfElementDTO alias = new AllOfElementDTO();
+                    alias.addMatchElementDTO(createResourceMatch(resource + "-alias-" + i));
+                    anyOf.addAllOfElementDTO(alias);
+                }
+                break;
+            default:
+                // the resource and its versions, which can not be indexed
+                allOf.addMatchElementDTO(createMatch(PolicyGenerator.FUNCTION + "string-regexp-match",
+                        "^" + resource + "(;\\d+)?$", PolicyGenerator.RESOURCE_CATEGORY,
+                        PolicyGenerator.RESOURCE_ID));
+                anyOf.addAllOfElementDTO(allOf);
+        }
+        if (referenced) {
+            for (AllOfElementDTO alternative : anyOf.getAllOfElementDTOs()) {
+                alternative.addMatchElementDTO(createMatch(PolicyGenerator.FUNCTION + "string-equal",
+                        getTenant(index), PolicyGenerator.RESOURCE_CATEGORY, TENANT_ID));
+            }
+        }
+        TargetElementDTO target = new TargetElementDTO();
+        target.addAnyOfElementDTO(anyOf);
+        policy.setTargetElementDTO(target);
+
+        // the roles that may perform the action
+        List<String> roles = new ArrayList<String>();
+        for (String role : ROLES) {
+            if (random.nextInt(3) == 0) {
+                roles.add(role);
+            }
+        }
+        if (roles.isEmpty()) {
+            roles.add(ROLES[random.nextInt(ROLES.length)]);
+        }
+        permittedRoles[index] = roles.toArray(new String[roles.size()]);
+
+        RuleElementDTO permit = new RuleElementDTO();
+        permit.setRuleId("permit-" + action);
+        permit.setRuleEffect("Permit");
+        permit.setTargetElementDTO(createTarget(createMatch(PolicyGenerator.FUNCTION + "string-equal", action,
+                PolicyGenerator.ACTION_CATEGORY, PolicyGenerator.ACTION_ID)));
+        permit.setConditionElementDT0(createRoleCondition(roles));
+        permit.addObligationElementDTO(createObligation(ObligationElementDTO.OBLIGATION, "urn:benchmark:audit",
+                "Permit", "audit-" + index));
+
+        if (random.nextBoolean()) {
+            // secret records are only for the managers
+            RuleElementDTO secret = new RuleElementDTO();
+            secret.setRuleId("deny-secret");
+            secret.setRuleEffect("Deny");
+            secret.setConditionElementDT0(createSecretCondition());
+            policy.setXPathVersion(XPATH_VERSION);
+            secret.addObligationElementDTO(createObligation(ObligationElementDTO.ADVICE,
+                    "urn:benchmark:classified", "Deny", "secret"));
+            policy.addRuleElementDTO(secret);
+        }
+        policy.addRuleElementDTO(permit);
+
+        if (algorithm.endsWith(":first-applicable")) {
+            RuleElementDTO deny = new RuleElementDTO();
+            deny.setRuleId("deny");
+            deny.setRuleEffect("Deny");
+            policy.addRuleElementDTO(deny);
+        }
+
+        policy.addObligationElementDTO(createObligation(ObligationElementDTO.ADVICE, "urn:benchmark:owner",
+                "Deny", "owner-" + random.nextInt(PolicyGenerator.USER_COUNT)));
+
+        return builder.build(policy);
+    }
+
+    /**
+     * Combines the given policies by nested policy sets
+     *
+     * @param id the identifier of the policy set
+     * @param policies the inlined policies
+     * @param depth the remaining depth of nesting
+     * @return the policy set
+     * @throws PolicyBuilderException if a nested policy set can not be built
+     */
+    private PolicySetElementDTO createPolicySet(String id, List<String> policies, int depth)
+            throws PolicyBuilderException {
+
+        PolicySetElementDTO policySet = new PolicySetElementDTO();
+        policySet.setPolicySetId(id);
+        policySet.setPolicyCombiningAlgId(POLICY_ALGORITHMS[random.nextInt(POLICY_ALGORITHMS.length)]);
+
+        if (depth <= 0 || policies.size() < 2) {
+            for (String policy : policies) {
+                policySet.setPolicy(policy);
+            }
+        } else {
+            int half = policies.size() / 2;
+            List<String> policySets = new ArrayList<String>();
+            policySets.add(builder.build(createPolicySet(id + "-0", policies.subList(0, half), depth - 1)));
+            policySets.add(builder.build(createPolicySet(id + "-1", policies.subList(half, policies.size()),
+                    depth - 1)));
+            policySet.setPolicySets(policySets);
+        }
+        return policySet;
+    }
+
+    /**
+     * Creates a request for a random resource, that is mostly one the policies are about, and
+     * mostly with the action and roles they permit
+     *
+     * @return the request
+     * @throws PolicyBuilderException if the request can not be built
+     */
+    private String createRequest() throws PolicyBuilderException {
+
+        int index = random.nextInt(policyCount);
+        String resource = getResource(index);
+        if (random.nextInt(10) == 0) {
+            resource = resource + ";" + random.nextInt(5);
+        }
+        String action = random.nextInt(4) == 0 ?
+                PolicyGenerator.ACTIONS[random.nextInt(PolicyGenerator.ACTIONS.length)] : permittedActions[index];
+        String role = random.nextInt(4) == 0 ?
+                ROLES[random.nextInt(ROLES.length)] : permittedRoles[index][random.nextInt(permittedRoles[index].length)];
+
+        RequestElementDTO request = new RequestElementDTO();
+        List<AttributesElementDTO> attributes = new ArrayList<AttributesElementDTO>();
+
+        AttributesElementDTO subject = createAttributes(PolicyGenerator.SUBJECT_CATEGORY,
+                PolicyGenerator.SUBJECT_ID, "user-" + random.nextInt(PolicyGenerator.USER_COUNT));
+        subject.addAttributeElementDTO(createAttribute(ROLE_ID, role));
+        attributes.add(subject);
+
+        AttributesElementDTO resourceAttributes = createAttributes(PolicyGenerator.RESOURCE_CATEGORY,
+                PolicyGenerator.RESOURCE_ID, resource);
+        resourceAttributes.addAttributeElementDTO(createAttribute(TENANT_ID, getTenant(index)));
+        resourceAttributes.setContent("<record><id>" + resource + "</id><classification>" +
+                CLASSIFICATIONS[random.nextInt(CLASSIFICATIONS.length)] + "</classification></record>");
+        attributes.add(resourceAttributes);
+
+        attributes.add(createAttributes(PolicyGenerator.ACTION_CATEGORY, PolicyGenerator.ACTION_ID, action));
+        request.setAttributesElementDTOs(attributes);
+
+        return builder.buildRequest(request);
+    }
+
+    private MatchElementDTO createResourceMatch(String resource) {
+        return createMatch(PolicyGenerator.FUNCTION + "string-equal", resource,
+                PolicyGenerator.RESOURCE_CATEGORY, PolicyGenerator.RESOURCE_ID);
+    }
+
+    private static MatchElementDTO createMatch(String matchId, String value, String category,
+                                               String attributeId) {
+
+        MatchElementDTO match = new MatchElementDTO();
+        match.setMatchId(matchId);
+        match.setAttributeValueElementDTO(createValue(value));
+        match.setAttributeDesignatorDTO(createDesignator(category, attributeId));
+        return match;
+    }
+
+    private static TargetElementDTO createTarget(MatchElementDTO match) {
+
+        AllOfElementDTO allOf = new AllOfElementDTO();
+        allOf.addMatchElementDTO(match);
+        AnyOfElementDTO anyOf = new AnyOfElementDTO();
+        anyOf.addAllOfElementDTO(allOf);
+        TargetElementDTO target = new TargetElementDTO();
+        target.addAnyOfElementDTO(anyOf);
+        return target;
+    }
+
+    /**
+     * Creates the condition that the subject has at least one of the given roles
+     */
+    private static ConditionElementDT0 createRoleCondition(List<String> roles) {
+
+        ApplyElementDTO bag = new ApplyElementDTO();
+        bag.setFunctionId(PolicyGenerator.FUNCTION + "string-bag");
+        for (String role : roles) {
+            bag.setAttributeValueElementDTO(createValue(role));
+        }
+
+        ApplyElementDTO apply = new ApplyElementDTO();
+        apply.setFunctionId(PolicyGenerator.FUNCTION + "string-at-least-one-member-of");
+        apply.setApplyElement(bag);
+        apply.setAttributeDesignators(createDesignator(PolicyGenerator.SUBJECT_CATEGORY, ROLE_ID));
+
+        ConditionElementDT0 condition = new ConditionElementDT0();
+        condition.setApplyElement(apply);
+        return condition;
+    }
+
+    /**
+     * Creates the condition that the record of the request is secret, and that the subject is
+     * not a manager
+     */
+    private static ConditionElementDT0 createSecretCondition() {
+
+        AttributeSelectorDTO selector = new AttributeSelectorDTO();
+        selector.setCategory(PolicyGenerator.RESOURCE_CATEGORY);
+        selector.setPath(CLASSIFICATION_PATH);
+
+        ApplyElementDTO classification = new ApplyElementDTO();
+        classification.setFunctionId(PolicyGenerator.FUNCTION + "string-is-in");
+        classification.setAttributeValueElementDTO(createValue("secret"));
+        classification.setAttributeSelectors(selector);
+
+        ApplyElementDTO manager = new ApplyElementDTO();
+        manager.setFunctionId(PolicyGenerator.FUNCTION + "string-is-in");
+        manager.setAttributeValueElementDTO(createValue("manager"));
+        manager.setAttributeDesignators(createDesignator(PolicyGenerator.SUBJECT_CATEGORY, ROLE_ID));
+
+        ApplyElementDTO notManager = new ApplyElementDTO();
+        notManager.setFunctionId(PolicyGenerator.FUNCTION + "not");
+        notManager.setApplyElement(manager);
+
+        ApplyElementDTO apply = new ApplyElementDTO();
+        apply.setFunctionId(PolicyGenerator.FUNCTION + "and");
+        apply.setApplyElement(classification);
+        apply.setApplyElement(notManager);
+
+        ConditionElementDT0 condition = new ConditionElementDT0();
+        condition.setApplyElement(apply);
+        return condition;
+    }
+
+    private static ObligationElementDTO createObligation(int type, String id, String effect, String value) {
+
+        AttributeAssignmentElementDTO assignment = new AttributeAssignmentElementDTO();
+        assignment.setAttributeId(id + ":value");
+        assignment.setValueElementDTO(createValue(value));
+
+        ObligationElementDTO obligation = new ObligationElementDTO();
+        obligation.setType(type);
+        obligation.setId(id);
+        obligation.setEffect(effect);
+        obligation.addAssignmentElementDTO(assignment);
+        return obligation;
+    }
+
+    private static AttributesElementDTO createAttributes(String category, String attributeId, String value) {
+
+        AttributesElementDTO attributes = new AttributesElementDTO();
+        attributes.setCategory(category);
+        attributes.addAttributeElementDTO(createAttribute(attributeId, value));
+        return attributes;
+    }
+
+    private static AttributeElementDTO createAttribute(String attributeId, String value) {
+
+        AttributeElementDTO attribute = new AttributeElementDTO();
+        attribute.setAttributeId(attributeId);
+        attribute.setDataType(PolicyGenerator.STRING);
+        attribute.addAttributeValue(value);
+        return attribute;
+    }
+
+    private static AttributeValueElementDTO createValue(String value) {
+
+        AttributeValueElementDTO attributeValue = new AttributeValueElementDTO();
+        attributeValue.setAttributeValue(value);
+        attributeValue.setAttributeDataType(PolicyGenerator.STRING);
+        return attributeValue;
+    }
+
+    private static AttributeDesignatorDTO createDesignator(String category, String attributeId) {
+
+        AttributeDesignatorDTO designator = new AttributeDesignatorDTO();
+        designator.setCategory(category);
+        designator.setAttributeId(attributeId);
+        designator.setDataType(PolicyGenerator.STRING);
+        designator.setMustBePresent("false");
+        return designator;
+    }
+
+    private static String getPolicyId(int index) {
+        return "urn:benchmark:policy:" + index;
+    }
+
+    private static String getResource(int index) {
+        return "resource-" + index;
+    }
+
+    private static String getTenant(int index) {
+        return "tenant-" + (index / POLICIES_PER_TENANT);
+    }
+
+    private static File createDirectory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create directory " + directory);
+        }
+        return directory;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Generates a corpus. The arguments are the directory of the corpus, and optionally the
+     * number of policies, the number of requests, the depth of nesting and the seed.
+     *
+     * @param args the arguments
+     * @throws Exception if the corpus can not be generated
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.err.println("Usage: CorpusGenerator <directory> [policies] [requests] [depth] [seed]");
+            System.exit(1);
+        }
+        int policies = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : BenchmarkSupport.SEED;
+
+        new CorpusGenerator(seed).generate(new File(args[0]), policies, requests, depth);
+        System.out.println("Generated " + policies + " policies and " + requests + " requests in " + args[0]);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.Rule;
+import org.wso2.balana.cond.Condition;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of conditions that use the common function families: equality,
+ * regular expressions, bags, sets and higher order functions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunctionBenchmark {
+
+    private static final String FUNCTION = PolicyGenerator.FUNCTION;
+
+    private static final String SUBJECT_ID_BAG = "<AttributeDesignator MustBePresent=\"false\" Category=\"" +
+            PolicyGenerator.SUBJECT_CATEGORY + "\" AttributeId=\"" + PolicyGenerator.SUBJECT_ID +
+            "\" DataType=\"" + PolicyGenerator.STRING + "\"/>";
+
+    private static final String SUBJECT_ID = "<Apply FunctionId=\"" + FUNCTION + "string-one-and-only\">" +
+            SUBJECT_ID_BAG + "</Apply>";
+
+    /**
+     * the conditions of each function family
+     */
+    private static final Map<String, String> CONDITIONS = new HashMap<String, String>();
+
+    static {
+        CONDITIONS.put("equal", apply("string-equal", SUBJECT_ID, value("user-1")));
+        CONDITIONS.put("regexp", apply("string-regexp-match", value("^user-\\d+$"), SUBJECT_ID));
+        CONDITIONS.put("bag", apply("string-is-in", SUBJECT_ID, userBag()));
+        CONDITIONS.put("set", apply("string-at-least-one-member-of", SUBJECT_ID_BAG, userBag()));
+        CONDITIONS.put("higher-order", apply("any-of", "<Function FunctionId=\"" + FUNCTION +
+                "string-equal\"/>" + value("user-1"), SUBJECT_ID_BAG));
+    }
+
+    @Param({"equal", "regexp", "bag", "set", "higher-order"})
+    public String family;
+
+    private Condition condition;
+
+    private EvaluationCtx context;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        PolicyGenerator generator = new PolicyGenerator(BenchmarkSupport.SEED);
+        String policy = generator.createRuleCombiningPolicy("policy",
+                "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides", 1)
+                .replace("</Target></Rule>", "</Target><Condition>" + CONDITIONS.get(family) +
+                        "</Condition></Rule>");
+        AbstractPolicy parsed = BenchmarkSupport.parsePolicy(policy);
+        condition = ((Rule) parsed.getChildren().get(0)).getCondition();
+        context = BenchmarkSupport.createContext(generator.createRequest("user-1", 1));
+    }
+
+    @Benchmark
+    public EvaluationResult evaluate() {
+        return condition.evaluate(context);
+    }
+
+    private static String apply(String function, String... arguments) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<Apply FunctionId=\"").append(FUNCTION).append(function).append("\">");
+        for (String argument : arguments) {
+            builder.append(argument);
+        }
+        return builder.append("</Apply>").toString();
+    }
+
+    private static String value(String value) {
+        return "<AttributeValue DataType=\"" + PolicyGenerator.STRING + "\">" + value + "</AttributeValue>";
+    }
+
+    private static String userBag() {
+        // the user of the request is not in the bag, so that the whole bag is searched
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 32; i++) {
+            builder.append(value("user-" + (i * 3)));
+        }
+        return apply("string-bag", builder.toString());
+    }
+}
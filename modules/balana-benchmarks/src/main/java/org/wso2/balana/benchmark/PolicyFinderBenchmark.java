@@ -0,0 +1,132 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.balana.Balana;
+import org.wso2.balana.PDP;
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.PolicyFinderResult;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <code>FileBasedPolicyFinderModule.findPolicy</code> and the complete evaluation of a
+ * request by the <code>PDP</code>, over 10, 1k and 100k generated policies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyFinderBenchmark {
+
+    /**
+     * the number of distinct requests that the benchmarks cycle through
+     */
+    private static final int REQUEST_COUNT = 64;
+
+    @Param({"10", "1000", "100000"})
+    public int policies;
+
+    private File policyDirectory;
+
+    private FileBasedPolicyFinderModule module;
+
+    private PDP pdp;
+
+    private AbstractRequestCtx[] requests;
+
+    private EvaluationCtx[] contexts;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        PolicyGenerator generator = new PolicyGenerator(BenchmarkSupport.SEED);
+        policyDirectory = Files.createTempDirectory("balana-benchmark").toFile();
+        generator.writePolicies(policies, policyDirectory);
+
+        Set<String> locations = new HashSet<String>();
+        locations.add(policyDirectory.getAbsolutePath());
+        module = new FileBasedPolicyFinderModule(locations);
+        Set<PolicyFinderModule> modules = new HashSet<PolicyFinderModule>();
+        modules.add(module);
+        PolicyFinder finder = new PolicyFinder();
+        finder.setModules(modules);
+        finder.init();
+
+        PDPConfig defaultConfig = Balana.getInstance().getPdpConfig();
+        PDPConfig pdpConfig = new PDPConfig(defaultConfig.getAttributeFinder(), finder,
+                defaultConfig.getResourceFinder(), false);
+        pdp = new PDP(pdpConfig);
+
+        requests = new AbstractRequestCtx[REQUEST_COUNT];
+        contexts = new EvaluationCtx[REQUEST_COUNT];
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            String request = generator.createRequest(policies);
+            requests[i] = RequestCtxFactory.getFactory().getRequestCtx(request);
+            contexts[i] = BenchmarkSupport.createContext(request, pdpConfig);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        PolicyGenerator.deleteDirectory(policyDirectory);
+    }
+
+    @Benchmark
+    public PolicyFinderResult findPolicy() {
+        return module.findPolicy(contexts[nextIndex()]);
+    }
+
+    @Benchmark
+    public ResponseCtx evaluate() {
+        return pdp.evaluate(requests[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % REQUEST_COUNT;
+        return next;
+    }
+}
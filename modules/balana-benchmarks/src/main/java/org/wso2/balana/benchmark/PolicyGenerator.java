@@ -0,0 +1,316 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates synthetic XACML 3.0 policies and requests for the benchmarks. The output only depends
+ * on the seed, so that results can be compared between releases.
+ * <p>
+ * Policy <code>i</code> applies to the resource <code>resource-i</code>. It permits reading and
+ * listing to a few users, denies writing and deleting to anyone but administrators, and carries
+ * an obligation and an advice, so that every stage of the evaluation has some work to do.
+ */
+public class PolicyGenerator {
+
+    public static final String STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+    public static final String FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:";
+
+    public static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+
+    public static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+    public static final String ACTION_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:action";
+
+    public static final String ENVIRONMENT_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:environment";
+
+    public static final String SUBJECT_ID = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+
+    public static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+
+    public static final String ACTION_ID = "urn:oasis:names:tc:xacml:1.0:action:action-id";
+
+    public static final String[] ACTIONS = {"read", "list", "write", "delete"};
+
+    /**
+     * the number of users that requests are made for
+     */
+    public static final int USER_COUNT = 100;
+
+    private static final String XACML3_NS = "urn:oasis:names:tc:xacml:3.0:core:schema:wd-17";
+
+    private static final String DENY_OVERRIDES =
+            "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides";
+
+    private final Random random;
+
+    /**
+     * Creates a new <code>PolicyGenerator</code>
+     *
+     * @param seed the seed of the generated policies and requests
+     */
+    public PolicyGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates the policy for the given resource
+     *
+     * @param index the index of the policy and its resource
+     * @return the XML form of the policy
+     */
+    public String createPolicy(int index) {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("<Policy xmlns=\"").append(XACML3_NS).append("\" PolicyId=\"policy-").append(index)
+                .append("\" RuleCombiningAlgId=\"").append(DENY_OVERRIDES).append("\" Version=\"1.0\">");
+        builder.append("<Target>");
+        appendAnyOf(builder, RESOURCE_CATEGORY, RESOURCE_ID, "resource-" + index);
+        builder.append("</Target>");
+
+        builder.append("<Rule RuleId=\"permit-read\" Effect=\"Permit\"><Target>");
+        appendAnyOf(builder, ACTION_CATEGORY, ACTION_ID, "read", "list");
+        builder.append("</Target><Condition><Apply FunctionId=\"").append(FUNCTION).append("string-is-in\">");
+        appendSubjectId(builder);
+        builder.append("<Apply FunctionId=\"").append(FUNCTION).append("string-bag\">");
+        for (int i = 0; i < 3; i++) {
+            appendValue(builder, "user-" + random.nextInt(USER_COUNT));
+        }
+        builder.append("</Apply></Apply></Condition></Rule>");
+
+        builder.append("<Rule RuleId=\"deny-write\" Effect=\"Deny\"><Target>");
+        appendAnyOf(builder, ACTION_CATEGORY, ACTION_ID, "write", "delete");
+        builder.append("</Target><Condition><Apply FunctionId=\"").append(FUNCTION).append("not\">");
+        builder.append("<Apply FunctionId=\"").append(FUNCTION).append("string-regexp-match\">");
+        appendValue(builder, "^admin-\\d+$");
+        appendSubjectId(builder);
+        builder.append("</Apply></Apply></Condition></Rule>");
+
+        builder.append("<ObligationExpressions><ObligationExpression ObligationId=\"audit\" FulfillOn=\"Deny\">")
+                .append("<AttributeAssignmentExpression AttributeId=\"").append(RESOURCE_ID).append("\">")
+                .append("<AttributeDesignator Category=\"").append(RESOURCE_CATEGORY).append("\" AttributeId=\"")
+                .append(RESOURCE_ID).append("\" DataType=\"").append(STRING).append("\" MustBePresent=\"false\"/>")
+                .append("</AttributeAssignmentExpression></ObligationExpression></ObligationExpressions>");
+        builder.append("<AdviceExpressions><AdviceExpression AdviceId=\"notify\" AppliesTo=\"Permit\">")
+                .append("<AttributeAssignmentExpression AttributeId=\"").append(SUBJECT_ID).append("\">")
+                .append("<AttributeDesignator Category=\"").append(SUBJECT_CATEGORY).append("\" AttributeId=\"")
+                .append(SUBJECT_ID).append("\" DataType=\"").append(STRING).append("\" MustBePresent=\"false\"/>")
+                .append("</AttributeAssignmentExpression></AdviceExpression></AdviceExpressions>");
+        builder.append("</Policy>");
+        return builder.toString();
+    }
+
+    /**
+     * Creates a policy with the given number of rules that are combined with the given algorithm.
+     * Half of the rules permit and half of them deny, and each of them applies to one of the
+     * actions.
+     *
+     * @param policyId the identifier of the policy
+     * @param algorithmId the identifier of the rule combining algorithm
+     * @param ruleCount the number of rules
+     * @return the XML form of the policy
+     */
+    public String createRuleCombiningPolicy(String policyId, String algorithmId, int ruleCount) {
+        StringBuilder builder = new StringBuilder();
+        appendRuleCombiningPolicy(builder, policyId, algorithmId, ruleCount, null);
+        return builder.toString();
+    }
+
+    /**
+     * Creates a policy set of the given number of policies that are combined with the given
+     * algorithm. Each policy has a few rules and applies to one of the actions.
+     *
+     * @param algorithmId the identifier of the policy combining algorithm
+     * @param policyCount the number of policies
+     * @return the XML form of the policy set
+     */
+    public String createPolicySet(String algorithmId, int policyCount) {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("<PolicySet xmlns=\"").append(XACML3_NS).append("\" PolicySetId=\"policy-set\" ")
+                .append("PolicyCombiningAlgId=\"").append(algorithmId).append("\" Version=\"1.0\"><Target/>");
+        for (int i = 0; i < policyCount; i++) {
+            appendRuleCombiningPolicy(builder, "policy-" + i, DENY_OVERRIDES, 4,
+                    ACTIONS[random.nextInt(ACTIONS.length)]);
+        }
+        builder.append("</PolicySet>");
+        return builder.toString();
+    }
+
+    /**
+     * Creates a request of the given user for a random action on the given resource
+     *
+     * @param user the identifier of the user
+     * @param resourceIndex the index of the resource
+     * @return the XML form of the request
+     */
+    public String createRequest(String user, int resourceIndex) {
+        return createRequest(user, "resource-" + resourceIndex, ACTIONS[random.nextInt(ACTIONS.length)], 0);
+    }
+
+    /**
+     * Creates a request for a random user and action on one of the given number of resources
+     *
+     * @param resourceCount the number of resources
+     * @return the XML form of the request
+     */
+    public String createRequest(int resourceCount) {
+        String user = (random.nextInt(10) == 0 ? "admin-" : "user-") + random.nextInt(USER_COUNT);
+        return createRequest(user, resourceCount == 0 ? 0 : random.nextInt(resourceCount));
+    }
+
+    /**
+     * Creates a request with the given subject, resource and action
+     *
+     * @param user the identifier of the user
+     * @param resource the identifier of the resource
+     * @param action the identifier of the action
+     * @param environmentAttributes the number of additional environment attributes
+     * @return the XML form of the request
+     */
+    public String createRequest(String user, String resource, String action, int environmentAttributes) {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("<Request xmlns=\"").append(XACML3_NS)
+                .append("\" ReturnPolicyIdList=\"false\" CombinedDecision=\"false\">");
+        appendAttributes(builder, SUBJECT_CATEGORY, SUBJECT_ID, user);
+        appendAttributes(builder, RESOURCE_CATEGORY, RESOURCE_ID, resource);
+        appendAttributes(builder, ACTION_CATEGORY, ACTION_ID, action);
+        if (environmentAttributes > 0) {
+            builder.append("<Attributes Category=\"").append(ENVIRONMENT_CATEGORY).append("\">");
+            for (int i = 0; i < environmentAttributes; i++) {
+                builder.append("<Attribute IncludeInResult=\"false\" AttributeId=\"urn:example:attribute-")
+                        .append(i).append("\">");
+                appendValue(builder, "value-" + random.nextInt());
+                builder.append("</Attribute>");
+            }
+            builder.append("</Attributes>");
+        }
+        builder.append("</Request>");
+        return builder.toString();
+    }
+
+    /**
+     * Writes the given number of policies to files in the given directory
+     *
+     * @param policyCount the number of policies
+     * @param directory the directory to write the policies to, which must exist
+     * @throws IOException if a policy could not be written
+     */
+    public void writePolicies(int policyCount, File directory) throws IOException {
+
+        for (int i = 0; i < policyCount; i++) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory,
+                    "policy-" + i + ".xml")), Charset.forName("UTF-8"));
+            try {
+                writer.write(createPolicy(i));
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes the given directory and the files it contains
+     *
+     * @param directory the directory to delete
+     */
+    public static void deleteDirectory(File directory) {
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+
+    private void appendRuleCombiningPolicy(StringBuilder builder, String policyId, String algorithmId,
+                                           int ruleCount, String action) {
+
+        builder.append("<Policy");
+        if (action == null) {
+            // only a top level policy needs the namespace
+            builder.append(" xmlns=\"").append(XACML3_NS).append("\"");
+        }
+        builder.append(" PolicyId=\"").append(policyId).append("\" RuleCombiningAlgId=\"").append(algorithmId)
+                .append("\" Version=\"1.0\">");
+        if (action == null) {
+            builder.append("<Target/>");
+        } else {
+            builder.append("<Target>");
+            appendAnyOf(builder, ACTION_CATEGORY, ACTION_ID, action);
+            builder.append("</Target>");
+        }
+        for (int i = 0; i < ruleCount; i++) {
+            builder.append("<Rule RuleId=\"rule-").append(i).append("\" Effect=\"")
+                    .append(i % 2 == 0 ? "Permit" : "Deny").append("\"><Target>");
+            appendAnyOf(builder, ACTION_CATEGORY, ACTION_ID, ACTIONS[random.nextInt(ACTIONS.length)]);
+            builder.append("</Target></Rule>");
+        }
+        builder.append("</Policy>");
+    }
+
+    private static void appendAnyOf(StringBuilder builder, String category, String attributeId,
+                                    String... values) {
+
+        builder.append("<AnyOf>");
+        for (String value : values) {
+            builder.append("<AllOf><Match MatchId=\"").append(FUNCTION).append("string-equal\">");
+            appendValue(builder, value);
+            builder.append("<AttributeDesignator MustBePresent=\"false\" Category=\"").append(category)
+                    .append("\" AttributeId=\"").append(attributeId).append("\" DataType=\"").append(STRING)
+                    .append("\"/></Match></AllOf>");
+        }
+        builder.append("</AnyOf>");
+    }
+
+    private static void appendSubjectId(StringBuilder builder) {
+        builder.append("<Apply FunctionId=\"").append(FUNCTION).append("string-one-and-only\">")
+                .append("<AttributeDesignator MustBePresent=\"false\" Category=\"").append(SUBJECT_CATEGORY)
+                .append("\" AttributeId=\"").append(SUBJECT_ID).append("\" DataType=\"").append(STRING)
+                .append("\"/></Apply>");
+    }
+
+    private static void appendValue(StringBuilder builder, String value) {
+        builder.append("<AttributeValue DataType=\"").append(STRING).append("\">").append(value)
+                .append("</AttributeValue>");
+    }
+
+    private static void appendAttributes(StringBuilder builder, String category, String attributeId,
+                                         String value) {
+        builder.append("<Attributes Category=\"").append(category).append("\"><Attribute IncludeInResult=\"false\" ")
+                .append("AttributeId=\"").append(attributeId).append("\">");
+        appendValue(builder, value);
+        builder.append("</Attribute></Attributes>");
+    }
+}
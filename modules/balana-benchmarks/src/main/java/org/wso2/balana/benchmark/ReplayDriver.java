@@ -0,0 +1,207 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.wso2.balana.Balana;
+import org.wso2.balana.PDP;
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Replays the requests of a corpus, generated by <code>CorpusGenerator</code>, against a
+ * <code>PDP</code> that loads the policies of the corpus with
+ * <code>FileBasedPolicyFinderModule</code>. Each request is parsed and evaluated, and the
+ * throughput and the number of each decision are reported.
+ */
+public class ReplayDriver {
+
+    private final PDP pdp;
+
+    private final List<String> requests;
+
+    /**
+     * the number of results of each decision
+     */
+    private final AtomicLongArray decisions = new AtomicLongArray(AbstractResult.DECISION_INDETERMINATE_DENY_OR_PERMIT + 1);
+
+    /**
+     * Creates a driver for the given corpus
+     *
+     * @param corpus the directory of the corpus
+     * @throws IOException if the requests can not be read
+     */
+    public ReplayDriver(File corpus) throws IOException {
+
+        Set<String> locations = new HashSet<String>();
+        locations.add(new File(corpus, CorpusGenerator.POLICY_DIRECTORY).getAbsolutePath());
+        Set<PolicyFinderModule> modules = new HashSet<PolicyFinderModule>();
+        modules.add(new FileBasedPolicyFinderModule(locations));
+        PolicyFinder finder = new PolicyFinder();
+        finder.setModules(modules);
+        finder.init();
+
+        PDPConfig defaultConfig = Balana.getInstance().getPdpConfig();
+        pdp = new PDP(new PDPConfig(defaultConfig.getAttributeFinder(), finder,
+                defaultConfig.getResourceFinder(), false));
+
+        File[] files = new File(corpus, CorpusGenerator.REQUEST_DIRECTORY).listFiles();
+        if (files == null) {
+            throw new IOException("No requests in " + corpus);
+        }
+        Arrays.sort(files);
+        requests = new ArrayList<String>(files.length);
+        for (File file : files) {
+            requests.add(new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+        }
+    }
+
+    /**
+     * Replays the requests the given number of times, divided over the given number of threads
+     *
+     * @param iterations the number of times each request is replayed
+     * @param threads the number of threads
+     * @return the time that it took, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public long replay(final int iterations, int threads) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int thread = 0; thread < threads; thread++) {
+            final int first = thread;
+            final int step = threads;
+            executor.execute(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < iterations; i++) {
+                        for (int j = first; j < requests.size(); j += step) {
+                            evaluate(requests.get(j));
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Clears the number of each decision
+     */
+    public void reset() {
+        for (int i = 0; i < decisions.length(); i++) {
+            decisions.set(i, 0);
+        }
+    }
+
+    public int getRequestCount() {
+        return requests.size();
+    }
+
+    /**
+     * Returns the number of results of the given decision
+     *
+     * @param decision one of the <code>DECISION_*</code> fields of <code>AbstractResult</code>
+     * @return the number of results
+     */
+    public long getDecisionCount(int decision) {
+        return decisions.get(decision);
+    }
+
+    private void evaluate(String request) {
+
+        ResponseCtx response;
+        try {
+            response = pdp.evaluate(RequestCtxFactory.getFactory().getRequestCtx(request));
+        } catch (ParsingException e) {
+            decisions.incrementAndGet(AbstractResult.DECISION_INDETERMINATE);
+            return;
+        }
+        for (AbstractResult result : response.getResults()) {
+            decisions.incrementAndGet(result.getDecision());
+        }
+    }
+
+    private static String getDecisionName(int decision) {
+        switch (decision) {
+            case AbstractResult.DECISION_INDETERMINATE_DENY:
+                return "Indeterminate{D}";
+            case AbstractResult.DECISION_INDETERMINATE_PERMIT:
+                return "Indeterminate{P}";
+            case AbstractResult.DECISION_INDETERMINATE_DENY_OR_PERMIT:
+                return "Indeterminate{DP}";
+            default:
+                return AbstractResult.DECISIONS[decision];
+        }
+    }
+
+    /**
+     * Replays a corpus. The arguments are the directory of the corpus, and optionally the number
+     * of times the requests are replayed and the number of threads. The requests are replayed
+     * once before, to warm up.
+     *
+     * @param args the arguments
+     * @throws Exception if the corpus can not be replayed
+     */
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayDriver <directory> [iterations] [threads]");
+            System.exit(1);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        ReplayDriver driver = new ReplayDriver(new File(args[0]));
+        driver.replay(1, threads);
+        driver.reset();
+
+        long time = driver.replay(iterations, threads);
+        long count = (long) driver.getRequestCount() * iterations;
+        System.out.println("Replayed " + count + " requests on " + threads + " threads in " +
+                TimeUnit.NANOSECONDS.toMillis(time) + " ms, " +
+                String.format("%.1f", count * 1e9 / time) + " requests/s");
+        for (int i = 0; i <= AbstractResult.DECISION_INDETERMINATE_DENY_OR_PERMIT; i++) {
+            long decisionCount = driver.getDecisionCount(i);
+            if (decisionCount > 0) {
+                System.out.println("  " + getDecisionName(i) + ": " + decisionCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of XACML 3.0 requests by <code>RequestCtxFactory</code>, with the DOM and the
+ * streaming parser, for requests of a growing number of attributes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    /**
+     * the number of environment attributes in addition to the subject, resource and action
+     */
+    @Param({"0", "10", "100"})
+    public int attributes;
+
+    private String request;
+
+    @Setup
+    public void setUp() {
+        request = new PolicyGenerator(BenchmarkSupport.SEED).createRequest("user-1", "resource-1", "read",
+                attributes);
+    }
+
+    @Benchmark
+    public AbstractRequestCtx parse() throws ParsingException {
+        return RequestCtxFactory.getFactory().getRequestCtx(request);
+    }
+
+    @Benchmark
+    public AbstractRequestCtx parseStreaming() throws ParsingException {
+        return RequestCtxFactory.getFactory().getStreamingRequestCtx(request);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.ResponseCtx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <code>ResponseCtx.encode</code> for responses of one or more results, with the
+ * obligations and advice of the generated policies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * the number of results in the response
+     */
+    @Param({"1", "10", "100"})
+    public int results;
+
+    private ResponseCtx response;
+
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        PolicyGenerator generator = new PolicyGenerator(BenchmarkSupport.SEED);
+        AbstractPolicy policy = BenchmarkSupport.parsePolicy(generator.createPolicy(0));
+
+        Set<AbstractResult> resultSet = new LinkedHashSet<AbstractResult>();
+        for (int i = 0; i < results; i++) {
+            String user = (i % 2 == 0 ? "user-" : "admin-") + i;
+            String action = PolicyGenerator.ACTIONS[i % PolicyGenerator.ACTIONS.length];
+            resultSet.add(policy.evaluate(BenchmarkSupport.createContext(
+                    generator.createRequest(user, "resource-0", action, 0))));
+        }
+        response = new ResponseCtx(resultSet, XACMLConstants.XACML_VERSION_3_0);
+        output = new ByteArrayOutputStream();
+    }
+
+    @Benchmark
+    public String encode() {
+        return response.encode();
+    }
+
+    @Benchmark
+    public int encodeToStream() throws IOException {
+        output.reset();
+        response.encode(output, UTF_8);
+        return output.size();
+    }
+}
@@ -41,6 +41,7 @@ import org.wso2.balana.combine.*;
 import org.wso2.balana.ctx.AbstractResult;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.xacml2.Result;
+import org.wso2.balana.metrics.EvaluationProfiler;
 import org.wso2.balana.xacml2.Obligation;
 import org.wso2.balana.xacml3.Advice;
 import org.wso2.balana.xacml3.AdviceExpression;
@@ -565,7 +566,27 @@ public abstract class AbstractPolicy  implements PolicyTreeElement{
      * @return the result of evaluation
      */
     public AbstractResult evaluate(EvaluationCtx context) {
-        
+
+        EvaluationProfiler profiler = EvaluationProfiler.getProfiler(context);
+        if (profiler == null) {
+            return evaluatePolicy(context);
+        }
+
+        long start = System.nanoTime();
+        AbstractResult result = evaluatePolicy(context);
+        profiler.record(EvaluationProfiler.POLICY, idAttr.toString(), System.nanoTime() - start,
+                result.getDecision());
+        return result;
+    }
+
+    /**
+     * Private helper that evaluates the policy, the body of <code>evaluate</code>
+     *
+     * @param context the representation of the request
+     * @return the result of evaluation
+     */
+    private AbstractResult evaluatePolicy(EvaluationCtx context) {
+
         // evaluate
         AbstractResult result = combiningAlg.combine(context, parameters, childElements);
 
@@ -20,8 +20,8 @@ package org.wso2.balana;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
+import org.wso2.balana.utils.Utils;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
@@ -42,4 +42,28 @@ public class DOMHelper {
 		return localName;
 
 	}
+
+	/**
+	 * Returns the given node as the document element of a <code>Document</code>, so that XPath
+	 * expressions see it as the root. A node that already is the document element of its owner
+	 * is returned as it is, otherwise it is deep copied into a new <code>Document</code>. If the
+	 * node can not be made a document element, the given node is returned.
+	 *
+	 * @param node a DOM node
+	 * @return the node, or a copy of it, that is a document element
+	 */
+	public static Node getAsDocumentElement(Node node) {
+
+		Node parent = node.getParentNode();
+		if (parent != null && parent.getNodeType() == Node.DOCUMENT_NODE) {
+			return node;
+		}
+		try {
+			Document docRoot = Utils.createNewDocument();
+			docRoot.appendChild(docRoot.importNode(node, true));
+			return docRoot.getDocumentElement();
+		} catch (Exception e) {
+			return node;
+		}
+	}
 }
@@ -0,0 +1,304 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana;
+
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.AttributesReference;
+import org.wso2.balana.xacml3.RequestReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of decisions made by a <code>PDP</code>, keyed by a canonical form of the
+ * attributes of a XACML 3.0 request. Entries are evicted in least recently used order once the
+ * maximum size is reached, and expire after the configured time to live.
+ * <p>
+ * Only requests without <code>Content</code> are cached, and the <code>PDP</code> does not cache a
+ * decision whose evaluation read the current date or time from the PDP environment, evaluated an
+ * attribute selector, or used values found by an <code>AttributeFinderModule</code> that is not
+ * decision cacheable (see <code>AttributeFinderModule.isDecisionCacheable</code>). Decisions are tied to the policy generation of the <code>PolicyFinder</code>
+ * (see <code>PolicyFinder.getGeneration()</code>), so all cached decisions are dropped when the
+ * policies are reloaded. Because of this a cache must not be shared between PDPs that use
+ * different policy finders.
+ * <p>
+ * Cached <code>ResponseCtx</code> objects are returned to every caller that makes the same request,
+ * so they must not be modified.
+ */
+public class DecisionCache {
+
+    /**
+     * maximum number of cached decisions
+     */
+    private final int maxSize;
+
+    /**
+     * time in milliseconds a decision is kept, or 0 or less to keep it until it is evicted
+     */
+    private final long timeToLive;
+
+    /**
+     * cached decisions in least recently used order
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * policy generation of the cached decisions
+     */
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a new <code>DecisionCache</code>
+     *
+     * @param maxSize maximum number of cached decisions
+     * @param timeToLive time in milliseconds a decision is kept, or 0 or less to keep decisions
+     *                   until they are evicted
+     */
+    public DecisionCache(int maxSize, long timeToLive) {
+
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Decision cache size must be at least one");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached response for the given key, or null if there is no valid cached response.
+     *
+     * @param key cache key created by <code>createKey</code>
+     * @param generation the current policy generation of the <code>PolicyFinder</code>
+     * @return the cached <code>ResponseCtx</code> or null
+     */
+    public ResponseCtx get(String key, long generation) {
+
+        ResponseCtx response = null;
+        synchronized (entries) {
+            flushIfStale(generation);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiry > 0 && entry.expiry < System.currentTimeMillis()) {
+                    entries.remove(key);
+                } else {
+                    response = entry.response;
+                }
+            }
+        }
+
+        if (response != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * Caches a response. The response is ignored if the policies have been reloaded since the
+     * given generation was read, as it may have been made with the old policies.
+     *
+     * @param key cache key created by <code>createKey</code>
+     * @param generation the policy generation of the <code>PolicyFinder</code> that was read
+     *                   before the request was evaluated
+     * @param response the response to cache
+     */
+    public void put(String key, long generation, ResponseCtx response) {
+
+        long expiry = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+        synchronized (entries) {
+            flushIfStale(generation);
+            if (generation != this.generation) {
+                return;
+            }
+            entries.put(key, new Entry(response, expiry));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached decisions
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached decisions
+     *
+     * @return number of cached decisions
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of requests that were answered from this cache
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of cacheable requests that were not found in this cache
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Creates the cache key of a request. The key is a canonical form of the request, in which the
+     * order of the <code>Attributes</code> elements and of the <code>Attribute</code>s in them
+     * does not matter.
+     *
+     * @param request the request
+     * @return the key, or null if decisions for this request can not be cached
+     */
+    public String createKey(AbstractRequestCtx request) {
+
+        if (!(request instanceof RequestCtx) || request.getAttributesSet() == null) {
+            return null;
+        }
+        RequestCtx requestCtx = (RequestCtx) request;
+
+        List<String> attributesKeys = new ArrayList<String>();
+        for (Attributes attributes : requestCtx.getAttributesSet()) {
+            if (attributes.hasContent()) {
+                // content is evaluated with XPath, which is not part of the key
+                return null;
+            }
+            List<String> attributeKeys = new ArrayList<String>();
+            for (Attribute attribute : attributes.getAttributes()) {
+                StringBuilder builder = new StringBuilder();
+                append(builder, attribute.getId().toString());
+                append(builder, attribute.getType().toString());
+                append(builder, attribute.getIssuer());
+                append(builder, Boolean.toString(attribute.isIncludeInResult()));
+                for (AttributeValue value : attribute.getValues()) {
+                    append(builder, value.getType().toString());
+                    append(builder, value.encode());
+                }
+                attributeKeys.add(builder.toString());
+            }
+            Collections.sort(attributeKeys);
+
+            StringBuilder builder = new StringBuilder();
+            append(builder, attributes.getCategory().toString());
+            append(builder, attributes.getId());
+            for (String attributeKey : attributeKeys) {
+                append(builder, attributeKey);
+            }
+            attributesKeys.add(builder.toString());
+        }
+        Collections.sort(attributesKeys);
+
+        StringBuilder key = new StringBuilder();
+        append(key, Boolean.toString(requestCtx.isReturnPolicyIdList()));
+        append(key, Boolean.toString(requestCtx.isCombinedDecision()));
+        append(key, requestCtx.getDefaults() == null ? null :
+                requestCtx.getDefaults().getXPathVersion());
+        if (requestCtx.getMultiRequests() != null) {
+            List<String> referenceKeys = new ArrayList<String>();
+            for (RequestReference reference : requestCtx.getMultiRequests().getRequestReferences()) {
+                List<String> ids = new ArrayList<String>();
+                for (AttributesReference attributesReference : reference.getReferences()) {
+                    ids.add(attributesReference.getId());
+                }
+                Collections.sort(ids);
+                StringBuilder builder = new StringBuilder();
+                for (String id : ids) {
+                    append(builder, id);
+                }
+                referenceKeys.add(builder.toString());
+            }
+            Collections.sort(referenceKeys);
+            for (String referenceKey : referenceKeys) {
+                append(key, referenceKey);
+            }
+        }
+        key.append('#');
+        for (String attributesKey : attributesKeys) {
+            append(key, attributesKey);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Private helper that drops all entries when the policies have been reloaded. Must be called
+     * while holding the lock of the entries.
+     */
+    private void flushIfStale(long generation) {
+        if (generation > this.generation) {
+            entries.clear();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Private helper that appends a length prefixed value, so that keys can not be ambiguous
+     */
+    private static void append(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append('-');
+        } else {
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * A cached response with its expiry time
+     */
+    private static class Entry {
+
+        private final ResponseCtx response;
+
+        private final long expiry;
+
+        Entry(ResponseCtx response, long expiry) {
+            this.response = response;
+            this.expiry = expiry;
+        }
+    }
+}
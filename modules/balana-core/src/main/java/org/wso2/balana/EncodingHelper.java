@@ -0,0 +1,87 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Helper methods that write text into XML, escaping it as it is written.
+ */
+public class EncodingHelper {
+
+    /**
+     * Writes the given text as the content of an element, escaping '&amp;', '&lt;' and '&gt;'.
+     *
+     * @param writer character stream into which the text is written
+     * @param text the text
+     * @throws IOException if the text can not be written
+     */
+    public static void writeText(Writer writer, String text) throws IOException {
+        write(writer, text, false);
+    }
+
+    /**
+     * Writes the given text as the value of an XML attribute in double quotes, escaping '&amp;',
+     * '&lt;', '&gt;' and '&quot;'.
+     *
+     * @param writer character stream into which the text is written
+     * @param text the text
+     * @throws IOException if the text can not be written
+     */
+    public static void writeAttribute(Writer writer, String text) throws IOException {
+        write(writer, text, true);
+    }
+
+    /**
+     * Private helper that writes the text, with the characters that need it replaced by entities.
+     * The text between those characters is written as it is.
+     */
+    private static void write(Writer writer, String text, boolean attribute) throws IOException {
+
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                default:
+                    entity = null;
+            }
+            if (entity != null) {
+                writer.write(text, start, i - start);
+                writer.write(entity);
+                start = i + 1;
+            }
+        }
+        writer.write(text, start, length - start);
+    }
+}
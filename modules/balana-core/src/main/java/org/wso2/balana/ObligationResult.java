@@ -20,6 +20,9 @@ package org.wso2.balana;
 
 import org.wso2.balana.ctx.EvaluationCtx;import java.io.OutputStream;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  *
  */
@@ -41,4 +44,15 @@ public interface ObligationResult  {
      */
     public void encode(StringBuilder builder);
 
+    /**
+     * Encodes this <code>ObligationResult</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>. This default implementation writes the result of <code>encode()</code>.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public default void encode(Writer writer) throws IOException {
+        writer.write(encode());
+    }
+
 }
@@ -44,8 +44,10 @@ import org.wso2.balana.ctx.*;
 import org.wso2.balana.ctx.xacml3.RequestCtx;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.PolicyFinderResult;
+import org.wso2.balana.metrics.PDPMetrics;
 import org.wso2.balana.ctx.xacml3.Result;
 import org.wso2.balana.ctx.xacml3.XACML3EvaluationCtx;
+import org.wso2.balana.xacml3.Attributes;
 import org.wso2.balana.xacml3.MultipleCtxResult;
 
 import java.io.ByteArrayOutputStream;
@@ -53,7 +55,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This is the core class for the XACML engine, providing the starting point for request evaluation.
@@ -62,7 +74,7 @@ import java.util.*;
  * @author Seth Proctor
  * @since 1.0
  */
-public class PDP {
+public class PDP implements AutoCloseable {
 
     /**
      * the encapsulate the <code>PDP</code> related configurations
@@ -74,6 +86,23 @@ public class PDP {
      */
     private PolicyFinder policyFinder;
 
+    /**
+     * the executor used to evaluate requests asynchronously
+     */
+    private Executor executor;
+
+    /**
+     * the bounded pool used to evaluate the individual decisions of a multiple decision request,
+     * or null if they are evaluated sequentially. The pool is created by and belongs to this PDP,
+     * and is shut down by <code>close</code>.
+     */
+    private volatile ForkJoinPool multipleRequestPool;
+
+    /**
+     * the receiver of the measurements of this PDP, or null if nothing is measured
+     */
+    private PDPMetrics metrics;
+
     /**
      * the logger we'll use for all messages
      */
@@ -86,6 +115,21 @@ public class PDP {
      *                  attributes, etc.
      */
     public PDP(PDPConfig pdpConfig) {
+        this(pdpConfig, null);
+    }
+
+    /**
+     * Constructs a new <code>PDP</code> object with the given configuration information and the
+     * executor that is used by the batch and asynchronous <code>evaluate</code> methods.
+     *
+     * @param pdpConfig user configuration data defining how to find policies, resolve external
+     *                  attributes, etc.
+     * @param executor  the <code>Executor</code> used to evaluate requests concurrently, or null to
+     *                  use virtual threads when running on Java 21 or later and the common
+     *                  fork-join pool otherwise. The executor belongs to the caller, and is not
+     *                  shut down by <code>close</code>.
+     */
+    public PDP(PDPConfig pdpConfig, Executor executor) {
 
         if (logger.isDebugEnabled()) {
             logger.debug("creating a PDP");
@@ -93,6 +137,20 @@ public class PDP {
 
         this.pdpConfig = pdpConfig;
 
+        if (executor != null) {
+            this.executor = executor;
+        } else {
+            this.executor = DefaultExecutorHolder.EXECUTOR;
+        }
+
+        if (pdpConfig.getMultipleRequestParallelism() > 1) {
+            multipleRequestPool = new ForkJoinPool(pdpConfig.getMultipleRequestParallelism());
+        }
+
+        // the attribute finder, which may be shared with other PDPs, finds the metrics through
+        // the evaluation context
+        metrics = pdpConfig.getMetrics();
+
         policyFinder = pdpConfig.getPolicyFinder();
         policyFinder.init();
     }
@@ -114,8 +172,12 @@ public class PDP {
         AbstractRequestCtx requestCtx;
         ResponseCtx responseCtx;
 
+        long start = metrics != null ? System.nanoTime() : 0;
         try {
-            requestCtx = RequestCtxFactory.getFactory().getRequestCtx(request.replaceAll(">\\s+<", "><"));
+            requestCtx = RequestCtxFactory.getFactory().getStreamingRequestCtx(request);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - start);
+            }
             responseCtx = evaluate(requestCtx);
         } catch (ParsingException e) {
             String error = "Invalid request  : " + e.getMessage();
@@ -128,6 +190,9 @@ public class PDP {
             Status status = new Status(code, error);
             //As invalid request, by default XACML 3.0 response is created. 
             responseCtx = new ResponseCtx(new Result(AbstractResult.DECISION_INDETERMINATE, status));
+            if (metrics != null) {
+                recordResponse(start, responseCtx);
+            }
         }
 
         return responseCtx.encode();
@@ -148,10 +213,51 @@ public class PDP {
      */
     public ResponseCtx evaluate(AbstractRequestCtx request) {
 
+        if (metrics == null) {
+            return evaluateRequest(request);
+        }
+        long start = System.nanoTime();
+        ResponseCtx response = evaluateRequest(request);
+        recordResponse(start, response);
+        return response;
+    }
+
+    /**
+     * Private helper that evaluates the given request, and answers it from the decision cache when
+     * possible.
+     */
+    private ResponseCtx evaluateRequest(AbstractRequestCtx request) {
+
+        DecisionCache decisionCache = pdpConfig.getDecisionCache();
+        String cacheKey = null;
+        long generation = 0;
+        if (decisionCache != null) {
+            cacheKey = decisionCache.createKey(request);
+            if (cacheKey != null) {
+                generation = policyFinder.getGeneration();
+                ResponseCtx cachedResponse = decisionCache.get(cacheKey, generation);
+                if (metrics != null) {
+                    metrics.recordCacheAccess(PDPMetrics.DECISION_CACHE, cachedResponse != null);
+                }
+                if (cachedResponse != null) {
+                    return cachedResponse;
+                }
+            }
+        }
+
         EvaluationCtx evalContext = null;
         try {
             evalContext = EvaluationCtxFactory.getFactory().getEvaluationCtx(request, pdpConfig);
-            return evaluate(evalContext);
+            if (cacheKey == null) {
+                return evaluate(evalContext, null);
+            }
+
+            List<EvaluationCtx> evaluatedContexts = new ArrayList<EvaluationCtx>();
+            ResponseCtx response = evaluate(evalContext, evaluatedContexts);
+            if (isCacheable(evaluatedContexts)) {
+                decisionCache.put(cacheKey, generation, response);
+            }
+            return response;
         } catch (ParsingException e) {
             logger.error("Invalid request  : " + e.getMessage());
             // there was something wrong with the request, so we return
@@ -179,6 +285,32 @@ public class PDP {
      */
     public ResponseCtx evaluate(EvaluationCtx context) {
 
+        if (metrics == null) {
+            return evaluate(context, null);
+        }
+        long start = System.nanoTime();
+        ResponseCtx response = evaluate(context, null);
+        recordResponse(start, response);
+        return response;
+    }
+
+    /**
+     * Private helper that reports an evaluated request, and its decisions, to the metrics
+     */
+    private void recordResponse(long start, ResponseCtx response) {
+
+        metrics.recordRequest(System.nanoTime() - start);
+        for (AbstractResult result : response.getResults()) {
+            metrics.recordDecision(result.getDecision());
+        }
+    }
+
+    /**
+     * Private helper that evaluates the given context, and collects the contexts of the individual
+     * decisions that were evaluated into the given collection, if it is not null.
+     */
+    private ResponseCtx evaluate(EvaluationCtx context, Collection<EvaluationCtx> evaluatedContexts) {
+
         // check whether this PDP configure to support multiple decision profile
         if (pdpConfig.isMultipleRequestHandle()) {
 
@@ -189,12 +321,22 @@ public class PDP {
                         getResult(AbstractResult.DECISION_INDETERMINATE, multipleCtxResult.getStatus(), context));
             } else {
                 evaluationCtxSet = multipleCtxResult.getEvaluationCtxSet();
-                HashSet<AbstractResult> results = new HashSet<AbstractResult>();
-                for (EvaluationCtx ctx : evaluationCtxSet) {
-                    // do the evaluation, for all evaluate context
-                    AbstractResult result = evaluateContext(ctx);
-                    // add the result
-                    results.add(result);
+                if (evaluatedContexts != null) {
+                    evaluatedContexts.addAll(evaluationCtxSet);
+                }
+                HashSet<AbstractResult> results;
+                ForkJoinPool pool = multipleRequestPool;
+                if (pool != null && evaluationCtxSet.size() > 1
+                        && isParallelEvaluable(evaluationCtxSet)) {
+                    results = evaluateContextsInParallel(pool, evaluationCtxSet);
+                } else {
+                    results = new HashSet<AbstractResult>();
+                    for (EvaluationCtx ctx : evaluationCtxSet) {
+                        // do the evaluation, for all evaluate context
+                        AbstractResult result = evaluateContext(ctx);
+                        // add the result
+                        results.add(result);
+                    }
                 }
                 // XACML 3.0.version
                 return new ResponseCtx(results, XACMLConstants.XACML_VERSION_3_0);
@@ -221,12 +363,195 @@ public class PDP {
                         getResult(AbstractResult.DECISION_INDETERMINATE,
                                 status, context));
             } else {
+                if (evaluatedContexts != null) {
+                    evaluatedContexts.add(context);
+                }
                 return new ResponseCtx(evaluateContext(context));
             }
         }
 
     }
 
+    /**
+     * Evaluates a batch of independent requests concurrently using the executor of this PDP. The
+     * policy and attribute finders are shared by all evaluations, so the configured modules must be
+     * safe to use from several threads at once.
+     * <p>
+     * A request that fails with an unexpected error results in a decision of INDETERMINATE, so one
+     * bad request never fails the whole batch.
+     *
+     * @param requests the requests to evaluate
+     * @return the responses, in the same order as the requests
+     */
+    public List<ResponseCtx> evaluateAll(Collection<? extends AbstractRequestCtx> requests) {
+        return evaluateAllAsync(requests, executor).join();
+    }
+
+    /**
+     * Asynchronously evaluates a batch of independent requests using the executor of this PDP.
+     *
+     * @param requests the requests to evaluate
+     * @return a future that completes with the responses, in the same order as the requests
+     */
+    public CompletableFuture<List<ResponseCtx>> evaluateAllAsync(
+            Collection<? extends AbstractRequestCtx> requests) {
+        return evaluateAllAsync(requests, executor);
+    }
+
+    /**
+     * Asynchronously evaluates a batch of independent requests using the given executor.
+     *
+     * @param requests the requests to evaluate
+     * @param executor the <code>Executor</code> that runs the evaluations
+     * @return a future that completes with the responses, in the same order as the requests
+     */
+    public CompletableFuture<List<ResponseCtx>> evaluateAllAsync(
+            Collection<? extends AbstractRequestCtx> requests, Executor executor) {
+
+        final List<CompletableFuture<ResponseCtx>> futures =
+                new ArrayList<CompletableFuture<ResponseCtx>>(requests.size());
+        for (AbstractRequestCtx request : requests) {
+            futures.add(evaluateAsync(request, executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).
+                thenApply(new Function<Void, List<ResponseCtx>>() {
+                    public List<ResponseCtx> apply(Void ignored) {
+                        List<ResponseCtx> responses = new ArrayList<ResponseCtx>(futures.size());
+                        for (CompletableFuture<ResponseCtx> future : futures) {
+                            responses.add(future.join());
+                        }
+                        return responses;
+                    }
+                });
+    }
+
+    /**
+     * Asynchronously evaluates a single request using the executor of this PDP.
+     *
+     * @param request the request to evaluate
+     * @return a future that completes with the response paired to the request
+     */
+    public CompletableFuture<ResponseCtx> evaluateAsync(AbstractRequestCtx request) {
+        return evaluateAsync(request, executor);
+    }
+
+    /**
+     * Asynchronously evaluates a single request using the given executor.
+     *
+     * @param request  the request to evaluate
+     * @param executor the <code>Executor</code> that runs the evaluation
+     * @return a future that completes with the response paired to the request
+     */
+    public CompletableFuture<ResponseCtx> evaluateAsync(final AbstractRequestCtx request,
+                                                        Executor executor) {
+
+        return CompletableFuture.supplyAsync(new Supplier<ResponseCtx>() {
+            public ResponseCtx get() {
+                try {
+                    return evaluate(request);
+                } catch (RuntimeException e) {
+                    logger.error("Error while evaluating XACML request", e);
+                    ArrayList<String> code = new ArrayList<String>();
+                    code.add(Status.STATUS_PROCESSING_ERROR);
+                    Status status = new Status(code, e.getMessage());
+                    return new ResponseCtx(ResultFactory.getFactory().
+                            getResult(AbstractResult.DECISION_INDETERMINATE, status,
+                                    request.getXacmlVersion()));
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * A private helper routine that evaluates the individual decisions of a multiple decision
+     * request on the bounded pool of this PDP, and collects their results. Decisions that the pool
+     * does not take, because the PDP was closed meanwhile, are evaluated by the calling thread.
+     *
+     * @param pool the pool of this PDP
+     * @param contexts individual evaluation contexts
+     * @return results of all the contexts
+     */
+    private HashSet<AbstractResult> evaluateContextsInParallel(ForkJoinPool pool,
+                                                               Set<EvaluationCtx> contexts) {
+
+        HashSet<AbstractResult> results = new HashSet<AbstractResult>();
+        List<ForkJoinTask<AbstractResult>> tasks =
+                new ArrayList<ForkJoinTask<AbstractResult>>(contexts.size());
+        for (final EvaluationCtx ctx : contexts) {
+            try {
+                tasks.add(pool.submit(new Callable<AbstractResult>() {
+                    public AbstractResult call() {
+                        return evaluateContext(ctx);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                results.add(evaluateContext(ctx));
+            }
+        }
+
+        for (ForkJoinTask<AbstractResult> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Releases the resources of this PDP. The pool that evaluates the decisions of multiple
+     * decision requests in parallel is shut down, and such requests are evaluated sequentially
+     * after this. The executor given to the constructor, or the default one shared by all PDPs,
+     * is not shut down. A PDP that is replaced, for example when the configuration is reloaded,
+     * should be closed so that the threads of its pool do not remain.
+     */
+    public void close() {
+        ForkJoinPool pool = multipleRequestPool;
+        multipleRequestPool = null;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Private helper that checks whether the response made with the given contexts can be cached.
+     * It can not if an evaluation read values that are not part of the request, such as the
+     * current time, the result of an attribute selector, or values found by attribute finder
+     * modules that are not decision cacheable.
+     */
+    private static boolean isCacheable(Collection<EvaluationCtx> contexts) {
+
+        for (EvaluationCtx context : contexts) {
+            if (!(context instanceof BasicEvaluationCtx)
+                    || ((BasicEvaluationCtx) context).isDynamicValuesUsed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A private helper routine that checks whether the individual decisions of a multiple decision
+     * request can be evaluated in parallel. They can not when they share a DOM, ie an XACML 2.0
+     * request or an XACML 3.0 request with <code>Content</code>, as DOM nodes are not safe to read
+     * from several threads at once.
+     *
+     * @param contexts individual evaluation contexts
+     * @return true if the contexts can be evaluated in parallel
+     */
+    private boolean isParallelEvaluable(Set<EvaluationCtx> contexts) {
+
+        for (EvaluationCtx ctx : contexts) {
+            if (!(ctx instanceof XACML3EvaluationCtx)) {
+                return false;
+            }
+            for (Attributes attributes : ((XACML3EvaluationCtx) ctx).getAttributesSet()) {
+                if (attributes.hasContent()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * A private helper routine that resolves a policy for the given context, and then tries to
      * evaluate based on the policy
@@ -236,7 +561,11 @@ public class PDP {
      */
     private AbstractResult evaluateContext(EvaluationCtx context) {
         // first off, try to find a policy
+        long start = metrics != null ? System.nanoTime() : 0;
         PolicyFinderResult finderResult = policyFinder.findPolicy(context);
+        if (metrics != null) {
+            metrics.recordPolicyFinder(System.nanoTime() - start);
+        }
 
         // see if there weren't any applicable policies
         if (finderResult.notApplicable()) {
@@ -279,8 +608,12 @@ public class PDP {
         AbstractRequestCtx requestCtx;
         ResponseCtx responseCtx;
 
+        long start = metrics != null ? System.nanoTime() : 0;
         try {
-            requestCtx = RequestCtxFactory.getFactory().getRequestCtx(request.replaceAll(">\\s+<", "><"));
+            requestCtx = RequestCtxFactory.getFactory().getStreamingRequestCtx(request);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - start);
+            }
             responseCtx = evaluate(requestCtx);
         } catch (ParsingException e) {
             String error = "Invalid request  : " + e.getMessage();
@@ -293,11 +626,53 @@ public class PDP {
             Status status = new Status(code, error);
             //As invalid request, by default XACML 3.0 response is created.
             responseCtx = new ResponseCtx(new Result(AbstractResult.DECISION_INDETERMINATE, status));
+            if (metrics != null) {
+                recordResponse(start, responseCtx);
+            }
         }
 
         return responseCtx;
     }
 
+    /**
+     * Attempts to evaluate a request written in the JSON Profile of XACML 3.0, and returns the
+     * response in the same profile. The request is parsed straight into a XACML 3.0
+     * <code>RequestCtx</code> and the response is encoded without going through XML, see
+     * <code>JSONRequestParser</code> and <code>JSONResponseEncoder</code>.
+     * <p>
+     * Note that if the request is somehow invalid, then the result will be a decision of
+     * INDETERMINATE.
+     *
+     * @param request the JSON request to evaluate
+     * @return a JSON response paired to the request
+     */
+    public String evaluateJSON(String request) {
+
+        AbstractRequestCtx requestCtx;
+        ResponseCtx responseCtx;
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            requestCtx = RequestCtxFactory.getFactory().getJSONRequestCtx(request);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - start);
+            }
+            responseCtx = evaluate(requestCtx);
+        } catch (ParsingException e) {
+            String error = "Invalid request  : " + e.getMessage();
+            logger.error(error);
+            ArrayList<String> code = new ArrayList<String>();
+            code.add(Status.STATUS_SYNTAX_ERROR);
+            Status status = new Status(code, error);
+            responseCtx = new ResponseCtx(new Result(AbstractResult.DECISION_INDETERMINATE, status));
+            if (metrics != null) {
+                recordResponse(start, responseCtx);
+            }
+        }
+
+        return JSONResponseEncoder.encode(responseCtx);
+    }
+
     /**
      * A utility method that wraps the functionality of the other evaluate method with input and
      * output streams. This is useful if you've got a PDP that is taking inputs from some stream and
@@ -315,8 +690,12 @@ public class PDP {
         AbstractRequestCtx request = null;
         ResponseCtx response = null;
 
+        long start = metrics != null ? System.nanoTime() : 0;
         try {
             request = RequestCtxFactory.getFactory().getRequestCtx(input);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - start);
+            }
         } catch (Exception pe) {
             // the request wasn't formed correctly
             ArrayList<String> code = new ArrayList<String>();
@@ -325,6 +704,9 @@ public class PDP {
             // can not determine XACML version at here. therefore return assume as XACML 3
             response = new ResponseCtx(ResultFactory.getFactory().
                     getResult(AbstractResult.DECISION_INDETERMINATE, status, XACMLConstants.XACML_VERSION_3_0));
+            if (metrics != null) {
+                recordResponse(start, response);
+            }
         }
 
         // if we didn't have a problem above, then we should go ahead
@@ -369,4 +751,26 @@ public class PDP {
         }
     }
 
+    /**
+     * Lazily creates the executor shared by all PDPs that are not given one. Virtual threads are
+     * looked up reflectively, so that they are used on Java 21 or later while the code still runs
+     * on older runtimes.
+     */
+    private static class DefaultExecutorHolder {
+
+        private static final Executor EXECUTOR = createExecutor();
+
+        private static Executor createExecutor() {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (Executor) method.invoke(null);
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Virtual threads are not available, using the common pool");
+                }
+                return ForkJoinPool.commonPool();
+            }
+        }
+    }
+
 }
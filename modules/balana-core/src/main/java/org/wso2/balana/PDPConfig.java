@@ -38,6 +38,8 @@ package org.wso2.balana;
 import org.wso2.balana.finder.AttributeFinder;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.ResourceFinder;
+import org.wso2.balana.metrics.EvaluationProfiler;
+import org.wso2.balana.metrics.PDPMetrics;
 
 /**
  * This class is used as a container that holds configuration information for the PDP, which
@@ -62,6 +64,18 @@ public class PDPConfig {
     //
     private boolean multipleRequestHandle;
 
+    // number of multiple decision profile requests that are evaluated in parallel
+    private int multipleRequestParallelism;
+
+    // cache of the decisions made by the PDP, or null if decisions are not cached
+    private DecisionCache decisionCache;
+
+    // receiver of the measurements of the PDP, or null if nothing is measured
+    private PDPMetrics metrics;
+
+    // profiler of the evaluation of policies, rules and matches, or null if nothing is profiled
+    private EvaluationProfiler profiler;
+
     /**
      * Constructor that creates a <code>PDPConfig</code> from components.
      *
@@ -90,22 +104,36 @@ public class PDPConfig {
      */
     public PDPConfig(AttributeFinder attributeFinder, PolicyFinder policyFinder,
             ResourceFinder resourceFinder, boolean multipleRequestHandle) {
-        if (attributeFinder != null)
-            this.attributeFinder = attributeFinder;
+        this(new Builder().attributeFinder(attributeFinder).policyFinder(policyFinder)
+                .resourceFinder(resourceFinder).multipleRequestHandle(multipleRequestHandle));
+    }
+
+    /**
+     * Private constructor that creates a <code>PDPConfig</code> from the components of a builder
+     *
+     * @param builder the <code>Builder</code> that holds the components
+     */
+    private PDPConfig(Builder builder) {
+        if (builder.attributeFinder != null)
+            this.attributeFinder = builder.attributeFinder;
         else
             this.attributeFinder = new AttributeFinder();
 
-        if (policyFinder != null)
-            this.policyFinder = policyFinder;
+        if (builder.policyFinder != null)
+            this.policyFinder = builder.policyFinder;
         else
             this.policyFinder = new PolicyFinder();
 
-        if (resourceFinder != null)
-            this.resourceFinder = resourceFinder;
+        if (builder.resourceFinder != null)
+            this.resourceFinder = builder.resourceFinder;
         else
             this.resourceFinder = new ResourceFinder();
 
-        this.multipleRequestHandle = multipleRequestHandle;
+        this.multipleRequestHandle = builder.multipleRequestHandle;
+        this.multipleRequestParallelism = builder.multipleRequestParallelism;
+        this.decisionCache = builder.decisionCache;
+        this.metrics = builder.metrics;
+        this.profiler = builder.profiler;
     }
 
     /**
@@ -143,4 +171,185 @@ public class PDPConfig {
     public boolean isMultipleRequestHandle() {
         return multipleRequestHandle;
     }
+
+    /**
+     * Returns the maximum number of individual decisions of a multiple decision request that are
+     * evaluated in parallel. A value of 1 or less means that they are evaluated sequentially.
+     *
+     * @return parallelism of the multiple decision evaluation
+     */
+    public int getMultipleRequestParallelism() {
+        return multipleRequestParallelism;
+    }
+
+    /**
+     * Returns the <code>DecisionCache</code> that was configured, or null if decisions are not
+     * cached
+     *
+     * @return the <code>DecisionCache</code> or null
+     */
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    /**
+     * Returns the <code>PDPMetrics</code> that was configured, or null if nothing is measured
+     *
+     * @return the <code>PDPMetrics</code> or null
+     */
+    public PDPMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the <code>EvaluationProfiler</code> that was configured, or null if nothing is
+     * profiled
+     *
+     * @return the <code>EvaluationProfiler</code> or null
+     */
+    public EvaluationProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Builds a <code>PDPConfig</code> with the optional components of the PDP, such as the
+     * decision cache or the metrics, for example
+     * <pre>
+     * PDPConfig config = new PDPConfig.Builder(Balana.getInstance().getPdpConfig())
+     *         .policyFinder(policyFinder)
+     *         .decisionCache(new DecisionCache(1000, 60000))
+     *         .build();
+     * </pre>
+     * Components that are not set are left out, as with the constructors of
+     * <code>PDPConfig</code>, and multiple decision requests are handled, one decision at a time.
+     */
+    public static class Builder {
+
+        private AttributeFinder attributeFinder;
+
+        private PolicyFinder policyFinder;
+
+        private ResourceFinder resourceFinder;
+
+        private boolean multipleRequestHandle = true;
+
+        private int multipleRequestParallelism = 1;
+
+        private DecisionCache decisionCache;
+
+        private PDPMetrics metrics;
+
+        private EvaluationProfiler profiler;
+
+        /**
+         * Creates a builder without any component
+         */
+        public Builder() {
+        }
+
+        /**
+         * Creates a builder with the components of the given configuration
+         *
+         * @param config the <code>PDPConfig</code> to start from
+         */
+        public Builder(PDPConfig config) {
+            attributeFinder = config.getAttributeFinder();
+            policyFinder = config.getPolicyFinder();
+            resourceFinder = config.getResourceFinder();
+            multipleRequestHandle = config.isMultipleRequestHandle();
+            multipleRequestParallelism = config.getMultipleRequestParallelism();
+            decisionCache = config.getDecisionCache();
+            metrics = config.getMetrics();
+            profiler = config.getProfiler();
+        }
+
+        /**
+         * @param attributeFinder the <code>AttributeFinder</code> that the PDP should use, or
+         *            null if it shouldn't use any
+         * @return this builder
+         */
+        public Builder attributeFinder(AttributeFinder attributeFinder) {
+            this.attributeFinder = attributeFinder;
+            return this;
+        }
+
+        /**
+         * @param policyFinder the <code>PolicyFinder</code> that the PDP should use, or null if
+         *            it shouldn't use any
+         * @return this builder
+         */
+        public Builder policyFinder(PolicyFinder policyFinder) {
+            this.policyFinder = policyFinder;
+            return this;
+        }
+
+        /**
+         * @param resourceFinder the <code>ResourceFinder</code> that the PDP should use, or null
+         *            if it shouldn't use any
+         * @return this builder
+         */
+        public Builder resourceFinder(ResourceFinder resourceFinder) {
+            this.resourceFinder = resourceFinder;
+            return this;
+        }
+
+        /**
+         * @param multipleRequestHandle whether PDP capable of handling multiple requests or not
+         * @return this builder
+         */
+        public Builder multipleRequestHandle(boolean multipleRequestHandle) {
+            this.multipleRequestHandle = multipleRequestHandle;
+            return this;
+        }
+
+        /**
+         * @param multipleRequestParallelism the maximum number of individual decisions of a
+         *            multiple decision request that are evaluated in parallel. 1 or less
+         *            evaluates them sequentially
+         * @return this builder
+         */
+        public Builder multipleRequestParallelism(int multipleRequestParallelism) {
+            this.multipleRequestParallelism = multipleRequestParallelism;
+            return this;
+        }
+
+        /**
+         * @param decisionCache the <code>DecisionCache</code> that the PDP should use, or null if
+         *            decisions shouldn't be cached
+         * @return this builder
+         */
+        public Builder decisionCache(DecisionCache decisionCache) {
+            this.decisionCache = decisionCache;
+            return this;
+        }
+
+        /**
+         * @param metrics the <code>PDPMetrics</code> that the PDP reports its measurements to, or
+         *            null if nothing should be measured
+         * @return this builder
+         */
+        public Builder metrics(PDPMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param profiler the <code>EvaluationProfiler</code> that profiles the evaluation of
+         *            policies, rules and matches, or null if nothing should be profiled
+         * @return this builder
+         */
+        public Builder profiler(EvaluationProfiler profiler) {
+            this.profiler = profiler;
+            return this;
+        }
+
+        /**
+         * Creates the <code>PDPConfig</code>
+         *
+         * @return a new <code>PDPConfig</code> with the components of this builder
+         */
+        public PDPConfig build() {
+            return new PDPConfig(this);
+        }
+    }
 }
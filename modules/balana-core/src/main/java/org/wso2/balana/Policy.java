@@ -350,6 +350,21 @@ public class Policy extends AbstractPolicy {
         setChildren(elements);
     }
 
+    /**
+     * Sets the rules of this policy, and tells each rule the id of this policy, which the rule is
+     * profiled under along with its own id.
+     *
+     * @param children a <code>List</code> of <code>RuleCombinerElement</code>s
+     */
+    protected void setChildren(List<CombinerElement> children) {
+        super.setChildren(children);
+        if (children != null) {
+            for (CombinerElement element : children) {
+                ((RuleCombinerElement) element).getRule().setPolicyId(getId());
+            }
+        }
+    }
+
     /**
      * Helper method that parses out a collection of combiner parameters.
      */
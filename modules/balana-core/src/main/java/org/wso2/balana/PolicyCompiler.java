@@ -0,0 +1,110 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana;
+
+import org.wso2.balana.combine.CombinerElement;
+import org.wso2.balana.cond.Condition;
+import org.wso2.balana.cond.VariableDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles the conditions and variable definitions of a loaded policy or policy set into
+ * evaluation plans, so that evaluating them avoids most of the dynamic dispatch and allocation of
+ * the generic expression tree (see <code>org.wso2.balana.cond.ExpressionCompiler</code>). Constant
+ * sub-expressions are evaluated once, while compiling.
+ * <p>
+ * Rules whose condition is always false, and whose target matches any request, are never
+ * applicable, so they are removed from their policy. Such rules are therefore not part of the
+ * encoded form of a compiled policy. Compiling does not change the decisions of the policy.
+ * <p>
+ * Referenced policies are not followed, since they are loaded, and may be compiled, by the
+ * finder module that provides them.
+ */
+public class PolicyCompiler {
+
+    private PolicyCompiler() {
+    }
+
+    /**
+     * Compiles the given policy or policy set and all the policies and rules it contains
+     *
+     * @param policy the policy to compile
+     * @return the number of conditions that were compiled
+     */
+    public static int compile(AbstractPolicy policy) {
+
+        if (policy instanceof PolicyReference) {
+            return 0;
+        }
+
+        if (policy instanceof Policy) {
+            for (Object definition : ((Policy) policy).getVariableDefinitions()) {
+                ((VariableDefinition) definition).compile();
+            }
+        }
+
+        int compiled = 0;
+        boolean removed = false;
+        List<CombinerElement> elements = new ArrayList<CombinerElement>();
+        for (CombinerElement element : policy.getChildElements()) {
+            PolicyTreeElement child = element.getElement();
+            if (child instanceof Rule) {
+                Rule rule = (Rule) child;
+                Condition condition = rule.getCondition();
+                if (condition != null) {
+                    condition.compile();
+                    if (condition.isCompiled()) {
+                        compiled++;
+                    }
+                    if (condition.isAlwaysFalse() && matchesAny(rule.getTarget())) {
+                        removed = true;
+                        continue;
+                    }
+                }
+            } else if (child instanceof AbstractPolicy) {
+                compiled += compile((AbstractPolicy) child);
+            }
+            elements.add(element);
+        }
+
+        if (removed) {
+            policy.setChildren(elements);
+        }
+        return compiled;
+    }
+
+    /**
+     * Private helper that checks whether a rule target matches any request, so that the target
+     * can never be indeterminate
+     */
+    private static boolean matchesAny(AbstractTarget target) {
+
+        if (target == null) {
+            return true;
+        } else if (target instanceof org.wso2.balana.xacml3.Target) {
+            List selections = ((org.wso2.balana.xacml3.Target) target).getAnyOfSelections();
+            return selections == null || selections.isEmpty();
+        } else if (target instanceof org.wso2.balana.xacml2.Target) {
+            return ((org.wso2.balana.xacml2.Target) target).matchesAny();
+        }
+        return false;
+    }
+}
@@ -48,8 +48,10 @@ import org.wso2.balana.ctx.Status;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.PolicyFinderResult;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import java.net.URI;
 
@@ -476,38 +478,61 @@ public class PolicyReference extends AbstractPolicy {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
-
-        if (policyType == POLICY_REFERENCE) {
-            builder.append("<PolicyIdReference").append(encodeConstraints()).append(">").
-                            append(reference.toString()).append("</PolicyIdReference>");
-        } else {
-            builder.append("<PolicySetIdReference").append(encodeConstraints()).append(">").
-                    append(reference.toString()).append("</PolicySetIdReference>");
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * Encodes this <code>PolicyReference</code> into its XML form and writes this out to the
+     * provided <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
+
+        String element = policyType == POLICY_REFERENCE ? "PolicyIdReference" : "PolicySetIdReference";
+        writer.write("<");
+        writer.write(element);
+        encodeConstraints(writer);
+        writer.write(">");
+        EncodingHelper.writeText(writer, reference.toString());
+        writer.write("</");
+        writer.write(element);
+        writer.write(">");
+    }
+
     /**
      * Private helper method that encodes the variable constraints info. Note that if this is a
      * pre-2.0 policy the constraints are always null, so nothing will be added here.
-     * @return
      */
-    private String encodeConstraints() {
-        String str = "";
+    private void encodeConstraints(Writer writer) throws IOException {
         VersionConstraints version = getConstraints();
 
         String v = version.getVersionConstraint();
-        if (v != null)
-            str += " Version=\"" + v + "\"";
+        if (v != null) {
+            writer.write(" Version=\"");
+            EncodingHelper.writeAttribute(writer, v);
+            writer.write("\"");
+        }
 
         String e = version.getEarliestConstraint();
-        if (e != null)
-            str += " EarliestVersion=\"" + e + "\"";
+        if (e != null) {
+            writer.write(" EarliestVersion=\"");
+            EncodingHelper.writeAttribute(writer, e);
+            writer.write("\"");
+        }
 
         String l = version.getLatestConstraint();
-        if (l != null)
-            str += " LatestVersion=\"" + l + "\"";
-
-        return str;
+        if (l != null) {
+            writer.write(" LatestVersion=\"");
+            EncodingHelper.writeAttribute(writer, l);
+            writer.write("\"");
+        }
     }
 
 }
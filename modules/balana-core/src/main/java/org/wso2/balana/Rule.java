@@ -39,6 +39,7 @@ import org.wso2.balana.ctx.AbstractResult;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.ResultFactory;
 import org.wso2.balana.ctx.xacml2.Result;
+import org.wso2.balana.metrics.EvaluationProfiler;
 import org.wso2.balana.xacml3.Advice;
 import org.wso2.balana.xacml3.AdviceExpression;
 import org.wso2.balana.attr.BooleanAttribute;
@@ -85,6 +86,8 @@ public class Rule implements PolicyTreeElement {
     private AbstractTarget target = null;
     private Condition condition = null;
     private int xacmlVersion;
+    // the id this rule is profiled under, which includes the id of its policy once that is known
+    private String profileId;
 
     /**
      * Creates a new <code>Rule</code> object for XACML 1.x and 2.0.
@@ -352,6 +355,27 @@ public class Rule implements PolicyTreeElement {
      */
     public AbstractResult evaluate(EvaluationCtx context) {
 
+        EvaluationProfiler profiler = EvaluationProfiler.getProfiler(context);
+        if (profiler == null) {
+            return evaluateRule(context, null);
+        }
+
+        long start = System.nanoTime();
+        AbstractResult result = evaluateRule(context, profiler);
+        profiler.record(EvaluationProfiler.RULE, getProfileId(), System.nanoTime() - start,
+                result.getDecision());
+        return result;
+    }
+
+    /**
+     * Private helper that evaluates the rule, the body of <code>evaluate</code>
+     *
+     * @param context the representation of the request we're evaluating
+     * @param profiler the profiler of the evaluation, or null if nothing is profiled
+     * @return the result of the evaluation
+     */
+    private AbstractResult evaluateRule(EvaluationCtx context, EvaluationProfiler profiler) {
+
         // If the Target is null then it's supposed to inherit from the
         // parent policy, so we skip the matching step assuming we wouldn't
         // be here unless the parent matched
@@ -394,7 +418,8 @@ public class Rule implements PolicyTreeElement {
         }
 
         // otherwise we evaluate the condition
-        EvaluationResult result = condition.evaluate(context);
+        EvaluationResult result = profiler == null ? condition.evaluate(context) :
+                evaluateCondition(context, profiler);
 
         if (result.indeterminate()) {
 
@@ -426,6 +451,48 @@ public class Rule implements PolicyTreeElement {
         }
     }
 
+    /**
+     * Sets the id of the policy that contains this rule. Rule ids are only unique within a policy,
+     * so rules are profiled under the policy id and the rule id, separated by a '/'.
+     *
+     * @param policyId the id of the policy
+     */
+    void setPolicyId(URI policyId) {
+        profileId = policyId + "/" + idAttr;
+    }
+
+    /**
+     * Private helper that returns the id this rule is profiled under
+     */
+    private String getProfileId() {
+        String id = profileId;
+        return id != null ? id : idAttr.toString();
+    }
+
+    /**
+     * helper method to evaluate the condition and record the evaluation with the profiler
+     *
+     * @param context the representation of the request we're evaluating
+     * @param profiler the profiler of the evaluation
+     * @return the result of the condition
+     */
+    private EvaluationResult evaluateCondition(EvaluationCtx context, EvaluationProfiler profiler) {
+
+        long start = System.nanoTime();
+        EvaluationResult result = condition.evaluate(context);
+        int outcome;
+        if (result.indeterminate()) {
+            outcome = EvaluationProfiler.CONDITION_INDETERMINATE;
+        } else if (((BooleanAttribute) result.getAttributeValue()).getValue()) {
+            outcome = EvaluationProfiler.CONDITION_TRUE;
+        } else {
+            outcome = EvaluationProfiler.CONDITION_FALSE;
+        }
+        profiler.record(EvaluationProfiler.CONDITION, getProfileId(), System.nanoTime() - start,
+                outcome);
+        return result;
+    }
+
     /**
      * helper method to evaluate the obligations expressions
      *
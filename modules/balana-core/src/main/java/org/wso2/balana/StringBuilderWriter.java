@@ -0,0 +1,72 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana;
+
+import java.io.Writer;
+
+/**
+ * A <code>Writer</code> that appends to a <code>StringBuilder</code>, so that the encoders that
+ * write to a <code>Writer</code> can also fill a <code>StringBuilder</code>. It never throws an
+ * <code>IOException</code>.
+ */
+public class StringBuilderWriter extends Writer {
+
+    private final StringBuilder builder;
+
+    /**
+     * Creates a writer that appends to the given <code>StringBuilder</code>
+     *
+     * @param builder the <code>StringBuilder</code> to append to
+     */
+    public StringBuilderWriter(StringBuilder builder) {
+        this.builder = builder;
+    }
+
+    public void write(int c) {
+        builder.append((char) c);
+    }
+
+    public void write(char[] buffer, int offset, int length) {
+        builder.append(buffer, offset, length);
+    }
+
+    public void write(String str) {
+        builder.append(str);
+    }
+
+    public void write(String str, int offset, int length) {
+        builder.append(str, offset, offset + length);
+    }
+
+    public Writer append(CharSequence csq) {
+        builder.append(csq);
+        return this;
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    public String toString() {
+        return builder.toString();
+    }
+}
@@ -42,9 +42,11 @@ import org.wso2.balana.cond.EvaluationResult;
 import org.wso2.balana.cond.Function;
 import org.wso2.balana.cond.FunctionFactory;
 import org.wso2.balana.cond.FunctionTypeException;
+import org.wso2.balana.cond.MatchFunction;
 
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.Status;
+import org.wso2.balana.metrics.EvaluationProfiler;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -108,6 +110,9 @@ public class TargetMatch {
     // the value
     private AttributeValue attrValue;
 
+    // the id of this target match in the profiles of the evaluation, created when first needed
+    private String profileId;
+
     /**
      * Constructor that creates a <code>TargetMatch</code> from components.
      * 
@@ -128,7 +133,7 @@ public class TargetMatch {
             throw new IllegalArgumentException("Unknown TargetMatch type");
 
         this.type = type;
-        this.function = function;
+        this.function = getFunctionForInputs(function, eval, attrValue);
         this.eval = eval;
         this.attrValue = attrValue;
     }
@@ -147,7 +152,7 @@ public class TargetMatch {
     public TargetMatch(Function function, Evaluatable eval, AttributeValue attrValue)
             throws IllegalArgumentException {
 
-        this.function = function;
+        this.function = getFunctionForInputs(function, eval, attrValue);
         this.eval = eval;
         this.attrValue = attrValue;
     }
@@ -272,6 +277,21 @@ public class TargetMatch {
         }
     }
 
+    /**
+     * Private helper that returns the function to keep for the given inputs. A match function
+     * with a literal regular expression is given its own copy that holds the compiled pattern.
+     */
+    private static Function getFunctionForInputs(Function function, Evaluatable eval,
+                                                 AttributeValue attrValue) {
+        if (function instanceof MatchFunction) {
+            List<Evaluatable> inputs = new ArrayList<Evaluatable>();
+            inputs.add(attrValue);
+            inputs.add(eval);
+            return ((MatchFunction) function).getInstanceForInputs(inputs);
+        }
+        return function;
+    }
+
     /**
      * Returns the type of this <code>TargetMatch</code>, either <code>SUBJECT</code>,
      * <code>RESOURCE</code>, <code>ACTION</code>, or <code>ENVIRONMENT</code>.
@@ -319,6 +339,26 @@ public class TargetMatch {
      * @return the result of trying to match the TargetMatch and the request
      */
     public MatchResult match(EvaluationCtx context) {
+
+        EvaluationProfiler profiler = EvaluationProfiler.getProfiler(context);
+        if (profiler == null) {
+            return evaluate(context);
+        }
+
+        long start = System.nanoTime();
+        MatchResult result = evaluate(context);
+        profiler.record(EvaluationProfiler.MATCH, getProfileId(), System.nanoTime() - start,
+                result.getResult());
+        return result;
+    }
+
+    /**
+     * Private helper that matches the request, the body of <code>match</code>
+     *
+     * @param context the representation of the request
+     * @return the result of trying to match the TargetMatch and the request
+     */
+    private MatchResult evaluate(EvaluationCtx context) {
         // start by evaluating the AD/AS
         EvaluationResult result = eval.evaluate(context);
 
@@ -383,6 +423,25 @@ public class TargetMatch {
         }
     }
 
+    /**
+     * Private helper that returns the id of this target match in the profiles of the evaluation,
+     * made of the match function, the attribute and the value
+     *
+     * @return the id
+     */
+    private String getProfileId() {
+        if (profileId == null) {
+            String attribute;
+            if (eval instanceof AbstractDesignator) {
+                attribute = String.valueOf(((AbstractDesignator) eval).getId());
+            } else {
+                attribute = "AttributeSelector";
+            }
+            profileId = function.getIdentifier() + "(" + attribute + ", " + attrValue.encode() + ")";
+        }
+        return profileId;
+    }
+
     /**
      * Private helper that evaluates an individual match.
      *
@@ -0,0 +1,244 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Cache of compiled XPath expressions, keyed by the expression and the namespace mappings that it
+ * is compiled with. Compiled <code>XPathExpression</code>s and <code>XPath</code> objects are not
+ * thread safe, so the cache keeps a small pool of idle compiled instances for each expression,
+ * which is shared by all threads. An instance is borrowed from the pool for a single evaluation and
+ * is put back afterwards, so the cache also works for requests that are evaluated on short lived
+ * (virtual) threads. Expressions are evicted in least recently used order.
+ */
+public final class XPathExpressionCache {
+
+    /**
+     * maximum number of expressions kept by the cache
+     */
+    public static final int MAX_ENTRIES = 256;
+
+    /**
+     * maximum number of idle compiled instances kept for each expression
+     */
+    public static final int MAX_IDLE_INSTANCES = 16;
+
+    /**
+     * factory of the pooled <code>XPath</code> objects, which is guarded by its own lock
+     */
+    private static final XPathFactory xpathFactory = XPathFactory.newInstance();
+
+    /**
+     * idle <code>XPath</code> objects that are used to compile expressions
+     */
+    private static final BlockingQueue<XPath> xpaths =
+            new ArrayBlockingQueue<XPath>(MAX_IDLE_INSTANCES);
+
+    /**
+     * idle compiled instances of each expression
+     */
+    private static final Map<Key, BlockingQueue<XPathExpression>> expressions =
+            new LinkedHashMap<Key, BlockingQueue<XPathExpression>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<Key, BlockingQueue<XPathExpression>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private XPathExpressionCache() {
+    }
+
+    /**
+     * Evaluates the given expression against the given node, using a compiled instance from the
+     * cache.
+     *
+     * @param expression the XPath expression
+     * @param namespaces prefix --> namespace mappings that are used by the expression
+     * @param node the context node
+     * @return the matching nodes
+     * @throws XPathExpressionException if the expression can not be compiled or evaluated
+     */
+    public static NodeList evaluate(String expression, Map<String, String> namespaces, Node node)
+            throws XPathExpressionException {
+        return (NodeList) evaluate(expression, namespaces, node, XPathConstants.NODESET);
+    }
+
+    /**
+     * Evaluates the given expression against the given node, using a compiled instance from the
+     * cache.
+     *
+     * @param expression the XPath expression
+     * @param namespaces prefix --> namespace mappings that are used by the expression
+     * @param node the context node
+     * @param returnType the type of the result, as defined in <code>XPathConstants</code>
+     * @return the result of the evaluation
+     * @throws XPathExpressionException if the expression can not be compiled or evaluated
+     */
+    public static Object evaluate(String expression, Map<String, String> namespaces, Node node,
+                                  QName returnType) throws XPathExpressionException {
+
+        if (namespaces == null) {
+            namespaces = new HashMap<String, String>();
+        }
+        Key key = new Key(expression, namespaces);
+        BlockingQueue<XPathExpression> idle;
+        synchronized (expressions) {
+            idle = expressions.get(key);
+            if (idle == null) {
+                // the mappings are copied, as the key must not change while it is cached
+                key = new Key(expression, new HashMap<String, String>(namespaces));
+                idle = new ArrayBlockingQueue<XPathExpression>(MAX_IDLE_INSTANCES);
+                expressions.put(key, idle);
+            }
+        }
+
+        XPathExpression compiled = idle.poll();
+        if (compiled == null) {
+            compiled = compile(expression, namespaces);
+        }
+        try {
+            return compiled.evaluate(node, returnType);
+        } finally {
+            // dropped if enough instances are idle already
+            idle.offer(compiled);
+        }
+    }
+
+    /**
+     * Compiles the given expression. The returned expression is not cached, and may only be used
+     * by one thread at a time.
+     *
+     * @param expression the XPath expression
+     * @param namespaces prefix --> namespace mappings that are used by the expression
+     * @return the compiled <code>XPathExpression</code>
+     * @throws XPathExpressionException if the expression can not be compiled
+     */
+    public static XPathExpression compile(String expression, Map<String, String> namespaces)
+            throws XPathExpressionException {
+
+        if (namespaces == null) {
+            namespaces = new HashMap<String, String>();
+        }
+        XPath xpath = xpaths.poll();
+        if (xpath == null) {
+            synchronized (xpathFactory) {
+                xpath = xpathFactory.newXPath();
+            }
+        }
+        // the mappings are copied, as the compiled expression keeps the context
+        xpath.setNamespaceContext(new DefaultNamespaceContext(
+                new HashMap<String, String>(namespaces)));
+        try {
+            return xpath.compile(expression);
+        } finally {
+            xpath.reset();
+            xpaths.offer(xpath);
+        }
+    }
+
+    /**
+     * Creates the namespace mappings to use for expressions that are evaluated against the given
+     * node. These are the namespace declarations of the node, and the "xacml" prefix for the
+     * namespace of the node if it is in a XACML request context namespace.
+     *
+     * @param node the context node
+     * @return prefix --> namespace mappings
+     */
+    public static Map<String, String> getNamespaces(Node node) {
+
+        Map<String, String> nsMap = new HashMap<String, String>();
+        if (node == null) {
+            return nsMap;
+        }
+
+        //see if the request root is in a namespace
+        String namespace = node.getNamespaceURI();
+        // name spaces are used, so we need to lookup the correct
+        // prefix to use in the search string
+        NamedNodeMap namedNodeMap = node.getAttributes();
+        if (namedNodeMap != null) {
+            for (int i = 0; i < namedNodeMap.getLength(); i++) {
+                Node n = namedNodeMap.item(i);
+                String prefix = DOMHelper.getLocalName(n);
+                String nodeValue = n.getNodeValue();
+                nsMap.put(prefix, nodeValue);
+            }
+        }
+
+        // if there is not any namespace is defined for content element, default XACML request
+        //  name space would be there.
+        if (XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(namespace) ||
+                XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(namespace) ||
+                XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(namespace)) {
+            nsMap.put("xacml", namespace);
+        }
+        return nsMap;
+    }
+
+    /**
+     * Cache key of a compiled expression
+     */
+    private static class Key {
+
+        private final String expression;
+
+        private final Map<String, String> namespaces;
+
+        private final int hashCode;
+
+        Key(String expression, Map<String, String> namespaces) {
+            this.expression = expression;
+            this.namespaces = namespaces;
+            this.hashCode = 31 * expression.hashCode() + namespaces.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return expression.equals(key.expression) && namespaces.equals(key.namespaces);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -36,13 +36,17 @@
 package org.wso2.balana.attr;
 
 import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.EncodingHelper;
 import org.wso2.balana.Indenter;
+import org.wso2.balana.StringBuilderWriter;
 
 import org.wso2.balana.cond.Evaluatable;
 import org.wso2.balana.cond.EvaluationResult;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import java.net.URI;
 
@@ -158,12 +162,39 @@ public abstract class AttributeValue implements Evaluatable {
      * Encodes this <code>AttributeValue</code> into its XML representation and writes this encoding
      * to the given <code>StringBuilder</code> This will always produce the version
      * used in a policy rather than that used in a request, so this is equivalent to calling
-     * <code>encodeWithTags(true)</code> and then stuffing that into a stream.
+     * <code>encodeWithTags(true)</code> and then stuffing that into a stream, except that the
+     * value is escaped.
      * 
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
-        builder.append(encodeWithTags(true));
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>AttributeValue</code> into its XML representation, including the DataType,
+     * and writes this encoding to the given <code>Writer</code>. The value is escaped as it is
+     * written.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
+
+        if (type != null) {
+            writer.write("<AttributeValue DataType=\"");
+            EncodingHelper.writeAttribute(writer, type.toString());
+            writer.write("\">");
+        } else {
+            writer.write("<AttributeValue>");
+        }
+        EncodingHelper.writeText(writer, encode());
+        writer.write("</AttributeValue>");
     }
 
     /**
@@ -20,8 +20,11 @@ package org.wso2.balana.attr.xacml3;
 
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.wso2.balana.EncodingHelper;
 import org.wso2.balana.attr.AttributeValue;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URI;
 
 /**
@@ -183,6 +186,18 @@ public class XPathAttribute extends AttributeValue {
         return value;
     }
 
+    @Override
+    public void encode(Writer writer) throws IOException {
+
+        writer.write("<AttributeValue DataType=\"");
+        EncodingHelper.writeAttribute(writer, getType().toString());
+        writer.write("\" XPathCategory=\"");
+        EncodingHelper.writeAttribute(writer, getXPathCategory());
+        writer.write("\">");
+        EncodingHelper.writeText(writer, encode());
+        writer.write("</AttributeValue>");
+    }
+
     @Override
     public String encodeWithTags(boolean includeType) {
 
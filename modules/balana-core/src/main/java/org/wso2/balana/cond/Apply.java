@@ -89,7 +89,7 @@ public class Apply implements Evaluatable {
         function.checkInputs(xprs);
 
         // if everything checks out, then store the inputs
-        this.function = function;
+        this.function = getFunctionForInputs(function, xprs);
         this.xprs = Collections.unmodifiableList(new ArrayList(xprs));
     }
 
@@ -118,10 +118,21 @@ public class Apply implements Evaluatable {
         function.checkInputs(xprs);
 
         // if everything checks out, then store the inputs
-        this.function = function;
+        this.function = getFunctionForInputs(function, xprs);
         this.xprs = Collections.unmodifiableList(new ArrayList(xprs));
     }
 
+    /**
+     * Private helper that returns the function to keep for the given inputs. A match function
+     * with a literal regular expression is given its own copy that holds the compiled pattern.
+     */
+    private static Function getFunctionForInputs(Function function, List xprs) {
+        if (function instanceof MatchFunction) {
+            return ((MatchFunction) function).getInstanceForInputs(xprs);
+        }
+        return function;
+    }
+
     /**
      * Returns an instance of an <code>Apply</code> based on the given DOM root node. This will
      * actually return a special kind of <code>Apply</code>, namely an XML ConditionType, which is
@@ -0,0 +1,74 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.cond;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A node of the evaluation plan that <code>ExpressionCompiler</code> creates for an expression.
+ * A compiled expression evaluates to the same result as the expression it was compiled from, and
+ * describes itself (type, children and XML encoding) as that expression, so it can be used
+ * wherever the original expression is used.
+ */
+public abstract class CompiledExpression implements Evaluatable {
+
+    /**
+     * the expression this node was compiled from
+     */
+    private final Evaluatable source;
+
+    /**
+     * Creates a new <code>CompiledExpression</code>
+     *
+     * @param source the expression this node was compiled from
+     */
+    protected CompiledExpression(Evaluatable source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the expression this node was compiled from
+     *
+     * @return the source <code>Evaluatable</code>
+     */
+    public Evaluatable getSource() {
+        return source;
+    }
+
+    public URI getType() {
+        return source.getType();
+    }
+
+    public boolean returnsBag() {
+        return source.returnsBag();
+    }
+
+    public boolean evaluatesToBag() {
+        return source.evaluatesToBag();
+    }
+
+    public List getChildren() {
+        return source.getChildren();
+    }
+
+    public void encode(StringBuilder builder) {
+        source.encode(builder);
+    }
+}
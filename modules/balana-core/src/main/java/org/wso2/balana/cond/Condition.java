@@ -37,6 +37,7 @@ package org.wso2.balana.cond;
 
 import org.wso2.balana.*;
 
+import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.attr.BooleanAttribute;
 
 import java.io.OutputStream;
@@ -78,6 +79,9 @@ public class Condition implements Evaluatable {
     // flags whether this is XACML 1.x or 2.0
     private boolean isVersionOne;
 
+    // the evaluation plan of the expression, or null if this Condition has not been compiled
+    private volatile Evaluatable compiledExpression;
+
     // initialize the boolean identifier
     static {
         try {
@@ -236,6 +240,38 @@ public class Condition implements Evaluatable {
         return false;
     }
 
+    /**
+     * Compiles the child <code>Expression</code> of this <code>Condition</code> into an evaluation
+     * plan (see <code>ExpressionCompiler</code>), which is used by <code>evaluate</code> from then
+     * on. Compiling does not change the results of the evaluation.
+     */
+    public void compile() {
+        Expression plan = ExpressionCompiler.compile(expression);
+        if (plan instanceof Evaluatable) {
+            compiledExpression = (Evaluatable) plan;
+        }
+    }
+
+    /**
+     * Returns whether this <code>Condition</code> has been compiled.
+     *
+     * @return true if the evaluation plan of the expression is used for evaluation
+     */
+    public boolean isCompiled() {
+        return compiledExpression != null;
+    }
+
+    /**
+     * Returns whether this <code>Condition</code> has been compiled and always evaluates to false,
+     * whatever the request is.
+     *
+     * @return true if the condition can never be satisfied
+     */
+    public boolean isAlwaysFalse() {
+        AttributeValue value = ExpressionCompiler.getConstantValue(compiledExpression);
+        return value instanceof BooleanAttribute && !((BooleanAttribute) value).getValue();
+    }
+
     /**
      * Evaluates the <code>Condition</code> by evaluating its child <code>Expression</code>.
      * 
@@ -244,6 +280,11 @@ public class Condition implements Evaluatable {
      * @return the result of trying to evaluate this condition object
      */
     public EvaluationResult evaluate(EvaluationCtx context) {
+        Evaluatable plan = compiledExpression;
+        if (plan != null) {
+            return plan.evaluate(context);
+        }
+
         // Note that it's technically possible for this expression to
         // be something like a Function, which isn't Evaluatable. It
         // wouldn't make sense to have this, but it is possible. Because
@@ -0,0 +1,423 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.cond;
+
+import org.wso2.balana.ProcessingException;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles an expression tree of a policy into an evaluation plan of
+ * <code>CompiledExpression</code>s. The plan gives the same results as the expression tree, but
+ * avoids most of the work that is repeated on every evaluation of the tree:
+ * <ul>
+ * <li>literal attribute values return a result that is created once</li>
+ * <li>standard functions whose arguments are all constant are evaluated once, when the
+ * expression is compiled</li>
+ * <li>constant arguments of the logical and and or functions are removed where they do not
+ * change the result, and the function itself is replaced by its result where they decide it</li>
+ * <li>references to variable definitions that are constant are replaced by their value</li>
+ * <li>the logical and, or and not functions and the standard equal and one-and-only functions
+ * evaluate their arguments directly, without argument arrays and lists</li>
+ * <li>other functions are called with an argument list that is created once</li>
+ * </ul>
+ * Attribute designators, attribute selectors, other variable references and functions that are
+ * passed as arguments to higher order functions are used as they are.
+ */
+public class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compiles the given expression
+     *
+     * @param expression the expression to compile
+     * @return the compiled expression, or the expression itself if there is nothing to compile
+     */
+    public static Expression compile(Expression expression) {
+
+        if (expression instanceof AttributeValue) {
+            AttributeValue value = (AttributeValue) expression;
+            return new Constant(value, new EvaluationResult(value));
+        } else if (expression instanceof Apply) {
+            return compileApply((Apply) expression);
+        } else if (expression instanceof VariableReference) {
+            return compileReference((VariableReference) expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Returns the value of the given compiled expression if it is a constant
+     *
+     * @param expression a compiled expression
+     * @return the value of the expression, or null if it is not a constant
+     */
+    static AttributeValue getConstantValue(Expression expression) {
+        if (expression instanceof Constant) {
+            return ((Constant) expression).result.getAttributeValue();
+        }
+        return null;
+    }
+
+    /**
+     * Private helper that replaces a reference to a constant variable definition by its value
+     */
+    private static Expression compileReference(VariableReference reference) {
+
+        VariableDefinition definition;
+        try {
+            definition = reference.getReferencedDefinition();
+        } catch (ProcessingException e) {
+            return reference;
+        }
+        if (definition == null) {
+            return reference;
+        }
+
+        // the definition is compiled only once, however many references it has
+        definition.compile();
+        AttributeValue value = definition.getConstantValue();
+        if (value != null) {
+            return new Constant(reference, new EvaluationResult(value));
+        }
+        return reference;
+    }
+
+    /**
+     * Private helper that compiles an <code>Apply</code> and its arguments
+     */
+    private static Expression compileApply(Apply apply) {
+
+        Function function = apply.getFunction();
+        List children = apply.getChildren();
+
+        List<Evaluatable> inputs = new ArrayList<Evaluatable>();
+        for (Object child : children) {
+            Expression compiled = compile((Expression) child);
+            if (!(compiled instanceof Evaluatable)) {
+                // a function argument of a higher order function, which is handled by that
+                // function itself, so only the arguments are compiled
+                return new FunctionCall(apply, function, compileInputs(children));
+            }
+            inputs.add((Evaluatable) compiled);
+        }
+        Evaluatable[] args = inputs.toArray(new Evaluatable[inputs.size()]);
+
+        if (function instanceof LogicalFunction) {
+            if (LogicalFunction.NAME_AND.equals(function.getIdentifier().toString())) {
+                return simplifyLogical(apply, args, true);
+            } else if (LogicalFunction.NAME_OR.equals(function.getIdentifier().toString())) {
+                return simplifyLogical(apply, args, false);
+            }
+        }
+
+        if (isFoldable(function, args)) {
+            Expression folded = fold(apply, function, inputs);
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        if (function instanceof NotFunction && args.length == 1) {
+            return new Not(apply, args[0]);
+        } else if (function instanceof EqualFunction && args.length == 2 &&
+                !EqualFunction.NAME_EQUAL_CASE_IGNORE.equals(function.getIdentifier().toString())) {
+            return new Equal(apply, args[0], args[1]);
+        } else if (function instanceof GeneralBagFunction && args.length == 1 &&
+                function.getIdentifier().toString().endsWith("-one-and-only")) {
+            return new OneAndOnly(apply, (GeneralBagFunction) function, args[0]);
+        }
+
+        return new FunctionCall(apply, function, inputs);
+    }
+
+    /**
+     * Private helper that checks whether a function can be evaluated when it is compiled. Only
+     * the standard functions are evaluated, since custom functions may depend on the request or
+     * on the time of evaluation, and the match functions depend on whether the context is
+     * searching for resources.
+     */
+    private static boolean isFoldable(Function function, Evaluatable[] args) {
+
+        if (function.getClass().getPackage() != ExpressionCompiler.class.getPackage()
+                || function instanceof MatchFunction) {
+            return false;
+        }
+        for (Evaluatable arg : args) {
+            if (!(arg instanceof Constant)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Private helper that evaluates a function with constant arguments. If the evaluation fails,
+     * the function is not folded, so that the error is reported when the expression is evaluated.
+     */
+    private static Expression fold(Apply apply, Function function, List<Evaluatable> inputs) {
+
+        EvaluationResult result;
+        try {
+            // constant arguments do not use the context
+            result = function.evaluate(inputs, null);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (result == null || result.indeterminate()) {
+            return null;
+        }
+        return new Constant(apply, result);
+    }
+
+    /**
+     * Private helper that removes the constant arguments of the logical and (or the logical or)
+     * function that do not change its result. Arguments are evaluated in order, so a constant
+     * false (true) argument decides the result if no other argument comes before it, and any
+     * arguments after it are never evaluated.
+     */
+    private static Evaluatable simplifyLogical(Apply apply, Evaluatable[] args, boolean and) {
+
+        List<Evaluatable> remaining = new ArrayList<Evaluatable>();
+        for (Evaluatable arg : args) {
+            AttributeValue value = getConstantValue(arg);
+            if (value == null) {
+                remaining.add(arg);
+            } else if (((BooleanAttribute) value).getValue() != and) {
+                if (remaining.isEmpty()) {
+                    return new Constant(apply, EvaluationResult.getInstance(!and));
+                }
+                remaining.add(arg);
+                break;
+            }
+        }
+
+        if (remaining.isEmpty()) {
+            return new Constant(apply, EvaluationResult.getInstance(and));
+        } else if (remaining.size() == 1) {
+            return remaining.get(0);
+        }
+
+        Evaluatable[] simplified = remaining.toArray(new Evaluatable[remaining.size()]);
+        if (and) {
+            return new And(apply, simplified);
+        }
+        return new Or(apply, simplified);
+    }
+
+    /**
+     * Private helper that compiles the arguments of a function, keeping the arguments that are
+     * not <code>Evaluatable</code> as they are
+     */
+    private static List compileInputs(List children) {
+        List<Object> inputs = new ArrayList<Object>();
+        for (Object child : children) {
+            inputs.add(compile((Expression) child));
+        }
+        return inputs;
+    }
+
+    /**
+     * A literal value, or an expression that always has the same value
+     */
+    private static class Constant extends CompiledExpression {
+
+        private final EvaluationResult result;
+
+        Constant(Evaluatable source, EvaluationResult result) {
+            super(source);
+            this.result = result;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            return result;
+        }
+    }
+
+    /**
+     * A function that is called with a fixed list of arguments
+     */
+    private static class FunctionCall extends CompiledExpression {
+
+        private final Function function;
+
+        private final List inputs;
+
+        FunctionCall(Apply source, Function function, List inputs) {
+            super(source);
+            this.function = function;
+            this.inputs = Collections.unmodifiableList(inputs);
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            return function.evaluate(inputs, context);
+        }
+    }
+
+    /**
+     * The logical and function
+     */
+    private static class And extends CompiledExpression {
+
+        private final Evaluatable[] args;
+
+        And(Apply source, Evaluatable[] args) {
+            super(source);
+            this.args = args;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            for (Evaluatable arg : args) {
+                EvaluationResult result = arg.evaluate(context);
+                if (result.indeterminate()) {
+                    return result;
+                }
+                if (!((BooleanAttribute) result.getAttributeValue()).getValue()) {
+                    return EvaluationResult.getFalseInstance();
+                }
+            }
+            return EvaluationResult.getTrueInstance();
+        }
+    }
+
+    /**
+     * The logical or function
+     */
+    private static class Or extends CompiledExpression {
+
+        private final Evaluatable[] args;
+
+        Or(Apply source, Evaluatable[] args) {
+            super(source);
+            this.args = args;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            for (Evaluatable arg : args) {
+                EvaluationResult result = arg.evaluate(context);
+                if (result.indeterminate()) {
+                    return result;
+                }
+                if (((BooleanAttribute) result.getAttributeValue()).getValue()) {
+                    return EvaluationResult.getTrueInstance();
+                }
+            }
+            return EvaluationResult.getFalseInstance();
+        }
+    }
+
+    /**
+     * The logical not function
+     */
+    private static class Not extends CompiledExpression {
+
+        private final Evaluatable arg;
+
+        Not(Apply source, Evaluatable arg) {
+            super(source);
+            this.arg = arg;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            EvaluationResult result = arg.evaluate(context);
+            if (result.indeterminate()) {
+                return result;
+            }
+            return EvaluationResult.getInstance(
+                    !((BooleanAttribute) result.getAttributeValue()).getValue());
+        }
+    }
+
+    /**
+     * The standard equal functions, except string-equal-ignore-case
+     */
+    private static class Equal extends CompiledExpression {
+
+        private final Evaluatable first;
+
+        private final Evaluatable second;
+
+        Equal(Apply source, Evaluatable first, Evaluatable second) {
+            super(source);
+            this.first = first;
+            this.second = second;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            EvaluationResult result = first.evaluate(context);
+            if (result.indeterminate()) {
+                return result;
+            }
+            AttributeValue firstValue = result.getAttributeValue();
+
+            result = second.evaluate(context);
+            if (result.indeterminate()) {
+                return result;
+            }
+            AttributeValue secondValue = result.getAttributeValue();
+
+            if (secondValue instanceof StringAttribute
+                    && XACMLConstants.ANY.equals(((StringAttribute) secondValue).getValue())) {
+                return EvaluationResult.getInstance(true);
+            }
+            return EvaluationResult.getInstance(firstValue.equals(secondValue));
+        }
+    }
+
+    /**
+     * The standard one-and-only functions
+     */
+    private static class OneAndOnly extends CompiledExpression {
+
+        private final GeneralBagFunction function;
+
+        private final Evaluatable arg;
+
+        OneAndOnly(Apply source, GeneralBagFunction function, Evaluatable arg) {
+            super(source);
+            this.function = function;
+            this.arg = arg;
+        }
+
+        public EvaluationResult evaluate(EvaluationCtx context) {
+            EvaluationResult result = arg.evaluate(context);
+            if (result.indeterminate()) {
+                return result;
+            }
+
+            BagAttribute bag = (BagAttribute) result.getAttributeValue();
+            if (bag.size() != 1) {
+                return FunctionBase.makeProcessingError(function.getFunctionName() + " expects "
+                        + "a bag that contains a single " + "element, got a bag with " + bag.size()
+                        + " elements");
+            }
+            return new EvaluationResult((AttributeValue) bag.iterator().next());
+        }
+    }
+}
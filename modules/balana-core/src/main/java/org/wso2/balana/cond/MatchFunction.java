@@ -48,10 +48,15 @@ import org.wso2.balana.attr.StringAttribute;
 import org.wso2.balana.attr.X500NameAttribute;
 
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -147,6 +152,28 @@ public class MatchFunction extends FunctionBase {
     // private mapping for bag input options
     private static final boolean bagParams[] = { false, false };
 
+    /**
+     * The maximum number of compiled patterns that are kept for regular expressions that are not
+     * literal values in a policy. The cache may hold a few more while the patterns that are not
+     * used are being dropped.
+     */
+    public static final int MAX_DYNAMIC_PATTERNS = 1024;
+
+    // compiled patterns of the regular expressions that are not literal values in a policy, for
+    // example ones that come from the request. Lookups do not lock, and once the cache is full the
+    // patterns that were not used since the last sweep are dropped first (a clock eviction)
+    private static final ConcurrentMap<String, DynamicPattern> dynamicPatterns =
+            new ConcurrentHashMap<String, DynamicPattern>();
+
+    // whether a thread is dropping patterns from the full cache
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    // the literal regular expression of the policy node this instance belongs to, and its
+    // compiled pattern, or null for the shared instance of the function
+    private final StringAttribute literal;
+
+    private final Pattern literalPattern;
+
     /**
      * Creates a new <code>MatchFunction</code> based on the given name.
      * 
@@ -157,6 +184,20 @@ public class MatchFunction extends FunctionBase {
     public MatchFunction(String functionName) {
         super(functionName, getId(functionName), getArgumentTypes(functionName), bagParams,
                 BooleanAttribute.identifier, false);
+        this.literal = null;
+        this.literalPattern = null;
+    }
+
+    /**
+     * Private constructor that creates a copy of the given function, which matches the given
+     * literal regular expression with its compiled pattern.
+     */
+    private MatchFunction(MatchFunction function, StringAttribute literal, Pattern literalPattern) {
+        super(function.getIdentifier().toString(), function.getFunctionId(),
+                getArgumentTypes(function.getIdentifier().toString()), bagParams,
+                BooleanAttribute.identifier, false);
+        this.literal = literal;
+        this.literalPattern = literalPattern;
     }
 
     /**
@@ -234,6 +275,37 @@ public class MatchFunction extends FunctionBase {
         return set;
     }
 
+    /**
+     * Returns a function for a policy node that calls this function with the given inputs. If
+     * this is a regular expression function and the regular expression is a literal value, the
+     * returned function is a copy of this one that keeps the compiled pattern, so that it is not
+     * compiled again when the function is evaluated. Otherwise this function is returned.
+     * <code>Apply</code> and <code>TargetMatch</code> call this once the inputs are checked.
+     *
+     * @param inputs the inputs the function is called with
+     *
+     * @return the function to keep in the policy node
+     */
+    public MatchFunction getInstanceForInputs(List inputs) {
+
+        // subclasses are left as they are, since a copy would not keep their behavior
+        if (getClass() != MatchFunction.class || literal != null || !isRegexpFunction() ||
+                inputs.isEmpty() ||
+                !(inputs.get(0) instanceof StringAttribute)) {
+            return this;
+        }
+
+        StringAttribute xpr = (StringAttribute) inputs.get(0);
+        try {
+            return new MatchFunction(this, xpr, Pattern.compile(translate(xpr.getValue())));
+        } catch (PatternSyntaxException e) {
+            // reported when the function is evaluated
+        } catch (StringIndexOutOfBoundsException e) {
+            // an empty expression, also reported when the function is evaluated
+        }
+        return this;
+    }
+
     /**
      * Evaluate the function, using the specified parameters.
      * 
@@ -262,7 +334,7 @@ public class MatchFunction extends FunctionBase {
         case ID_REGEXP_STRING_MATCH:
         case ID_STRING_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((StringAttribute) (argValues[1])).getValue();
 
             if (context.isSearching() && arg1.equals(XACMLConstants.ANY)) {
@@ -306,7 +378,7 @@ public class MatchFunction extends FunctionBase {
 
         case ID_ANYURI_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((AnyURIAttribute) (argValues[1])).encode();
 
             boolResult = regexpHelper(arg0, arg1);
@@ -316,7 +388,7 @@ public class MatchFunction extends FunctionBase {
 
         case ID_IPADDRESS_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((IPAddressAttribute) (argValues[1])).encode();
 
             boolResult = regexpHelper(arg0, arg1);
@@ -326,7 +398,7 @@ public class MatchFunction extends FunctionBase {
 
         case ID_DNSNAME_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((DNSNameAttribute) (argValues[1])).encode();
 
             boolResult = regexpHelper(arg0, arg1);
@@ -336,7 +408,7 @@ public class MatchFunction extends FunctionBase {
 
         case ID_RFC822NAME_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((RFC822NameAttribute) (argValues[1])).encode();
 
             boolResult = regexpHelper(arg0, arg1);
@@ -346,7 +418,7 @@ public class MatchFunction extends FunctionBase {
 
         case ID_X500NAME_REGEXP_MATCH: {
             // arg0 is a regular expression; arg1 is a general string
-            String arg0 = ((StringAttribute) (argValues[0])).getValue();
+            StringAttribute arg0 = (StringAttribute) (argValues[0]);
             String arg1 = ((X500NameAttribute) (argValues[1])).encode();
 
             boolResult = regexpHelper(arg0, arg1);
@@ -361,9 +433,97 @@ public class MatchFunction extends FunctionBase {
     }
 
     /**
-     *
+     * Private helper that returns true if this is one of the regular expression functions
+     */
+    private boolean isRegexpFunction() {
+        int id = getFunctionId();
+        return id != ID_X500NAME_MATCH && id != ID_RFC822NAME_MATCH;
+    }
+
+    /**
+     * Private helper that returns true if the given string matches the regular expression
+     */
+    private boolean regexpHelper(StringAttribute xpr, String str) {
+
+        Pattern pattern;
+        if (literalPattern != null && (xpr == literal || xpr.getValue().equals(literal.getValue()))) {
+            pattern = literalPattern;
+        } else {
+            pattern = getDynamicPattern(xpr.getValue());
+        }
+
+        return pattern.matcher(str).matches();
+    }
+
+    /**
+     * Private helper that returns the compiled pattern of a regular expression that is not a
+     * literal value in a policy, compiling and caching it if it is not cached
+     */
+    private static Pattern getDynamicPattern(String value) {
+
+        DynamicPattern cached = dynamicPatterns.get(value);
+        if (cached != null) {
+            if (!cached.used) {
+                cached.used = true;
+            }
+            return cached.pattern;
+        }
+
+        // two threads may both compile the same pattern, which is cheaper than locking
+        Pattern pattern = Pattern.compile(translate(value));
+        dynamicPatterns.putIfAbsent(value, new DynamicPattern(pattern));
+        if (dynamicPatterns.size() > MAX_DYNAMIC_PATTERNS) {
+            evictDynamicPatterns();
+        }
+        return pattern;
+    }
+
+    /**
+     * Private helper that drops patterns from the full cache. Patterns that were used since the
+     * last sweep are kept, and marked as unused. Only one thread sweeps at a time, the others
+     * leave the cache above its size until it is done.
+     */
+    private static void evictDynamicPatterns() {
+
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (dynamicPatterns.size() > MAX_DYNAMIC_PATTERNS) {
+                Iterator<DynamicPattern> it = dynamicPatterns.values().iterator();
+                while (it.hasNext() && dynamicPatterns.size() > MAX_DYNAMIC_PATTERNS) {
+                    DynamicPattern cached = it.next();
+                    if (cached.used) {
+                        cached.used = false;
+                    } else {
+                        it.remove();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * A cached pattern, with whether it was used since the last sweep of the cache
+     */
+    private static class DynamicPattern {
+
+        private final Pattern pattern;
+
+        private volatile boolean used;
+
+        DynamicPattern(Pattern pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * Private helper that translates a XACML regular expression into the syntax of
+     * <code>java.util.regex.Pattern</code>
      */
-    private boolean regexpHelper(String xpr, String str) {
+    private static String translate(String xpr) {
         // the regular expression syntax required by XACML differs
         // from the syntax supported by java.util.regex.Pattern
         // in several ways; the next several code blocks transform
@@ -412,7 +572,7 @@ public class MatchFunction extends FunctionBase {
             idx = buf.indexOf("-[", idx);
         }
 
-        return Pattern.matches(buf.toString(), str);
+        return buf.toString();
     }
 
 }
@@ -38,6 +38,8 @@ package org.wso2.balana.cond;
 import org.wso2.balana.Indenter;
 import org.wso2.balana.ParsingException;
 import org.wso2.balana.PolicyMetaData;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.ctx.EvaluationCtx;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -62,6 +64,9 @@ public class VariableDefinition {
     // the actual expression defined here
     private Expression expression;
 
+    // the evaluation plan of the expression, or null if this definition has not been compiled
+    private volatile Expression compiledExpression;
+
     /**
      * Creates a new <code>VariableDefinition</code> with the given identifier and expression.
      * 
@@ -118,6 +123,59 @@ public class VariableDefinition {
         return expression;
     }
 
+    /**
+     * Compiles the expression of this definition into an evaluation plan (see
+     * <code>ExpressionCompiler</code>), which is used by <code>evaluate</code> from then on. A
+     * definition is only compiled once.
+     */
+    public void compile() {
+        if (compiledExpression == null) {
+            compiledExpression = ExpressionCompiler.compile(expression);
+        }
+    }
+
+    /**
+     * Returns whether this definition has been compiled.
+     *
+     * @return true if the evaluation plan of the expression is used for evaluation
+     */
+    public boolean isCompiled() {
+        return compiledExpression != null;
+    }
+
+    /**
+     * Returns the value of this definition if it has been compiled and its expression always has
+     * the same value.
+     *
+     * @return the value of the expression, or null if it is not known to be constant
+     */
+    AttributeValue getConstantValue() {
+        return ExpressionCompiler.getConstantValue(compiledExpression);
+    }
+
+    /**
+     * Evaluates the expression of this definition, using its evaluation plan if it has been
+     * compiled. If the expression is not evaluatable (eg, a single Function) then this will throw
+     * an exception.
+     *
+     * @param context the representation of the request
+     * @return the result of evaluation
+     */
+    public EvaluationResult evaluate(EvaluationCtx context) {
+        Expression xpr = compiledExpression;
+        if (xpr == null) {
+            xpr = expression;
+        }
+
+        // Note that it's technically possible for this expression to
+        // be something like a Function, which isn't Evaluatable. It
+        // wouldn't make sense to have this, but it is possible. Because
+        // it makes no sense, however, it's unlcear exactly what the
+        // error should be, so raising the ClassCastException here seems
+        // as good an approach as any for now...
+        return ((Evaluatable) xpr).evaluate(context);
+    }
+
     /**
      * Encodes this <code>VariableDefinition</code> into its XML form
      *
@@ -161,15 +161,7 @@ public class VariableReference implements Expression, Evaluatable {
      * @return the result of evaluation
      */
     public EvaluationResult evaluate(EvaluationCtx context) {
-        Expression xpr = getReferencedDefinition().getExpression();
-
-        // Note that it's technically possible for this expression to
-        // be something like a Function, which isn't Evaluatable. It
-        // wouldn't make sense to have this, but it is possible. Because
-        // it makes no sense, however, it's unlcear exactly what the
-        // error should be, so raising the ClassCastException here seems
-        // as good an approach as any for now...
-        return ((Evaluatable) xpr).evaluate(context);
+        return getReferencedDefinition().evaluate(context);
     }
 
     /**
@@ -17,12 +17,9 @@
  */
 package org.wso2.balana.cond.xacml3;
 
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.wso2.balana.DOMHelper;
-import org.wso2.balana.DefaultNamespaceContext;
-import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.XPathExpressionCache;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.attr.BooleanAttribute;
 import org.wso2.balana.attr.IntegerAttribute;
@@ -35,7 +32,6 @@ import org.wso2.balana.ctx.Status;
 import org.wso2.balana.ctx.xacml3.XACML3EvaluationCtx;
 import org.wso2.balana.xacml3.Attributes;
 
-import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.*;
 import java.util.*;
 
@@ -224,38 +220,7 @@ public class XPathFunction extends FunctionBase {
     private NodeList getXPathResults(Node contextNode, String xpathValue)
                                                                 throws XPathExpressionException {
 
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-
-        //see if the request root is in a namespace
-        String namespace = contextNode.getNamespaceURI();
-        // name spaces are used, so we need to lookup the correct
-        // prefix to use in the search string
-        NamedNodeMap namedNodeMap = contextNode.getAttributes();
-
-        Map<String, String> nsMap = new HashMap<String, String>();
-
-        for (int i = 0; i < namedNodeMap.getLength(); i++) {
-            Node n = namedNodeMap.item(i);
-            // we found the matching namespace, so get the prefix
-            // and then break out
-            String prefix = DOMHelper.getLocalName(n);
-            String nodeValue= n.getNodeValue();
-            nsMap.put(prefix, nodeValue);
-        }
-
-        // if there is not any namespace is defined for content element, default XACML request
-        //  name space would be there.
-        if(XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(namespace) ||
-                XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(namespace) ||
-                XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(namespace)){
-            nsMap.put("xacml", namespace);
-        }
-
-        NamespaceContext namespaceContext = new DefaultNamespaceContext(nsMap);
-        xpath.setNamespaceContext(namespaceContext);
-
-        XPathExpression expression = xpath.compile(xpathValue);
-        return (NodeList) expression.evaluate(contextNode, XPathConstants.NODESET);
+        return XPathExpressionCache.evaluate(xpathValue,
+                XPathExpressionCache.getNamespaces(contextNode), contextNode);
     }
 }
@@ -22,7 +22,9 @@ package org.wso2.balana.ctx;
 import org.wso2.balana.*;
 import org.wso2.balana.xacml3.Advice;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -245,4 +247,28 @@ public abstract class AbstractResult {
      */
     public abstract void encode(StringBuilder builder);
 
+    /**
+     * Encodes this <code>AbstractResult</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>. This default implementation encodes the whole result into a
+     * <code>StringBuilder</code> and copies it to the writer in chunks, without creating an
+     * intermediate <code>String</code>. Sub classes may write the result element by element.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
+
+        StringBuilder builder = new StringBuilder();
+        encode(builder);
+
+        char[] buffer = new char[Math.min(builder.length(), 8192)];
+        int offset = 0;
+        while (offset < builder.length()) {
+            int end = Math.min(offset + buffer.length, builder.length());
+            builder.getChars(offset, end, buffer, 0);
+            writer.write(buffer, 0, end - offset);
+            offset = end;
+        }
+    }
+
 }
@@ -40,8 +40,10 @@ import org.wso2.balana.attr.AttributeFactory;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.attr.DateTimeAttribute;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.OutputStream;
+import java.io.Writer;
 
 import java.net.URI;
 import java.util.ArrayList;
@@ -338,31 +340,55 @@ public class Attribute {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Attribute</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Attribute AttributeId=\"").append(id.toString()).append("\"");
+        writer.write("<Attribute AttributeId=\"");
+        EncodingHelper.writeAttribute(writer, id.toString());
+        writer.write("\"");
 
         if((xacmlVersion == XACMLConstants.XACML_VERSION_3_0)){
-            builder.append(" IncludeInResult=\"").append(includeInResult).append("\"");
+            writer.write(includeInResult ? " IncludeInResult=\"true\"" : " IncludeInResult=\"false\"");
         } else {
-            builder.append(" DataType=\"").append(type.toString()).append("\"");
+            writer.write(" DataType=\"");
+            EncodingHelper.writeAttribute(writer, type.toString());
+            writer.write("\"");
             if (issueInstant != null){
-                builder.append(" IssueInstant=\"").append(issueInstant.encode()).append("\"");
+                writer.write(" IssueInstant=\"");
+                EncodingHelper.writeAttribute(writer, issueInstant.encode());
+                writer.write("\"");
             }
         }
 
         if (issuer != null) {
-            builder.append(" Issuer=\"").append(issuer).append("\"");
+            writer.write(" Issuer=\"");
+            EncodingHelper.writeAttribute(writer, issuer);
+            writer.write("\"");
         }
 
-        builder.append(">\n");
+        writer.write(">\n");
 
         if(attributeValues != null && attributeValues.size() > 0){
             for(AttributeValue value : attributeValues){
-                value.encode(builder);
+                value.encode(writer);
             }
         }
 
-        builder.append("</Attribute>\n");
+        writer.write("</Attribute>\n");
     }
 
 }
@@ -31,6 +31,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URI;
+import org.wso2.balana.EncodingHelper;
+import org.wso2.balana.StringBuilderWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * Represents AttributeAssignmentType in the XACML 3.0 and 2.0 policy schema
@@ -155,26 +159,48 @@ public class AttributeAssignment extends AttributeValue {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 
-        builder.append("<AttributeAssignment  AttributeId=\"").append(attributeId).append("\"");
+    /**
+     * Encodes this <code>AttributeAssignment</code> into its XML form and writes this out to the
+     * provided <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append(" DataType=\"").append(getType()).append("\"");
+        writer.write("<AttributeAssignment  AttributeId=\"");
+        EncodingHelper.writeAttribute(writer, attributeId.toString());
+        writer.write("\" DataType=\"");
+        EncodingHelper.writeAttribute(writer, getType().toString());
+        writer.write("\"");
 
         if(category != null){
-            builder.append(" Category=\"").append(category).append("\"");
+            writer.write(" Category=\"");
+            EncodingHelper.writeAttribute(writer, category.toString());
+            writer.write("\"");
         }
 
         if(issuer != null){
-            builder.append("\" Issuer=\"").append(issuer).append("\"");
+            writer.write(" Issuer=\"");
+            EncodingHelper.writeAttribute(writer, issuer);
+            writer.write("\"");
         }
 
-        builder.append(">");
+        writer.write(">");
 
         if(content != null){
-            builder.append(content);
+            EncodingHelper.writeText(writer, content);
         }
 
-        builder.append("</AttributeAssignment>\n");
+        writer.write("</AttributeAssignment>\n");
     }
 
     @Override
@@ -0,0 +1,123 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.ctx;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup structure for the attributes of a request, indexed by the String form of the attribute
+ * id and then by the String form of the data type. This lets an evaluation context find the
+ * attributes that an attribute designator refers to without going through all attributes of the
+ * category. The String forms of <code>URI</code>s are computed once when they are created, so a
+ * lookup does not allocate.
+ * <p>
+ * This class is not thread safe. It is built when an evaluation context is created and only
+ * changed when the context itself is changed, for example by <code>setResourceId</code>.
+ */
+public class AttributeIndex {
+
+    /**
+     * attribute id --> data type --> attributes
+     */
+    private final Map<String, Map<String, List<Attribute>>> attributes =
+            new HashMap<String, Map<String, List<Attribute>>>();
+
+    /**
+     * Creates a new empty <code>AttributeIndex</code>
+     */
+    public AttributeIndex() {
+    }
+
+    /**
+     * Creates a new <code>AttributeIndex</code> with the given attributes
+     *
+     * @param attributes a <code>Collection</code> of <code>Attribute</code>
+     */
+    public AttributeIndex(Collection<Attribute> attributes) {
+        for (Attribute attribute : attributes) {
+            add(attribute);
+        }
+    }
+
+    /**
+     * Adds an attribute to this index
+     *
+     * @param attribute the <code>Attribute</code> to add
+     */
+    public void add(Attribute attribute) {
+
+        String id = attribute.getId().toString();
+        Map<String, List<Attribute>> types = attributes.get(id);
+        if (types == null) {
+            types = new HashMap<String, List<Attribute>>(2);
+            attributes.put(id, types);
+        }
+
+        String type = attribute.getType().toString();
+        List<Attribute> list = types.get(type);
+        if (list == null) {
+            list = new ArrayList<Attribute>(1);
+            types.put(type, list);
+        }
+        list.add(attribute);
+    }
+
+    /**
+     * Removes an attribute from this index
+     *
+     * @param attribute the <code>Attribute</code> to remove
+     * @return true if the attribute was in this index
+     */
+    public boolean remove(Attribute attribute) {
+
+        Map<String, List<Attribute>> types = attributes.get(attribute.getId().toString());
+        if (types == null) {
+            return false;
+        }
+        List<Attribute> list = types.get(attribute.getType().toString());
+        return list != null && list.remove(attribute);
+    }
+
+    /**
+     * Returns the attributes with the given id and data type
+     *
+     * @param id the attribute id
+     * @param type the data type of the attribute
+     * @return a <code>List</code> of <code>Attribute</code>, which is empty if there are no such
+     *         attributes. The list must not be modified.
+     */
+    public List<Attribute> get(URI id, URI type) {
+
+        Map<String, List<Attribute>> types = attributes.get(id.toString());
+        if (types == null) {
+            return Collections.emptyList();
+        }
+        List<Attribute> list = types.get(type.toString());
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+}
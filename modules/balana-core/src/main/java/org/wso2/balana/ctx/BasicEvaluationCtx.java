@@ -28,9 +28,13 @@ import org.wso2.balana.attr.DateAttribute;
 import org.wso2.balana.attr.DateTimeAttribute;
 import org.wso2.balana.attr.TimeAttribute;
 import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.finder.AttributeFinder;
+import org.wso2.balana.metrics.PDPMetrics;
 
 import java.net.URI;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of <code>EvaluationCtx</code>.  This implements some generic methods that
@@ -61,6 +65,19 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
      */
     protected PDPConfig pdpConfig;
 
+    /**
+     * whether the evaluation read values that are not part of the request, such as the current
+     * time of the PDP, the result of an XPath expression or values of attribute finder modules
+     */
+    private volatile boolean dynamicValuesUsed;
+
+    /**
+     * values resolved by the attribute finder for this request, including empty and
+     * indeterminate results
+     */
+    private final Map<DesignatorKey, EvaluationResult> resolvedAttributes =
+            new ConcurrentHashMap<DesignatorKey, EvaluationResult>();
+
     /**
      * logger
      */
@@ -75,6 +92,10 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
         return requestRoot;
     }
 
+    public PDPConfig getPdpConfig() {
+        return pdpConfig;
+    }
+
     /**
      * TODO
      * @return
@@ -98,6 +119,7 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
      * @return the current time
      */
     public synchronized TimeAttribute getCurrentTime() {
+        dynamicValuesUsed = true;
         long millis = dateTimeHelper();
 
         if (useCachedEnvValues)
@@ -120,6 +142,7 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
      * @return the current date
      */
     public synchronized DateAttribute getCurrentDate() {
+        dynamicValuesUsed = true;
         long millis = dateTimeHelper();
 
         if (useCachedEnvValues)
@@ -142,6 +165,7 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
      * @return the current dateTime
      */
     public synchronized DateTimeAttribute getCurrentDateTime() {
+        dynamicValuesUsed = true;
         long millis = dateTimeHelper();
 
         if (useCachedEnvValues)
@@ -150,8 +174,45 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
             return new DateTimeAttribute(new Date(millis));
     }
 
+    /**
+     * Returns whether the evaluation with this context read values that are not part of the
+     * request, such as the current date and time of the PDP environment, the result of an
+     * attribute selector or values found by attribute finder modules that are not decision
+     * cacheable. The decision of such an evaluation can not be reused for another request with the
+     * same attributes.
+     *
+     * @return true if values outside of the request attributes were used
+     */
+    public boolean isDynamicValuesUsed() {
+        return dynamicValuesUsed;
+    }
+
+    /**
+     * Records that the evaluation with this context read values that are not part of the request
+     */
+    protected void setDynamicValuesUsed() {
+        dynamicValuesUsed = true;
+    }
+
+    /**
+     * Drops the values resolved by the attribute finder for this request. This must be called
+     * whenever the attributes of the request are changed, as the finder modules may have resolved
+     * values based on them.
+     */
+    protected void clearResolvedAttributes() {
+        resolvedAttributes.clear();
+    }
+
     public abstract AbstractRequestCtx getRequestCtx();
 
+    /**
+     * Private helper that checks whether the attribute finder found no values and no error
+     */
+    private static boolean isEmptyBag(EvaluationResult result) {
+        return !result.indeterminate() && result.getAttributeValue() instanceof BagAttribute &&
+                ((BagAttribute) result.getAttributeValue()).isEmpty();
+    }
+
     /**
      * Returns the attribute value(s) retrieved using the given XPath expression.
      *
@@ -169,6 +230,7 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
     public EvaluationResult getAttribute(String path, URI type, URI category,
                                          URI contextSelector, String xpathVersion){
 
+        setDynamicValuesUsed();
         if (pdpConfig.getAttributeFinder() != null) {
             return pdpConfig.getAttributeFinder().findAttribute(path, type, this,
                                         xpathVersion);
@@ -223,8 +285,25 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
      *         least one value, or status associated with an Indeterminate result
      */
     protected EvaluationResult callHelper(URI type, URI id, String issuer, URI category) {
-        if (pdpConfig.getAttributeFinder() != null) {
-            return pdpConfig.getAttributeFinder().findAttribute(type, id, issuer, category, this);
+        AttributeFinder attributeFinder = pdpConfig.getAttributeFinder();
+        if (attributeFinder != null) {
+            DesignatorKey key = new DesignatorKey(type, id, issuer, category);
+            EvaluationResult result = resolvedAttributes.get(key);
+            PDPMetrics metrics = pdpConfig.getMetrics();
+            if (metrics != null) {
+                metrics.recordCacheAccess(PDPMetrics.EVALUATION_ATTRIBUTE_CACHE, result != null);
+            }
+            if (result == null) {
+                result = attributeFinder.findAttribute(type, id, issuer, category, this);
+                if (attributeFinder.isMemoizable(id, category)) {
+                    resolvedAttributes.put(key, result);
+                }
+                // values from outside the request may change, so the decision must not be cached
+                if (!isEmptyBag(result) && !attributeFinder.isDecisionCacheable(id, category)) {
+                    setDynamicValuesUsed();
+                }
+            }
+            return result;
         } else {
             if (logger.isWarnEnabled()) {
                 logger.warn("Context tried to invoke AttributeFinder but was "
@@ -235,4 +314,43 @@ public abstract class BasicEvaluationCtx implements EvaluationCtx {
         }
     }
 
+    /**
+     * Identity of a designator lookup made through the attribute finder
+     */
+    private static class DesignatorKey {
+
+        private final URI type;
+        private final URI id;
+        private final String issuer;
+        private final URI category;
+
+        DesignatorKey(URI type, URI id, String issuer, URI category) {
+            this.type = type;
+            this.id = id;
+            this.issuer = issuer;
+            this.category = category;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DesignatorKey)) {
+                return false;
+            }
+            DesignatorKey other = (DesignatorKey) o;
+            return type.equals(other.type) && id.equals(other.id)
+                    && category.equals(other.category)
+                    && (issuer == null ? other.issuer == null : issuer.equals(other.issuer));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = category.hashCode();
+            result = 31 * result + id.hashCode();
+            result = 31 * result + type.hashCode();
+            return 31 * result + (issuer != null ? issuer.hashCode() : 0);
+        }
+    }
 }
@@ -0,0 +1,967 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.ctx;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.wso2.balana.Balana;
+import org.wso2.balana.ObligationResult;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.UnknownIdentifierException;
+import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AnyURIAttribute;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.Base64BinaryAttribute;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.DNSNameAttribute;
+import org.wso2.balana.attr.DateAttribute;
+import org.wso2.balana.attr.DateTimeAttribute;
+import org.wso2.balana.attr.DayTimeDurationAttribute;
+import org.wso2.balana.attr.DoubleAttribute;
+import org.wso2.balana.attr.HexBinaryAttribute;
+import org.wso2.balana.attr.IPAddressAttribute;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.RFC822NameAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.attr.TimeAttribute;
+import org.wso2.balana.attr.X500NameAttribute;
+import org.wso2.balana.attr.YearMonthDurationAttribute;
+import org.wso2.balana.attr.xacml3.XPathAttribute;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.ctx.xacml3.Result;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Advice;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.AttributesReference;
+import org.wso2.balana.xacml3.MultiRequests;
+import org.wso2.balana.xacml3.Obligation;
+import org.wso2.balana.xacml3.RequestDefaults;
+import org.wso2.balana.xacml3.RequestReference;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact binary encoding of XACML 3.0 requests and responses, for callers in the same process
+ * or on the other side of a local socket. Each request or response is written as one frame: a
+ * four byte big-endian length followed by the encoded data. Frames can be written one after the
+ * other to any byte stream, and reading a frame never reads past its end.
+ * <p>
+ * Identifiers (categories, attribute ids, data types, status codes, ...) are written as a number.
+ * Well known identifiers have fixed numbers from a built in dictionary, and any other identifier
+ * is written out once per frame and referred to by number after that. The decoder shares the
+ * <code>URI</code>s of the dictionary between all requests. String, boolean, integer and double
+ * values are written in their binary form and decoded into attribute values directly; values of
+ * other types are written as their text. The <code>Content</code> of an <code>Attributes</code>
+ * is written as XML text.
+ * <p>
+ * XACML 1.0 and 2.0 results are written with their decision and status only. A
+ * <code>StatusDetail</code> is written only for missing attributes.
+ */
+public class BinaryCodec {
+
+    /**
+     * the largest frame that is read, so that a corrupt length can not exhaust the memory
+     */
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private static final int REQUEST_FRAME = 1;
+
+    private static final int RESPONSE_FRAME = 2;
+
+    /**
+     * version of the encoding, which is the second byte of every frame
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    // kinds of the attribute values
+    private static final int TEXT_VALUE = 0;
+    private static final int STRING_VALUE = 1;
+    private static final int FALSE_VALUE = 2;
+    private static final int TRUE_VALUE = 3;
+    private static final int INTEGER_VALUE = 4;
+    private static final int DOUBLE_VALUE = 5;
+    private static final int XPATH_VALUE = 6;
+
+    /**
+     * identifiers with a fixed number, which is their index. New identifiers may only be added
+     * at the end, as the numbers are part of the encoding.
+     */
+    private static final String[] DICTIONARY = {
+            // categories
+            XACMLConstants.SUBJECT_CATEGORY,
+            XACMLConstants.RESOURCE_CATEGORY,
+            XACMLConstants.ACTION_CATEGORY,
+            XACMLConstants.ENT_CATEGORY,
+            "urn:oasis:names:tc:xacml:1.0:subject-category:recipient-subject",
+            "urn:oasis:names:tc:xacml:1.0:subject-category:intermediary-subject",
+            "urn:oasis:names:tc:xacml:1.0:subject-category:codebase",
+            "urn:oasis:names:tc:xacml:1.0:subject-category:requesting-machine",
+            // attribute ids
+            "urn:oasis:names:tc:xacml:1.0:subject:subject-id",
+            "urn:oasis:names:tc:xacml:2.0:subject:role",
+            XACMLConstants.RESOURCE_ID,
+            XACMLConstants.RESOURCE_SCOPE_2_0,
+            "urn:oasis:names:tc:xacml:1.0:action:action-id",
+            "urn:oasis:names:tc:xacml:1.0:environment:current-time",
+            "urn:oasis:names:tc:xacml:1.0:environment:current-date",
+            "urn:oasis:names:tc:xacml:1.0:environment:current-dateTime",
+            XACMLConstants.CONTENT_SELECTOR,
+            XACMLConstants.MULTIPLE_CONTENT_SELECTOR,
+            // data types
+            StringAttribute.identifier,
+            BooleanAttribute.identifier,
+            IntegerAttribute.identifier,
+            DoubleAttribute.identifier,
+            TimeAttribute.identifier,
+            DateAttribute.identifier,
+            DateTimeAttribute.identifier,
+            DayTimeDurationAttribute.identifier,
+            YearMonthDurationAttribute.identifier,
+            AnyURIAttribute.identifier,
+            HexBinaryAttribute.identifier,
+            Base64BinaryAttribute.identifier,
+            RFC822NameAttribute.identifier,
+            X500NameAttribute.identifier,
+            IPAddressAttribute.identifier,
+            DNSNameAttribute.identifier,
+            XPathAttribute.identifier,
+            // status codes
+            Status.STATUS_OK,
+            Status.STATUS_MISSING_ATTRIBUTE,
+            Status.STATUS_SYNTAX_ERROR,
+            Status.STATUS_PROCESSING_ERROR
+    };
+
+    private static final URI[] DICTIONARY_URIS = new URI[DICTIONARY.length];
+
+    private static final Map<String, Integer> DICTIONARY_IDS = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            DICTIONARY_URIS[i] = URI.create(DICTIONARY[i]);
+            DICTIONARY_IDS.put(DICTIONARY[i], i);
+        }
+    }
+
+    /**
+     * Writes the given request to the stream as one frame. The stream is not flushed.
+     *
+     * @param request the request to write
+     * @param output stream into which the frame is written
+     * @throws IOException if the frame can not be written
+     */
+    public static void writeRequest(RequestCtx request, OutputStream output) throws IOException {
+
+        Encoder encoder = new Encoder();
+        encoder.writeByte(REQUEST_FRAME);
+        encoder.writeByte(FORMAT_VERSION);
+
+        MultiRequests multiRequests = request.getMultiRequests();
+        RequestDefaults defaults = request.getDefaults();
+        String xPathVersion = defaults == null ? null : defaults.getXPathVersion();
+        encoder.writeByte((request.isReturnPolicyIdList() ? 1 : 0) | (request.isCombinedDecision() ? 2 : 0)
+                | (xPathVersion != null ? 4 : 0) | (multiRequests != null ? 8 : 0));
+        if (xPathVersion != null) {
+            encoder.writeString(xPathVersion);
+        }
+
+        writeAttributesSet(request.getAttributesSet(), encoder);
+
+        if (multiRequests != null) {
+            encoder.writeVarInt(multiRequests.getRequestReferences().size());
+            for (RequestReference requestReference : multiRequests.getRequestReferences()) {
+                encoder.writeVarInt(requestReference.getReferences().size());
+                for (AttributesReference reference : requestReference.getReferences()) {
+                    encoder.writeString(reference.getId());
+                }
+            }
+        }
+
+        encoder.writeFrame(output);
+    }
+
+    /**
+     * Reads one request frame from the stream.
+     *
+     * @param input stream from which the frame is read
+     * @return the request, or null if the stream ended before the frame
+     * @throws ParsingException if the frame is not a valid request
+     * @throws IOException if the frame can not be read
+     */
+    public static RequestCtx readRequest(InputStream input) throws ParsingException, IOException {
+
+        Decoder decoder = Decoder.readFrame(input, REQUEST_FRAME);
+        if (decoder == null) {
+            return null;
+        }
+
+        int flags = decoder.readByte();
+        RequestDefaults defaults = null;
+        if ((flags & 4) != 0) {
+            defaults = new RequestDefaults(decoder.readString());
+        }
+
+        Set<Attributes> attributesSet = readAttributesSet(decoder);
+
+        MultiRequests multiRequests = null;
+        if ((flags & 8) != 0) {
+            int count = decoder.readCount();
+            Set<RequestReference> requestReferences = new HashSet<RequestReference>();
+            for (int i = 0; i < count; i++) {
+                int referenceCount = decoder.readCount();
+                Set<AttributesReference> references = new HashSet<AttributesReference>();
+                for (int j = 0; j < referenceCount; j++) {
+                    AttributesReference reference = new AttributesReference();
+                    reference.setId(decoder.readString());
+                    references.add(reference);
+                }
+                RequestReference requestReference = new RequestReference();
+                requestReference.setReferences(references);
+                requestReferences.add(requestReference);
+            }
+            multiRequests = new MultiRequests(requestReferences);
+        }
+        decoder.checkEnd();
+
+        return new RequestCtx(null, attributesSet, (flags & 1) != 0, (flags & 2) != 0, multiRequests,
+                defaults);
+    }
+
+    /**
+     * Writes the given response to the stream as one frame. The stream is not flushed.
+     *
+     * @param response the response to write
+     * @param output stream into which the frame is written
+     * @throws IOException if the frame can not be written
+     */
+    public static void writeResponse(ResponseCtx response, OutputStream output) throws IOException {
+
+        Encoder encoder = new Encoder();
+        encoder.writeByte(RESPONSE_FRAME);
+        encoder.writeByte(FORMAT_VERSION);
+
+        Set<AbstractResult> results = response.getResults();
+        encoder.writeVarInt(results.size());
+        for (AbstractResult result : results) {
+            encoder.writeByte(result.getVersion());
+            encoder.writeByte(result.getDecision());
+            writeStatus(result.getStatus(), encoder);
+            if (result.getVersion() != XACMLConstants.XACML_VERSION_3_0) {
+                continue;
+            }
+
+            List<ObligationResult> obligations = result.getObligations();
+            int obligationCount = 0;
+            if (obligations != null) {
+                for (ObligationResult obligation : obligations) {
+                    if (obligation instanceof Obligation) {
+                        obligationCount++;
+                    }
+                }
+            }
+            encoder.writeVarInt(obligationCount);
+            for (int i = 0; obligationCount > 0 && i < obligations.size(); i++) {
+                if (obligations.get(i) instanceof Obligation) {
+                    Obligation obligation = (Obligation) obligations.get(i);
+                    encoder.writeIdentifier(obligation.getObligationId().toString());
+                    writeAssignments(obligation.getAssignments(), encoder);
+                }
+            }
+
+            List<Advice> advices = result.getAdvices();
+            encoder.writeVarInt(advices == null ? 0 : advices.size());
+            if (advices != null) {
+                for (Advice advice : advices) {
+                    encoder.writeIdentifier(advice.getAdviceId().toString());
+                    writeAssignments(advice.getAssignments(), encoder);
+                }
+            }
+
+            Set<PolicyReference> references = null;
+            Set<Attributes> attributesSet = null;
+            if (result instanceof Result) {
+                references = ((Result) result).getPolicyReferences();
+                attributesSet = ((Result) result).getAttributes();
+            }
+            encoder.writeVarInt(references == null ? 0 : references.size());
+            if (references != null) {
+                for (PolicyReference reference : references) {
+                    VersionConstraints constraints = reference.getConstraints();
+                    encoder.writeByte(reference.getReferenceType());
+                    encoder.writeIdentifier(reference.getReference().toString());
+                    encoder.writeOptionalString(constraints == null ? null : constraints.getVersionConstraint());
+                    encoder.writeOptionalString(constraints == null ? null : constraints.getEarliestConstraint());
+                    encoder.writeOptionalString(constraints == null ? null : constraints.getLatestConstraint());
+                }
+            }
+            writeAttributesSet(attributesSet == null ? new HashSet<Attributes>() : attributesSet, encoder);
+        }
+
+        encoder.writeFrame(output);
+    }
+
+    /**
+     * Reads one response frame from the stream.
+     *
+     * @param input stream from which the frame is read
+     * @return the response, or null if the stream ended before the frame
+     * @throws ParsingException if the frame is not a valid response
+     * @throws IOException if the frame can not be read
+     */
+    public static ResponseCtx readResponse(InputStream input) throws ParsingException, IOException {
+
+        Decoder decoder = Decoder.readFrame(input, RESPONSE_FRAME);
+        if (decoder == null) {
+            return null;
+        }
+
+        int count = decoder.readCount();
+        Set<AbstractResult> results = new HashSet<AbstractResult>();
+        int version = XACMLConstants.XACML_VERSION_3_0;
+        for (int i = 0; i < count; i++) {
+            version = decoder.readByte();
+            int decision = decoder.readByte();
+            Status status = readStatus(decoder);
+            try {
+                if (version != XACMLConstants.XACML_VERSION_3_0) {
+                    results.add(ResultFactory.getFactory().getResult(decision, status, version));
+                    continue;
+                }
+
+                int obligationCount = decoder.readCount();
+                List<ObligationResult> obligations = new ArrayList<ObligationResult>(obligationCount);
+                for (int j = 0; j < obligationCount; j++) {
+                    URI id = decoder.readURI();
+                    obligations.add(new Obligation(readAssignments(decoder), id));
+                }
+
+                int adviceCount = decoder.readCount();
+                List<Advice> advices = new ArrayList<Advice>(adviceCount);
+                for (int j = 0; j < adviceCount; j++) {
+                    URI id = decoder.readURI();
+                    advices.add(new Advice(id, readAssignments(decoder)));
+                }
+
+                int referenceCount = decoder.readCount();
+                Set<PolicyReference> references = null;
+                if (referenceCount > 0) {
+                    references = new HashSet<PolicyReference>();
+                    for (int j = 0; j < referenceCount; j++) {
+                        int type = decoder.readByte();
+                        URI reference = decoder.readURI();
+                        VersionConstraints constraints = new VersionConstraints(decoder.readOptionalString(),
+                                decoder.readOptionalString(), decoder.readOptionalString());
+                        references.add(new PolicyReference(reference, type, constraints, null, null));
+                    }
+                }
+
+                results.add(new Result(decision, status, obligations, advices, references,
+                        readAttributesSet(decoder)));
+            } catch (IllegalArgumentException e) {
+                throw new ParsingException("Invalid result in the response frame", e);
+            }
+        }
+        decoder.checkEnd();
+
+        return new ResponseCtx(results, version);
+    }
+
+    /**
+     * Private helper that writes a set of <code>Attributes</code>
+     */
+    private static void writeAttributesSet(Set<Attributes> attributesSet, Encoder encoder) throws IOException {
+
+        encoder.writeVarInt(attributesSet.size());
+        for (Attributes attributes : attributesSet) {
+            encoder.writeIdentifier(attributes.getCategory().toString());
+            encoder.writeOptionalString(attributes.getId());
+            if (attributes.hasContent()) {
+                encoder.writeByte(1);
+                encoder.writeContent(attributes.getContent());
+            } else {
+                encoder.writeByte(0);
+            }
+
+            encoder.writeVarInt(attributes.getAttributes().size());
+            for (Attribute attribute : attributes.getAttributes()) {
+                encoder.writeIdentifier(attribute.getId().toString());
+                encoder.writeIdentifier(attribute.getType().toString());
+                encoder.writeOptionalString(attribute.getIssuer());
+                encoder.writeByte(attribute.isIncludeInResult() ? 1 : 0);
+                encoder.writeVarInt(attribute.getValues().size());
+                for (AttributeValue value : attribute.getValues()) {
+                    writeValue(value, encoder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads a set of <code>Attributes</code>
+     */
+    private static Set<Attributes> readAttributesSet(Decoder decoder) throws ParsingException {
+
+        int count = decoder.readCount();
+        Set<Attributes> attributesSet = new HashSet<Attributes>();
+        for (int i = 0; i < count; i++) {
+            URI category = decoder.readURI();
+            String id = decoder.readOptionalString();
+            Node content = decoder.readByte() == 1 ? decoder.readContent() : null;
+
+            int attributeCount = decoder.readCount();
+            Set<Attribute> attributes = new HashSet<Attribute>();
+            for (int j = 0; j < attributeCount; j++) {
+                URI attributeId = decoder.readURI();
+                URI type = decoder.readURI();
+                String issuer = decoder.readOptionalString();
+                boolean includeInResult = decoder.readByte() == 1;
+                int valueCount = decoder.readCount();
+                if (valueCount < 1) {
+                    throw new ParsingException("Attribute must contain a value");
+                }
+                List<AttributeValue> values = new ArrayList<AttributeValue>(valueCount);
+                for (int k = 0; k < valueCount; k++) {
+                    values.add(readValue(type, decoder));
+                }
+                attributes.add(new Attribute(attributeId, type, issuer, null, values, includeInResult,
+                        XACMLConstants.XACML_VERSION_3_0));
+            }
+            attributesSet.add(new Attributes(category, content, attributes, id));
+        }
+        return attributesSet;
+    }
+
+    /**
+     * Private helper that writes an attribute value in its binary form, if it has one
+     */
+    private static void writeValue(AttributeValue value, Encoder encoder) throws IOException {
+
+        if (value instanceof StringAttribute) {
+            encoder.writeByte(STRING_VALUE);
+            encoder.writeString(((StringAttribute) value).getValue());
+        } else if (value instanceof BooleanAttribute) {
+            encoder.writeByte(((BooleanAttribute) value).getValue() ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof IntegerAttribute) {
+            encoder.writeByte(INTEGER_VALUE);
+            encoder.writeVarLong(((IntegerAttribute) value).getValue());
+        } else if (value instanceof DoubleAttribute) {
+            encoder.writeByte(DOUBLE_VALUE);
+            encoder.writeLong(Double.doubleToLongBits(((DoubleAttribute) value).getValue()));
+        } else if (value instanceof XPathAttribute) {
+            encoder.writeByte(XPATH_VALUE);
+            encoder.writeString(((XPathAttribute) value).getValue());
+            encoder.writeIdentifier(((XPathAttribute) value).getXPathCategory());
+        } else {
+            encoder.writeByte(TEXT_VALUE);
+            encoder.writeString(value.encode());
+        }
+    }
+
+    /**
+     * Private helper that reads an attribute value of the given data type
+     */
+    private static AttributeValue readValue(URI type, Decoder decoder) throws ParsingException {
+
+        int kind = decoder.readByte();
+        switch (kind) {
+            case STRING_VALUE:
+                return new StringAttribute(decoder.readString());
+            case FALSE_VALUE:
+                return BooleanAttribute.getInstance(false);
+            case TRUE_VALUE:
+                return BooleanAttribute.getInstance(true);
+            case INTEGER_VALUE:
+                return new IntegerAttribute(decoder.readVarLong());
+            case DOUBLE_VALUE:
+                return new DoubleAttribute(Double.longBitsToDouble(decoder.readLong()));
+            case XPATH_VALUE:
+                String xPath = decoder.readString();
+                return new XPathAttribute(xPath, decoder.readIdentifier());
+            case TEXT_VALUE:
+                try {
+                    return Balana.getInstance().getAttributeFactory().createValue(type, decoder.readString());
+                } catch (UnknownIdentifierException uie) {
+                    throw new ParsingException(uie.getMessage(), uie);
+                }
+            default:
+                throw new ParsingException("Unknown kind of attribute value " + kind);
+        }
+    }
+
+    /**
+     * Private helper that writes the assignments of an obligation or an advice
+     */
+    private static void writeAssignments(List<AttributeAssignment> assignments, Encoder encoder)
+            throws IOException {
+
+        encoder.writeVarInt(assignments == null ? 0 : assignments.size());
+        if (assignments != null) {
+            for (AttributeAssignment assignment : assignments) {
+                encoder.writeIdentifier(assignment.getAttributeId().toString());
+                encoder.writeIdentifier(assignment.getType().toString());
+                encoder.writeOptionalIdentifier(assignment.getCategory() == null ? null
+                        : assignment.getCategory().toString());
+                encoder.writeOptionalString(assignment.getIssuer());
+                encoder.writeOptionalString(assignment.getContent());
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads the assignments of an obligation or an advice
+     */
+    private static List<AttributeAssignment> readAssignments(Decoder decoder) throws ParsingException {
+
+        int count = decoder.readCount();
+        List<AttributeAssignment> assignments = new ArrayList<AttributeAssignment>(count);
+        for (int i = 0; i < count; i++) {
+            URI attributeId = decoder.readURI();
+            URI type = decoder.readURI();
+            URI category = decoder.readOptionalURI();
+            String issuer = decoder.readOptionalString();
+            String content = decoder.readOptionalString();
+            assignments.add(new AttributeAssignment(attributeId, type, category, content, issuer));
+        }
+        return assignments;
+    }
+
+    /**
+     * Private helper that writes a status, or a marker if there is none
+     */
+    private static void writeStatus(Status status, Encoder encoder) throws IOException {
+
+        if (status == null) {
+            encoder.writeVarInt(0);
+            return;
+        }
+        encoder.writeVarInt(status.getCode().size());
+        for (String code : status.getCode()) {
+            encoder.writeIdentifier(code);
+        }
+        encoder.writeOptionalString(status.getMessage());
+
+        StatusDetail detail = status.getDetail();
+        List<MissingAttributeDetail> missing = detail == null ? null : detail.getMissingAttributeDetails();
+        encoder.writeVarInt(missing == null ? 0 : missing.size());
+        if (missing != null) {
+            for (MissingAttributeDetail attribute : missing) {
+                encoder.writeIdentifier(attribute.getId().toString());
+                encoder.writeIdentifier(attribute.getType().toString());
+                encoder.writeOptionalIdentifier(attribute.getCategory() == null ? null
+                        : attribute.getCategory().toString());
+                encoder.writeOptionalString(attribute.getIssuer());
+                List<AttributeValue> values = attribute.getAttributeValues();
+                encoder.writeVarInt(values == null ? 0 : values.size());
+                if (values != null) {
+                    for (AttributeValue value : values) {
+                        writeValue(value, encoder);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads a status, or returns null if there is none
+     */
+    private static Status readStatus(Decoder decoder) throws ParsingException {
+
+        int codeCount = decoder.readCount();
+        if (codeCount == 0) {
+            return null;
+        }
+        List<String> codes = new ArrayList<String>(codeCount);
+        for (int i = 0; i < codeCount; i++) {
+            codes.add(decoder.readIdentifier());
+        }
+        String message = decoder.readOptionalString();
+
+        int missingCount = decoder.readCount();
+        StatusDetail detail = null;
+        if (missingCount > 0) {
+            List<MissingAttributeDetail> missing = new ArrayList<MissingAttributeDetail>(missingCount);
+            for (int i = 0; i < missingCount; i++) {
+                URI id = decoder.readURI();
+                URI type = decoder.readURI();
+                URI category = decoder.readOptionalURI();
+                String issuer = decoder.readOptionalString();
+                int valueCount = decoder.readCount();
+                List<AttributeValue> values = null;
+                if (valueCount > 0) {
+                    values = new ArrayList<AttributeValue>(valueCount);
+                    for (int j = 0; j < valueCount; j++) {
+                        values.add(readValue(type, decoder));
+                    }
+                }
+                missing.add(new MissingAttributeDetail(id, type, category, issuer, values,
+                        XACMLConstants.XACML_VERSION_3_0));
+            }
+            detail = new StatusDetail(missing);
+        }
+
+        try {
+            return new Status(codes, message, detail);
+        } catch (IllegalArgumentException e) {
+            throw new ParsingException("Invalid status in the response frame", e);
+        }
+    }
+
+    /**
+     * Writes the data of one frame into a growing buffer, and numbers the identifiers that are
+     * not in the dictionary in the order they are first written.
+     */
+    private static class Encoder {
+
+        private byte[] buffer = new byte[256];
+
+        private int length;
+
+        private Map<String, Integer> identifiers;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            // zig-zag, so that small negative numbers stay short
+            long zigZag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[length++] = (byte) zigZag;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeOptionalString(String value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeString(value);
+            }
+        }
+
+        /**
+         * Writes 0 and the text for an identifier that is seen for the first time, and the number
+         * of the identifier plus one otherwise
+         */
+        void writeIdentifier(String value) {
+            Integer id = DICTIONARY_IDS.get(value);
+            if (id == null && identifiers != null) {
+                id = identifiers.get(value);
+            }
+            if (id != null) {
+                writeVarInt(id + 1);
+                return;
+            }
+            if (identifiers == null) {
+                identifiers = new HashMap<String, Integer>();
+            }
+            identifiers.put(value, DICTIONARY.length + identifiers.size());
+            writeVarInt(0);
+            writeString(value);
+        }
+
+        void writeOptionalIdentifier(String value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeIdentifier(value);
+            }
+        }
+
+        void writeContent(Node content) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                Transformer transformer = Utils.getSecuredTransformerFactory().newTransformer();
+                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+                transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+                transformer.transform(new DOMSource(content), new StreamResult(out));
+            } catch (Exception e) {
+                throw new IOException("Content of the attributes can not be written", e);
+            }
+            writeBytes(out.toByteArray());
+        }
+
+        void writeFrame(OutputStream output) throws IOException {
+            output.write(length >>> 24);
+            output.write(length >>> 16);
+            output.write(length >>> 8);
+            output.write(length);
+            output.write(buffer, 0, length);
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Reads the data of one frame, and keeps the identifiers that are not in the dictionary in the
+     * order they are first read.
+     */
+    private static class Decoder {
+
+        private final byte[] buffer;
+
+        private int pos;
+
+        private List<String> identifiers;
+
+        private List<URI> identifierURIs;
+
+        private Decoder(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reads a frame of the given type from the stream, and checks its header
+         */
+        static Decoder readFrame(InputStream input, int type) throws ParsingException, IOException {
+
+            int first = input.read();
+            if (first < 0) {
+                return null;
+            }
+            int length = first << 24;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int b = input.read();
+                if (b < 0) {
+                    throw new ParsingException("Frame length is truncated");
+                }
+                length |= b << shift;
+            }
+            if (length < 2 || length > MAX_FRAME_LENGTH) {
+                throw new ParsingException("Invalid frame length " + length);
+            }
+
+            byte[] buffer = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int count = input.read(buffer, read, length - read);
+                if (count < 0) {
+                    throw new ParsingException("Frame is truncated");
+                }
+                read += count;
+            }
+
+            Decoder decoder = new Decoder(buffer);
+            if (decoder.readByte() != type) {
+                throw new ParsingException("Frame is not a " + (type == REQUEST_FRAME ? "request" : "response"));
+            }
+            int version = decoder.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new ParsingException("Unsupported frame version " + version);
+            }
+            return decoder;
+        }
+
+        int readByte() throws ParsingException {
+            if (pos >= buffer.length) {
+                throw new ParsingException("Frame ended unexpectedly");
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        int readVarInt() throws ParsingException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new ParsingException("Invalid number in the frame");
+        }
+
+        /**
+         * Reads the number of the elements that follow. Each element takes at least one byte, so
+         * a number larger than the rest of the frame is rejected before anything is allocated.
+         */
+        int readCount() throws ParsingException {
+            int count = readVarInt();
+            if (count > buffer.length - pos) {
+                throw new ParsingException("Invalid number of elements " + count + " in the frame");
+            }
+            return count;
+        }
+
+        long readVarLong() throws ParsingException {
+            long zigZag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigZag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+            }
+            throw new ParsingException("Invalid number in the frame");
+        }
+
+        long readLong() throws ParsingException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        String readString() throws ParsingException {
+            int length = readLength();
+            String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        String readOptionalString() throws ParsingException {
+            return readByte() == 0 ? null : readString();
+        }
+
+        String readIdentifier() throws ParsingException {
+            int id = readIdentifierId();
+            return id < DICTIONARY.length ? DICTIONARY[id] : identifiers.get(id - DICTIONARY.length);
+        }
+
+        URI readURI() throws ParsingException {
+            int id = readIdentifierId();
+            if (id < DICTIONARY.length) {
+                return DICTIONARY_URIS[id];
+            }
+            int index = id - DICTIONARY.length;
+            URI uri = identifierURIs.get(index);
+            if (uri == null) {
+                try {
+                    uri = new URI(identifiers.get(index));
+                } catch (URISyntaxException e) {
+                    throw new ParsingException("Invalid identifier " + identifiers.get(index), e);
+                }
+                identifierURIs.set(index, uri);
+            }
+            return uri;
+        }
+
+        URI readOptionalURI() throws ParsingException {
+            return readByte() == 0 ? null : readURI();
+        }
+
+        Node readContent() throws ParsingException {
+            int length = readLength();
+            try {
+                Document doc = Utils.parseSecuredDocument(
+                        new ByteArrayInputStream(buffer, pos, length), false);
+                pos += length;
+                return doc.getDocumentElement();
+            } catch (Exception e) {
+                throw new ParsingException("Content of the attributes can not be read", e);
+            }
+        }
+
+        void checkEnd() throws ParsingException {
+            if (pos != buffer.length) {
+                throw new ParsingException("Unexpected data at the end of the frame");
+            }
+        }
+
+        /**
+         * Reads the number of an identifier, and keeps the text of an identifier that is new
+         */
+        private int readIdentifierId() throws ParsingException {
+            int id = readVarInt();
+            if (id != 0) {
+                id--;
+                if (id >= DICTIONARY.length + (identifiers == null ? 0 : identifiers.size())) {
+                    throw new ParsingException("Unknown identifier number " + id);
+                }
+                return id;
+            }
+            if (identifiers == null) {
+                identifiers = new ArrayList<String>();
+                identifierURIs = new ArrayList<URI>();
+            }
+            identifiers.add(readString());
+            identifierURIs.add(null);
+            return DICTIONARY.length + identifiers.size() - 1;
+        }
+
+        private int readLength() throws ParsingException {
+            int length = readVarInt();
+            if (length > buffer.length - pos) {
+                throw new ParsingException("Frame ended unexpectedly");
+            }
+            return length;
+        }
+    }
+}
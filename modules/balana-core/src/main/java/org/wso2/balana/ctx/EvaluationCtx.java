@@ -35,6 +35,7 @@
 
 package org.wso2.balana.ctx;
 
+import org.wso2.balana.PDPConfig;
 import org.wso2.balana.xacml3.MultipleCtxResult;
 import org.wso2.balana.attr.DateAttribute;
 import org.wso2.balana.attr.DateTimeAttribute;
@@ -155,4 +156,14 @@ public interface EvaluationCtx {
      */
     public MultipleCtxResult getMultipleEvaluationCtx();
 
+    /**
+     * Returns the configuration of the PDP that evaluates the request. Implementations that do
+     * not know it may return null, which is what this default does.
+     *
+     * @return <code>PDPConfig</code> or null
+     */
+    public default PDPConfig getPdpConfig() {
+        return null;
+    }
+
 }
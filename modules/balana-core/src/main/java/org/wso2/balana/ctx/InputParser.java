@@ -115,31 +115,29 @@ public class InputParser implements ErrorHandler {
         NodeList nodes = null;
 
         try {
-            DocumentBuilderFactory factory = Utils.getSecuredDocumentBuilderFactory();
-            factory.setIgnoringComments(true);
-
-            DocumentBuilder builder = null;
-
-            // as of 1.2, we always are namespace aware
-            factory.setNamespaceAware(true);
+            Document doc;
 
             if (ipReference == null) {
-                // we're not validating
-                factory.setValidating(false);
-
-                builder = factory.newDocumentBuilder();
+                // we're not validating, so a pooled namespace aware builder is borrowed
+                doc = Utils.parseSecuredDocument(input, true);
             } else {
+                DocumentBuilderFactory factory = Utils.getSecuredDocumentBuilderFactory();
+                factory.setIgnoringComments(true);
+
+                // as of 1.2, we always are namespace aware
+                factory.setNamespaceAware(true);
+
                 // we are validating
                 factory.setValidating(true);
 
                 factory.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
                 factory.setAttribute(JAXP_SCHEMA_SOURCE, ipReference.schemaFile);
 
-                builder = factory.newDocumentBuilder();
+                DocumentBuilder builder = factory.newDocumentBuilder();
                 builder.setErrorHandler(ipReference);
+                doc = builder.parse(input);
             }
 
-            Document doc = builder.parse(input);
             nodes = doc.getElementsByTagName(rootTag);
         } catch (Exception e) {
             throw new ParsingException("Error tring to parse " + rootTag + "Type", e);
@@ -0,0 +1,462 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.ctx;
+
+import org.wso2.balana.ParsingException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A small pull reader over JSON text, used by <code>JSONRequestParser</code>. The caller walks the
+ * document token by token with <code>peek</code> and the <code>begin</code>, <code>end</code> and
+ * <code>next</code> methods, so no tree is built for the document. Names and strings are unescaped,
+ * numbers are returned as the text they were written with.
+ */
+class JSONReader {
+
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int BOOLEAN = 8;
+    static final int NULL = 9;
+    static final int END_DOCUMENT = 10;
+
+    private static final int NONE = 0;
+
+    // states of the enclosing array, object or document
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private static final String[] TOKENS = {"nothing", "'{'", "'}'", "'['", "']'", "a name",
+            "a string", "a number", "a boolean", "null", "the end of the document"};
+
+    private final Reader in;
+
+    private final char[] buffer = new char[4096];
+
+    private int pos;
+
+    private int limit;
+
+    /**
+     * number of characters read before the current buffer, used in error messages
+     */
+    private long offset;
+
+    private int[] stack = new int[32];
+
+    private int depth;
+
+    private int peeked = NONE;
+
+    /**
+     * value of a peeked name, string, number or boolean
+     */
+    private String value;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Creates a reader over the given character stream. The stream is buffered by this reader.
+     *
+     * @param in JSON text
+     */
+    JSONReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the kind of the next token, without consuming it
+     *
+     * @return one of the token constants of this class
+     * @throws ParsingException if the text is not valid JSON
+     */
+    int peek() throws ParsingException {
+
+        if (peeked != NONE) {
+            return peeked;
+        }
+
+        int state = stack[depth - 1];
+        if (state == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+        } else if (state == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return peeked = END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Expected ',' or ']'");
+            }
+        } else if (state == EMPTY_OBJECT || state == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if (c == '}') {
+                return peeked = END_OBJECT;
+            }
+            if (state == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected a name");
+            }
+            value = readString();
+            return peeked = NAME;
+        } else if (state == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (state == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else {
+            if (nextNonWhitespace() == -1) {
+                return peeked = END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected data after the document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return peeked = BEGIN_OBJECT;
+            case '[':
+                return peeked = BEGIN_ARRAY;
+            case ']':
+                if (state == EMPTY_ARRAY) {
+                    return peeked = END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '"':
+                value = readString();
+                return peeked = STRING;
+            case 't':
+                readLiteral("true");
+                return peeked = BOOLEAN;
+            case 'f':
+                readLiteral("false");
+                return peeked = BOOLEAN;
+            case 'n':
+                readLiteral("null");
+                return peeked = NULL;
+            case -1:
+                throw syntaxError("Unexpected end of the document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    value = readNumber((char) c);
+                    return peeked = NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Returns true if the current array or object has another element
+     *
+     * @return true if there is another element
+     * @throws ParsingException if the text is not valid JSON
+     */
+    boolean hasNext() throws ParsingException {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    void beginObject() throws ParsingException {
+        expect(BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws ParsingException {
+        expect(END_OBJECT);
+        depth--;
+    }
+
+    void beginArray() throws ParsingException {
+        expect(BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws ParsingException {
+        expect(END_ARRAY);
+        depth--;
+    }
+
+    String nextName() throws ParsingException {
+        expect(NAME);
+        return value;
+    }
+
+    String nextString() throws ParsingException {
+        expect(STRING);
+        return value;
+    }
+
+    /**
+     * Returns the next number, as it was written in the document
+     *
+     * @return text of the number
+     * @throws ParsingException if the next token is not a number
+     */
+    String nextNumber() throws ParsingException {
+        expect(NUMBER);
+        return value;
+    }
+
+    boolean nextBoolean() throws ParsingException {
+        expect(BOOLEAN);
+        return "true".equals(value);
+    }
+
+    void nextNull() throws ParsingException {
+        expect(NULL);
+    }
+
+    /**
+     * Skips the next value, including all of its elements if it is an array or an object
+     *
+     * @throws ParsingException if the text is not valid JSON
+     */
+    void skipValue() throws ParsingException {
+
+        int count = 0;
+        do {
+            int p = peek();
+            if (p == BEGIN_ARRAY) {
+                beginArray();
+                count++;
+            } else if (p == BEGIN_OBJECT) {
+                beginObject();
+                count++;
+            } else if (p == END_ARRAY) {
+                endArray();
+                count--;
+            } else if (p == END_OBJECT) {
+                endObject();
+                count--;
+            } else if (p == END_DOCUMENT) {
+                throw syntaxError("Unexpected end of the document");
+            } else {
+                peeked = NONE;
+            }
+        } while (count != 0);
+    }
+
+    /**
+     * Creates an exception for invalid JSON at the current position
+     *
+     * @param message what is wrong
+     * @return <code>ParsingException</code> to throw
+     */
+    ParsingException syntaxError(String message) {
+        return new ParsingException(message + " at character " + (offset + pos) + " of the JSON document");
+    }
+
+    private void expect(int token) throws ParsingException {
+        int p = peek();
+        if (p != token) {
+            throw syntaxError("Expected " + TOKENS[token] + " but found " + TOKENS[p]);
+        }
+        peeked = NONE;
+    }
+
+    private void push(int state) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = state;
+    }
+
+    private int read() throws ParsingException {
+        if (pos == limit) {
+            offset += limit;
+            pos = 0;
+            try {
+                limit = in.read(buffer, 0, buffer.length);
+            } catch (IOException e) {
+                throw new ParsingException("JSON document can not be read", e);
+            }
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+    private int nextNonWhitespace() throws ParsingException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    private void readLiteral(String literal) throws ParsingException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError("Expected " + literal);
+            }
+        }
+        value = literal;
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote was read
+     */
+    private String readString() throws ParsingException {
+
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return text.toString();
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text.append((char) c);
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        int unicode = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw syntaxError("Invalid unicode escape");
+                            }
+                            unicode = (unicode << 4) | digit;
+                        }
+                        text.append((char) unicode);
+                        break;
+                    default:
+                        throw syntaxError("Invalid escape sequence");
+                }
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c < 0x20) {
+                throw syntaxError("Unescaped control character in string");
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a number whose first character was read. The character after the number
+     * is left to be read again.
+     */
+    private String readNumber(char first) throws ParsingException {
+
+        text.setLength(0);
+        text.append(first);
+        while (true) {
+            int c = read();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append((char) c);
+            } else {
+                if (c != -1) {
+                    pos--;
+                }
+                break;
+            }
+        }
+
+        if (!isNumber(text)) {
+            throw syntaxError("Invalid number " + text);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks the grammar of a JSON number: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    static boolean isNumber(CharSequence number) {
+
+        int i = 0;
+        int length = number.length();
+        if (i < length && number.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && number.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            while (i < length && Character.isDigit(number.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && number.charAt(i) == '.') {
+            int start = ++i;
+            while (i < length && Character.isDigit(number.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (number.charAt(i) == 'e' || number.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (number.charAt(i) == '+' || number.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isDigit(number.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+}
@@ -0,0 +1,501 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.ctx;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.wso2.balana.Balana;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.UnknownIdentifierException;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AnyURIAttribute;
+import org.wso2.balana.attr.AttributeFactory;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.Base64BinaryAttribute;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.DNSNameAttribute;
+import org.wso2.balana.attr.DateAttribute;
+import org.wso2.balana.attr.DateTimeAttribute;
+import org.wso2.balana.attr.DayTimeDurationAttribute;
+import org.wso2.balana.attr.DoubleAttribute;
+import org.wso2.balana.attr.HexBinaryAttribute;
+import org.wso2.balana.attr.IPAddressAttribute;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.RFC822NameAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.attr.TimeAttribute;
+import org.wso2.balana.attr.X500NameAttribute;
+import org.wso2.balana.attr.YearMonthDurationAttribute;
+import org.wso2.balana.attr.xacml3.XPathAttribute;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.AttributesReference;
+import org.wso2.balana.xacml3.MultiRequests;
+import org.wso2.balana.xacml3.RequestDefaults;
+import org.wso2.balana.xacml3.RequestReference;
+import org.xml.sax.InputSource;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses requests written in the JSON Profile of XACML 3.0 into XACML 3.0 <code>RequestCtx</code>
+ * objects. The JSON text is read as a stream of tokens and the <code>Attributes</code> and
+ * <code>Attribute</code> objects are created from it directly, so neither XML text nor a DOM of
+ * the request is built. Only the <code>Content</code> of a category, which holds XML for XPath,
+ * is parsed into a DOM.
+ * <p>
+ * The shorthand category names (<code>AccessSubject</code>, <code>Resource</code>, ...) and data
+ * type names (<code>string</code>, <code>integer</code>, ...) of the profile are supported, and the
+ * data type of an attribute without a <code>DataType</code> is inferred from its JSON values.
+ * Namespaces of XPath expression values are not supported; the namespaces of the content are
+ * used when the expression is evaluated, as for XML requests.
+ */
+public class JSONRequestParser {
+
+    /**
+     * category identifiers, by the shorthand names of the JSON profile
+     */
+    private static final Map<String, URI> categories;
+
+    /**
+     * data type identifiers, by the shorthand names of the JSON profile
+     */
+    private static final Map<String, URI> dataTypes;
+
+    private static final URI STRING_TYPE = URI.create(StringAttribute.identifier);
+
+    private static final URI BOOLEAN_TYPE = URI.create(BooleanAttribute.identifier);
+
+    private static final URI INTEGER_TYPE = URI.create(IntegerAttribute.identifier);
+
+    private static final URI DOUBLE_TYPE = URI.create(DoubleAttribute.identifier);
+
+    private static final URI XPATH_TYPE = URI.create(XPathAttribute.identifier);
+
+    static {
+        Map<String, URI> map = new HashMap<String, URI>();
+        map.put("AccessSubject", URI.create(XACMLConstants.SUBJECT_CATEGORY));
+        map.put("Action", URI.create(XACMLConstants.ACTION_CATEGORY));
+        map.put("Resource", URI.create(XACMLConstants.RESOURCE_CATEGORY));
+        map.put("Environment", URI.create(XACMLConstants.ENT_CATEGORY));
+        map.put("RecipientSubject", URI.create("urn:oasis:names:tc:xacml:1.0:subject-category:recipient-subject"));
+        map.put("IntermediarySubject",
+                URI.create("urn:oasis:names:tc:xacml:1.0:subject-category:intermediary-subject"));
+        map.put("Codebase", URI.create("urn:oasis:names:tc:xacml:1.0:subject-category:codebase"));
+        map.put("RequestingMachine",
+                URI.create("urn:oasis:names:tc:xacml:1.0:subject-category:requesting-machine"));
+        categories = Collections.unmodifiableMap(map);
+
+        map = new HashMap<String, URI>();
+        map.put("string", STRING_TYPE);
+        map.put("boolean", BOOLEAN_TYPE);
+        map.put("integer", INTEGER_TYPE);
+        map.put("double", DOUBLE_TYPE);
+        map.put("time", URI.create(TimeAttribute.identifier));
+        map.put("date", URI.create(DateAttribute.identifier));
+        map.put("dateTime", URI.create(DateTimeAttribute.identifier));
+        map.put("dayTimeDuration", URI.create(DayTimeDurationAttribute.identifier));
+        map.put("yearMonthDuration", URI.create(YearMonthDurationAttribute.identifier));
+        map.put("anyURI", URI.create(AnyURIAttribute.identifier));
+        map.put("hexBinary", URI.create(HexBinaryAttribute.identifier));
+        map.put("base64Binary", URI.create(Base64BinaryAttribute.identifier));
+        map.put("rfc822Name", URI.create(RFC822NameAttribute.identifier));
+        map.put("x500Name", URI.create(X500NameAttribute.identifier));
+        map.put("ipAddress", URI.create(IPAddressAttribute.identifier));
+        map.put("dnsName", URI.create(DNSNameAttribute.identifier));
+        map.put("xpathExpression", XPATH_TYPE);
+        dataTypes = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Parses a JSON request from the given stream, which must be UTF-8 encoded.
+     *
+     * @param input a stream providing the JSON data
+     * @return <code>RequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static RequestCtx parse(InputStream input) throws ParsingException {
+        return parse(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a JSON request from the given String.
+     *
+     * @param request the JSON data
+     * @return <code>RequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static RequestCtx parse(String request) throws ParsingException {
+        return parse(new StringReader(request));
+    }
+
+    /**
+     * Parses a JSON request from the given character stream. The reader is not closed.
+     *
+     * @param input a reader providing the JSON data
+     * @return <code>RequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static RequestCtx parse(Reader input) throws ParsingException {
+
+        JSONReader reader = new JSONReader(input);
+        RequestCtx request = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("Request".equals(reader.nextName())) {
+                if (request != null) {
+                    throw new ParsingException("Too many Request objects are defined.");
+                }
+                request = parseRequest(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (reader.peek() != JSONReader.END_DOCUMENT) {
+            throw reader.syntaxError("Unexpected data after the request");
+        }
+        if (request == null) {
+            throw new ParsingException("JSON request does not contain a Request object");
+        }
+        return request;
+    }
+
+    /**
+     * Private helper that parses the <code>Request</code> object
+     */
+    private static RequestCtx parseRequest(JSONReader reader) throws ParsingException {
+
+        Set<Attributes> attributesElements = new HashSet<Attributes>();
+        boolean returnPolicyIdList = false;
+        boolean combinedDecision = false;
+        MultiRequests multiRequests = null;
+        RequestDefaults defaults = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (XACMLConstants.RETURN_POLICY_LIST.equals(name)) {
+                returnPolicyIdList = reader.nextBoolean();
+            } else if (XACMLConstants.COMBINE_DECISION.equals(name)) {
+                combinedDecision = reader.nextBoolean();
+            } else if ("XPathVersion".equals(name)) {
+                defaults = new RequestDefaults(reader.nextString());
+            } else if ("Category".equals(name)) {
+                parseCategories(reader, null, attributesElements);
+            } else if (categories.containsKey(name)) {
+                parseCategories(reader, categories.get(name), attributesElements);
+            } else if (XACMLConstants.MULTI_REQUESTS.equals(name)) {
+                multiRequests = parseMultiRequests(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (attributesElements.isEmpty()) {
+            throw new ParsingException("Request must contain at least one Category");
+        }
+
+        return new RequestCtx(null, attributesElements, returnPolicyIdList, combinedDecision,
+                multiRequests, defaults);
+    }
+
+    /**
+     * Private helper that parses a category object, or an array of them. A shorthand category
+     * is given when the objects were found under a shorthand name.
+     */
+    private static void parseCategories(JSONReader reader, URI shorthand, Set<Attributes> attributesElements)
+            throws ParsingException {
+
+        if (reader.peek() == JSONReader.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                attributesElements.add(parseCategory(reader, shorthand));
+            }
+            reader.endArray();
+        } else {
+            attributesElements.add(parseCategory(reader, shorthand));
+        }
+    }
+
+    /**
+     * Private helper that parses a category object into an <code>Attributes</code>
+     */
+    private static Attributes parseCategory(JSONReader reader, URI shorthand) throws ParsingException {
+
+        URI category = shorthand;
+        String id = null;
+        Node content = null;
+        Set<Attribute> attributes = new HashSet<Attribute>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("CategoryId".equals(name)) {
+                category = getIdentifier(reader.nextString(), categories, "CategoryId");
+            } else if ("Id".equals(name)) {
+                id = reader.nextString();
+            } else if (XACMLConstants.ATTRIBUTES_CONTENT.equals(name)) {
+                content = parseContent(reader.nextString());
+            } else if ("Attribute".equals(name)) {
+                if (reader.peek() == JSONReader.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        attributes.add(parseAttribute(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    attributes.add(parseAttribute(reader));
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (category == null) {
+            throw new ParsingException("Error parsing required CategoryId in Category");
+        }
+        return new Attributes(category, content, attributes, id);
+    }
+
+    /**
+     * Private helper that parses an attribute object. The values are kept as text until the whole
+     * object is read, as the data type may follow them.
+     */
+    private static Attribute parseAttribute(JSONReader reader) throws ParsingException {
+
+        URI id = null;
+        URI type = null;
+        String issuer = null;
+        boolean includeInResult = false;
+        List<String> values = new ArrayList<String>();
+        List<String> xPathCategories = new ArrayList<String>();
+        URI inferredType = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("AttributeId".equals(name)) {
+                id = getIdentifier(reader.nextString(), null, "AttributeId");
+            } else if ("DataType".equals(name)) {
+                type = getIdentifier(reader.nextString(), dataTypes, "DataType");
+            } else if ("Issuer".equals(name)) {
+                issuer = reader.nextString();
+            } else if ("IncludeInResult".equals(name)) {
+                includeInResult = reader.nextBoolean();
+            } else if ("Value".equals(name)) {
+                if (reader.peek() == JSONReader.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        inferredType = parseValue(reader, values, xPathCategories, inferredType);
+                    }
+                    reader.endArray();
+                } else {
+                    inferredType = parseValue(reader, values, xPathCategories, inferredType);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null) {
+            throw new ParsingException("Error parsing required attribute AttributeId in AttributeType");
+        }
+        // make sure we got a value
+        if (values.size() < 1) {
+            throw new ParsingException("Attribute must contain a value");
+        }
+        if (type == null) {
+            type = inferredType;
+        }
+
+        AttributeFactory attributeFactory = Balana.getInstance().getAttributeFactory();
+        List<AttributeValue> attributeValues = new ArrayList<AttributeValue>(values.size());
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                String xPathCategory = xPathCategories.get(i);
+                String[] params = xPathCategory == null ? null : new String[]{xPathCategory};
+                attributeValues.add(attributeFactory.createValue(type, values.get(i), params));
+            }
+        } catch (UnknownIdentifierException uie) {
+            throw new ParsingException(uie.getMessage(), uie);
+        }
+
+        return new Attribute(id, type, issuer, null, attributeValues, includeInResult,
+                XACMLConstants.XACML_VERSION_3_0);
+    }
+
+    /**
+     * Private helper that reads a single JSON value of an attribute as text. Returns the data type
+     * inferred from the values read so far, where integer and double values together are doubles.
+     */
+    private static URI parseValue(JSONReader reader, List<String> values, List<String> xPathCategories,
+                                  URI inferredType) throws ParsingException {
+
+        URI type;
+        String xPathCategory = null;
+        int token = reader.peek();
+        if (token == JSONReader.STRING) {
+            values.add(reader.nextString());
+            type = STRING_TYPE;
+        } else if (token == JSONReader.BOOLEAN) {
+            values.add(String.valueOf(reader.nextBoolean()));
+            type = BOOLEAN_TYPE;
+        } else if (token == JSONReader.NUMBER) {
+            String number = reader.nextNumber();
+            values.add(number);
+            type = isIntegral(number) ? INTEGER_TYPE : DOUBLE_TYPE;
+        } else if (token == JSONReader.BEGIN_OBJECT) {
+            String xPath = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("XPathCategory".equals(name)) {
+                    xPathCategory = reader.nextString();
+                } else if ("XPath".equals(name)) {
+                    xPath = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (xPath == null || xPathCategory == null) {
+                throw new ParsingException("XPath expression value must have XPath and XPathCategory");
+            }
+            values.add(xPath);
+            type = XPATH_TYPE;
+        } else {
+            throw reader.syntaxError("Invalid attribute value");
+        }
+        xPathCategories.add(xPathCategory);
+
+        if (inferredType == null || inferredType.equals(type)) {
+            return type;
+        } else if ((inferredType.equals(INTEGER_TYPE) || inferredType.equals(DOUBLE_TYPE))
+                && (type.equals(INTEGER_TYPE) || type.equals(DOUBLE_TYPE))) {
+            return DOUBLE_TYPE;
+        }
+        throw new ParsingException("Values of an attribute without a DataType must be of the same type");
+    }
+
+    /**
+     * Private helper that parses the XML of a category <code>Content</code>
+     */
+    private static Node parseContent(String content) throws ParsingException {
+
+        try {
+            Document doc = Utils.parseSecuredDocument(new InputSource(new StringReader(content)), false);
+            return doc.getDocumentElement();
+        } catch (Exception e) {
+            throw new ParsingException("Error parsing Content of the Category", e);
+        }
+    }
+
+    /**
+     * Private helper that parses the <code>MultiRequests</code> object
+     */
+    private static MultiRequests parseMultiRequests(JSONReader reader) throws ParsingException {
+
+        Set<RequestReference> requestReferences = new HashSet<RequestReference>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"RequestReference".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Set<AttributesReference> attributesReferences = new HashSet<AttributesReference>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!"ReferenceId".equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        AttributesReference attributesReference = new AttributesReference();
+                        attributesReference.setId(reader.nextString());
+                        attributesReferences.add(attributesReference);
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+
+                if (attributesReferences.isEmpty()) {
+                    throw new ParsingException("RequestReference must contain at least one ReferenceId");
+                }
+                RequestReference requestReference = new RequestReference();
+                requestReference.setReferences(attributesReferences);
+                requestReferences.add(requestReference);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+
+        if (requestReferences.isEmpty()) {
+            throw new ParsingException("MultiRequests must contain at least one RequestReference");
+        }
+        return new MultiRequests(requestReferences);
+    }
+
+    /**
+     * Private helper that returns the identifier of a shorthand name, or creates one
+     */
+    private static URI getIdentifier(String value, Map<String, URI> shorthands, String name)
+            throws ParsingException {
+
+        if (shorthands != null) {
+            URI identifier = shorthands.get(value);
+            if (identifier != null) {
+                return identifier;
+            }
+        }
+        try {
+            return new URI(value);
+        } catch (URISyntaxException e) {
+            throw new ParsingException("Error parsing " + name + " " + value, e);
+        }
+    }
+
+    private static boolean isIntegral(String number) {
+        return number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.ctx;
+
+import org.wso2.balana.ObligationResult;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.DoubleAttribute;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.xacml3.Result;
+import org.wso2.balana.xacml3.Advice;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.Obligation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes a <code>ResponseCtx</code> in the JSON Profile of XACML 3.0. The JSON is written straight
+ * to a <code>Writer</code>, result by result, without building XML or a tree of the response.
+ * <p>
+ * Values of the boolean, integer and double data types are written as JSON booleans and numbers,
+ * all other values as strings, and the <code>DataType</code> is left out for strings. A
+ * <code>StatusDetail</code> is only written for missing attributes, as other details only have an
+ * XML form. Obligations and advice of XACML 2.0 results are not written.
+ */
+public class JSONResponseEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Encodes the given response into JSON
+     *
+     * @param response the response to encode
+     * @return the JSON-encoded response as <code>String</code>
+     */
+    public static String encode(ResponseCtx response) {
+
+        StringWriter writer = new StringWriter();
+        try {
+            encode(response, writer);
+        } catch (IOException e) {
+            // a StringWriter does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Encodes the given response into JSON and writes it out to the provided
+     * <code>OutputStream</code> in UTF-8. The stream is flushed but not closed.
+     *
+     * @param response the response to encode
+     * @param output stream into which the JSON-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public static void encode(ResponseCtx response, OutputStream output) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        encode(response, writer);
+        writer.flush();
+    }
+
+    /**
+     * Encodes the given response into JSON and writes it out to the provided <code>Writer</code>.
+     * The writer is not flushed or closed.
+     *
+     * @param response the response to encode
+     * @param writer character stream into which the JSON-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public static void encode(ResponseCtx response, Writer writer) throws IOException {
+
+        writer.write("{\"Response\":[");
+        boolean first = true;
+        for (AbstractResult result : response.getResults()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            encodeResult(result, writer);
+        }
+        writer.write("]}");
+    }
+
+    /**
+     * Private helper that encodes a single result
+     */
+    private static void encodeResult(AbstractResult result, Writer writer) throws IOException {
+
+        int decision = result.getDecision();
+        writer.write("{\"Decision\":\"");
+        // the extended indeterminate values are returned as "Indeterminate"
+        if (decision == AbstractResult.DECISION_INDETERMINATE_DENY
+                || decision == AbstractResult.DECISION_INDETERMINATE_PERMIT
+                || decision == AbstractResult.DECISION_INDETERMINATE_DENY_OR_PERMIT) {
+            writer.write(AbstractResult.DECISIONS[AbstractResult.DECISION_INDETERMINATE]);
+        } else {
+            writer.write(AbstractResult.DECISIONS[decision]);
+        }
+        writer.write('"');
+
+        if (result.getStatus() != null) {
+            writer.write(",\"Status\":");
+            encodeStatus(result.getStatus(), writer);
+        }
+
+        List<ObligationResult> obligations = result.getObligations();
+        if (obligations != null && !obligations.isEmpty()) {
+            writer.write(",\"Obligations\":[");
+            boolean first = true;
+            for (ObligationResult obligation : obligations) {
+                if (obligation instanceof Obligation) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    encodeObligation(((Obligation) obligation).getObligationId(),
+                            ((Obligation) obligation).getAssignments(), writer);
+                }
+            }
+            writer.write(']');
+        }
+
+        List<Advice> advices = result.getAdvices();
+        if (advices != null && !advices.isEmpty()) {
+            writer.write(",\"AssociatedAdvice\":[");
+            boolean first = true;
+            for (Advice advice : advices) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                encodeObligation(advice.getAdviceId(), advice.getAssignments(), writer);
+            }
+            writer.write(']');
+        }
+
+        if (result instanceof Result) {
+            Set<Attributes> attributesSet = ((Result) result).getAttributes();
+            if (attributesSet != null && !attributesSet.isEmpty()) {
+                writer.write(",\"Category\":[");
+                boolean first = true;
+                for (Attributes attributes : attributesSet) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    encodeCategory(attributes, writer);
+                }
+                writer.write(']');
+            }
+
+            Set<PolicyReference> policyReferences = ((Result) result).getPolicyReferences();
+            if (policyReferences != null && !policyReferences.isEmpty()) {
+                writer.write(",\"PolicyIdentifierList\":{");
+                boolean hasPolicies = encodePolicyReferences(policyReferences,
+                        PolicyReference.POLICY_REFERENCE, "PolicyIdReference", false, writer);
+                encodePolicyReferences(policyReferences, PolicyReference.POLICYSET_REFERENCE,
+                        "PolicySetIdReference", hasPolicies, writer);
+                writer.write('}');
+            }
+        }
+
+        writer.write('}');
+    }
+
+    /**
+     * Private helper that encodes a status, with its nested status codes
+     */
+    private static void encodeStatus(Status status, Writer writer) throws IOException {
+
+        writer.write("{\"StatusCode\":");
+        Iterator<String> codes = status.getCode().iterator();
+        int depth = 0;
+        while (codes.hasNext()) {
+            if (depth > 0) {
+                writer.write(",\"StatusCode\":");
+            }
+            writer.write("{\"Value\":");
+            writeString(codes.next(), writer);
+            depth++;
+        }
+        for (int i = 0; i < depth; i++) {
+            writer.write('}');
+        }
+
+        if (status.getMessage() != null) {
+            writer.write(",\"StatusMessage\":");
+            writeString(status.getMessage(), writer);
+        }
+
+        StatusDetail detail = status.getDetail();
+        if (detail != null && detail.getMissingAttributeDetails() != null
+                && !detail.getMissingAttributeDetails().isEmpty()) {
+            writer.write(",\"StatusDetail\":{\"MissingAttributeDetail\":[");
+            boolean first = true;
+            for (MissingAttributeDetail missing : detail.getMissingAttributeDetails()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write('{');
+                writeMember("AttributeId", missing.getId(), writer, false);
+                if (missing.getAttributeValues() != null && !missing.getAttributeValues().isEmpty()) {
+                    writer.write(",\"Value\":");
+                    encodeValues(missing.getAttributeValues(), missing.getType(), writer);
+                }
+                writeMember("Issuer", missing.getIssuer(), writer, true);
+                encodeDataType(missing.getType(), writer);
+                writeMember("Category", missing.getCategory(), writer, true);
+                writer.write('}');
+            }
+            writer.write("]}");
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Private helper that encodes an obligation or an advice
+     */
+    private static void encodeObligation(URI id, List<AttributeAssignment> assignments, Writer writer)
+            throws IOException {
+
+        writer.write('{');
+        writeMember("Id", id, writer, false);
+        if (assignments != null && !assignments.isEmpty()) {
+            writer.write(",\"AttributeAssignment\":[");
+            boolean first = true;
+            for (AttributeAssignment assignment : assignments) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write('{');
+                writeMember("AttributeId", assignment.getAttributeId(), writer, false);
+                writer.write(",\"Value\":");
+                writeValue(assignment.getContent() == null ? "" : assignment.getContent(),
+                        assignment.getType(), writer);
+                writeMember("Category", assignment.getCategory(), writer, true);
+                encodeDataType(assignment.getType(), writer);
+                writeMember("Issuer", assignment.getIssuer(), writer, true);
+                writer.write('}');
+            }
+            writer.write(']');
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Private helper that encodes the attributes that are included in a result
+     */
+    private static void encodeCategory(Attributes attributes, Writer writer) throws IOException {
+
+        writer.write('{');
+        writeMember("CategoryId", attributes.getCategory(), writer, false);
+        writer.write(",\"Attribute\":[");
+        boolean first = true;
+        for (Attribute attribute : attributes.getAttributes()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write('{');
+            writeMember("AttributeId", attribute.getId(), writer, false);
+            writer.write(",\"Value\":");
+            encodeValues(attribute.getValues(), attribute.getType(), writer);
+            writeMember("Issuer", attribute.getIssuer(), writer, true);
+            encodeDataType(attribute.getType(), writer);
+            writer.write('}');
+        }
+        writer.write("]}");
+    }
+
+    /**
+     * Private helper that encodes the references of one type. Returns true if any was written.
+     */
+    private static boolean encodePolicyReferences(Set<PolicyReference> references, int type, String name,
+                                                  boolean separator, Writer writer) throws IOException {
+
+        boolean first = true;
+        for (PolicyReference reference : references) {
+            if (reference.getReferenceType() != type) {
+                continue;
+            }
+            if (first) {
+                if (separator) {
+                    writer.write(',');
+                }
+                writer.write('"');
+                writer.write(name);
+                writer.write("\":[");
+            } else {
+                writer.write(',');
+            }
+            first = false;
+            writer.write('{');
+            writeMember("Id", reference.getReference(), writer, false);
+            VersionConstraints constraints = reference.getConstraints();
+            if (constraints != null) {
+                writeMember("Version", constraints.getVersionConstraint(), writer, true);
+                writeMember("EarliestVersion", constraints.getEarliestConstraint(), writer, true);
+                writeMember("LatestVersion", constraints.getLatestConstraint(), writer, true);
+            }
+            writer.write('}');
+        }
+        if (!first) {
+            writer.write(']');
+        }
+        return !first;
+    }
+
+    /**
+     * Private helper that encodes one value as it is, or more values as an array
+     */
+    private static void encodeValues(List<AttributeValue> values, URI type, Writer writer)
+            throws IOException {
+
+        if (values.size() == 1) {
+            writeValue(values.get(0).encode(), type, writer);
+            return;
+        }
+        writer.write('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(values.get(i).encode(), type, writer);
+        }
+        writer.write(']');
+    }
+
+    private static void encodeDataType(URI type, Writer writer) throws IOException {
+        if (type != null && !StringAttribute.identifier.equals(type.toString())) {
+            writeMember("DataType", type, writer, true);
+        }
+    }
+
+    /**
+     * Private helper that writes a value as a JSON boolean or number if its data type allows it,
+     * and as a string otherwise
+     */
+    private static void writeValue(String value, URI type, Writer writer) throws IOException {
+
+        String dataType = type == null ? null : type.toString();
+        if (BooleanAttribute.identifier.equals(dataType)) {
+            if ("true".equals(value) || "false".equals(value)) {
+                writer.write(value);
+                return;
+            }
+        } else if (IntegerAttribute.identifier.equals(dataType) || DoubleAttribute.identifier.equals(dataType)) {
+            if (JSONReader.isNumber(value)) {
+                writer.write(value);
+                return;
+            }
+        }
+        writeString(value, writer);
+    }
+
+    /**
+     * Private helper that writes a name and a value, which is skipped if it is null
+     */
+    private static void writeMember(String name, Object value, Writer writer, boolean separator)
+            throws IOException {
+
+        if (value == null) {
+            return;
+        }
+        if (separator) {
+            writer.write(',');
+        }
+        writer.write('"');
+        writer.write(name);
+        writer.write("\":");
+        writeString(value.toString(), writer);
+    }
+
+    /**
+     * Private helper that writes a JSON string, escaping the characters that need it
+     */
+    private static void writeString(String value, Writer writer) throws IOException {
+
+        writer.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            writer.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write("\\u");
+                    writer.write(HEX[(c >> 12) & 0xf]);
+                    writer.write(HEX[(c >> 8) & 0xf]);
+                    writer.write(HEX[(c >> 4) & 0xf]);
+                    writer.write(HEX[c & 0xf]);
+            }
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+}
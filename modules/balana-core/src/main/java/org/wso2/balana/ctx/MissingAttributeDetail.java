@@ -200,6 +200,51 @@ public class MissingAttributeDetail {
         return new MissingAttributeDetail(id, type, category, issuer, values, version);
     }
 
+    /**
+     * Returns the id of the missing attribute
+     *
+     * @return the attribute id
+     */
+    public URI getId() {
+        return id;
+    }
+
+    /**
+     * Returns the data type of the missing attribute
+     *
+     * @return the data type
+     */
+    public URI getType() {
+        return type;
+    }
+
+    /**
+     * Returns the category of the missing attribute, or null if there is none
+     *
+     * @return the category
+     */
+    public URI getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the issuer of the missing attribute, or null if there is none
+     *
+     * @return the issuer
+     */
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Returns the values of the missing attribute, or null if there are none
+     *
+     * @return a <code>List</code> of <code>AttributeValue</code>
+     */
+    public List<AttributeValue> getAttributeValues() {
+        return attributeValues;
+    }
+
     /**
      * Returns the encoded String from MissingAttributeDetail
      *
@@ -29,11 +29,10 @@ import org.wso2.balana.XACMLConstants;
 import org.wso2.balana.ctx.xacml3.RequestCtx;
 import org.wso2.balana.utils.Utils;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 
 /**
  * Factory that creates the AbstractRequestCtx
@@ -138,6 +137,57 @@ public class RequestCtxFactory {
     }
 
 
+    /**
+     *  Returns instance of <code>AbstractRequestCtx</code> based one the XACML version, reading the
+     *  request with a streaming parser. XACML 3.0 requests are created without building a DOM of the
+     *  whole request, see <code>StreamingRequestParser</code>.
+     *
+     * @param input a stream providing the XML data
+     * @return <code>AbstractRequestCtx</code> object
+     * @throws ParsingException  if the request is invalid
+     */
+    public AbstractRequestCtx getStreamingRequestCtx(InputStream input) throws ParsingException {
+        return StreamingRequestParser.parse(input);
+    }
+
+    /**
+     *  Returns instance of <code>AbstractRequestCtx</code> based one the XACML version, reading the
+     *  request with a streaming parser. XACML 3.0 requests are created without building a DOM of the
+     *  whole request, see <code>StreamingRequestParser</code>.
+     *
+     * @param request  the String to parse for the <code>AbstractRequestCtx</code>
+     * @return <code>AbstractRequestCtx</code> object
+     * @throws ParsingException  if the request is invalid
+     */
+    public AbstractRequestCtx getStreamingRequestCtx(String request) throws ParsingException {
+        return StreamingRequestParser.parse(new StringReader(request));
+    }
+
+    /**
+     *  Returns a XACML 3.0 <code>RequestCtx</code> for a request in the JSON Profile of XACML 3.0,
+     *  see <code>JSONRequestParser</code>.
+     *
+     * @param input a stream providing the UTF-8 encoded JSON data
+     * @return <code>RequestCtx</code> object
+     * @throws ParsingException  if the request is invalid
+     */
+    public RequestCtx getJSONRequestCtx(InputStream input) throws ParsingException {
+        return JSONRequestParser.parse(input);
+    }
+
+    /**
+     *  Returns a XACML 3.0 <code>RequestCtx</code> for a request in the JSON Profile of XACML 3.0,
+     *  see <code>JSONRequestParser</code>.
+     *
+     * @param request  the JSON String to parse for the <code>RequestCtx</code>
+     * @return <code>RequestCtx</code> object
+     * @throws ParsingException  if the request is invalid
+     */
+    public RequestCtx getJSONRequestCtx(String request) throws ParsingException {
+        return JSONRequestParser.parse(request);
+    }
+
+
     /**
      * Returns an instance of this factory. This method enforces a singleton model, meaning that
      * this always returns the same instance, creating the factory if it hasn't been requested
@@ -168,14 +218,9 @@ public class RequestCtxFactory {
     public Element getXacmlRequest(String request) throws ParsingException {
 
         ByteArrayInputStream inputStream = new ByteArrayInputStream(request.getBytes());
-        DocumentBuilderFactory  builder = Utils.getSecuredDocumentBuilderFactory();
-        if(builder == null){
-            throw  new ParsingException("DOM Builder can not be null");
-        }
-
         Document doc;
         try {
-            doc = builder.newDocumentBuilder().parse(inputStream);
+            doc = Utils.parseSecuredDocument(inputStream, false);
         } catch (Exception e) {
             throw new ParsingException("DOM of request element can not be created from String", e);
         } finally {
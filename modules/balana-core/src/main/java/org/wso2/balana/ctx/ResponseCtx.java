@@ -40,13 +40,17 @@ import org.w3c.dom.NodeList;
 import org.wso2.balana.*;
 import org.wso2.balana.ctx.xacml2.Result;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -174,24 +178,51 @@ public class ResponseCtx {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 
-        builder.append("<Response");
+    /**
+     * Encodes this <code>ResponseCtx</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>. Results are written one by one, so the encoded response is never held
+     * in memory as a whole. The writer is not flushed or closed.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
         if(version == XACMLConstants.XACML_VERSION_3_0){
-            builder.append(" xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\"");
+            writer.write("<Response xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\">");
+        } else {
+            writer.write("<Response>");
         }
 
-        builder.append(">");
-
         // Go through all results
-        Iterator it = results.iterator();
-        while (it.hasNext()) {
-            AbstractResult result = (AbstractResult) (it.next());
-            result.encode(builder);
+        for (AbstractResult result : results) {
+            result.encode(writer);
         }
         // Finish the XML for a response
-        builder.append("</Response>");
+        writer.write("</Response>");
+    }
+
+    /**
+     * Encodes this <code>ResponseCtx</code> into its XML form and writes this out to the provided
+     * <code>OutputStream</code> using the given character set. The stream is flushed but not closed.
+     *
+     * @param output stream into which the XML-encoded data is written
+     * @param charset character set of the encoded data
+     * @throws IOException if the data can not be written
+     */
+    public void encode(OutputStream output, Charset charset) throws IOException {
 
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, charset));
+        encode(writer);
+        writer.flush();
     }
 
 }
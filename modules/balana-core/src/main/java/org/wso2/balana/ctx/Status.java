@@ -36,11 +36,15 @@
 package org.wso2.balana.ctx;
 
 import org.wso2.balana.DOMHelper;
+import org.wso2.balana.EncodingHelper;
 import org.wso2.balana.Indenter;
 import org.wso2.balana.ParsingException;
+import org.wso2.balana.StringBuilderWriter;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -267,37 +271,57 @@ public class Status {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Status</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Status>");
+        writer.write("<Status>");
 
-        encodeStatusCode(code.iterator(), builder);
+        encodeStatusCode(code.iterator(), writer);
 
         if (message != null){
-            builder.append("<StatusMessage>").append(message).append("</StatusMessage>");
+            writer.write("<StatusMessage>");
+            EncodingHelper.writeText(writer, message);
+            writer.write("</StatusMessage>");
         }
 
         if (detail != null) {
-            builder.append(detail.getEncoded());
+            writer.write(detail.getEncoded());
         }
-        builder.append("</Status>");
+        writer.write("</Status>");
     }
 
     /**
      * Encodes the object in XML
      * 
      * @param iterator
-     * @param builder
+     * @param writer
      */
-    private void encodeStatusCode(Iterator<String> iterator, StringBuilder builder) {
+    private void encodeStatusCode(Iterator<String> iterator, Writer writer) throws IOException {
 
         String code = iterator.next();
 
+        writer.write("<StatusCode Value=\"");
+        EncodingHelper.writeAttribute(writer, code);
         if (iterator.hasNext()) {
-            builder.append("<StatusCode Value=\"").append(code).append("\">");
-            encodeStatusCode(iterator, builder);
-            builder.append("</StatusCode>");
+            writer.write("\">");
+            encodeStatusCode(iterator, writer);
+            writer.write("</StatusCode>");
         } else {
-            builder.append("<StatusCode Value=\"").append(code).append("\"/>");
+            writer.write("\"/>");
         }
     }
 
@@ -46,8 +46,6 @@ import java.io.StringWriter;
 import java.util.List;
 
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
@@ -149,9 +147,7 @@ public class StatusDetail {
         try {
             String text = "<?xml version=\"1.0\"?>\n";
             byte[] bytes = (text + encoded).getBytes();
-            DocumentBuilderFactory documentBuilderFactory = Utils.getSecuredDocumentBuilderFactory();
-            DocumentBuilder db = documentBuilderFactory.newDocumentBuilder();
-            Document doc = db.parse(new ByteArrayInputStream(bytes));
+            Document doc = Utils.parseSecuredDocument(new ByteArrayInputStream(bytes), false);
             return doc.getDocumentElement();
         } catch (ParserConfigurationException | SAXException | IOException e) {
             throw new ParsingException("invalid XML for status detail", e);
@@ -0,0 +1,500 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.ctx;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.wso2.balana.Balana;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.UnknownIdentifierException;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AttributeFactory;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.MultiRequests;
+import org.wso2.balana.xacml3.RequestDefaults;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses XACML requests with a StAX pull parser instead of building a DOM for the whole request.
+ * XACML 3.0 <code>RequestCtx</code>, <code>Attributes</code> and <code>Attribute</code> objects are
+ * created straight from the stream, and a DOM is only built for the elements that are evaluated
+ * as DOM later: the <code>Content</code> of an <code>Attributes</code> element (used by XPath),
+ * <code>AttributeValue</code>s with element content, <code>MultiRequests</code> and
+ * <code>RequestDefaults</code>. XACML 1.0 and 2.0 requests are read into a DOM and handed to the
+ * existing DOM based parser.
+ * <p>
+ * Whitespace only text between elements is dropped, in the same way <code>PDP</code> strips it
+ * before parsing a request given as a <code>String</code>. The XACML 3.0 request created by this
+ * parser does not keep a DOM root of the whole request.
+ */
+public class StreamingRequestParser {
+
+    /**
+     * secured factory that is shared by all parsers
+     */
+    private static final XMLInputFactory inputFactory = Utils.getSecuredXMLInputFactory();
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(StreamingRequestParser.class);
+
+    /**
+     * Parses a XACML request from the given stream.
+     *
+     * @param input a stream providing the XML data
+     * @return <code>AbstractRequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static AbstractRequestCtx parse(InputStream input) throws ParsingException {
+
+        XMLStreamReader reader;
+        try {
+            reader = inputFactory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new ParsingException("Stream reader of request can not be created", e);
+        }
+        return parse(reader);
+    }
+
+    /**
+     * Parses a XACML request from the given character stream.
+     *
+     * @param input a reader providing the XML data
+     * @return <code>AbstractRequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static AbstractRequestCtx parse(Reader input) throws ParsingException {
+
+        XMLStreamReader reader;
+        try {
+            reader = inputFactory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new ParsingException("Stream reader of request can not be created", e);
+        }
+        return parse(reader);
+    }
+
+    /**
+     * Parses a XACML request from the given stream reader, which must be positioned before or at
+     * the root element of the request.
+     *
+     * @param reader <code>XMLStreamReader</code> over the request
+     * @return <code>AbstractRequestCtx</code> object
+     * @throws ParsingException if the request is invalid
+     */
+    public static AbstractRequestCtx parse(XMLStreamReader reader) throws ParsingException {
+
+        try {
+            while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                if (!reader.hasNext()) {
+                    throw new ParsingException("Request does not contain a root element");
+                }
+                reader.next();
+            }
+
+            String requestCtxNs = reader.getNamespaceURI();
+            if (requestCtxNs != null) {
+                if (XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(requestCtxNs.trim())) {
+                    return parseRequest(reader);
+                } else if (XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(requestCtxNs.trim()) ||
+                        XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(requestCtxNs.trim())) {
+                    Document doc = newDocument();
+                    doc.appendChild(readElement(reader, doc));
+                    return org.wso2.balana.ctx.xacml2.RequestCtx.getInstance(doc.getDocumentElement());
+                } else {
+                    throw new ParsingException("Invalid namespace in XACML request");
+                }
+            } else {
+                log.warn("No Namespace defined in XACML request and Assume as XACML 3.0");
+                return parseRequest(reader);
+            }
+        } catch (XMLStreamException e) {
+            throw new ParsingException("Request can not be read from the stream", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                log.error("Error in closing stream reader of XACML request");
+            }
+        }
+    }
+
+    /**
+     * Private helper that parses a XACML 3.0 <code>Request</code> element. The reader is positioned
+     * at the start of the element.
+     */
+    private static RequestCtx parseRequest(XMLStreamReader reader)
+            throws XMLStreamException, ParsingException {
+
+        Set<Attributes> attributesElements = new HashSet<Attributes>();
+        MultiRequests multiRequests = null;
+        RequestDefaults defaults = null;
+
+        if (!"Request".equals(reader.getLocalName())) {
+            throw new ParsingException("Request cannot be constructed using " + "type: "
+                    + reader.getLocalName());
+        }
+
+        String returnPolicyIdList = reader.getAttributeValue(null, XACMLConstants.RETURN_POLICY_LIST);
+        if (returnPolicyIdList == null) {
+            throw new ParsingException("Error parsing required attribute "
+                    + "ReturnPolicyIdList in RequestType");
+        }
+
+        String combinedDecision = reader.getAttributeValue(null, XACMLConstants.COMBINE_DECISION);
+        if (combinedDecision == null) {
+            throw new ParsingException("Error parsing required attribute "
+                    + "CombinedDecision in RequestType");
+        }
+
+        while (nextChildElement(reader)) {
+            String tag = reader.getLocalName();
+            if (XACMLConstants.ATTRIBUTES_ELEMENT.equals(tag)) {
+                attributesElements.add(parseAttributes(reader));
+            } else if (XACMLConstants.MULTI_REQUESTS.equals(tag)) {
+                if (multiRequests != null) {
+                    throw new ParsingException("Too many MultiRequests elements are defined.");
+                }
+                multiRequests = MultiRequests.getInstance(readElement(reader, newDocument()));
+            } else if (XACMLConstants.REQUEST_DEFAULTS.equals(tag)) {
+                if (defaults != null) {
+                    throw new ParsingException("Too many RequestDefaults elements are defined.");
+                }
+                defaults = RequestDefaults.getInstance(readElement(reader, newDocument()));
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        if (attributesElements.isEmpty()) {
+            throw new ParsingException("Request must contain at least one AttributesType");
+        }
+
+        return new RequestCtx(null, attributesElements, "true".equals(returnPolicyIdList),
+                "true".equals(combinedDecision), multiRequests, defaults);
+    }
+
+    /**
+     * Private helper that parses an <code>Attributes</code> element. The reader is positioned at the
+     * start of the element and is left at its end.
+     */
+    private static Attributes parseAttributes(XMLStreamReader reader)
+            throws XMLStreamException, ParsingException {
+
+        URI category;
+        Node content = null;
+        boolean contentFound = false;
+        Set<Attribute> attributes = new HashSet<Attribute>();
+
+        try {
+            category = new URI(reader.getAttributeValue(null, XACMLConstants.ATTRIBUTES_CATEGORY));
+        } catch (Exception e) {
+            throw new ParsingException("Error parsing required attribute "
+                    + "Category in AttributesType", e);
+        }
+
+        String id = reader.getAttributeValue(null, XACMLConstants.ATTRIBUTES_ID);
+
+        while (nextChildElement(reader)) {
+            String tag = reader.getLocalName();
+            if (XACMLConstants.ATTRIBUTES_CONTENT.equals(tag)) {
+                // only one value can be in an Attribute
+                if (contentFound) {
+                    throw new ParsingException("Too many content elements are defined.");
+                }
+                contentFound = true;
+                content = parseContent(reader);
+            } else if (XACMLConstants.ATTRIBUTE_ELEMENT.equals(tag)) {
+                attributes.add(parseAttribute(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        return new Attributes(category, content, attributes, id);
+    }
+
+    /**
+     * Private helper that builds a DOM for the first element inside a <code>Content</code>
+     * element, and makes it the document element of a new <code>Document</code>.
+     */
+    private static Node parseContent(XMLStreamReader reader)
+            throws XMLStreamException, ParsingException {
+
+        Node content = null;
+        while (nextChildElement(reader)) {
+            if (content == null) {
+                Document doc = newDocument();
+                doc.appendChild(readElement(reader, doc));
+                content = doc.getDocumentElement();
+            } else {
+                skipElement(reader);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Private helper that parses a XACML 3.0 <code>Attribute</code> element. The reader is
+     * positioned at the start of the element and is left at its end.
+     */
+    private static Attribute parseAttribute(XMLStreamReader reader)
+            throws XMLStreamException, ParsingException {
+
+        URI id;
+        URI type = null;
+        List<AttributeValue> values = new ArrayList<AttributeValue>();
+
+        try {
+            id = new URI(reader.getAttributeValue(null, "AttributeId"));
+        } catch (Exception e) {
+            throw new ParsingException("Error parsing required attribute "
+                    + "AttributeId in AttributeType", e);
+        }
+
+        String includeInResult = reader.getAttributeValue(null, "IncludeInResult");
+        if (includeInResult == null) {
+            throw new ParsingException("Error parsing required attribute "
+                    + "IncludeInResult in AttributeType");
+        }
+
+        String issuer = reader.getAttributeValue(null, "Issuer");
+
+        while (nextChildElement(reader)) {
+            if ("AttributeValue".equals(reader.getLocalName())) {
+                try {
+                    type = new URI(reader.getAttributeValue(null, "DataType"));
+                } catch (Exception e) {
+                    throw new ParsingException("Error parsing required attribute "
+                            + "DataType in AttributeType", e);
+                }
+                values.add(parseAttributeValue(reader, type));
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        // make sure we got a value
+        if (values.size() < 1) {
+            throw new ParsingException("Attribute must contain a value");
+        }
+        return new Attribute(id, type, issuer, null, values, "true".equals(includeInResult),
+                XACMLConstants.XACML_VERSION_3_0);
+    }
+
+    /**
+     * Private helper that creates an attribute value. Simple text values are handed to the
+     * <code>AttributeFactory</code> as text, anything else is read into a DOM node first.
+     */
+    private static AttributeValue parseAttributeValue(XMLStreamReader reader, URI type)
+            throws XMLStreamException, ParsingException {
+
+        AttributeFactory attributeFactory = Balana.getInstance().getAttributeFactory();
+        String xPathCategory = reader.getAttributeValue(null, "XPathCategory");
+        int knownAttributes = xPathCategory == null ? 1 : 2;
+
+        try {
+            if (reader.getAttributeCount() > knownAttributes || reader.getNamespaceCount() > 0) {
+                // values with their own attributes are left to the DOM based proxies
+                return attributeFactory.createValue(readElement(reader, newDocument()), type);
+            }
+
+            String namespace = reader.getNamespaceURI();
+            String prefix = reader.getPrefix();
+            String name = reader.getLocalName();
+            StringBuilder text = new StringBuilder();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    // mixed content, so fall back to a DOM node for the whole value
+                    Document doc = newDocument();
+                    Element element = doc.createElementNS(namespace, qualifiedName(prefix, name));
+                    element.setAttribute("DataType", type.toString());
+                    if (xPathCategory != null) {
+                        element.setAttribute("XPathCategory", xPathCategory);
+                    }
+                    if (!isWhitespace(text)) {
+                        element.appendChild(doc.createTextNode(text.toString()));
+                    }
+                    element.appendChild(readElement(reader, doc));
+                    readChildren(reader, doc, element);
+                    return attributeFactory.createValue(element, type);
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                }
+            }
+
+            String value = isWhitespace(text) ? "" : text.toString();
+            String[] params = xPathCategory == null ? null : new String[]{xPathCategory};
+            return attributeFactory.createValue(type, value, params);
+        } catch (UnknownIdentifierException uie) {
+            throw new ParsingException(uie.getMessage(), uie);
+        }
+    }
+
+    /**
+     * Private helper that moves the reader to the next child element of the current element.
+     * Returns false, with the reader at the end of the current element, if there is none.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Private helper that skips the current element, including all of its children
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Private helper that reads the current element, with its namespace declarations, attributes
+     * and children, into a DOM element owned by the given document.
+     */
+    private static Element readElement(XMLStreamReader reader, Document doc)
+            throws XMLStreamException {
+
+        Element element = doc.createElementNS(reader.getNamespaceURI(),
+                qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String name = (prefix == null || prefix.length() == 0) ? XMLConstants.XMLNS_ATTRIBUTE
+                    : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name,
+                    reader.getNamespaceURI(i));
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            if (namespace != null && namespace.length() == 0) {
+                namespace = null;
+            }
+            element.setAttributeNS(namespace, qualifiedName(reader.getAttributePrefix(i),
+                    reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+
+        readChildren(reader, doc, element);
+        return element;
+    }
+
+    /**
+     * Private helper that reads the remaining children of the current element into the given DOM
+     * element, leaving the reader at the end of the current element.
+     */
+    private static void readChildren(XMLStreamReader reader, Document doc, Element element)
+            throws XMLStreamException {
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.appendChild(readElement(reader, doc));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (!reader.isWhiteSpace()) {
+                        element.appendChild(doc.createTextNode(reader.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    element.appendChild(doc.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    element.appendChild(doc.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    element.appendChild(doc.createProcessingInstruction(reader.getPITarget(),
+                            reader.getPIData()));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Private helper that creates an empty document to hold the DOM parts of a request
+     */
+    private static Document newDocument() throws ParsingException {
+
+        try {
+            return Utils.createNewDocument();
+        } catch (Exception e) {
+            throw new ParsingException("DOM of request element can not be created", e);
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return (prefix == null || prefix.length() == 0) ? localName : prefix + ":" + localName;
+    }
+
+    private static boolean isWhitespace(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -40,11 +40,12 @@ import org.wso2.balana.ctx.AbstractResult;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.Status;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.w3c.dom.NamedNodeMap;
@@ -196,34 +197,51 @@ public class Result extends AbstractResult {
 
     @Override
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Result</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>. Nothing is held in memory, and text and attribute values are escaped as
+     * they are written.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
         if (resourceId == null){
-            builder.append("<Result>");
+            writer.write("<Result>");
         } else {
-            builder.append("<Result ResourceId=\"").append(resourceId).append("\">");
+            writer.write("<Result ResourceId=\"");
+            EncodingHelper.writeAttribute(writer, resourceId);
+            writer.write("\">");
         }
 
         // encode the decision
-        builder.append("<Decision>").append(DECISIONS[decision]).append("</Decision>");
+        writer.write("<Decision>");
+        writer.write(DECISIONS[decision]);
+        writer.write("</Decision>");
 
         // encode the status
         if (status != null){
-            status.encode(builder);
+            status.encode(writer);
         }
 
         // encode the obligations
         if (obligations != null && obligations.size() != 0) {
-            builder.append("<Obligations>");
-
-            Iterator it = obligations.iterator();
-
-            while (it.hasNext()) {
-                ObligationResult obligation = (ObligationResult) (it.next());
-                obligation.encode(builder);
+            writer.write("<Obligations>");
+            for (ObligationResult obligation : obligations) {
+                obligation.encode(writer);
             }
-            builder.append("</Obligations>");
+            writer.write("</Obligations>");
         }
         // finish it off
-        builder.append("</Result>");
+        writer.write("</Result>");
     }
 }
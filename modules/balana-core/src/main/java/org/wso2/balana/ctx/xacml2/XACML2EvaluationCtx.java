@@ -50,11 +50,14 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
 
     private int xacmlVersion;
 
-    // the 4 maps that contain the attribute data
-    private HashMap subjectMap;
+    // the resource attributes by id, used to find the resource-id and resource-scope
     private HashMap resourceMap;
-    private HashMap actionMap;
-    private HashMap environmentMap;
+
+    // the indexes that contain the attribute data, subjects are indexed per category
+    private Map<URI, AttributeIndex> subjectIndexes;
+    private AttributeIndex resourceIndex;
+    private AttributeIndex actionIndex;
+    private AttributeIndex environmentIndex;
 
     // the resource and its scope
     private AttributeValue resourceId;
@@ -95,7 +98,7 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
         currentDateTime = null;
 
         // get the subjects, make sure they're correct, and setup tables
-        subjectMap = new HashMap();
+        subjectIndexes = new HashMap<URI, AttributeIndex>();
         setupSubjects(requestCtx.getSubjects());
 
         // next look at the Resource data, which needs to be handled specially
@@ -103,20 +106,17 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
         setupResource(requestCtx.getResource());
 
         // setup the action data, which is generic
-        actionMap = new HashMap();
-        mapAttributes(requestCtx.getAction(), actionMap);
+        actionIndex = new AttributeIndex(requestCtx.getAction());
 
         // finally, set up the environment data, which is also generic
-        environmentMap = new HashMap();
-        mapAttributes(requestCtx.getEnvironmentAttributes(), environmentMap);
+        environmentIndex = new AttributeIndex(requestCtx.getEnvironmentAttributes());
 
     }
 
     /**
      * This is quick helper function to provide a little structure for the subject attributes so we
-     * can search for them (somewhat) quickly. The basic idea is to have a map indexed by
-     * SubjectCategory that keeps Maps that in turn are indexed by id and keep the unique
-     * ctx.Attribute objects.
+     * can search for them quickly. The basic idea is to have a map indexed by SubjectCategory
+     * that keeps an <code>AttributeIndex</code> of the ctx.Attribute objects.
      */
     private void setupSubjects(Set subjects)  {
 
@@ -126,33 +126,17 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
             Subject subject = (Subject) (it.next());
 
             URI category = subject.getCategory();
-            Map categoryMap = null;
+            AttributeIndex categoryIndex = subjectIndexes.get(category);
 
-            // see if we've already got a map for the category
-            if (subjectMap.containsKey(category)) {
-                categoryMap = (Map) (subjectMap.get(category));
-            } else {
-                categoryMap = new HashMap();
-                subjectMap.put(category, categoryMap);
+            // see if we've already got an index for the category
+            if (categoryIndex == null) {
+                categoryIndex = new AttributeIndex();
+                subjectIndexes.put(category, categoryIndex);
             }
 
-            // iterate over the set of attributes
-            Iterator attrIterator = subject.getAttributes().iterator();
-
-            while (attrIterator.hasNext()) {
-                Attribute attr = (Attribute) (attrIterator.next());
-                String id = attr.getId().toString();
-
-                if (categoryMap.containsKey(id)) {
-                    // add to the existing set of Attributes w/this id
-                    Set existingIds = (Set) (categoryMap.get(id));
-                    existingIds.add(attr);
-                } else {
-                    // this is the first Attr w/this id
-                    HashSet newIds = new HashSet();
-                    newIds.add(attr);
-                    categoryMap.put(id, newIds);
-                }
+            // index the set of attributes
+            for (Attribute attr : (Set<Attribute>) subject.getAttributes()) {
+                categoryIndex.add(attr);
             }
         }
     }
@@ -165,6 +149,7 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
      */
     private void setupResource(Set resource) throws ParsingException {
         mapAttributes(resource, resourceMap);
+        resourceIndex = new AttributeIndex(resource);
 
         // make sure there resource-id attribute was included
         if (!resourceMap.containsKey(XACMLConstants.RESOURCE_ID)) {
@@ -269,6 +254,7 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
      */
     public void setResourceId(AttributeValue resourceId, Set<Attributes> attributesSet) {
         this.resourceId = resourceId;
+        clearResolvedAttributes();
 
         // there will always be exactly one value for this attribute
         Set attrSet = (Set) (resourceMap.get(XACMLConstants.RESOURCE_ID));
@@ -276,10 +262,13 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
 
         // remove the old value...
         attrSet.remove(attr);
+        resourceIndex.remove(attr);
 
         // ...and insert the new value
-        attrSet.add(new Attribute(attr.getId(), attr.getIssuer(), attr.getIssueInstant(),
-                resourceId,XACMLConstants.XACML_VERSION_2_0));
+        Attribute newAttr = new Attribute(attr.getId(), attr.getIssuer(), attr.getIssueInstant(),
+                resourceId,XACMLConstants.XACML_VERSION_2_0);
+        attrSet.add(newAttr);
+        resourceIndex.add(newAttr);
     }
 
     public EvaluationResult getAttribute(URI type, URI id, String issuer, URI category) {
@@ -317,15 +306,15 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
     public EvaluationResult getSubjectAttribute(URI type, URI id, URI category, String issuer) {
         // This is the same as the other three lookups except that this
         // has an extra level of indirection that needs to be handled first
-        Map map = (Map) (subjectMap.get(category));
+        AttributeIndex index = subjectIndexes.get(category);
 
-        if (map == null) {
+        if (index == null) {
             // the request didn't have that category, so we should try asking
             // the attribute finder
             return callHelper(type, id, issuer, category);
         }
 
-        return getGenericAttributes(type, id, category, issuer, map);
+        return getGenericAttributes(type, id, category, issuer, index);
     }
 
     /**
@@ -338,7 +327,7 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
      *         least one value, or status associated with an Indeterminate result
      */
     public EvaluationResult getResourceAttribute(URI type, URI id, URI category, String issuer) {
-        return getGenericAttributes(type, id, category, issuer, resourceMap);
+        return getGenericAttributes(type, id, category, issuer, resourceIndex);
     }
 
     /**
@@ -351,7 +340,7 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
      *         least one value, or status associated with an Indeterminate result
      */
     public EvaluationResult getActionAttribute(URI type, URI id, URI category, String issuer) {
-        return getGenericAttributes(type, id, category, issuer, actionMap);
+        return getGenericAttributes(type, id, category, issuer, actionIndex);
     }
 
     /**
@@ -364,33 +353,22 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
      *         least one value, or status associated with an Indeterminate result
      */
     public EvaluationResult getEnvironmentAttribute(URI type, URI id, URI category, String issuer) {
-        return getGenericAttributes(type, id, category, issuer, environmentMap);
+        return getGenericAttributes(type, id, category, issuer, environmentIndex);
     }
 
     /**
      * Helper function for the resource, action and environment methods to get an attribute.
      */
     private EvaluationResult getGenericAttributes(URI type, URI id, URI category, String issuer,
-                                                                                        Map map) {
-        // try to find the id
-        Set attrSet = (Set) (map.get(id.toString()));
-        if (attrSet == null) {
-            // the request didn't have an attribute with that id, so we should
-            // try asking the attribute finder
-            return callHelper(type, id, issuer, category);
-        }
-
-        // now go through each, considering each Attribute object
+                                                                            AttributeIndex index) {
+        // now go through each Attribute object with the id and type
         List<AttributeValue> attributes = new ArrayList<AttributeValue>();
-        Iterator it = attrSet.iterator();
 
-        while (it.hasNext()) {
-            Attribute attr = (Attribute) (it.next());
+        for (Attribute attr : index.get(id, type)) {
 
-            // make sure the type and issuer are correct
-            if ((attr.getType().equals(type))
-                    && ((issuer == null) || ((attr.getIssuer() != null) && (attr.getIssuer()
-                    .equals(issuer))))) {
+            // make sure the issuer is correct
+            if ((issuer == null) || ((attr.getIssuer() != null) && (attr.getIssuer()
+                    .equals(issuer)))) {
 
                 // if we got here, then we found a match, so we want to pull
                 // out the values and put them in out list
@@ -413,11 +391,6 @@ public class XACML2EvaluationCtx extends BasicEvaluationCtx {
         return new EvaluationResult(new BagAttribute(type, attributes));
     }
 
-
-    public PDPConfig getPdpConfig() {
-        return pdpConfig;
-    }
-
     public AbstractRequestCtx getRequestCtx() {
         return requestCtx;
     }
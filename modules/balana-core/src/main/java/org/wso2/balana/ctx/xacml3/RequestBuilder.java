@@ -0,0 +1,373 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.ctx.xacml3;
+
+import org.w3c.dom.Node;
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.DoubleAttribute;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.RequestDefaults;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a XACML 3.0 request in code, without writing or parsing any XML. Attributes are added
+ * to the category that was selected last, for example
+ * <pre>
+ * RequestCtx request = new RequestBuilder()
+ *         .subject().attribute(RequestBuilder.SUBJECT_ID, "bob")
+ *         .resource().attribute(XACMLConstants.RESOURCE_ID, "foo/foo1")
+ *         .action().attribute(RequestBuilder.ACTION_ID, "read")
+ *         .build();
+ * </pre>
+ * The <code>URI</code>s of categories, attribute ids and data types are shared between all
+ * requests, and values are created with the constructors of their types, so a request is made
+ * of little more than the objects the PDP uses. A builder can build more than one request, but
+ * it is not thread safe.
+ */
+public class RequestBuilder {
+
+    /**
+     * the standard subject-id attribute id
+     */
+    public static final String SUBJECT_ID = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+
+    /**
+     * the standard action-id attribute id
+     */
+    public static final String ACTION_ID = "urn:oasis:names:tc:xacml:1.0:action:action-id";
+
+    /**
+     * the number of <code>URI</code>s that are kept for sharing, so that builders given many
+     * different identifiers do not grow the map without bound
+     */
+    private static final int MAX_SHARED_URIS = 1024;
+
+    private static final Map<String, URI> sharedURIs = new ConcurrentHashMap<String, URI>();
+
+    private static final URI SUBJECT_CATEGORY = getURI(XACMLConstants.SUBJECT_CATEGORY);
+
+    private static final URI RESOURCE_CATEGORY = getURI(XACMLConstants.RESOURCE_CATEGORY);
+
+    private static final URI ACTION_CATEGORY = getURI(XACMLConstants.ACTION_CATEGORY);
+
+    private static final URI ENVIRONMENT_CATEGORY = getURI(XACMLConstants.ENT_CATEGORY);
+
+    static {
+        getURI(SUBJECT_ID);
+        getURI(ACTION_ID);
+        getURI(XACMLConstants.RESOURCE_ID);
+    }
+
+    /**
+     * attributes of each category, in the order the categories were first selected
+     */
+    private final Map<URI, Set<Attribute>> categories = new LinkedHashMap<URI, Set<Attribute>>();
+
+    private final Map<URI, Node> contents = new LinkedHashMap<URI, Node>();
+
+    private Set<Attribute> current;
+
+    private URI currentCategory;
+
+    private boolean returnPolicyIdList;
+
+    private boolean combinedDecision;
+
+    private String xPathVersion;
+
+    /**
+     * Selects the category to which the following attributes are added. A category can be
+     * selected more than once.
+     *
+     * @param category the category identifier
+     * @return this builder
+     */
+    public RequestBuilder category(String category) {
+        return category(getURI(category));
+    }
+
+    /**
+     * Selects the access-subject category
+     *
+     * @return this builder
+     */
+    public RequestBuilder subject() {
+        return category(SUBJECT_CATEGORY);
+    }
+
+    /**
+     * Selects the resource category
+     *
+     * @return this builder
+     */
+    public RequestBuilder resource() {
+        return category(RESOURCE_CATEGORY);
+    }
+
+    /**
+     * Selects the action category
+     *
+     * @return this builder
+     */
+    public RequestBuilder action() {
+        return category(ACTION_CATEGORY);
+    }
+
+    /**
+     * Selects the environment category
+     *
+     * @return this builder
+     */
+    public RequestBuilder environment() {
+        return category(ENVIRONMENT_CATEGORY);
+    }
+
+    /**
+     * Adds a string attribute to the selected category
+     *
+     * @param id the attribute id
+     * @param value the value of the attribute
+     * @return this builder
+     */
+    public RequestBuilder attribute(String id, String value) {
+        return attribute(id, new StringAttribute(value));
+    }
+
+    /**
+     * Adds a boolean attribute to the selected category
+     *
+     * @param id the attribute id
+     * @param value the value of the attribute
+     * @return this builder
+     */
+    public RequestBuilder attribute(String id, boolean value) {
+        return attribute(id, BooleanAttribute.getInstance(value));
+    }
+
+    /**
+     * Adds an integer attribute to the selected category
+     *
+     * @param id the attribute id
+     * @param value the value of the attribute
+     * @return this builder
+     */
+    public RequestBuilder attribute(String id, long value) {
+        return attribute(id, new IntegerAttribute(value));
+    }
+
+    /**
+     * Adds a double attribute to the selected category
+     *
+     * @param id the attribute id
+     * @param value the value of the attribute
+     * @return this builder
+     */
+    public RequestBuilder attribute(String id, double value) {
+        return attribute(id, new DoubleAttribute(value));
+    }
+
+    /**
+     * Adds an attribute with a single value of any type to the selected category
+     *
+     * @param id the attribute id
+     * @param value the value of the attribute
+     * @return this builder
+     */
+    public RequestBuilder attribute(String id, AttributeValue value) {
+        return add(id, value.getType(), null, false, Collections.singletonList(value));
+    }
+
+    /**
+     * Adds an attribute with one or more values of the same type to the selected category
+     *
+     * @param id the attribute id
+     * @param issuer the issuer of the attribute, or null if there is none
+     * @param includeInResult whether to include the attribute in the result
+     * @param values the values of the attribute
+     * @return this builder
+     * @throws IllegalArgumentException if there are no values, or they are of different types
+     */
+    public RequestBuilder attribute(String id, String issuer, boolean includeInResult,
+                                    AttributeValue... values) throws IllegalArgumentException {
+
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Attribute " + id + " must have a value");
+        }
+        URI type = values[0].getType();
+        for (AttributeValue value : values) {
+            if (!type.equals(value.getType())) {
+                throw new IllegalArgumentException("Values of attribute " + id +
+                        " must be of the same type");
+            }
+        }
+        List<AttributeValue> list = values.length == 1 ? Collections.singletonList(values[0])
+                : Arrays.asList(values.clone());
+        return add(id, type, issuer, includeInResult, list);
+    }
+
+    /**
+     * Sets the XML content of the selected category, which is used by attribute selectors
+     *
+     * @param content the content, or null to remove it
+     * @return this builder
+     */
+    public RequestBuilder content(Node content) {
+        checkCategory();
+        if (content == null) {
+            contents.remove(currentCategory);
+        } else {
+            contents.put(currentCategory, content);
+        }
+        return this;
+    }
+
+    /**
+     * Sets whether the identifiers of the applicable policies are returned
+     *
+     * @param returnPolicyIdList true to return the policy identifiers
+     * @return this builder
+     */
+    public RequestBuilder returnPolicyIdList(boolean returnPolicyIdList) {
+        this.returnPolicyIdList = returnPolicyIdList;
+        return this;
+    }
+
+    /**
+     * Sets whether the results of a multiple decision request are combined
+     *
+     * @param combinedDecision true to combine the results
+     * @return this builder
+     */
+    public RequestBuilder combinedDecision(boolean combinedDecision) {
+        this.combinedDecision = combinedDecision;
+        return this;
+    }
+
+    /**
+     * Sets the XPath version of the request defaults
+     *
+     * @param xPathVersion the XPath version identifier, or null to use none
+     * @return this builder
+     */
+    public RequestBuilder xPathVersion(String xPathVersion) {
+        this.xPathVersion = xPathVersion;
+        return this;
+    }
+
+    /**
+     * Creates a request with the categories and attributes added so far. Each request has its
+     * own sets of attributes, so the builder can go on to build other requests.
+     *
+     * @return the request
+     */
+    public RequestCtx build() {
+
+        Set<Attributes> attributesSet = new HashSet<Attributes>();
+        for (Map.Entry<URI, Set<Attribute>> entry : categories.entrySet()) {
+            attributesSet.add(new Attributes(entry.getKey(), contents.get(entry.getKey()),
+                    new HashSet<Attribute>(entry.getValue()), null));
+        }
+        RequestDefaults defaults = xPathVersion == null ? null : new RequestDefaults(xPathVersion);
+        return new RequestCtx(null, attributesSet, returnPolicyIdList, combinedDecision, null, defaults);
+    }
+
+    /**
+     * Creates the evaluation context of a request with the categories and attributes added so
+     * far. This is only meant for a single decision, a request that may result in more than one
+     * decision must be given to the PDP with <code>build</code>.
+     *
+     * @param pdpConfig the configuration of the PDP that evaluates the request
+     * @return the evaluation context
+     */
+    public XACML3EvaluationCtx buildEvaluationCtx(PDPConfig pdpConfig) {
+        return new XACML3EvaluationCtx(build(), pdpConfig);
+    }
+
+    /**
+     * Returns a shared <code>URI</code> for the given identifier, creating it when it is first
+     * used
+     *
+     * @param identifier the identifier
+     * @return the <code>URI</code>
+     * @throws IllegalArgumentException if the identifier is not a valid <code>URI</code>
+     */
+    public static URI getURI(String identifier) throws IllegalArgumentException {
+
+        URI uri = sharedURIs.get(identifier);
+        if (uri == null) {
+            uri = URI.create(identifier);
+            if (sharedURIs.size() < MAX_SHARED_URIS) {
+                sharedURIs.put(identifier, uri);
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * Private helper that selects a category
+     */
+    private RequestBuilder category(URI category) {
+
+        Set<Attribute> attributes = categories.get(category);
+        if (attributes == null) {
+            attributes = new HashSet<Attribute>();
+            categories.put(category, attributes);
+        }
+        current = attributes;
+        currentCategory = category;
+        return this;
+    }
+
+    /**
+     * Private helper that adds an attribute to the selected category
+     */
+    private RequestBuilder add(String id, URI type, String issuer, boolean includeInResult,
+                               List<AttributeValue> values) {
+
+        checkCategory();
+        current.add(new Attribute(getURI(id), type, issuer, null, values, includeInResult,
+                XACMLConstants.XACML_VERSION_3_0));
+        return this;
+    }
+
+    /**
+     * Private helper that checks that a category was selected
+     */
+    private void checkCategory() {
+        if (current == null) {
+            throw new IllegalStateException("A category must be selected before adding to it");
+        }
+    }
+}
@@ -29,8 +29,10 @@ import org.wso2.balana.xacml3.Advice;
 import org.wso2.balana.xacml3.Attributes;
 import org.wso2.balana.xacml3.Obligation;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.util.*;
 
 /**
@@ -230,6 +232,15 @@ public class Result extends AbstractResult{
         return set;
     }
 
+    /**
+     * Returns the references of the applicable policies, or null if they were not requested
+     *
+     * @return set of policy references
+     */
+    public Set<PolicyReference> getPolicyReferences() {
+        return policyReferences;
+    }
+
     /**
      * Return set of attributes that is sent to PEP
      *
@@ -266,7 +277,7 @@ public class Result extends AbstractResult{
 
             if(newAttributeSet.size() > 0){
                 Attributes newAttributes = new Attributes(attributes.getCategory(),
-                                    attributes.getContent(), newAttributeSet, attributes.getId());
+                                    attributes, newAttributeSet);
                 newSet.add(newAttributes);
             }
         }
@@ -281,67 +292,75 @@ public class Result extends AbstractResult{
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
 
-        builder.append("<Result>");
+    /**
+     * Encodes this <code>Result</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>. Nothing is held in memory, and text and attribute values are escaped as
+     * they are written.
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
+
+        writer.write("<Result>");
         // encode the decision
         //check whether decision is extended indeterminate values
+        writer.write("<Decision>");
         if(decision == 4 || decision == 5 || decision == 6){
             // if this is extended indeterminate values, we just return the "Indeterminate"
-            builder.append("<Decision>").append(DECISIONS[2]).append("</Decision>");
+            writer.write(DECISIONS[2]);
         } else {
-            builder.append("<Decision>").append(DECISIONS[decision]).append("</Decision>");
+            writer.write(DECISIONS[decision]);
         }
+        writer.write("</Decision>");
         // encode the status
         if (status != null){
-            status.encode(builder);
+            status.encode(writer);
         }
         // encode the obligations
         if (obligations != null  && obligations.size() != 0) {
-
-            builder.append("<Obligations>");
-
-            Iterator it = obligations.iterator();
-            while (it.hasNext()) {
-                Obligation obligation = (Obligation) (it.next());
-                obligation.encode(builder);
+            writer.write("<Obligations>");
+            for (ObligationResult obligation : obligations) {
+                obligation.encode(writer);
             }
-            builder.append("</Obligations>");
+            writer.write("</Obligations>");
         }
 
         // encode the advices
         if (advices != null  && advices.size() != 0) {
-
-            builder.append("<AssociatedAdvice>");
-
-            Iterator it = advices.iterator();
-
-            while (it.hasNext()) {
-                Advice advice = (Advice) (it.next());
-                advice.encode(builder);
+            writer.write("<AssociatedAdvice>");
+            for (Advice advice : advices) {
+                advice.encode(writer);
             }
-            builder.append("</AssociatedAdvice>");
+            writer.write("</AssociatedAdvice>");
         }
 
         // encode the policy, policySet references
         if (policyReferences != null  && policyReferences.size() != 0) {
-            builder.append("<PolicyIdentifierList>");
-
+            writer.write("<PolicyIdentifierList>");
             for(PolicyReference reference : policyReferences){
-                reference.encode(builder);
+                reference.encode(writer);
             }
-
-            builder.append("</PolicyIdentifierList>");
+            writer.write("</PolicyIdentifierList>");
         }
 
         // encode the attributes
         if (attributes != null  && attributes.size() != 0) {
             for(Attributes attribute : attributes){
-                attribute.encode(builder);
+                attribute.encode(writer);
             }
         }
 
         // finish it off
-        builder.append("</Result>");
+        writer.write("</Result>");
     }
 
 }
@@ -20,7 +20,6 @@ package org.wso2.balana.ctx.xacml3;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.wso2.balana.*;
@@ -31,11 +30,6 @@ import org.wso2.balana.ctx.*;
 import org.wso2.balana.finder.ResourceFinderResult;
 import org.wso2.balana.xacml3.*;
 
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -73,6 +67,13 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
      */
     private Map<String, List<Attributes>> mapAttributes;
 
+    /**
+     * attributes of the first Attributes element of each category, indexed for designator lookups
+     *
+     * Category  --> attribute index
+     */
+    private Map<String, AttributeIndex> attributeIndexes;
+
     /**
      * XACML3 request
      */
@@ -113,6 +114,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
         currentDateTime = null;
 
         mapAttributes = new HashMap<String, List<Attributes>> ();
+        attributeIndexes = new HashMap<String, AttributeIndex>();
 
         attributesSet = requestCtx.getAttributesSet();
         this.pdpConfig = pdpConfig;
@@ -124,18 +126,12 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
     public EvaluationResult getAttribute(URI type, URI id, String issuer, URI category) {
 
         List<AttributeValue> attributeValues = new ArrayList<AttributeValue>();
-        List<Attributes> attributesSet = mapAttributes.get(category.toString());
-        if(attributesSet != null && attributesSet.size() > 0){
-            Set<Attribute> attributeSet  = attributesSet.get(0).getAttributes();
-            for(Attribute attribute : attributeSet) {
-                if(attribute.getId().toString().equals(id.toString())
-                        && attribute.getType().toString().equals(type.toString())
-                        && (issuer == null || issuer.equals(attribute.getIssuer()))
+        AttributeIndex attributeIndex = attributeIndexes.get(category.toString());
+        if(attributeIndex != null){
+            for(Attribute attribute : attributeIndex.get(id, type)) {
+                if((issuer == null || issuer.equals(attribute.getIssuer()))
                         && attribute.getValue() != null){
-                    List<AttributeValue> attributeValueList = attribute.getValues();
-                    for (AttributeValue attributeVal : attributeValueList) {
-                    	attributeValues.add(attributeVal);
-                    }
+                    attributeValues.addAll(attribute.getValues());
                 }
             }
         }
@@ -151,6 +147,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
     public EvaluationResult getAttribute(String path, URI type, URI category,
                                          URI contextSelector, String xpathVersion){
 
+        setDynamicValuesUsed();
         if(pdpConfig.getAttributeFinder() == null){
 
             logger.warn("Context tried to invoke AttributeFinder but was " +
@@ -256,6 +253,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
                 List<Attributes> set = new ArrayList<Attributes>();
                 set.add(attributes);
                 mapAttributes.put(category, set);
+                attributeIndexes.put(category, new AttributeIndex(attributes.getAttributes()));
             }
         }
     }
@@ -484,7 +482,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
                                     XACMLConstants.XACML_VERSION_3_0);
                             attributeSet.add(attribute);
                             Attributes newAttributes = new Attributes(new URI(XACMLConstants.RESOURCE_CATEGORY),
-                                        (Node)attributes.getContent(), attributeSet, attributes.getId());
+                                        attributes, attributeSet);
                             newSet.add(newAttributes);
                             resourceAttributes = attributes;
                         } catch (URISyntaxException e) {
@@ -559,7 +557,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
                         Set<Attribute> set = new HashSet<Attribute>(attributes.getAttributes());
                         set.add(attribute);
                         Attributes attr = new Attributes(attributes.getCategory(),
-                                                attributes.getContent(), set, attributes.getId());
+                                                attributes, set);
                         newAttributesSet.add(attr);
                     }
                     evaluationCtx.getAttributesSet().remove(attributes);
@@ -587,6 +585,7 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
      * @param attributesSet a <code>Set</code> of <code>Attributes</code>
      */
     public void setResourceId(AttributeValue resourceId, Set<Attributes> attributesSet) {
+        clearResolvedAttributes();
 
         for(Attributes attributes : attributesSet){
             if(XACMLConstants.RESOURCE_CATEGORY.equals(attributes.getCategory().toString())){
@@ -608,6 +607,11 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
                     resourceIdAttribute.getIssueInstant(), resourceId, resourceIdAttribute.isIncludeInResult(),
                                                                 XACMLConstants.XACML_VERSION_3_0));
                 }
+                List<Attributes> categoryAttributes = mapAttributes.get(XACMLConstants.RESOURCE_CATEGORY);
+                if(categoryAttributes != null && categoryAttributes.get(0) == attributes){
+                    attributeIndexes.put(XACMLConstants.RESOURCE_CATEGORY,
+                                                    new AttributeIndex(attributeSet));
+                }
                 break;
             }
 
@@ -617,51 +621,10 @@ public class XACML3EvaluationCtx extends BasicEvaluationCtx {
     private Set<String> getChildXPaths(Node root, String xPath){
 
         Set<String> xPaths = new HashSet<String>();
-        NamespaceContext namespaceContext = null;
-
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-
-        if(namespaceContext == null){
-
-            //see if the request root is in a namespace
-            String namespace = null;
-            if(root != null){
-                namespace = root.getNamespaceURI();
-            }
-            // name spaces are used, so we need to lookup the correct
-            // prefix to use in the search string
-            NamedNodeMap namedNodeMap = root.getAttributes();
-
-            Map<String, String> nsMap = new HashMap<String, String>();
-            if(namedNodeMap != null){
-                for (int i = 0; i < namedNodeMap.getLength(); i++) {
-                    Node n = namedNodeMap.item(i);
-                    // we found the matching namespace, so get the prefix
-                    // and then break out
-                    String prefix = DOMHelper.getLocalName(n);
-                    String nodeValue= n.getNodeValue();
-                    nsMap.put(prefix, nodeValue);
-                }
-            }
-
-            // if there is not any namespace is defined for content element, default XACML request
-            //  name space would be there.
-            if(XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(namespace)){
-                nsMap.put("xacml", namespace);
-            }
-
-            namespaceContext = new DefaultNamespaceContext(nsMap);
-        }
-
-        xpath.setNamespaceContext(namespaceContext);
-
+        Map<String, String> namespaces = XPathExpressionCache.getNamespaces(root);
 
         try {
-            XPathExpression expression = xpath.compile(xPath);
-            NodeList matches = (NodeList) expression.evaluate(root, XPathConstants.NODESET);
+            NodeList matches = XPathExpressionCache.evaluate(xPath, namespaces, root);
             if(matches != null && matches.getLength() > 0){
 
                 for (int i = 0; i < matches.getLength(); i++) {
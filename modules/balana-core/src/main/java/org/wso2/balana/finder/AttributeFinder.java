@@ -43,6 +43,7 @@ import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.attr.BagAttribute;
 
 import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.metrics.PDPMetrics;
 
 import java.net.URI;
 
@@ -71,13 +72,17 @@ import org.w3c.dom.Node;
 public class AttributeFinder {
 
     // the list of all modules
-    private List<AttributeFinderModule> allModules;
+    private volatile List<AttributeFinderModule> allModules;
 
     //
-    private List<AttributeFinderModule> designatorModules;
+    private volatile List<AttributeFinderModule> designatorModules;
 
     //
-    private List<AttributeFinderModule> selectorModules;
+    private volatile List<AttributeFinderModule> selectorModules;
+
+    // receiver of the time taken by each module when the request is not evaluated by a PDP that
+    // has metrics, or null if it is not measured
+    private volatile PDPMetrics metrics;
 
     // the logger we'll use for all messages
     private static final Log logger = LogFactory.getLog(AttributeFinder.class);
@@ -110,21 +115,66 @@ public class AttributeFinder {
     public void setModules(List<AttributeFinderModule> modules) {
         Iterator it = modules.iterator();
 
-        allModules = new ArrayList<AttributeFinderModule>(modules);
-        designatorModules = new ArrayList<AttributeFinderModule>();
-        selectorModules = new ArrayList<AttributeFinderModule>();
+        // the lists are fully built before they are published, so that concurrent evaluations
+        // never see a partially configured finder
+        List<AttributeFinderModule> newDesignatorModules = new ArrayList<AttributeFinderModule>();
+        List<AttributeFinderModule> newSelectorModules = new ArrayList<AttributeFinderModule>();
 
         while (it.hasNext()) {
             AttributeFinderModule module = (AttributeFinderModule) (it.next());
 
             if (module.isDesignatorSupported())
-                designatorModules.add(module);
+                newDesignatorModules.add(module);
 
             if (module.isSelectorSupported())
-                selectorModules.add(module);
+                newSelectorModules.add(module);
+        }
+
+        allModules = new ArrayList<AttributeFinderModule>(modules);
+        designatorModules = newDesignatorModules;
+        selectorModules = newSelectorModules;
+
+        if (metrics != null) {
+            for (AttributeFinderModule module : modules) {
+                module.setMetrics(metrics);
+            }
+        }
+    }
+
+    /**
+     * Sets the <code>PDPMetrics</code> that the time taken by each module is reported to. The
+     * metrics are passed on to the modules as well, so that they can report their own
+     * measurements, such as cache hits. A request that is evaluated by a PDP whose
+     * <code>PDPConfig</code> has metrics is reported to those instead, so a finder that is shared
+     * by several PDPs does not need to be given any.
+     *
+     * @param metrics the <code>PDPMetrics</code>, or null to not measure the modules
+     */
+    public void setMetrics(PDPMetrics metrics) {
+        this.metrics = metrics;
+        for (AttributeFinderModule module : allModules) {
+            module.setMetrics(metrics);
         }
     }
 
+    /**
+     * Returns the <code>PDPMetrics</code> that the time taken by each module is reported to
+     *
+     * @return the <code>PDPMetrics</code>, or null if the modules are not measured
+     */
+    public PDPMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Private helper that returns the metrics of the PDP that evaluates the given request, or the
+     * metrics of this finder if that PDP has none
+     */
+    private PDPMetrics getMetrics(EvaluationCtx context) {
+        PDPMetrics contextMetrics = PDPMetrics.getMetrics(context);
+        return contextMetrics != null ? contextMetrics : metrics;
+    }
+
     /**
      * Tries to find attribute values based on the given designator data. The result, if successful,
      * will always contain a <code>BagAttribute</code>, even if only one value was found. If no
@@ -142,6 +192,7 @@ public class AttributeFinder {
     public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
             URI category, EvaluationCtx context) {
         Iterator it = designatorModules.iterator();
+        PDPMetrics currentMetrics = getMetrics(context);
 
         // start with empty list of Attribute ValuesS
         List<AttributeValue> attributeValues = new ArrayList<AttributeValue>();
@@ -160,8 +211,12 @@ public class AttributeFinder {
             }
 
             // see if the module can find an attribute value
+            long start = currentMetrics != null ? System.nanoTime() : 0;
             EvaluationResult result = module.findAttribute(attributeType, attributeId, issuer,
                     category, context);
+            if (currentMetrics != null) {
+                currentMetrics.recordAttributeFinder(module.getIdentifier(), System.nanoTime() - start);
+            }
 
             // if there was an error, we stop right away
             if (result.indeterminate()) {
@@ -195,6 +250,56 @@ public class AttributeFinder {
         return new EvaluationResult(new BagAttribute(attributeType,attributeValues));
     }
 
+    /**
+     * Returns whether the values of the given designator may be reused for the rest of the
+     * evaluation of a request. This is the case if every designator module that is asked for the
+     * attribute is memoizable.
+     *
+     * @param attributeId the identifier of the attributes to find
+     * @param category the category of the attributes
+     * @return true if resolved values may be memoized for the request
+     */
+    public boolean isMemoizable(URI attributeId, URI category) {
+
+        for (AttributeFinderModule module : designatorModules) {
+            if(module.getSupportedIds() != null && module.getSupportedCategories() != null){
+                if (!module.getSupportedCategories().contains(category.toString()) ||
+                        !module.getSupportedIds().contains(attributeId.toString())){
+                       continue;
+                }
+            }
+            if (!module.isMemoizable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a decision made with the values of the given designator may be cached. This
+     * is the case if every designator module that is asked for the attribute is decision
+     * cacheable (see <code>AttributeFinderModule.isDecisionCacheable</code>).
+     *
+     * @param attributeId the identifier of the attributes to find
+     * @param category the category of the attributes
+     * @return true if decisions made with the resolved values may be cached
+     */
+    public boolean isDecisionCacheable(URI attributeId, URI category) {
+
+        for (AttributeFinderModule module : designatorModules) {
+            if(module.getSupportedIds() != null && module.getSupportedCategories() != null){
+                if (!module.getSupportedCategories().contains(category.toString()) ||
+                        !module.getSupportedIds().contains(attributeId.toString())){
+                       continue;
+                }
+            }
+            if (!module.isDecisionCacheable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Tries to find attribute values based on the given selector data. The result, if successful,
      * must always contain a <code>BagAttribute</code>, even if only one value was found. If no
@@ -210,6 +315,7 @@ public class AttributeFinder {
     public EvaluationResult findAttribute(String contextPath, URI attributeType,
                                           EvaluationCtx context, String xpathVersion) {
         Iterator it = selectorModules.iterator();
+        PDPMetrics currentMetrics = getMetrics(context);
 
         // start with empty list of Attribute Values
         List<AttributeValue> attributeValues = new ArrayList<AttributeValue>();
@@ -219,8 +325,12 @@ public class AttributeFinder {
             AttributeFinderModule module = (AttributeFinderModule) (it.next());
 
             // see if the module can find an attribute value
+            long start = currentMetrics != null ? System.nanoTime() : 0;
             EvaluationResult result = module.findAttribute(contextPath,
                     attributeType, null, null, context, xpathVersion);
+            if (currentMetrics != null) {
+                currentMetrics.recordAttributeFinder(module.getIdentifier(), System.nanoTime() - start);
+            }
 
             // if there was an error, we stop right away
             if (result.indeterminate()) {
@@ -270,6 +380,7 @@ public class AttributeFinder {
                         Node root, EvaluationCtx context, String xpathVersion) {
 
         Iterator it = selectorModules.iterator();
+        PDPMetrics currentMetrics = getMetrics(context);
 
         // start with empty list of Attribute Values
         List<AttributeValue> attributeValues = new ArrayList<AttributeValue>();
@@ -279,8 +390,12 @@ public class AttributeFinder {
             AttributeFinderModule module = (AttributeFinderModule) (it.next());
 
             // see if the module can find an attribute value
+            long start = currentMetrics != null ? System.nanoTime() : 0;
             EvaluationResult result = module.findAttribute(contextPath, 
                     attributeType, contextSelector, root, context, xpathVersion);
+            if (currentMetrics != null) {
+                currentMetrics.recordAttributeFinder(module.getIdentifier(), System.nanoTime() - start);
+            }
 
             // if there was an error, we stop right away
             if (result.indeterminate()) {
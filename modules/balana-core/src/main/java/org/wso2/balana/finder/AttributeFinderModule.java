@@ -40,6 +40,7 @@ import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.attr.BagAttribute;
 
 import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.metrics.PDPMetrics;
 
 import java.net.URI;
 
@@ -113,6 +114,31 @@ public abstract class AttributeFinderModule {
         return null;
     }
 
+    /**
+     * Returns true if the values resolved by this module for a request may be reused for the rest
+     * of the evaluation of that request. The evaluation context then asks this module at most once
+     * per request for a given category, attribute id, data type and issuer, including lookups that
+     * found no values or failed. Modules whose values can change while a single request is being
+     * evaluated should return false. By default this method returns true.
+     *
+     * @return true if resolved values may be memoized for the request
+     */
+    public boolean isMemoizable() {
+        return true;
+    }
+
+    /**
+     * Returns true if the values resolved by this module only depend on the attributes of the
+     * request, so that a decision made with them may be cached by the PDP and reused for another
+     * request with the same attributes. Modules that read data that can change, such as the roles
+     * of a user in a directory, must return false. By default this method returns false.
+     *
+     * @return true if decisions made with the resolved values may be cached
+     */
+    public boolean isDecisionCacheable() {
+        return false;
+    }
+
     /**
      * This is an experimental method that asks the module to invalidate any cache values it may
      * contain. This is not used by any of the core processing code, but it may be used by
@@ -132,6 +158,17 @@ public abstract class AttributeFinderModule {
 
     }
 
+    /**
+     * Gives this module the <code>PDPMetrics</code> of the PDP that uses it, so that it can report
+     * its own measurements, such as the hits of a cache. This is called by the
+     * <code>AttributeFinder</code>. By default this method does nothing.
+     *
+     * @param metrics the <code>PDPMetrics</code>, or null if nothing is measured
+     */
+    public void setMetrics(PDPMetrics metrics) {
+
+    }
+
     /**
      * Tries to find attribute values based on the given designator data. The result, if successful,
      * must always contain a <code>BagAttribute</code>, even if only one value was found. If no
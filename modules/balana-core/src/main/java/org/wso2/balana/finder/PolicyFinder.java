@@ -48,6 +48,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is used by the PDP to find all policies used in evaluation. A PDP is given a
@@ -76,23 +77,28 @@ public class PolicyFinder {
     /**
      * all modules in this finder
      */
-    private Set allModules;
+    private volatile Set allModules;
 
     /**
      * all the request modules
      */
-    private Set requestModules;
+    private volatile Set requestModules;
 
     /**
      * all the reference modules
      */
-    private Set referenceModules;
+    private volatile Set referenceModules;
 
     /**
      * the logger we'll use for all messages
      */
     private static final Log logger = LogFactory.getLog(PolicyFinder.class);
 
+    /**
+     * incremented every time the policies known to this finder may have changed
+     */
+    private final AtomicLong generation = new AtomicLong();
+
     /**
      * Default constructor that creates a <code>PDPConfig</code> from components.
      */
@@ -119,19 +125,45 @@ public class PolicyFinder {
     public void setModules(Set modules) {
         Iterator it = modules.iterator();
 
-        allModules = new HashSet(modules);
-        requestModules = new HashSet();
-        referenceModules = new HashSet();
+        // the sets are fully built before they are published, so that concurrent evaluations
+        // never see a partially configured finder
+        Set newRequestModules = new HashSet();
+        Set newReferenceModules = new HashSet();
 
         while (it.hasNext()) {
             PolicyFinderModule module = (PolicyFinderModule) (it.next());
 
             if (module.isRequestSupported())
-                requestModules.add(module);
+                newRequestModules.add(module);
 
             if (module.isIdReferenceSupported())
-                referenceModules.add(module);
+                newReferenceModules.add(module);
         }
+
+        allModules = new HashSet(modules);
+        requestModules = newRequestModules;
+        referenceModules = newReferenceModules;
+        notifyPoliciesChanged();
+    }
+
+    /**
+     * Returns the policy generation of this finder. The generation changes every time the finder
+     * or one of its modules is initialized, or a module reports that its policies have changed, so
+     * it can be used to drop data derived from the previous policies, such as cached decisions.
+     *
+     * @return current policy generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Tells this finder that the policies of one of its modules have been (re)loaded. Modules that
+     * load policies outside of <code>init</code> should call this once the new policies are in
+     * place.
+     */
+    public void notifyPoliciesChanged() {
+        generation.incrementAndGet();
     }
 
     /**
@@ -148,6 +180,7 @@ public class PolicyFinder {
             PolicyFinderModule module = (PolicyFinderModule) (it.next());
             module.init(this);
         }
+        notifyPoliciesChanged();
     }
 
     /**
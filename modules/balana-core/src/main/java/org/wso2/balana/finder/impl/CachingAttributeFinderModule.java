@@ -0,0 +1,537 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.finder.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Node;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.finder.AttributeFinderModule;
+import org.wso2.balana.metrics.PDPMetrics;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An <code>AttributeFinderModule</code> that caches the values resolved by another module across
+ * requests. Cached values are keyed by the category, attribute id, data type and issuer of the
+ * designator, and by the values of the request attributes that the wrapped module uses to resolve
+ * them (see <code>addKeyAttribute</code>). For example a module that looks up the roles of a user
+ * depends on the subject-id of the request, so the subject-id must be a key attribute. Nothing is
+ * cached until at least one key attribute is added, so that values resolved for one request are
+ * never returned for another.
+ * <p>
+ * Entries are evicted in least recently used order once the maximum number of entries is reached,
+ * and expire after the time to live of their attribute id. When several requests miss the same
+ * key at the same time, only one of them calls the wrapped module and the others wait for its
+ * result, for at most the load timeout of this cache. A lookup that is made again by the thread
+ * that is already resolving it, or that times out, calls the wrapped module without caching.
+ * Results with an error status are not cached.
+ * <p>
+ * Selector lookups are passed to the wrapped module without caching.
+ */
+public class CachingAttributeFinderModule extends AttributeFinderModule {
+
+    /**
+     * the module that resolves the values
+     */
+    private final AttributeFinderModule module;
+
+    /**
+     * maximum number of cached values
+     */
+    private final int maxEntries;
+
+    /**
+     * time in milliseconds values are kept if there is no time to live for their attribute id
+     */
+    private final long defaultTimeToLive;
+
+    /**
+     * attribute id --> time to live in milliseconds
+     */
+    private final ConcurrentMap<URI, Long> timeToLives = new ConcurrentHashMap<URI, Long>();
+
+    /**
+     * request attributes that are part of the cache key
+     */
+    private final List<KeyAttribute> keyAttributes = new CopyOnWriteArrayList<KeyAttribute>();
+
+    /**
+     * cached values in least recently used order
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * lookups that are being made by the wrapped module
+     */
+    private final ConcurrentMap<String, Load> loading = new ConcurrentHashMap<String, Load>();
+
+    /**
+     * time in milliseconds a lookup waits for another request that resolves the same key
+     */
+    private volatile long loadTimeout = DEFAULT_LOAD_TIMEOUT;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * receiver of the cache hits and misses when the request is not evaluated by a PDP that has
+     * metrics, or null if they are not reported
+     */
+    private volatile PDPMetrics metrics;
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log logger = LogFactory.getLog(CachingAttributeFinderModule.class);
+
+    /**
+     * default time in milliseconds a lookup waits for another request that resolves the same key
+     */
+    public static final long DEFAULT_LOAD_TIMEOUT = 30000;
+
+    /**
+     * Creates a new <code>CachingAttributeFinderModule</code>
+     *
+     * @param module the module whose values are cached
+     * @param maxEntries maximum number of cached values
+     * @param defaultTimeToLive time in milliseconds values are kept, or 0 or less to keep values
+     *                          until they are evicted
+     */
+    public CachingAttributeFinderModule(AttributeFinderModule module, int maxEntries,
+                                        long defaultTimeToLive) {
+
+        if (module == null) {
+            throw new IllegalArgumentException("Attribute finder module can not be null");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Attribute cache size must be at least one");
+        }
+        this.module = module;
+        this.maxEntries = maxEntries;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Sets the time to live of the values of an attribute id, which overrides the default time to
+     * live of this cache
+     *
+     * @param attributeId the attribute id
+     * @param timeToLive time in milliseconds values are kept, or 0 or less to keep values until
+     *                   they are evicted
+     */
+    public void setTimeToLive(URI attributeId, long timeToLive) {
+        timeToLives.put(attributeId, timeToLive);
+    }
+
+    /**
+     * Sets the time a lookup waits for another request that resolves the same key. When it runs
+     * out, the lookup calls the wrapped module itself without caching the result.
+     *
+     * @param loadTimeout time in milliseconds, which must be at least one
+     */
+    public void setLoadTimeout(long loadTimeout) {
+        if (loadTimeout < 1) {
+            throw new IllegalArgumentException("Attribute cache load timeout must be at least one");
+        }
+        this.loadTimeout = loadTimeout;
+    }
+
+    /**
+     * Adds a request attribute that the wrapped module uses to resolve values. The values of this
+     * attribute in the request become part of the cache key. The attribute is read through the
+     * evaluation context, so it should be present in the request, and it must not be resolved by
+     * the wrapped module itself. Lookups are only cached once a key attribute is added.
+     *
+     * @param category the category of the attribute
+     * @param attributeId the id of the attribute
+     * @param attributeType the data type of the attribute
+     */
+    public void addKeyAttribute(URI category, URI attributeId, URI attributeType) {
+        keyAttributes.add(new KeyAttribute(category, attributeId, attributeType));
+    }
+
+    /**
+     * Returns the module whose values are cached
+     *
+     * @return the wrapped <code>AttributeFinderModule</code>
+     */
+    public AttributeFinderModule getModule() {
+        return module;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return module.getIdentifier();
+    }
+
+    @Override
+    public boolean isDesignatorSupported() {
+        return module.isDesignatorSupported();
+    }
+
+    @Override
+    public boolean isSelectorSupported() {
+        return module.isSelectorSupported();
+    }
+
+    @Override
+    public Set<String> getSupportedCategories() {
+        return module.getSupportedCategories();
+    }
+
+    @Override
+    public Set getSupportedIds() {
+        return module.getSupportedIds();
+    }
+
+    @Override
+    public boolean isMemoizable() {
+        return module.isMemoizable();
+    }
+
+    @Override
+    public boolean isDecisionCacheable() {
+        return module.isDecisionCacheable();
+    }
+
+    /**
+     * Removes all cached values and asks the wrapped module to invalidate its own cache
+     */
+    @Override
+    public void invalidateCache() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        module.invalidateCache();
+    }
+
+    /**
+     * Reports the hits and misses of this cache to the given metrics, and passes them on to the
+     * wrapped module. The metrics of the PDP that evaluates a request are used instead, if it has
+     * any.
+     */
+    @Override
+    public void setMetrics(PDPMetrics metrics) {
+        this.metrics = metrics;
+        module.setMetrics(metrics);
+    }
+
+    @Override
+    public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
+                                          URI category, EvaluationCtx context) {
+
+        String key = createKey(attributeType, attributeId, issuer, category, context);
+        if (key == null) {
+            return module.findAttribute(attributeType, attributeId, issuer, category, context);
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiry > 0 && entry.expiry < System.currentTimeMillis()) {
+                    entries.remove(key);
+                } else {
+                    hitCount.incrementAndGet();
+                    recordCacheAccess(context, true);
+                    return entry.result;
+                }
+            }
+        }
+        missCount.incrementAndGet();
+        recordCacheAccess(context, false);
+
+        Load load = new Load();
+        Load existing = loading.putIfAbsent(key, load);
+        if (existing != null) {
+            if (existing.owner == Thread.currentThread()) {
+                // the wrapped module asks for the value it is resolving, which would never finish
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Lookup of " + attributeId + " is made while resolving it, " +
+                            "so it is not cached");
+                }
+                return module.findAttribute(attributeType, attributeId, issuer, category,
+                        context);
+            }
+            // another request is already resolving this key, so wait for its result
+            EvaluationResult result = await(existing, attributeId);
+            if (result != null) {
+                return result;
+            }
+            return module.findAttribute(attributeType, attributeId, issuer, category, context);
+        }
+
+        try {
+            loadCount.incrementAndGet();
+            EvaluationResult result = module.findAttribute(attributeType, attributeId, issuer,
+                    category, context);
+            if (!result.indeterminate()) {
+                put(key, attributeId, result);
+            }
+            load.future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            load.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @Override
+    public EvaluationResult findAttribute(String contextPath, URI attributeType,
+                    String contextSelector, Node root, EvaluationCtx context, String xpathVersion) {
+        return module.findAttribute(contextPath, attributeType, contextSelector, root, context,
+                xpathVersion);
+    }
+
+    /**
+     * Returns the number of cached values
+     *
+     * @return number of cached values
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that were answered from this cache
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that were not found in this cache, including the lookups that
+     * waited for another request to resolve the same key
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of times the wrapped module was called for a cacheable lookup
+     *
+     * @return number of loads
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of values that were evicted because the cache was full
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Private helper that reports a hit or miss of this cache to the metrics of the PDP that
+     * evaluates the request, or to the metrics of this module if that PDP has none
+     */
+    private void recordCacheAccess(EvaluationCtx context, boolean hit) {
+
+        PDPMetrics currentMetrics = PDPMetrics.getMetrics(context);
+        if (currentMetrics == null) {
+            currentMetrics = metrics;
+        }
+        if (currentMetrics != null) {
+            currentMetrics.recordCacheAccess(PDPMetrics.ATTRIBUTE_CACHE, hit);
+        }
+    }
+
+    /**
+     * Private helper that waits for the result of a lookup made by another request. Returns null
+     * if it does not finish within the load timeout, or if the waiting thread is interrupted.
+     */
+    private EvaluationResult await(Load load, URI attributeId) {
+
+        try {
+            return load.future.get(loadTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            logger.warn("Lookup of " + attributeId + " did not finish within " + loadTimeout +
+                    " ms, so it is resolved again without caching");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Private helper that caches a result
+     */
+    private void put(String key, URI attributeId, EvaluationResult result) {
+
+        Long timeToLive = timeToLives.get(attributeId);
+        if (timeToLive == null) {
+            timeToLive = defaultTimeToLive;
+        }
+        long expiry = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+
+        synchronized (entries) {
+            entries.put(key, new Entry(result, expiry));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Private helper that creates the cache key of a lookup. Returns null if there are no key
+     * attributes or a key attribute could not be resolved, in which case the lookup is not cached.
+     */
+    private String createKey(URI attributeType, URI attributeId, String issuer, URI category,
+                             EvaluationCtx context) {
+
+        if (keyAttributes.isEmpty()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No key attributes are configured, lookup of " + attributeId +
+                        " is not cached");
+            }
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        append(key, category.toString());
+        append(key, attributeId.toString());
+        append(key, attributeType.toString());
+        append(key, issuer);
+
+        for (KeyAttribute keyAttribute : keyAttributes) {
+            EvaluationResult result = context.getAttribute(keyAttribute.type, keyAttribute.id,
+                    null, keyAttribute.category);
+            if (result.indeterminate()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Could not resolve key attribute " + keyAttribute.id +
+                            ", lookup of " + attributeId + " is not cached");
+                }
+                return null;
+            }
+
+            List<String> values = new ArrayList<String>();
+            Iterator it = ((BagAttribute) result.getAttributeValue()).iterator();
+            while (it.hasNext()) {
+                values.add(((AttributeValue) it.next()).encode());
+            }
+            Collections.sort(values);
+
+            key.append('#');
+            for (String value : values) {
+                append(key, value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Private helper that appends a length prefixed value, so that keys can not be ambiguous
+     */
+    private static void append(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append('-');
+        } else {
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * A request attribute that is part of the cache key
+     */
+    private static class KeyAttribute {
+
+        private final URI category;
+
+        private final URI id;
+
+        private final URI type;
+
+        KeyAttribute(URI category, URI id, URI type) {
+            this.category = category;
+            this.id = id;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A lookup that is being made by the wrapped module, with the thread that makes it
+     */
+    private static class Load {
+
+        private final CompletableFuture<EvaluationResult> future =
+                new CompletableFuture<EvaluationResult>();
+
+        private final Thread owner = Thread.currentThread();
+    }
+
+    /**
+     * A cached result with its expiry time
+     */
+    private static class Entry {
+
+        private final EvaluationResult result;
+
+        private final long expiry;
+
+        Entry(EvaluationResult result, long expiry) {
+            this.result = result;
+            this.expiry = expiry;
+        }
+    }
+}
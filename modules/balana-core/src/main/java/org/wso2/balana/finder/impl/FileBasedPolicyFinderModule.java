@@ -17,53 +17,42 @@
 package org.wso2.balana.finder.impl;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.wso2.balana.AbstractPolicy;
-import org.wso2.balana.DOMHelper;
-import org.wso2.balana.MatchResult;
-import org.wso2.balana.Policy;
-import org.wso2.balana.PolicyMetaData;
-import org.wso2.balana.PolicyReference;
-import org.wso2.balana.PolicySet;
-import org.wso2.balana.VersionConstraints;
-import org.wso2.balana.combine.PolicyCombiningAlgorithm;
 import org.wso2.balana.combine.xacml2.DenyOverridesPolicyAlg;
-import org.wso2.balana.ctx.EvaluationCtx;
-import org.wso2.balana.ctx.Status;
 import org.wso2.balana.finder.PolicyFinder;
-import org.wso2.balana.finder.PolicyFinderModule;
-import org.wso2.balana.finder.PolicyFinderResult;
-import org.wso2.balana.utils.Utils;
 
 /**
  * This is file based policy repository.  Policies can be inside the directory in a file system.
  * Then you can set directory location using "org.wso2.balana.PolicyDirectory" JAVA property
  */
-public class FileBasedPolicyFinderModule extends PolicyFinderModule {
-
-    private PolicyFinder finder = null;
+public class FileBasedPolicyFinderModule extends SnapshotPolicyFinderModule {
 
-    private Map<URI, AbstractPolicy> policies;
+    /**
+     * whether a subclass changes how the policy files are parsed by overriding
+     * <code>loadPolicy</code>
+     */
+    private final boolean loadPolicyOverridden = isLoadPolicyOverridden(getClass());
 
     private Set<String> policyLocations;
 
-    private PolicyCombiningAlgorithm combiningAlg;
+    /**
+     * the errors of the last load of the policies, by policy file
+     */
+    private volatile Map<String, Exception> loadErrors = Collections.emptyMap();
 
     /**
      * the logger we'll use for all messages
@@ -72,8 +61,9 @@ public class FileBasedPolicyFinderModule extends PolicyFinderModule {
 
     public static final String POLICY_DIR_PROPERTY = "org.wso2.balana.PolicyDirectory";
 
+    public static final String COMPILE_POLICIES_PROPERTY = "org.wso2.balana.CompilePolicies";
+
     public FileBasedPolicyFinderModule() {
-        policies = new HashMap<URI, AbstractPolicy>();
         if (System.getProperty(POLICY_DIR_PROPERTY) != null) {
             policyLocations = new HashSet<String>();
             policyLocations.add(System.getProperty(POLICY_DIR_PROPERTY));
@@ -81,10 +71,19 @@ public class FileBasedPolicyFinderModule extends PolicyFinderModule {
     }
 
     public FileBasedPolicyFinderModule(Set<String> policyLocations) {
-        policies = new HashMap<URI, AbstractPolicy>();
         this.policyLocations = policyLocations;
     }
 
+    /**
+     * Returns the errors of the files that could not be loaded the last time the policies were
+     * loaded
+     *
+     * @return the errors, by policy file, in the order the files were loaded
+     */
+    public Map<String, Exception> getLoadErrors() {
+        return loadErrors;
+    }
+
     @Override
     public void init(PolicyFinder finder) {
 
@@ -93,98 +92,85 @@ public class FileBasedPolicyFinderModule extends PolicyFinderModule {
         combiningAlg = new DenyOverridesPolicyAlg();
     }
 
-    @Override
-    public PolicyFinderResult findPolicy(EvaluationCtx context) {
-
-        ArrayList<AbstractPolicy> selectedPolicies = new ArrayList<AbstractPolicy>();
-        Set<Map.Entry<URI, AbstractPolicy>> entrySet = policies.entrySet();
-
-        // iterate through all the policies we currently have loaded
-        for (Map.Entry<URI, AbstractPolicy> entry : entrySet) {
-
-            AbstractPolicy policy = entry.getValue();
-            MatchResult match = policy.match(context);
-            int result = match.getResult();
-
-            // if target matching was indeterminate, then return the error
-            if (result == MatchResult.INDETERMINATE)
-                return new PolicyFinderResult(match.getStatus());
-
-            // see if the target matched
-            if (result == MatchResult.MATCH) {
+    /**
+     * Reloads the policies from the policy locations. The policies are loaded and indexed while the
+     * previous policies are still used, and then replace them at once, so requests that are
+     * evaluated during the reload see either the previous or the new policies. Requests that are
+     * being evaluated with the previous policies finish with them.
+     */
+    public void reloadPolicies() {
+        loadPolicies();
+    }
 
-                if ((combiningAlg == null) && (selectedPolicies.size() > 0)) {
-                    // we found a match before, so this is an error
-                    ArrayList<String> code = new ArrayList<String>();
-                    code.add(Status.STATUS_PROCESSING_ERROR);
-                    Status status = new Status(code, "too many applicable "
-                            + "top-level policies");
-                    return new PolicyFinderResult(status);
+    /**
+     * Re-sets the policies known to this module to those contained in the
+     * given files. The files are parsed in parallel, but when several files contain a policy with
+     * the same id, the policy of the file that is listed last is kept, as if the files were loaded
+     * one after the other. The files of a directory are listed in name order.
+     * <p>
+     * Each file is read by <code>readPolicy</code>, which subclasses may override to change how a
+     * policy file is loaded. Overrides of <code>loadPolicy</code> are called by it as well.
+     */
+    protected synchronized void loadPolicies() {
+
+        List<String> policyFiles = listPolicyFiles();
+        AbstractPolicy[] loaded = new AbstractPolicy[policyFiles.size()];
+        Exception[] errors = new Exception[policyFiles.size()];
+        readPolicies(policyFiles, loaded, errors);
+
+        Map<URI, AbstractPolicy> policies = new LinkedHashMap<URI, AbstractPolicy>();
+        Map<URI, String> policyFileById = new HashMap<URI, String>();
+        Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+        for (int i = 0; i < loaded.length; i++) {
+            if (errors[i] != null) {
+                failures.put(policyFiles.get(i), errors[i]);
+            } else if (loaded[i] != null) {
+                URI id = loaded[i].getId();
+                String previous = policyFileById.put(id, policyFiles.get(i));
+                if (previous != null) {
+                    log.warn("Policy " + id + " of " + policyFiles.get(i) + " replaces the one of " +
+                            previous);
                 }
-
-                // this is the first match we've found, so remember it
-                selectedPolicies.add(policy);
+                policies.put(id, loaded[i]);
             }
         }
 
-        // no errors happened during the search, so now take the right
-        // action based on how many policies we found
-        switch (selectedPolicies.size()) {
-            case 0:
-                if (log.isDebugEnabled()) {
-                    log.debug("No matching XACML policy found");
-                }
-                return new PolicyFinderResult();
-            case 1:
-                return new PolicyFinderResult((selectedPolicies.get(0)));
-            default:
-                return new PolicyFinderResult(new PolicySet(null, combiningAlg, null, selectedPolicies));
-        }
-    }
-
-    @Override
-    public PolicyFinderResult findPolicy(URI idReference, int type, VersionConstraints constraints,
-                                         PolicyMetaData parentMetaData) {
-
-        AbstractPolicy policy = policies.get(idReference);
-        if (policy != null) {
-            if (type == PolicyReference.POLICY_REFERENCE) {
-                if (policy instanceof Policy) {
-                    return new PolicyFinderResult(policy);
-                }
-            } else {
-                if (policy instanceof PolicySet) {
-                    return new PolicyFinderResult(policy);
+        loadErrors = Collections.unmodifiableMap(failures);
+        if (!failures.isEmpty()) {
+            StringBuilder message = new StringBuilder("Fail to load " + failures.size() + " of " +
+                    policyFiles.size() + " policies :");
+            for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+                message.append("\n  ").append(failure.getKey()).append(" : ").
+                        append(failure.getValue().getMessage());
+            }
+            log.error(message.toString());
+            if (log.isDebugEnabled()) {
+                for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+                    log.debug("Fail to load policy : " + failure.getKey(), failure.getValue());
                 }
             }
         }
 
-        // if there was an error loading the policy, return the error
-        ArrayList<String> code = new ArrayList<String>();
-        code.add(Status.STATUS_PROCESSING_ERROR);
-        Status status = new Status(code,
-                "couldn't load referenced policy");
-        return new PolicyFinderResult(status);
-    }
-
-    @Override
-    public boolean isIdReferenceSupported() {
-        return true;
-    }
+        PolicyTargetIndex policyIndex = new PolicyTargetIndex(policies.values());
+        if (log.isDebugEnabled()) {
+            log.debug("Indexed " + policyIndex.size() + " policies, " +
+                    policyIndex.getUnindexedCount() + " of them could not be indexed");
+        }
+        snapshot = new PolicySnapshot(policies, policyIndex);
 
-    @Override
-    public boolean isRequestSupported() {
-        return true;
+        if (finder != null) {
+            finder.notifyPoliciesChanged();
+        }
     }
 
     /**
-     * Re-sets the policies known to this module to those contained in the
-     * given files.
+     * Private helper that lists the policy files of all policy locations
+     *
+     * @return the paths of the policy files
      */
-    protected void loadPolicies() {
-
-        policies.clear();
+    private List<String> listPolicyFiles() {
 
+        List<String> policyFiles = new ArrayList<String>();
         for (String policyLocation : policyLocations) {
 
             File file = new File(policyLocation);
@@ -195,72 +181,81 @@ public class FileBasedPolicyFinderModule extends PolicyFinderModule {
             if (file.isDirectory()) {
                 String[] files = file.list();
                 if (files != null) {
+                    Arrays.sort(files);
                     for (String policyFileLocation : files) {
                         File policyFile = new File(policyLocation + File.separator + policyFileLocation);
                         // we check for hidden files to avoid hidden OS files.
                         if (!policyFile.isDirectory() && !policyFile.isHidden()) {
-                            loadPolicy(policyLocation + File.separator + policyFileLocation, finder);
+                            policyFiles.add(policyLocation + File.separator + policyFileLocation);
                         }
                     }
                 }
             } else {
-                loadPolicy(policyLocation, finder);
+                policyFiles.add(policyLocation);
             }
         }
+        return policyFiles;
     }
 
     /**
-     * Private helper that tries to load the given file-based policy, and
-     * returns null if any error occurs.
+     * Reads the policy of a policy file. This is called by <code>loadPolicies</code> for each
+     * policy file, from up to <code>loadParallelism</code> threads at once, so overrides must be
+     * thread safe. An exception marks the file as failed, see <code>getLoadErrors</code>.
+     * <p>
+     * If a subclass overrides <code>loadPolicy</code>, the policy is created from the element
+     * that it returns, so such overrides are called from several threads as well.
+     *
+     * @param policyFile file path to policy
+     * @return the policy, or null if the file does not contain a policy or policy set
+     * @throws Exception if the file can not be read or the policy is not valid
+     */
+    @Override
+    protected AbstractPolicy readPolicy(String policyFile) throws Exception {
+
+        if (!loadPolicyOverridden) {
+            return super.readPolicy(policyFile);
+        }
+        Element root = loadPolicy(policyFile, finder);
+        return root == null ? null : createPolicy(root);
+    }
+
+    /**
+     * Parses the given policy file, and returns its root element, or null if any error occurs.
+     * Subclasses may override this to change how a file is read, for example to decrypt it, or
+     * return null to leave a file out. <code>readPolicy</code> then creates the policy from the
+     * returned element, possibly on several threads at once, so overrides must be thread safe.
      *
      * @param policyFile file path to policy
      * @param finder     policy finder
      * @return org.w3c.dom.Element
      */
     protected Element loadPolicy(String policyFile, PolicyFinder finder) {
-        Element root = null;
-        AbstractPolicy policy = null;
-        InputStream stream = null;
 
         try {
-            // create the factory
-            DocumentBuilderFactory factory = Utils.getSecuredDocumentBuilderFactory();
-            factory.setIgnoringComments(true);
-            factory.setNamespaceAware(true);
-            factory.setValidating(false);
-
-            // create a builder based on the factory & try to load the policy
-            DocumentBuilder db = factory.newDocumentBuilder();
-            stream = new FileInputStream(policyFile);
-            Document doc = db.parse(stream);
-
-            // handle the policy, if it's a known type
-            root = doc.getDocumentElement();
-            String name = DOMHelper.getLocalName(root);
-
-            if (name.equals("Policy")) {
-                policy = Policy.getInstance(root);
-            } else if (name.equals("PolicySet")) {
-                policy = PolicySet.getInstance(root, finder);
-            }
+            return parsePolicy(policyFile);
         } catch (Exception e) {
             // just only logs
             log.error("Fail to load policy : " + policyFile, e);
-        } finally {
-            if (stream != null) {
-                try {
-                    stream.close();
-                } catch (IOException e) {
-                    log.error("Error while closing input stream");
-                }
-            }
+            return null;
         }
+    }
 
-        if (policy != null) {
-            policies.put(policy.getId(), policy);
+    /**
+     * Private helper that checks whether a subclass overrides <code>loadPolicy</code>
+     *
+     * @param type the class of the module
+     * @return true if <code>loadPolicy</code> is overridden
+     */
+    private static boolean isLoadPolicyOverridden(Class<?> type) {
+
+        for (Class<?> c = type; c != FileBasedPolicyFinderModule.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("loadPolicy", String.class, PolicyFinder.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // look at the super class
+            }
         }
-
-        return root;
+        return false;
     }
-
 }
@@ -0,0 +1,74 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.finder.impl;
+
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable set of loaded policies, by policy id, with the target index over them. The policy
+ * finder modules of this package replace their snapshot as a whole when the policies change, so a
+ * request is always evaluated against one complete set of policies, without locking.
+ */
+class PolicySnapshot {
+
+    private final Map<URI, AbstractPolicy> policies;
+
+    /**
+     * target index over the policies, or null if the policies are not indexed
+     */
+    private final PolicyTargetIndex policyIndex;
+
+    /**
+     * Creates a snapshot of the given policies. The map must not be changed afterwards.
+     *
+     * @param policies the policies, by policy id
+     * @param policyIndex the target index over the policies, or null to match every policy
+     */
+    PolicySnapshot(Map<URI, AbstractPolicy> policies, PolicyTargetIndex policyIndex) {
+        this.policies = Collections.unmodifiableMap(policies);
+        this.policyIndex = policyIndex;
+    }
+
+    Map<URI, AbstractPolicy> getPolicies() {
+        return policies;
+    }
+
+    AbstractPolicy getPolicy(URI id) {
+        return policies.get(id);
+    }
+
+    /**
+     * Returns the policies that may match the given request
+     *
+     * @param context the representation of the request
+     * @return the candidate policies
+     */
+    Collection<AbstractPolicy> getCandidates(EvaluationCtx context) {
+        if (policyIndex != null) {
+            return policyIndex.getCandidates(context);
+        }
+        return policies.values();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.finder.impl;
+
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.AbstractTarget;
+import org.wso2.balana.Policy;
+import org.wso2.balana.PolicySet;
+import org.wso2.balana.TargetMatch;
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
+import org.wso2.balana.cond.EqualFunction;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.cond.Function;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.xacml3.AllOfSelection;
+import org.wso2.balana.xacml3.AnyOfSelection;
+import org.wso2.balana.xacml3.Target;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index over the targets of a set of top-level policies. Policies are indexed on the
+ * equality matches (category, AttributeId, DataType, Issuer and value) found in their XACML 3.0
+ * <code>Target</code>, so that for a given request only the policies that can possibly match, plus
+ * the policies that could not be indexed, need to be matched against the request.
+ * <p>
+ * A policy is indexed on one of its <code>AnyOf</code> elements where every <code>AllOf</code>
+ * contains an equality <code>Match</code> on an <code>AttributeDesignator</code>. If none of those
+ * matches can succeed then the <code>AnyOf</code>, and therefore the whole target, evaluates to
+ * NO_MATCH, so skipping the policy does not change the decision. Candidates are always returned in
+ * the order the policies were given to the index.
+ */
+public class PolicyTargetIndex {
+
+    /**
+     * equality functions whose <code>AttributeValue</code>s implement <code>equals</code> and
+     * <code>hashCode</code> consistently with the function itself
+     */
+    private static final Set<String> INDEXED_FUNCTIONS = new HashSet<String>();
+
+    static {
+        INDEXED_FUNCTIONS.add(EqualFunction.NAME_STRING_EQUAL);
+        INDEXED_FUNCTIONS.add(EqualFunction.NAME_BOOLEAN_EQUAL);
+        INDEXED_FUNCTIONS.add(EqualFunction.NAME_INTEGER_EQUAL);
+        INDEXED_FUNCTIONS.add(EqualFunction.NAME_ANYURI_EQUAL);
+    }
+
+    /**
+     * all policies known to this index, in their original order
+     */
+    private final AbstractPolicy[] policies;
+
+    /**
+     * policies that could not be indexed and must always be matched
+     */
+    private final BitSet unindexed;
+
+    /**
+     * designator key --> postings of the values referenced by the indexed policies
+     */
+    private final Map<DesignatorKey, Postings> postings;
+
+    /**
+     * Creates a new <code>PolicyTargetIndex</code> over the given policies. The iteration order of
+     * the collection is kept and is the order in which candidates are returned.
+     *
+     * @param policies a <code>Collection</code> of top-level <code>AbstractPolicy</code>s
+     */
+    public PolicyTargetIndex(Collection<AbstractPolicy> policies) {
+
+        this.policies = policies.toArray(new AbstractPolicy[policies.size()]);
+        this.unindexed = new BitSet(this.policies.length);
+        this.postings = new LinkedHashMap<DesignatorKey, Postings>();
+
+        for (int i = 0; i < this.policies.length; i++) {
+            List<TargetMatch> matches = getIndexableMatches(this.policies[i]);
+            if (matches == null) {
+                unindexed.set(i);
+                continue;
+            }
+            for (TargetMatch match : matches) {
+                AttributeDesignator designator = (AttributeDesignator) match.getMatchEvaluatable();
+                DesignatorKey key = new DesignatorKey(designator);
+                Postings posting = postings.get(key);
+                if (posting == null) {
+                    posting = new Postings(designator);
+                    postings.put(key, posting);
+                }
+                posting.add(match.getMatchValue(), i);
+            }
+        }
+    }
+
+    /**
+     * Returns the policies that may match the given request. Every policy that is not returned
+     * would evaluate to NO_MATCH for this request.
+     *
+     * @param context the representation of the request
+     * @return a <code>List</code> of candidate <code>AbstractPolicy</code>s in index order
+     */
+    public List<AbstractPolicy> getCandidates(EvaluationCtx context) {
+
+        BitSet candidates = (BitSet) unindexed.clone();
+        for (Postings posting : postings.values()) {
+            posting.collect(context, candidates);
+        }
+
+        List<AbstractPolicy> selected = new ArrayList<AbstractPolicy>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            selected.add(policies[i]);
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of policies known to this index
+     *
+     * @return number of policies
+     */
+    public int size() {
+        return policies.length;
+    }
+
+    /**
+     * Returns the number of policies that could not be indexed and are matched on every request
+     *
+     * @return number of unindexed policies
+     */
+    public int getUnindexedCount() {
+        return unindexed.cardinality();
+    }
+
+    /**
+     * Private helper that selects the equality matches a policy is indexed on. This is one match
+     * from every <code>AllOf</code> of the first <code>AnyOf</code> where such a match exists in all
+     * of them.
+     *
+     * @param policy top-level policy
+     * @return a <code>List</code> of <code>TargetMatch</code> or null if the policy can not be indexed
+     */
+    private static List<TargetMatch> getIndexableMatches(AbstractPolicy policy) {
+
+        if (!(policy instanceof Policy) && !(policy instanceof PolicySet)) {
+            return null;
+        }
+
+        AbstractTarget target = policy.getTarget();
+        if (!(target instanceof Target) || ((Target) target).getAnyOfSelections() == null) {
+            return null;
+        }
+
+        for (AnyOfSelection anyOfSelection : ((Target) target).getAnyOfSelections()) {
+            List<TargetMatch> matches = new ArrayList<TargetMatch>();
+            for (AllOfSelection allOfSelection : anyOfSelection.getAllOfSelections()) {
+                TargetMatch indexable = null;
+                if (allOfSelection.getMatches() != null) {
+                    for (TargetMatch match : allOfSelection.getMatches()) {
+                        if (isIndexable(match)) {
+                            indexable = match;
+                            break;
+                        }
+                    }
+                }
+                if (indexable == null) {
+                    matches = null;
+                    break;
+                }
+                matches.add(indexable);
+            }
+            if (matches != null && !matches.isEmpty()) {
+                return matches;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Private helper that checks whether a match compares a literal value with an attribute
+     * designator, using an equality function that can be answered by a hash lookup.
+     *
+     * @param match <code>TargetMatch</code>
+     * @return true if the match can be indexed
+     */
+    private static boolean isIndexable(TargetMatch match) {
+
+        Function function = match.getMatchFunction();
+        return function instanceof EqualFunction
+                && INDEXED_FUNCTIONS.contains(function.getIdentifier().toString())
+                && match.getMatchValue() != null
+                && !match.getMatchValue().isBag()
+                && match.getMatchEvaluatable() instanceof AttributeDesignator;
+    }
+
+    /**
+     * Identity of an attribute designator, as far as the values it resolves are concerned
+     */
+    private static class DesignatorKey {
+
+        private final URI category;
+        private final URI id;
+        private final URI type;
+        private final String issuer;
+        private final boolean mustBePresent;
+
+        DesignatorKey(AttributeDesignator designator) {
+            this.category = designator.getCategory();
+            this.id = designator.getId();
+            this.type = designator.getType();
+            this.issuer = designator.getIssuer();
+            this.mustBePresent = designator.mustBePresent();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DesignatorKey)) {
+                return false;
+            }
+            DesignatorKey other = (DesignatorKey) o;
+            return mustBePresent == other.mustBePresent && category.equals(other.category)
+                    && id.equals(other.id) && type.equals(other.type)
+                    && (issuer == null ? other.issuer == null : issuer.equals(other.issuer));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = category.hashCode();
+            result = 31 * result + id.hashCode();
+            result = 31 * result + type.hashCode();
+            result = 31 * result + (issuer != null ? issuer.hashCode() : 0);
+            return 31 * result + (mustBePresent ? 1 : 0);
+        }
+    }
+
+    /**
+     * Policies indexed on the values of a single attribute designator
+     */
+    private class Postings {
+
+        private final AttributeDesignator designator;
+
+        private final Map<AttributeValue, BitSet> values = new HashMap<AttributeValue, BitSet>();
+
+        private final BitSet all = new BitSet(policies.length);
+
+        Postings(AttributeDesignator designator) {
+            this.designator = designator;
+        }
+
+        void add(AttributeValue value, int policy) {
+            BitSet bits = values.get(value);
+            if (bits == null) {
+                bits = new BitSet(policies.length);
+                values.put(value, bits);
+            }
+            bits.set(policy);
+            all.set(policy);
+        }
+
+        /**
+         * Resolves the designator once for the request and adds every policy that references one
+         * of the resolved values. If the designator can not be resolved, all policies indexed on it
+         * are kept so that the normal target match reports the error.
+         */
+        void collect(EvaluationCtx context, BitSet candidates) {
+
+            EvaluationResult result = designator.evaluate(context);
+            if (result.indeterminate()) {
+                candidates.or(all);
+                return;
+            }
+
+            BagAttribute bag = (BagAttribute) result.getAttributeValue();
+            Iterator it = bag.iterator();
+            while (it.hasNext()) {
+                AttributeValue value = (AttributeValue) it.next();
+                if (value instanceof StringAttribute
+                        && XACMLConstants.ANY.equals(((StringAttribute) value).getValue())) {
+                    // the wildcard value matches every policy value
+                    candidates.or(all);
+                    return;
+                }
+                BitSet bits = values.get(value);
+                if (bits != null) {
+                    candidates.or(bits);
+                }
+            }
+        }
+    }
+}
@@ -35,8 +35,6 @@
 
 package org.wso2.balana.finder.impl;
 
-
-import org.w3c.dom.Document;
 import org.wso2.balana.*;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.ctx.EvaluationCtx;
@@ -53,18 +51,12 @@ import org.wso2.balana.finder.AttributeFinderModule;
 import java.net.URI;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.wso2.balana.utils.Utils;
 
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.*;
 
 /**
@@ -105,7 +97,7 @@ public class SelectorModule extends AttributeFinderModule {
                   String contextSelector, Node root, EvaluationCtx context, String xpathVersion) {
 
         Node contextNode = null;
-        NamespaceContext namespaceContext = null;
+        Map<String, String> namespaces = null;
 
         if(root == null){
             // root == null means there is not content element defined with the attributes element
@@ -119,62 +111,23 @@ public class SelectorModule extends AttributeFinderModule {
             // 1st assume context node as the root
             contextNode = root;
 
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
-
-            //see if the request root is in a namespace
-            String namespace = null;
-            if(contextNode != null){
-                namespace = contextNode.getNamespaceURI();
-            }
             // name spaces are used, so we need to lookup the correct
             // prefix to use in the search string
-            NamedNodeMap namedNodeMap = contextNode.getAttributes();
-
-            Map<String, String> nsMap = new HashMap<String, String>();
-
-            for (int i = 0; i < namedNodeMap.getLength(); i++) {
-                Node n = namedNodeMap.item(i);
-                // we found the matching namespace, so get the prefix
-                // and then break out
-                String prefix = DOMHelper.getLocalName(n);
-                String nodeValue= n.getNodeValue();
-                nsMap.put(prefix, nodeValue);
-            }
-
-            // if there is not any namespace is defined for content element, default XACML request
-            //  name space would be there.
-            if(XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(namespace)){
-                nsMap.put("xacml", namespace);
-            }
-
-            namespaceContext = new DefaultNamespaceContext(nsMap);
-            xpath.setNamespaceContext(namespaceContext);
+            namespaces = XPathExpressionCache.getNamespaces(contextNode);
 
             try{
-                XPathExpression expression = xpath.compile(contextSelector);
-                NodeList result = (NodeList) expression.evaluate(contextNode, XPathConstants.NODESET);                
+                NodeList result = XPathExpressionCache.evaluate(contextSelector, namespaces,
+                        contextNode);                
                 if(result == null || result.getLength() == 0){
                     throw new Exception("No node is found from context selector id evaluation");    
                 } else if(result.getLength() != 1){
                     throw new Exception("More than one node is found from context selector id evaluation");
                 }
                 contextNode = result.item(0);
-                if(contextNode != null){
-                    // make the node appear to be a direct child of the Document
-                    try{
-                        DocumentBuilderFactory dbf = Utils.getSecuredDocumentBuilderFactory();
-                        DocumentBuilder builder = dbf.newDocumentBuilder();
-                        dbf.setNamespaceAware(true);
-                        Document docRoot = builder.newDocument();
-                        Node topRoot = docRoot.importNode(contextNode, true);
-                        docRoot.appendChild(topRoot);
-                        contextNode = docRoot.getDocumentElement();
-                    } catch (Exception e){
-                        //
-                    }
+                if(contextNode != null && contextPath.trim().startsWith("/")){
+                    // an absolute path needs the node to appear to be a direct child of the
+                    // Document. a relative path is evaluated on the node, without copying it
+                    contextNode = DOMHelper.getAsDocumentElement(contextNode);
                 }
             } catch (Exception e) {
                 List<String> codes = new ArrayList<String>();
@@ -187,49 +140,14 @@ public class SelectorModule extends AttributeFinderModule {
         }
 
 
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-
-        if(namespaceContext == null){
-
-            //see if the request root is in a namespace
-            String namespace = null;
-            if(contextNode != null){
-                namespace = contextNode.getNamespaceURI();
-            }
-            // name spaces are used, so we need to lookup the correct
-            // prefix to use in the search string
-            NamedNodeMap namedNodeMap = contextNode.getAttributes();
-
-            Map<String, String> nsMap = new HashMap<String, String>();
-
-            for (int i = 0; i < namedNodeMap.getLength(); i++) {
-                Node n = namedNodeMap.item(i);
-                // we found the matching namespace, so get the prefix
-                // and then break out
-                String prefix = DOMHelper.getLocalName(n);
-                String nodeValue= n.getNodeValue();
-                nsMap.put(prefix, nodeValue);
-            }
-            
-            // if there is not any namespace is defined for content element, default XACML request
-            //  name space would be there.
-            if(XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_2_0_IDENTIFIER.equals(namespace) ||
-                    XACMLConstants.REQUEST_CONTEXT_1_0_IDENTIFIER.equals(namespace)){
-                nsMap.put("xacml", namespace);
-            }
-
-            namespaceContext = new DefaultNamespaceContext(nsMap);
+        if(namespaces == null){
+            namespaces = XPathExpressionCache.getNamespaces(contextNode);
         }
 
-        xpath.setNamespaceContext(namespaceContext);
-
         NodeList matches;
         
         try {
-            XPathExpression expression = xpath.compile(contextPath);
-            matches = (NodeList) expression.evaluate(contextNode, XPathConstants.NODESET);
+            matches = XPathExpressionCache.evaluate(contextPath, namespaces, contextNode);
             if(matches == null || matches.getLength() < 1){
                 throw new Exception("No node is found from xpath evaluation");                 
             }
@@ -0,0 +1,318 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.balana.finder.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Element;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.DOMHelper;
+import org.wso2.balana.MatchResult;
+import org.wso2.balana.ParsingException;
+import org.wso2.balana.Policy;
+import org.wso2.balana.PolicyCompiler;
+import org.wso2.balana.PolicyMetaData;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.PolicySet;
+import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.combine.PolicyCombiningAlgorithm;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.Status;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.PolicyFinderResult;
+import org.wso2.balana.utils.Utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base of the policy finder modules of this package that keep their policies in a
+ * <code>PolicySnapshot</code>. Requests and policy references are resolved against the current
+ * snapshot, which the modules replace as a whole when their policies change. The policy files are
+ * read by <code>readPolicy</code>, in parallel when many of them are loaded at once.
+ */
+abstract class SnapshotPolicyFinderModule extends PolicyFinderModule {
+
+    /**
+     * the loaded policies and their index. A reload builds a new snapshot and replaces this one,
+     * so a request is always evaluated against one complete set of policies
+     */
+    volatile PolicySnapshot snapshot = new PolicySnapshot(new HashMap<URI, AbstractPolicy>(), null);
+
+    /**
+     * the algorithm that combines the policies that match a request, or null if only one policy
+     * may match
+     */
+    PolicyCombiningAlgorithm combiningAlg;
+
+    /**
+     * the policy finder that policy sets resolve their references with
+     */
+    PolicyFinder finder;
+
+    /**
+     * whether the conditions of loaded policies are compiled into evaluation plans
+     */
+    private boolean compilePolicies =
+            Boolean.getBoolean(FileBasedPolicyFinderModule.COMPILE_POLICIES_PROPERTY);
+
+    /**
+     * the number of threads that parse the policy files
+     */
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(SnapshotPolicyFinderModule.class);
+
+    /**
+     * Sets whether the conditions of the policies are compiled into evaluation plans when they are
+     * loaded (see <code>PolicyCompiler</code>). By default this is set by the
+     * <code>FileBasedPolicyFinderModule.COMPILE_POLICIES_PROPERTY</code> system property. This
+     * must be set before the policies are loaded.
+     *
+     * @param compilePolicies true to compile the policies
+     */
+    public void setCompilePolicies(boolean compilePolicies) {
+        this.compilePolicies = compilePolicies;
+    }
+
+    /**
+     * Sets the number of threads that parse the policy files when the policies are loaded. By
+     * default this is the number of available processors. The policies are the same whatever the
+     * number of threads.
+     *
+     * @param loadParallelism the number of threads, 1 or less parses the files sequentially
+     */
+    public void setLoadParallelism(int loadParallelism) {
+        this.loadParallelism = loadParallelism;
+    }
+
+    /**
+     * Reads the policy of a policy file. This is called for each policy file that is loaded,
+     * from up to <code>loadParallelism</code> threads at once, so overrides must be thread safe.
+     * Subclasses may override this to change how a policy file is read, for example to decrypt
+     * it.
+     *
+     * @param policyFile file path to policy
+     * @return the policy, or null if the file does not contain a policy or policy set
+     * @throws Exception if the file can not be read or the policy is not valid
+     */
+    protected AbstractPolicy readPolicy(String policyFile) throws Exception {
+        return createPolicy(parsePolicy(policyFile));
+    }
+
+    /**
+     * Parses the given policy files with up to <code>loadParallelism</code> threads. Each thread
+     * takes the next file that is not read yet, and reads it with <code>readPolicy</code>.
+     *
+     * @param policyFiles the paths of the policy files
+     * @param loaded the policy of each file, or null if the file is not a policy
+     * @param errors the error of each file that could not be loaded, or null
+     */
+    void readPolicies(final List<String> policyFiles, final AbstractPolicy[] loaded,
+                      final Exception[] errors) {
+
+        final AtomicInteger next = new AtomicInteger();
+        Runnable reader = new Runnable() {
+            public void run() {
+                for (int i = next.getAndIncrement(); i < loaded.length; i = next.getAndIncrement()) {
+                    try {
+                        loaded[i] = readPolicy(policyFiles.get(i));
+                    } catch (Exception e) {
+                        errors[i] = e;
+                    }
+                }
+            }
+        };
+
+        int threads = Math.min(loadParallelism, policyFiles.size());
+        if (threads <= 1) {
+            reader.run();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(reader));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // the files that were not parsed yet are reported as errors
+            next.set(loaded.length);
+            for (int i = 0; i < loaded.length; i++) {
+                if (loaded[i] == null && errors[i] == null) {
+                    errors[i] = e;
+                }
+            }
+        } catch (ExecutionException e) {
+            // the reader catches the errors of each file
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Parses a policy file
+     *
+     * @param policyFile file path to policy
+     * @return the root element of the file
+     * @throws Exception if the file can not be read or parsed
+     */
+    static Element parsePolicy(String policyFile) throws Exception {
+
+        InputStream stream = new FileInputStream(policyFile);
+        try {
+            return Utils.parseSecuredDocument(stream, true).getDocumentElement();
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error("Error while closing input stream");
+            }
+        }
+    }
+
+    /**
+     * Creates the policy or policy set of a parsed policy file, and compiles it if the policies
+     * are compiled
+     *
+     * @param root the root element of the file
+     * @return the policy, or null if the element is not a policy or policy set
+     * @throws ParsingException if the policy is not valid
+     */
+    AbstractPolicy createPolicy(Element root) throws ParsingException {
+
+        AbstractPolicy policy = null;
+        String name = DOMHelper.getLocalName(root);
+        if (name.equals("Policy")) {
+            policy = Policy.getInstance(root);
+        } else if (name.equals("PolicySet")) {
+            policy = PolicySet.getInstance(root, finder);
+        }
+
+        if (policy != null && compilePolicies) {
+            PolicyCompiler.compile(policy);
+        }
+        return policy;
+    }
+
+    @Override
+    public PolicyFinderResult findPolicy(EvaluationCtx context) {
+
+        ArrayList<AbstractPolicy> selectedPolicies = new ArrayList<AbstractPolicy>();
+
+        // only the policies whose targets can match the request need to be matched
+        Collection<AbstractPolicy> candidates = snapshot.getCandidates(context);
+
+        // iterate through all the candidate policies we currently have loaded
+        for (AbstractPolicy policy : candidates) {
+
+            MatchResult match = policy.match(context);
+            int result = match.getResult();
+
+            // if target matching was indeterminate, then return the error
+            if (result == MatchResult.INDETERMINATE)
+                return new PolicyFinderResult(match.getStatus());
+
+            // see if the target matched
+            if (result == MatchResult.MATCH) {
+
+                if ((combiningAlg == null) && (selectedPolicies.size() > 0)) {
+                    // we found a match before, so this is an error
+                    ArrayList<String> code = new ArrayList<String>();
+                    code.add(Status.STATUS_PROCESSING_ERROR);
+                    Status status = new Status(code, "too many applicable "
+                            + "top-level policies");
+                    return new PolicyFinderResult(status);
+                }
+
+                // this is the first match we've found, so remember it
+                selectedPolicies.add(policy);
+            }
+        }
+
+        // no errors happened during the search, so now take the right
+        // action based on how many policies we found
+        switch (selectedPolicies.size()) {
+            case 0:
+                if (log.isDebugEnabled()) {
+                    log.debug("No matching XACML policy found");
+                }
+                return new PolicyFinderResult();
+            case 1:
+                return new PolicyFinderResult((selectedPolicies.get(0)));
+            default:
+                return new PolicyFinderResult(new PolicySet(null, combiningAlg, null, selectedPolicies));
+        }
+    }
+
+    @Override
+    public PolicyFinderResult findPolicy(URI idReference, int type, VersionConstraints constraints,
+                                         PolicyMetaData parentMetaData) {
+
+        AbstractPolicy policy = snapshot.getPolicy(idReference);
+        if (policy != null) {
+            if (type == PolicyReference.POLICY_REFERENCE) {
+                if (policy instanceof Policy) {
+                    return new PolicyFinderResult(policy);
+                }
+            } else {
+                if (policy instanceof PolicySet) {
+                    return new PolicyFinderResult(policy);
+                }
+            }
+        }
+
+        // if there was an error loading the policy, return the error
+        ArrayList<String> code = new ArrayList<String>();
+        code.add(Status.STATUS_PROCESSING_ERROR);
+        Status status = new Status(code,
+                "couldn't load referenced policy");
+        return new PolicyFinderResult(status);
+    }
+
+    @Override
+    public boolean isIdReferenceSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isRequestSupported() {
+        return true;
+    }
+}
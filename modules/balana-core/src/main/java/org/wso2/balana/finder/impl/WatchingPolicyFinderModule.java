@@ -0,0 +1,413 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.finder.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.combine.xacml2.DenyOverridesPolicyAlg;
+import org.wso2.balana.finder.PolicyFinder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A file based policy repository that watches its policy locations, like
+ * <code>FileBasedPolicyFinderModule</code> it loads the policies of the given files and directories,
+ * but afterwards it only parses the files that are added, modified or deleted. The changes are
+ * found with a <code>WatchService</code>. Bursts of changes, such as a copy of many files, are
+ * applied together once no change was seen for a quiet period.
+ * <p>
+ * After the changed files are parsed, the policies, the target index and the policies that policy
+ * references resolve to are replaced at once, so requests are always evaluated against one
+ * complete set of policies. When two files contain policies with the same id, the file whose path
+ * sorts last wins.
+ * <p>
+ * Like <code>FileBasedPolicyFinderModule</code>, each file is read by <code>readPolicy</code>, and
+ * the files that are loaded together are read in parallel.
+ */
+public class WatchingPolicyFinderModule extends SnapshotPolicyFinderModule {
+
+    /**
+     * the default time, in milliseconds, without changes after which the changes are applied
+     */
+    public static final long DEFAULT_QUIET_PERIOD = 200;
+
+    /**
+     * the longest time, in quiet periods, that changes are held back while more changes arrive
+     */
+    private static final int MAX_QUIET_PERIODS = 10;
+
+    private final Set<String> policyLocations;
+
+    private final long quietPeriod;
+
+    /**
+     * the directories whose files are policies
+     */
+    private final Set<Path> directories = new HashSet<Path>();
+
+    /**
+     * the files that are policies, outside of the policy directories
+     */
+    private final Set<Path> files = new HashSet<Path>();
+
+    /**
+     * the loaded policies, by file. Guarded by this module
+     */
+    private final Map<Path, AbstractPolicy> filePolicies = new TreeMap<Path, AbstractPolicy>();
+
+    private WatchService watchService;
+
+    /**
+     * watched directory, by watch key
+     */
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<WatchKey, Path>();
+
+    private Thread watcher;
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(WatchingPolicyFinderModule.class);
+
+    public WatchingPolicyFinderModule(Set<String> policyLocations) {
+        this(policyLocations, DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Creates a module for the given policy locations
+     *
+     * @param policyLocations the policy files and directories
+     * @param quietPeriod the time, in milliseconds, without changes after which the changes are
+     *            applied
+     */
+    public WatchingPolicyFinderModule(Set<String> policyLocations, long quietPeriod) {
+        this.policyLocations = policyLocations;
+        this.quietPeriod = quietPeriod;
+        this.combiningAlg = new DenyOverridesPolicyAlg();
+    }
+
+    @Override
+    public synchronized void init(PolicyFinder finder) {
+
+        this.finder = finder;
+        stop();
+
+        directories.clear();
+        files.clear();
+        for (String policyLocation : policyLocations) {
+            Path path = Paths.get(policyLocation).toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                directories.add(path);
+            } else {
+                files.add(path);
+            }
+        }
+
+        // the locations are watched before they are read, so that no change is missed
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Set<Path> watched = new HashSet<Path>(directories);
+            for (Path file : files) {
+                if (file.getParent() != null) {
+                    watched.add(file.getParent());
+                }
+            }
+            for (Path directory : watched) {
+                if (Files.isDirectory(directory)) {
+                    WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(key, directory);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Fail to watch the policy locations, changes will not be loaded", e);
+        }
+
+        filePolicies.clear();
+        Map<Path, AbstractPolicy> loaded = loadPolicies(listPolicyFiles());
+        for (Map.Entry<Path, AbstractPolicy> entry : loaded.entrySet()) {
+            if (entry.getValue() != null) {
+                filePolicies.put(entry.getKey(), entry.getValue());
+            }
+        }
+        publish();
+
+        if (watchService != null) {
+            final WatchService service = watchService;
+            watcher = new Thread("balana-policy-watcher") {
+                public void run() {
+                    watch(service);
+                }
+            };
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Stops watching the policy locations. The loaded policies are still used.
+     */
+    public synchronized void stop() {
+
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.error("Error while closing the watch service", e);
+            }
+            watchService = null;
+        }
+        watchedDirectories.clear();
+    }
+
+    /**
+     * Parses the given files again, and replaces, adds or removes their policies. The policies of
+     * files that no longer exist are removed, while a file that can not be parsed, for example
+     * because it is still being written, keeps its previously loaded policy. This is called by the
+     * watcher, but may also be called to apply changes that can not be watched, such as on some
+     * network file systems.
+     *
+     * @param paths the changed files
+     */
+    public synchronized void reloadFiles(Collection<Path> paths) {
+
+        boolean changed = false;
+        Set<Path> existing = new TreeSet<Path>();
+        for (Path path : paths) {
+            Path file = path.toAbsolutePath().normalize();
+            if (!isPolicyFile(file)) {
+                continue;
+            }
+            if (!Files.exists(file)) {
+                if (filePolicies.remove(file) != null) {
+                    changed = true;
+                }
+            } else if (Files.isRegularFile(file)) {
+                existing.add(file);
+            }
+        }
+
+        Map<Path, AbstractPolicy> loaded = loadPolicies(existing);
+        for (Map.Entry<Path, AbstractPolicy> entry : loaded.entrySet()) {
+            if (entry.getValue() != null) {
+                filePolicies.put(entry.getKey(), entry.getValue());
+                changed = true;
+            } else if (filePolicies.containsKey(entry.getKey())) {
+                log.error("Keeping the previously loaded policy of " + entry.getKey());
+            }
+        }
+
+        if (changed) {
+            publish();
+        }
+    }
+
+    /**
+     * Private helper that waits for changes of the watched directories, collects them until no
+     * change is seen for the quiet period, and reloads the changed files
+     *
+     * @param service the watch service of the policy locations
+     */
+    private void watch(WatchService service) {
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietPeriod * MAX_QUIET_PERIODS);
+                Set<Path> changed = new TreeSet<Path>();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= collectChanges(key, changed);
+                    if (System.nanoTime() - deadline >= 0) {
+                        break;
+                    }
+                    key = service.poll(quietPeriod, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    // some changes were lost, so every file is reloaded
+                    synchronized (this) {
+                        changed.addAll(filePolicies.keySet());
+                    }
+                    changed.addAll(listPolicyFiles());
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Reloading " + changed.size() + " changed policy files");
+                }
+                reloadFiles(changed);
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Private helper that adds the files changed in a watched directory to the given set
+     *
+     * @param key the watch key of the directory
+     * @param changed the changed files
+     * @return true if changes were lost
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changed) {
+
+        boolean overflow = false;
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (directory != null) {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    /**
+     * Private helper that lists the policy files of the policy locations
+     *
+     * @return the policy files, in path order
+     */
+    private Set<Path> listPolicyFiles() {
+
+        Set<Path> policyFiles = new TreeSet<Path>();
+        for (Path directory : directories) {
+            DirectoryStream<Path> stream = null;
+            try {
+                stream = Files.newDirectoryStream(directory);
+                for (Path path : stream) {
+                    if (isPolicyFile(path) && Files.isRegularFile(path)) {
+                        policyFiles.add(path);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Fail to list policy directory : " + directory, e);
+            } finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        log.error("Error while closing directory stream");
+                    }
+                }
+            }
+        }
+        for (Path file : files) {
+            if (Files.isRegularFile(file)) {
+                policyFiles.add(file);
+            }
+        }
+        return policyFiles;
+    }
+
+    /**
+     * Private helper that checks whether a file is one of the policy files, that is a file that is
+     * not hidden in a policy directory, or one of the policy file locations
+     *
+     * @param path absolute path of the file
+     * @return true if the file is a policy file
+     */
+    private boolean isPolicyFile(Path path) {
+
+        if (files.contains(path)) {
+            return true;
+        }
+        if (!directories.contains(path.getParent())) {
+            return false;
+        }
+        // we check for hidden files to avoid hidden OS files.
+        Path name = path.getFileName();
+        return name != null && !name.toString().startsWith(".");
+    }
+
+    /**
+     * Private helper that replaces the policies with those of the loaded files, and rebuilds the
+     * target index over them. Only the policies are indexed again, no file is parsed.
+     */
+    private void publish() {
+
+        Map<URI, AbstractPolicy> policies = new LinkedHashMap<URI, AbstractPolicy>();
+        for (AbstractPolicy policy : filePolicies.values()) {
+            policies.put(policy.getId(), policy);
+        }
+        snapshot = new PolicySnapshot(policies, new PolicyTargetIndex(policies.values()));
+
+        if (finder != null) {
+            finder.notifyPoliciesChanged();
+        }
+    }
+
+    /**
+     * Private helper that reads the policies of the given files with <code>readPolicy</code>,
+     * and logs the files that could not be loaded
+     *
+     * @param policyFiles the policy files
+     * @return the policy of each file, or null if it could not be loaded
+     */
+    private Map<Path, AbstractPolicy> loadPolicies(Set<Path> policyFiles) {
+
+        List<Path> paths = new ArrayList<Path>(policyFiles);
+        List<String> names = new ArrayList<String>(paths.size());
+        for (Path path : paths) {
+            names.add(path.toString());
+        }
+        AbstractPolicy[] loaded = new AbstractPolicy[paths.size()];
+        Exception[] errors = new Exception[paths.size()];
+        readPolicies(names, loaded, errors);
+
+        Map<Path, AbstractPolicy> policies = new LinkedHashMap<Path, AbstractPolicy>();
+        for (int i = 0; i < loaded.length; i++) {
+            if (errors[i] != null) {
+                // just only logs
+                log.error("Fail to load policy : " + paths.get(i), errors[i]);
+            }
+            policies.put(paths.get(i), loaded[i]);
+        }
+        return policies;
+    }
+}
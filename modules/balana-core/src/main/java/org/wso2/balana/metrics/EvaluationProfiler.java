@@ -0,0 +1,194 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records how often each policy, rule, condition and target match is evaluated, how long the
+ * evaluations take and what their outcomes are, so that the expensive parts of the policies can be
+ * found. A profiler is configured with <code>PDPConfig</code>; when none is configured, the
+ * evaluation only checks for it and measures nothing.
+ * <p>
+ * The times of policies and rules include the times of the elements they contain, so a policy set
+ * is always at least as expensive as its most expensive policy.
+ */
+public class EvaluationProfiler {
+
+    /**
+     * the evaluation of a policy or policy set, by policy id. The outcomes are the
+     * <code>DECISION_*</code> fields of <code>AbstractResult</code>
+     */
+    public static final int POLICY = 0;
+
+    /**
+     * the evaluation of a rule, including its target and condition, by policy id and rule id,
+     * separated by a '/'. The outcomes are
+     * the <code>DECISION_*</code> fields of <code>AbstractResult</code>
+     */
+    public static final int RULE = 1;
+
+    /**
+     * the evaluation of the condition of a rule, by the same id as the rule. The outcomes are
+     * <code>CONDITION_TRUE</code>, <code>CONDITION_FALSE</code> and
+     * <code>CONDITION_INDETERMINATE</code>
+     */
+    public static final int CONDITION = 2;
+
+    /**
+     * the evaluation of a target match, by its function, attribute and value. The outcomes are the
+     * fields of <code>MatchResult</code>
+     */
+    public static final int MATCH = 3;
+
+    /**
+     * the names of the kinds of profiled elements
+     */
+    public static final String[] KINDS = {"Policy", "Rule", "Condition", "Match"};
+
+    public static final int CONDITION_TRUE = 0;
+
+    public static final int CONDITION_FALSE = 1;
+
+    public static final int CONDITION_INDETERMINATE = 2;
+
+    /**
+     * the profiles of each kind of element, by element id
+     */
+    private final List<ConcurrentMap<String, ProfileEntry>> entries;
+
+    /**
+     * Creates a profiler that has not recorded anything
+     */
+    public EvaluationProfiler() {
+        entries = new ArrayList<ConcurrentMap<String, ProfileEntry>>(KINDS.length);
+        for (int i = 0; i < KINDS.length; i++) {
+            entries.add(new ConcurrentHashMap<String, ProfileEntry>());
+        }
+    }
+
+    /**
+     * Returns the profiler of the PDP that evaluates the given request
+     *
+     * @param context the representation of the request
+     * @return the profiler, or null if nothing is profiled
+     */
+    public static EvaluationProfiler getProfiler(EvaluationCtx context) {
+        PDPConfig pdpConfig = context.getPdpConfig();
+        return pdpConfig == null ? null : pdpConfig.getProfiler();
+    }
+
+    /**
+     * Records an evaluation of an element
+     *
+     * @param kind the kind of the element, such as <code>POLICY</code>
+     * @param id the id of the element
+     * @param time the time the evaluation took, in nanoseconds
+     * @param outcome the outcome of the evaluation, depending on the kind of the element
+     */
+    public void record(int kind, String id, long time, int outcome) {
+
+        ConcurrentMap<String, ProfileEntry> profiles = entries.get(kind);
+        ProfileEntry entry = profiles.get(id);
+        if (entry == null) {
+            ProfileEntry newEntry = new ProfileEntry(kind, id);
+            entry = profiles.putIfAbsent(id, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        entry.record(time, outcome);
+    }
+
+    /**
+     * Returns the profile of an element
+     *
+     * @param kind the kind of the element, such as <code>POLICY</code>
+     * @param id the id of the element
+     * @return the profile, or null if the element was not evaluated
+     */
+    public ProfileEntry getEntry(int kind, String id) {
+        return entries.get(kind).get(id);
+    }
+
+    /**
+     * Returns the profiles of the elements of the given kind that took the most time in total
+     *
+     * @param kind the kind of the elements, such as <code>POLICY</code>
+     * @param count the maximum number of profiles to return
+     * @return the profiles, the most expensive first
+     */
+    public List<ProfileEntry> getTopEntries(int kind, int count) {
+
+        List<ProfileEntry> profiles = new ArrayList<ProfileEntry>(entries.get(kind).values());
+        Collections.sort(profiles, new Comparator<ProfileEntry>() {
+            public int compare(ProfileEntry o1, ProfileEntry o2) {
+                long time1 = o1.getTotalTime();
+                long time2 = o2.getTotalTime();
+                if (time1 != time2) {
+                    return time1 > time2 ? -1 : 1;
+                }
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+        return profiles.size() > count ? profiles.subList(0, count) : profiles;
+    }
+
+    /**
+     * Returns a report of the elements of each kind that took the most time in total, with the
+     * number of evaluations, the total and mean time in microseconds and the outcomes
+     *
+     * @param count the maximum number of elements of each kind in the report
+     * @return the report
+     */
+    public String getReport(int count) {
+
+        StringBuilder builder = new StringBuilder();
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            List<ProfileEntry> profiles = getTopEntries(kind, count);
+            if (profiles.isEmpty()) {
+                continue;
+            }
+            builder.append(KINDS[kind]).append('\n');
+            for (ProfileEntry entry : profiles) {
+                builder.append(String.format("  %10d %12.1f %10.2f  %s  %s%n", entry.getCount(),
+                        entry.getTotalTime() / 1000.0, entry.getMeanTime() / 1000.0,
+                        entry.getOutcomeSummary(), entry.getId()));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Clears all profiles
+     */
+    public void reset() {
+        for (ConcurrentMap<String, ProfileEntry> profiles : entries) {
+            profiles.clear();
+        }
+    }
+}
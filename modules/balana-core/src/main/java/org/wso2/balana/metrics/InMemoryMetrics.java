@@ -0,0 +1,252 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A <code>PDPMetrics</code> implementation that keeps the measurements in memory, as counters and
+ * <code>LatencyHistogram</code>s that can be read at any time.
+ */
+public class InMemoryMetrics implements PDPMetrics {
+
+    /**
+     * the names of the decisions, by their <code>DECISION_*</code> value
+     */
+    private static final String[] DECISION_NAMES = {"Permit", "Deny", "Indeterminate", "NotApplicable",
+            "Indeterminate{D}", "Indeterminate{P}", "Indeterminate{DP}"};
+
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+
+    private final LatencyHistogram policyFinderLatency = new LatencyHistogram();
+
+    /**
+     * latencies of the attribute finder modules, by module identifier
+     */
+    private final ConcurrentMap<String, LatencyHistogram> attributeFinderLatencies =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private final AtomicLongArray decisions = new AtomicLongArray(DECISION_NAMES.length);
+
+    /**
+     * hit and miss counts, by cache name
+     */
+    private final ConcurrentMap<String, CacheCounter> caches = new ConcurrentHashMap<String, CacheCounter>();
+
+    public void recordRequest(long time) {
+        requestLatency.record(time);
+    }
+
+    public void recordDecision(int decision) {
+        if (decision >= 0 && decision < DECISION_NAMES.length) {
+            decisions.incrementAndGet(decision);
+        }
+    }
+
+    public void recordParse(long time) {
+        parseLatency.record(time);
+    }
+
+    public void recordPolicyFinder(long time) {
+        policyFinderLatency.record(time);
+    }
+
+    public void recordAttributeFinder(String module, long time) {
+        LatencyHistogram histogram = attributeFinderLatencies.get(module);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = attributeFinderLatencies.putIfAbsent(module, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(time);
+    }
+
+    public void recordCacheAccess(String cache, boolean hit) {
+        CacheCounter counter = caches.get(cache);
+        if (counter == null) {
+            CacheCounter newCounter = new CacheCounter();
+            counter = caches.putIfAbsent(cache, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        if (hit) {
+            counter.hits.incrementAndGet();
+        } else {
+            counter.misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of evaluated requests
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestLatency.getCount();
+    }
+
+    /**
+     * Returns the latencies of the evaluation of requests
+     *
+     * @return the histogram of request latencies
+     */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * Returns the latencies of the parsing of requests
+     *
+     * @return the histogram of parse latencies
+     */
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    /**
+     * Returns the latencies of the lookups of applicable policies
+     *
+     * @return the histogram of policy finder latencies
+     */
+    public LatencyHistogram getPolicyFinderLatency() {
+        return policyFinderLatency;
+    }
+
+    /**
+     * Returns the latencies of the attribute finder modules
+     *
+     * @return the histograms of attribute lookup latencies, by module identifier
+     */
+    public Map<String, LatencyHistogram> getAttributeFinderLatencies() {
+        return Collections.unmodifiableMap(new TreeMap<String, LatencyHistogram>(attributeFinderLatencies));
+    }
+
+    /**
+     * Returns the number of decisions of the given type
+     *
+     * @param decision one of the <code>DECISION_*</code> fields of <code>AbstractResult</code>
+     * @return the number of decisions
+     */
+    public long getDecisionCount(int decision) {
+        return decision >= 0 && decision < DECISION_NAMES.length ? decisions.get(decision) : 0;
+    }
+
+    /**
+     * Returns the number of decisions of each type that was made at least once
+     *
+     * @return the number of decisions, by decision name
+     */
+    public Map<String, Long> getDecisionCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (int i = 0; i < DECISION_NAMES.length; i++) {
+            long count = decisions.get(i);
+            if (count > 0) {
+                counts.put(DECISION_NAMES[i], count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of accesses of the given cache that found a value
+     *
+     * @param cache the name of the cache
+     * @return the number of hits
+     */
+    public long getCacheHitCount(String cache) {
+        CacheCounter counter = caches.get(cache);
+        return counter == null ? 0 : counter.hits.get();
+    }
+
+    /**
+     * Returns the number of accesses of the given cache that did not find a value
+     *
+     * @param cache the name of the cache
+     * @return the number of misses
+     */
+    public long getCacheMissCount(String cache) {
+        CacheCounter counter = caches.get(cache);
+        return counter == null ? 0 : counter.misses.get();
+    }
+
+    /**
+     * Returns the ratio of the accesses of the given cache that found a value
+     *
+     * @param cache the name of the cache
+     * @return the hit ratio between 0 and 1, or 0 if the cache was not accessed
+     */
+    public double getCacheHitRatio(String cache) {
+        CacheCounter counter = caches.get(cache);
+        return counter == null ? 0 : counter.getHitRatio();
+    }
+
+    /**
+     * Returns the hit ratios of all caches that were accessed
+     *
+     * @return the hit ratios between 0 and 1, by cache name
+     */
+    public Map<String, Double> getCacheHitRatios() {
+        Map<String, Double> ratios = new TreeMap<String, Double>();
+        for (Map.Entry<String, CacheCounter> entry : caches.entrySet()) {
+            ratios.put(entry.getKey(), entry.getValue().getHitRatio());
+        }
+        return ratios;
+    }
+
+    /**
+     * Clears all measurements
+     */
+    public void reset() {
+        requestLatency.reset();
+        parseLatency.reset();
+        policyFinderLatency.reset();
+        attributeFinderLatencies.clear();
+        for (int i = 0; i < DECISION_NAMES.length; i++) {
+            decisions.set(i, 0);
+        }
+        caches.clear();
+    }
+
+    /**
+     * The hit and miss counts of a cache
+     */
+    private static class CacheCounter {
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        double getHitRatio() {
+            long currentHits = hits.get();
+            long total = currentHits + misses.get();
+            return total == 0 ? 0 : (double) currentHits / total;
+        }
+    }
+}
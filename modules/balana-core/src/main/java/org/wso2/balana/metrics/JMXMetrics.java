@@ -0,0 +1,110 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An <code>InMemoryMetrics</code> that is published as an MXBean, so that the measurements can be
+ * read with any JMX client. The bean is registered with the platform <code>MBeanServer</code>
+ * under the name <code>org.wso2.balana:type=PDPMetrics,name=&lt;name&gt;</code>.
+ */
+public class JMXMetrics extends InMemoryMetrics implements MetricsMXBean {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final ObjectName objectName;
+
+    /**
+     * Creates the metrics, and registers them with the platform <code>MBeanServer</code>
+     *
+     * @param name the name that tells the PDPs of an application apart
+     * @throws JMException if the metrics can not be registered
+     */
+    public JMXMetrics(String name) throws JMException {
+        objectName = new ObjectName("org.wso2.balana:type=PDPMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    /**
+     * Returns the name that the metrics are registered under
+     *
+     * @return the <code>ObjectName</code> of the metrics
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform <code>MBeanServer</code>
+     *
+     * @throws JMException if the metrics can not be unregistered
+     */
+    public void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    public double getRequestLatencyMean() {
+        return getRequestLatency().getMean() / NANOS_PER_MICRO;
+    }
+
+    public double getRequestLatency50thPercentile() {
+        return getRequestLatency().getPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    public double getRequestLatency99thPercentile() {
+        return getRequestLatency().getPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    public double getRequestLatencyMax() {
+        return getRequestLatency().getMax() / NANOS_PER_MICRO;
+    }
+
+    public long getParseCount() {
+        return getParseLatency().getCount();
+    }
+
+    public double getParseLatencyMean() {
+        return getParseLatency().getMean() / NANOS_PER_MICRO;
+    }
+
+    public long getPolicyFinderCount() {
+        return getPolicyFinderLatency().getCount();
+    }
+
+    public double getPolicyFinderLatencyMean() {
+        return getPolicyFinderLatency().getMean() / NANOS_PER_MICRO;
+    }
+
+    public Map<String, Double> getAttributeFinderLatencyMeans() {
+        Map<String, Double> means = new TreeMap<String, Double>();
+        for (Map.Entry<String, LatencyHistogram> entry : getAttributeFinderLatencies().entrySet()) {
+            means.put(entry.getKey(), entry.getValue().getMean() / NANOS_PER_MICRO);
+        }
+        return means;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds. The latencies are counted in buckets whose bounds are
+ * powers of two, so recording is cheap and lock free, and percentiles are accurate to within a
+ * factor of two.
+ */
+public class LatencyHistogram {
+
+    /**
+     * the number of buckets, bucket <code>i</code> counts the latencies from
+     * <code>2^(i-1)</code> to <code>2^i - 1</code>, and bucket 0 the latencies of 0
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency
+     *
+     * @param time the latency in nanoseconds
+     */
+    public void record(long time) {
+
+        if (time < 0) {
+            time = 0;
+        }
+        buckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(time));
+        count.incrementAndGet();
+        total.addAndGet(time);
+
+        long currentMax = max.get();
+        while (time > currentMax && !max.compareAndSet(currentMax, time)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies
+     *
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded latencies
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns the highest recorded latency
+     *
+     * @return the highest latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies
+     *
+     * @return the mean latency in nanoseconds, or 0 if none was recorded
+     */
+    public double getMean() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) total.get() / currentCount;
+    }
+
+    /**
+     * Returns an estimate of the given percentile of the recorded latencies. The estimate is the
+     * upper bound of the bucket that the percentile falls into, but never more than the highest
+     * recorded latency.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long[] counts = new long[BUCKET_COUNT];
+        long currentCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            currentCount += counts[i];
+        }
+        if (currentCount == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(currentCount * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min((1L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears the recorded latencies
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
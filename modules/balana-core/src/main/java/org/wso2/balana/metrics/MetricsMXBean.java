@@ -0,0 +1,65 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of <code>JMXMetrics</code>. Latencies are in microseconds.
+ */
+public interface MetricsMXBean {
+
+    public long getRequestCount();
+
+    public double getRequestLatencyMean();
+
+    public double getRequestLatency50thPercentile();
+
+    public double getRequestLatency99thPercentile();
+
+    public double getRequestLatencyMax();
+
+    public long getParseCount();
+
+    public double getParseLatencyMean();
+
+    public long getPolicyFinderCount();
+
+    public double getPolicyFinderLatencyMean();
+
+    /**
+     * @return the mean latencies of the attribute finder modules, by module identifier
+     */
+    public Map<String, Double> getAttributeFinderLatencyMeans();
+
+    /**
+     * @return the number of decisions, by decision name
+     */
+    public Map<String, Long> getDecisionCounts();
+
+    /**
+     * @return the hit ratios between 0 and 1, by cache name
+     */
+    public Map<String, Double> getCacheHitRatios();
+
+    /**
+     * Clears all measurements
+     */
+    public void reset();
+}
@@ -0,0 +1,106 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import org.wso2.balana.PDPConfig;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+/**
+ * Receives measurements of the work done by a <code>PDP</code>. An implementation is configured
+ * with <code>PDPConfig</code>, and may forward the measurements to any metrics library, so that
+ * Balana itself does not depend on one. <code>InMemoryMetrics</code> and <code>JMXMetrics</code>
+ * are implementations that need no other library.
+ * <p>
+ * The methods are called on the threads that evaluate requests, often concurrently, so they must
+ * be thread safe and should be cheap. All times are in nanoseconds.
+ */
+public interface PDPMetrics {
+
+    /**
+     * the cache of decisions of the PDP
+     */
+    public static final String DECISION_CACHE = "decision";
+
+    /**
+     * the caches of <code>CachingAttributeFinderModule</code>s
+     */
+    public static final String ATTRIBUTE_CACHE = "attribute";
+
+    /**
+     * the attributes that are resolved once, and reused, while a request is evaluated
+     */
+    public static final String EVALUATION_ATTRIBUTE_CACHE = "evaluation-attribute";
+
+    /**
+     * Returns the metrics of the PDP that evaluates the given request
+     *
+     * @param context the representation of the request
+     * @return the metrics, or null if nothing is measured
+     */
+    public static PDPMetrics getMetrics(EvaluationCtx context) {
+        PDPConfig pdpConfig = context == null ? null : context.getPdpConfig();
+        return pdpConfig == null ? null : pdpConfig.getMetrics();
+    }
+
+    /**
+     * Records a request that was evaluated by the PDP
+     *
+     * @param time the time it took to evaluate the request. The parsing of the request is not
+     *             included, it is reported separately, unless the request could not be parsed
+     */
+    public void recordRequest(long time);
+
+    /**
+     * Records a decision made by the PDP. A request of the multiple decision profile may result in
+     * more than one decision.
+     *
+     * @param decision one of the <code>DECISION_*</code> fields of <code>AbstractResult</code>
+     */
+    public void recordDecision(int decision);
+
+    /**
+     * Records the parsing of a request
+     *
+     * @param time the time it took to parse the request
+     */
+    public void recordParse(long time);
+
+    /**
+     * Records a lookup of the policies that apply to a request by the <code>PolicyFinder</code>
+     *
+     * @param time the time it took to find the policies
+     */
+    public void recordPolicyFinder(long time);
+
+    /**
+     * Records a lookup of attributes by an <code>AttributeFinderModule</code>
+     *
+     * @param module the identifier of the module
+     * @param time the time it took the module to find the attributes
+     */
+    public void recordAttributeFinder(String module, long time);
+
+    /**
+     * Records an access to a cache
+     *
+     * @param cache the name of the cache, such as <code>DECISION_CACHE</code>
+     * @param hit whether the value was found in the cache
+     */
+    public void recordCacheAccess(String cache, boolean hit);
+}
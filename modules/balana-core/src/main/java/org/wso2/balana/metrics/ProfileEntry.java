@@ -0,0 +1,136 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The profile of a policy, rule, condition or target match, recorded by
+ * <code>EvaluationProfiler</code>: the number of evaluations, their total time and the number of
+ * each outcome.
+ */
+public class ProfileEntry {
+
+    /**
+     * the names of the outcomes, by kind of element and outcome value
+     */
+    private static final String[][] OUTCOME_NAMES = {
+            {"Permit", "Deny", "Indeterminate", "NotApplicable", "Indeterminate{D}",
+                    "Indeterminate{P}", "Indeterminate{DP}"},
+            {"Permit", "Deny", "Indeterminate", "NotApplicable", "Indeterminate{D}",
+                    "Indeterminate{P}", "Indeterminate{DP}"},
+            {"True", "False", "Indeterminate"},
+            {"Match", "NoMatch", "Indeterminate"}};
+
+    private final int kind;
+
+    private final String id;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalTime = new AtomicLong();
+
+    private final AtomicLongArray outcomes;
+
+    ProfileEntry(int kind, String id) {
+        this.kind = kind;
+        this.id = id;
+        this.outcomes = new AtomicLongArray(OUTCOME_NAMES[kind].length);
+    }
+
+    void record(long time, int outcome) {
+        count.incrementAndGet();
+        totalTime.addAndGet(time);
+        if (outcome >= 0 && outcome < outcomes.length()) {
+            outcomes.incrementAndGet(outcome);
+        }
+    }
+
+    /**
+     * Returns the kind of the element
+     *
+     * @return one of the kinds of <code>EvaluationProfiler</code>, such as <code>POLICY</code>
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the number of evaluations of the element
+     *
+     * @return the number of evaluations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the total time of the evaluations of the element
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    /**
+     * Returns the mean time of the evaluations of the element
+     *
+     * @return the mean time in nanoseconds, or 0 if the element was not evaluated
+     */
+    public double getMeanTime() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) totalTime.get() / currentCount;
+    }
+
+    /**
+     * Returns the number of evaluations of the element with the given outcome
+     *
+     * @param outcome the outcome, depending on the kind of the element
+     * @return the number of evaluations
+     */
+    public long getOutcomeCount(int outcome) {
+        return outcome >= 0 && outcome < outcomes.length() ? outcomes.get(outcome) : 0;
+    }
+
+    /**
+     * Returns the outcomes that occurred at least once, with their number, such as
+     * <code>Permit=10 NotApplicable=2</code>
+     *
+     * @return the summary of the outcomes
+     */
+    public String getOutcomeSummary() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < outcomes.length(); i++) {
+            long outcomeCount = outcomes.get(i);
+            if (outcomeCount > 0) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(OUTCOME_NAMES[kind][i]).append('=').append(outcomeCount);
+            }
+        }
+        return builder.toString();
+    }
+}
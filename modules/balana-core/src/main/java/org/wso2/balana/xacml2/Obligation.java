@@ -35,6 +35,8 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * Represents ObligationType in the XACML 2.0 policy schema. In XACML 2.0, this element represent both
@@ -160,15 +162,37 @@ public class Obligation extends AbstractObligation implements ObligationResult {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Obligation</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Obligation ObligationId=\"").append(obligationId.toString()).
-                append("\" FulfillOn=\"").append(Result.DECISIONS[fulfillOn]).append("\">\n");
+        writer.write("<Obligation ObligationId=\"");
+        EncodingHelper.writeAttribute(writer, obligationId.toString());
+        writer.write("\" FulfillOn=\"");
+        writer.write(Result.DECISIONS[fulfillOn]);
+        writer.write("\">\n");
         for (Attribute assignment : assignments) {
-            builder.append("<AttributeAssignment AttributeId=\"").
-                    append(assignment.getId().toString()).append("\" DataType=\"").
-                    append(assignment.getType().toString()).append("\">").
-                    append(assignment.getValue().encode()).append("</AttributeAssignment>\n");
+            writer.write("<AttributeAssignment AttributeId=\"");
+            EncodingHelper.writeAttribute(writer, assignment.getId().toString());
+            writer.write("\" DataType=\"");
+            EncodingHelper.writeAttribute(writer, assignment.getType().toString());
+            writer.write("\">");
+            EncodingHelper.writeText(writer, assignment.getValue().encode());
+            writer.write("</AttributeAssignment>\n");
         }
-        builder.append("</Obligation>");
+        writer.write("</Obligation>");
     }
 }
@@ -31,6 +31,10 @@ import java.io.PrintStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import org.wso2.balana.EncodingHelper;
+import org.wso2.balana.StringBuilderWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * Represents the AdviceType XML type in XACML. Advice are introduced with XACML 3
@@ -125,15 +129,33 @@ public class Advice {
      *
      * @param builder string stream into which the XML-encoded data is written
      */
-    public void encode(StringBuilder builder){
+    public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Advice</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Advice AdviceId=\"").append(adviceId).append("\" >");
+        writer.write("<Advice AdviceId=\"");
+        EncodingHelper.writeAttribute(writer, adviceId.toString());
+        writer.write("\" >");
 
         if(assignments != null && assignments.size() > 0){
             for(AttributeAssignment assignment : assignments){
-                assignment.encode(builder);
+                assignment.encode(writer);
             }
         }
-        builder.append("</Advice>");
+        writer.write("</Advice>");
     }
 }
@@ -15,16 +15,14 @@
  */
 package org.wso2.balana.xacml3;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.wso2.balana.*;
 import org.wso2.balana.ctx.Attribute;
-import org.wso2.balana.utils.Utils;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URI;
 import java.util.HashSet;
 import java.util.Set;
@@ -41,10 +39,15 @@ public class Attributes {
     private URI category;
 
     /**
-     *  content of the Attributes element that can be a XML data
+     *  content of the Attributes element that can be a XML data, as it was given
      */
     private Node content;
 
+    /**
+     *  content of the Attributes element as a document element, created when it is first used
+     */
+    private volatile Node documentContent;
+
     /**
      *  a <code>Set</code> of <code>Attribute</code> that contains in <code>Attributes</code> 
      */
@@ -82,6 +85,20 @@ public class Attributes {
         this.id = id;
     }
 
+    /**
+     * Constructor that creates a new <code>Attributes</code> with the given category and
+     * attributes, and the content and id of the given <code>Attributes</code>. The content is
+     * shared, so it is not copied again.
+     * @param category category of the Attributes element whether it is subject, action and etc
+     * @param other the <code>Attributes</code> whose content and id are used
+     * @param attributes  a <code>Set</code> of <code>Attribute</code>
+     * that contains in <code>Attributes</code>
+     */
+    public Attributes(URI category, Attributes other, Set<Attribute> attributes) {
+        this(category, other.content, attributes, other.id);
+        this.documentContent = other.documentContent;
+    }
+
     /**
      *
      * @param root
@@ -134,21 +151,7 @@ public class Attributes {
             }
         }
 
-        if(content != null){
-            // make the node appear to be a direct child of the Document
-            try{
-                DocumentBuilderFactory dbf = Utils.getSecuredDocumentBuilderFactory();
-                DocumentBuilder builder = dbf.newDocumentBuilder();
-                dbf.setNamespaceAware(true);
-                Document docRoot = builder.newDocument();
-                Node topRoot = docRoot.importNode(content, true);
-                docRoot.appendChild(topRoot);
-                content = docRoot.getDocumentElement();
-            } catch (Exception e){
-                //
-            }
-        }
-
+        // the content is made a document element only when it is used, see getContent()
         return new Attributes(category, content, attributes , id);
     }
 
@@ -162,12 +165,34 @@ public class Attributes {
     }
 
     /**
-     * Returns the content of this attributes, or null if no content was included
+     * Returns the content of this attributes, or null if no content was included. The content
+     * appears to be the document element of a <code>Document</code>, so that it is the root for
+     * XPath. If it is not one already, it is copied into a new <code>Document</code> when this
+     * is first called.
      *
      * @return the attribute 's content as <code>Node</code> or null
      */
     public Node getContent() {
-        return content;
+        if (content == null) {
+            return null;
+        }
+        Node node = documentContent;
+        if (node == null) {
+            // two threads may both copy the content here, which is harmless
+            node = DOMHelper.getAsDocumentElement(content);
+            documentContent = node;
+        }
+        return node;
+    }
+
+    /**
+     * Returns whether a content was included with this attributes. Unlike
+     * <code>getContent</code>, this never copies the content.
+     *
+     * @return true if there is a content, false otherwise
+     */
+    public boolean hasContent() {
+        return content != null;
     }
 
     /**
@@ -206,17 +231,35 @@ public class Attributes {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Attributes</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Attributes Category=\"").append(category.toString()).append("\">");
+        writer.write("<Attributes Category=\"");
+        EncodingHelper.writeAttribute(writer, category.toString());
+        writer.write("\">");
 
         for(Attribute attribute : attributes){
-            attribute.encode(builder);
+            attribute.encode(writer);
         }
         if (content != null) {
         // TODO
         }
 
-        builder.append("</Attributes>");
+        writer.write("</Attributes>");
     }
 
 //    /**
@@ -32,6 +32,10 @@ import java.io.PrintStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import org.wso2.balana.EncodingHelper;
+import org.wso2.balana.StringBuilderWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * Represents the ObligationType XML type found in the context scheme in XACML 3.0
@@ -106,16 +110,34 @@ public class Obligation implements ObligationResult {
      * @param builder string stream into which the XML-encoded data is written
      */
     public void encode(StringBuilder builder) {
+        try {
+            encode(new StringBuilderWriter(builder));
+        } catch (IOException e) {
+            // a StringBuilderWriter does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes this <code>Obligation</code> into its XML form and writes this out to the provided
+     * <code>Writer</code>
+     *
+     * @param writer character stream into which the XML-encoded data is written
+     * @throws IOException if the data can not be written
+     */
+    public void encode(Writer writer) throws IOException {
 
-        builder.append("<Obligation ObligationId=\"").append(obligationId).append("\">");
+        writer.write("<Obligation ObligationId=\"");
+        EncodingHelper.writeAttribute(writer, obligationId.toString());
+        writer.write("\">");
 
         if (assignments != null && assignments.size() > 0) {
             for (AttributeAssignment assignment : assignments) {
-                assignment.encode(builder);
+                assignment.encode(writer);
             }
         }
 
-        builder.append("</Obligation>");
+        writer.write("</Obligation>");
     }
 
     /**
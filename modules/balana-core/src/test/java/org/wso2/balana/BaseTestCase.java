@@ -21,9 +21,28 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.wso2.balana.advance.AdvanceTestV3;
 import org.wso2.balana.advance.XACML3HigherOrderFunctionTest;
+import org.wso2.balana.basic.TestAttributeCacheV3;
+import org.wso2.balana.basic.TestAttributeIndexV3;
+import org.wso2.balana.basic.TestAttributeMemoizationV3;
+import org.wso2.balana.basic.TestBatchEvaluationV3;
+import org.wso2.balana.basic.TestDecisionCacheV3;
 import org.wso2.balana.basic.TestFunctionV3;
 import org.wso2.balana.basic.BasicTestV3;
 import org.wso2.balana.basic.TestMultipleRequestV3;
+import org.wso2.balana.basic.TestPolicyTargetIndexV3;
+import org.wso2.balana.basic.TestRegexpMatchV3;
+import org.wso2.balana.basic.TestConstantFoldingV3;
+import org.wso2.balana.basic.TestPDPMetricsV3;
+import org.wso2.balana.basic.TestEvaluationProfilerV3;
+import org.wso2.balana.basic.TestPolicyReloadV3;
+import org.wso2.balana.basic.TestWatchingPolicyFinderV3;
+import org.wso2.balana.basic.TestParallelPolicyLoadingV3;
+import org.wso2.balana.basic.TestSecuredDocumentBuilderV3;
+import org.wso2.balana.basic.TestAttributesContentV3;
+import org.wso2.balana.basic.TestJSONProfileV3;
+import org.wso2.balana.basic.TestBinaryCodecV3;
+import org.wso2.balana.basic.TestRequestBuilderV3;
+import org.wso2.balana.basic.TestStreamingRequestParserV3;
 import org.wso2.balana.basic.TestXPathV3;
 import org.wso2.balana.conformance.ConformanceTestV2;
 import org.wso2.balana.conformance.ConformanceTestV3;
@@ -48,6 +67,44 @@ public class BaseTestCase extends TestSuite {
         testSuite.addTestSuite(TestMultipleRequestV3.class);
         // XPath test
         testSuite.addTestSuite(TestXPathV3.class);
+        // target index of the file based policy finder
+        testSuite.addTestSuite(TestPolicyTargetIndexV3.class);
+        // concurrent batch evaluation
+        testSuite.addTestSuite(TestBatchEvaluationV3.class);
+        // streaming request parser
+        testSuite.addTestSuite(TestStreamingRequestParserV3.class);
+        // decision cache
+        testSuite.addTestSuite(TestDecisionCacheV3.class);
+        // per request memoization of resolved attributes
+        testSuite.addTestSuite(TestAttributeMemoizationV3.class);
+        // indexed lookup of request attributes
+        testSuite.addTestSuite(TestAttributeIndexV3.class);
+        // attribute cache between requests
+        testSuite.addTestSuite(TestAttributeCacheV3.class);
+        // regular expression match functions
+        testSuite.addTestSuite(TestRegexpMatchV3.class);
+        // constant folding of compiled policies
+        testSuite.addTestSuite(TestConstantFoldingV3.class);
+        // metrics of the PDP
+        testSuite.addTestSuite(TestPDPMetricsV3.class);
+        // profiles of the evaluation of policies and rules
+        testSuite.addTestSuite(TestEvaluationProfilerV3.class);
+        // reload of the policies while requests are evaluated
+        testSuite.addTestSuite(TestPolicyReloadV3.class);
+        // incremental reload of watched policy files
+        testSuite.addTestSuite(TestWatchingPolicyFinderV3.class);
+        // parallel loading of the policy files
+        testSuite.addTestSuite(TestParallelPolicyLoadingV3.class);
+        // secured document builders reused by each thread
+        testSuite.addTestSuite(TestSecuredDocumentBuilderV3.class);
+        // content of the attributes copied only when it is used
+        testSuite.addTestSuite(TestAttributesContentV3.class);
+        // requests and responses in the JSON profile
+        testSuite.addTestSuite(TestJSONProfileV3.class);
+        // binary encoding of requests and responses
+        testSuite.addTestSuite(TestBinaryCodecV3.class);
+        // requests built in code
+        testSuite.addTestSuite(TestRequestBuilderV3.class);
 
         testSuite.addTestSuite(ConformanceTestV3.class);
         // test that has been written for jira issue
@@ -40,6 +40,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
 
+import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.ctx.*;
 import org.wso2.balana.ctx.xacml3.Result;
 import org.wso2.balana.xacml3.Advice;
@@ -53,6 +54,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -66,6 +68,33 @@ public class TestUtil {
 
     private static final Log log = LogFactory.getLog(TestUtil.class);
 
+    /**
+     * request_0002_01.xml of the basic XACML 3.0 tests in the JSON Profile
+     */
+    public static final String JSON_REQUEST_0002_01 = "{\"Request\":{" +
+            "\"AccessSubject\":{\"Attribute\":[{\"AttributeId\":" +
+            "\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\",\"Value\":\"bob\"}]}," +
+            "\"Resource\":{\"Attribute\":[{\"AttributeId\":" +
+            "\"urn:oasis:names:tc:xacml:1.0:resource:resource-id\",\"Value\":\"foo/foo1\"}]}," +
+            "\"Action\":{\"Attribute\":{\"AttributeId\":" +
+            "\"urn:oasis:names:tc:xacml:1.0:action:action-id\",\"Value\":\"bar1\"}}}}";
+
+    /**
+     * the subject of the content requests, who may only read the record of that patient with
+     * TestPolicy_0008.xml
+     */
+    public static final String CONTENT_SUBJECT = "p111";
+
+    /**
+     * the patients whose records the content requests read
+     */
+    public static final String[] CONTENT_PATIENTS = {"p111", "p222"};
+
+    /**
+     * the decisions of TestPolicy_0008.xml on the content requests, by patient
+     */
+    public static final String[] CONTENT_DECISIONS = {"Permit", "Deny"};
+
     /**
      * Checks matching of result that got from PDP and expected response from a file.
      *
@@ -345,6 +374,70 @@ public class TestUtil {
         return null;
     }
 
+    /**
+     * Creates the record of a patient, which is the resource content of the content requests
+     *
+     * @param patientId the patient id of the record
+     * @return the record as XML
+     */
+    public static String createPatientRecord(String patientId) {
+        return "<record xmlns=\"" + XACMLConstants.REQUEST_CONTEXT_3_0_IDENTIFIER +
+                "\"><patient><patientId>" + patientId + "</patientId></patient></record>";
+    }
+
+    /**
+     * Creates a content request in the JSON Profile, in which <code>CONTENT_SUBJECT</code> reads
+     * the record of the given patient
+     *
+     * @param patientId the patient id of the record
+     * @return the request as JSON
+     */
+    public static String createJSONContentRequest(String patientId) {
+        return "{\"Request\":{" +
+                "\"AccessSubject\":{\"Attribute\":[{\"AttributeId\":" +
+                "\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\",\"Value\":\"" +
+                CONTENT_SUBJECT + "\"}]}," +
+                "\"Resource\":{\"Content\":\"" +
+                createPatientRecord(patientId).replace("\"", "\\\"") + "\"}," +
+                "\"Action\":{\"Attribute\":[{\"AttributeId\":" +
+                "\"urn:oasis:names:tc:xacml:1.0:action:action-id\",\"Value\":\"read\"}]}}}";
+    }
+
+    /**
+     * Creates an order independent description of the attributes of a request, including the DOM
+     * of the content, so that requests that are parsed or built in different ways can be compared
+     *
+     * @param requestCtx the request
+     * @return the description of the request
+     */
+    public static List<String> describe(AbstractRequestCtx requestCtx) {
+
+        List<String> description = new ArrayList<String>();
+        for (Attributes attributes : requestCtx.getAttributesSet()) {
+            List<String> values = new ArrayList<String>();
+            for (Attribute attribute : attributes.getAttributes()) {
+                StringBuilder builder = new StringBuilder();
+                builder.append(attribute.getId()).append('|').append(attribute.getType()).
+                        append('|').append(attribute.getIssuer()).append('|').
+                        append(attribute.isIncludeInResult());
+                for (AttributeValue value : attribute.getValues()) {
+                    builder.append('|').append(value.encode());
+                }
+                values.add(builder.toString());
+            }
+            Collections.sort(values);
+
+            String content = "";
+            if (attributes.getContent() != null) {
+                content = DOMHelper.getLocalName(attributes.getContent()) + "|" +
+                        attributes.getContent().getTextContent();
+            }
+            description.add(attributes.getCategory() + "|" + attributes.getId() + "|" + content +
+                    "|" + values);
+        }
+        Collections.sort(description);
+        return description;
+    }
 
     /**
      * This would remove the StatusMessage from the response. Because StatusMessage depends
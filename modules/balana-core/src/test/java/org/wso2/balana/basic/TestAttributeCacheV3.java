@@ -0,0 +1,289 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.finder.AttributeFinder;
+import org.wso2.balana.finder.AttributeFinderModule;
+import org.wso2.balana.finder.impl.CachingAttributeFinderModule;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This would test the cache of attribute values between requests
+ */
+public class TestAttributeCacheV3 extends TestCase {
+
+    private static final URI STRING_TYPE = URI.create(StringAttribute.identifier);
+
+    private static final URI ROLE_ID = URI.create("http://wso2.org/claims/role");
+
+    private static final URI SUBJECT_ID =
+            URI.create("urn:oasis:names:tc:xacml:1.0:subject:subject-id");
+
+    private static final URI SUBJECT_CATEGORY = URI.create(XACMLConstants.SUBJECT_CATEGORY);
+
+    public void testCachedBetweenRequests() throws Exception {
+
+        RoleModule module = new RoleModule(null);
+        CachingAttributeFinderModule cache = new CachingAttributeFinderModule(module, 10, 60000);
+        cache.addKeyAttribute(SUBJECT_CATEGORY, SUBJECT_ID, STRING_TYPE);
+
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals("admin-alice", getRole(cache, "alice"));
+        assertEquals(2, module.count.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.invalidateCache();
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals(3, module.count.get());
+    }
+
+    public void testExpiryAndEviction() throws Exception {
+
+        RoleModule module = new RoleModule(null);
+        CachingAttributeFinderModule cache = new CachingAttributeFinderModule(module, 1, 60000);
+        cache.addKeyAttribute(SUBJECT_CATEGORY, SUBJECT_ID, STRING_TYPE);
+
+        getRole(cache, "bob");
+        getRole(cache, "alice");
+        assertEquals(1, cache.getEvictionCount());
+        getRole(cache, "bob");
+        assertEquals(3, module.count.get());
+
+        cache.setTimeToLive(ROLE_ID, 1);
+        cache.invalidateCache();
+        getRole(cache, "bob");
+        Thread.sleep(10);
+        getRole(cache, "bob");
+        assertEquals(5, module.count.get());
+    }
+
+    public void testSingleLoad() throws Exception {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        RoleModule module = new RoleModule(latch);
+        final CachingAttributeFinderModule cache =
+                new CachingAttributeFinderModule(module, 10, 60000);
+        cache.addKeyAttribute(SUBJECT_CATEGORY, SUBJECT_ID, STRING_TYPE);
+
+        final List<String> roles = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        String role = getRole(cache, "bob");
+                        synchronized (roles) {
+                            roles.add(role);
+                        }
+                    } catch (Exception e) {
+                        // the missing role is reported by the assertion below
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+
+        // wait until every thread has missed the cache before the module may return
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getMissCount() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(4, roles.size());
+        assertEquals(1, module.count.get());
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    public void testNoKeyAttributes() throws Exception {
+
+        RoleModule module = new RoleModule(null);
+        CachingAttributeFinderModule cache = new CachingAttributeFinderModule(module, 10, 60000);
+
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals("admin-alice", getRole(cache, "alice"));
+        assertEquals(2, module.count.get());
+        assertEquals(0, cache.size());
+    }
+
+    public void testReentrantLookup() throws Exception {
+
+        RoleModule module = new ReentrantModule();
+        CachingAttributeFinderModule cache = new CachingAttributeFinderModule(module, 10, 60000);
+        cache.addKeyAttribute(SUBJECT_CATEGORY, SUBJECT_ID, STRING_TYPE);
+        cache.setLoadTimeout(10000);
+
+        long start = System.currentTimeMillis();
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(2, module.count.get());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals(2, module.count.get());
+    }
+
+    public void testLoadTimeout() throws Exception {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        RoleModule module = new RoleModule(latch);
+        final CachingAttributeFinderModule cache =
+                new CachingAttributeFinderModule(module, 10, 60000);
+        cache.addKeyAttribute(SUBJECT_CATEGORY, SUBJECT_ID, STRING_TYPE);
+        cache.setLoadTimeout(50);
+
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    getRole(cache, "bob");
+                } catch (Exception e) {
+                    // only the lookup of the main thread is checked
+                }
+            }
+        };
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getLoadCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // the first lookup is blocked, so the second one resolves the value itself
+        assertEquals("admin-bob", getRole(cache, "bob"));
+        assertEquals(2, module.count.get());
+        latch.countDown();
+        thread.join(10000);
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    private static String getRole(AttributeFinderModule module, String subject) throws Exception {
+
+        AttributeFinder attributeFinder = new AttributeFinder();
+        List<AttributeFinderModule> modules = new ArrayList<AttributeFinderModule>();
+        modules.add(module);
+        attributeFinder.setModules(modules);
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        pdpConfig = new PDPConfig(attributeFinder, pdpConfig.getPolicyFinder(),
+                pdpConfig.getResourceFinder(), true);
+
+        String request = TestUtil.createRequest("basic", "3", "request_0002_01.xml").
+                replace(">bob<", ">" + subject + "<");
+        EvaluationCtx context = EvaluationCtxFactory.getFactory().getEvaluationCtx(
+                RequestCtxFactory.getFactory().getRequestCtx(request.replaceAll(">\\s+<", "><")),
+                pdpConfig);
+
+        EvaluationResult result = context.getAttribute(STRING_TYPE, ROLE_ID, null,
+                SUBJECT_CATEGORY);
+        BagAttribute bag = (BagAttribute) result.getAttributeValue();
+        return ((StringAttribute) bag.iterator().next()).getValue();
+    }
+
+    /**
+     * Attribute finder module that derives a role from the subject-id and counts how often it is
+     * asked for a value
+     */
+    private static class RoleModule extends AttributeFinderModule {
+
+        private final CountDownLatch latch;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        RoleModule(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public boolean isDesignatorSupported() {
+            return true;
+        }
+
+        @Override
+        public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
+                                              URI category, EvaluationCtx context) {
+
+            if (!ROLE_ID.equals(attributeId)) {
+                return new EvaluationResult(BagAttribute.createEmptyBag(attributeType));
+            }
+            if (count.incrementAndGet() == 1 && latch != null) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            EvaluationResult subject = context.getAttribute(STRING_TYPE, SUBJECT_ID, null,
+                    SUBJECT_CATEGORY);
+            String subjectId = ((StringAttribute) ((BagAttribute) subject.getAttributeValue()).
+                    iterator().next()).getValue();
+            List<AttributeValue> values = new ArrayList<AttributeValue>();
+            values.add(new StringAttribute("admin-" + subjectId));
+            return new EvaluationResult(new BagAttribute(attributeType, values));
+        }
+    }
+
+    /**
+     * Role module that asks for the role it is resolving once, the way a module that derives a
+     * value from other values of the same attribute would
+     */
+    private static class ReentrantModule extends RoleModule {
+
+        private final ThreadLocal<Boolean> resolving = new ThreadLocal<Boolean>();
+
+        ReentrantModule() {
+            super(null);
+        }
+
+        @Override
+        public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
+                                              URI category, EvaluationCtx context) {
+
+            if (!ROLE_ID.equals(attributeId) || resolving.get() != null) {
+                return super.findAttribute(attributeType, attributeId, issuer, category, context);
+            }
+            resolving.set(Boolean.TRUE);
+            try {
+                context.getAttribute(attributeType, attributeId, issuer, category);
+                return super.findAttribute(attributeType, attributeId, issuer, category, context);
+            } finally {
+                resolving.remove();
+            }
+        }
+    }
+}
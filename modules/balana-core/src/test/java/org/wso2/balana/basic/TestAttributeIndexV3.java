@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.ctx.AttributeIndex;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import java.net.URI;
+
+/**
+ * This would test the lookup of request attributes through the attribute index
+ */
+public class TestAttributeIndexV3 extends TestCase {
+
+    private static final URI STRING_TYPE = URI.create(StringAttribute.identifier);
+
+    private static final URI INTEGER_TYPE = URI.create(IntegerAttribute.identifier);
+
+    private static final String SUBJECT_ID_STRING = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+
+    private static final URI SUBJECT_ID = URI.create(SUBJECT_ID_STRING);
+
+    public void testIndex() throws Exception {
+
+        AttributeIndex index = new AttributeIndex();
+        Attribute name = new Attribute(SUBJECT_ID, null, null, new StringAttribute("bob"),
+                XACMLConstants.XACML_VERSION_3_0);
+        Attribute number = new Attribute(SUBJECT_ID, "issuer", null, new IntegerAttribute(1),
+                XACMLConstants.XACML_VERSION_3_0);
+        index.add(name);
+        index.add(number);
+
+        assertEquals(1, index.get(URI.create(SUBJECT_ID_STRING), STRING_TYPE).size());
+        assertSame(number, index.get(SUBJECT_ID, INTEGER_TYPE).get(0));
+        assertTrue(index.get(URI.create(XACMLConstants.RESOURCE_ID), STRING_TYPE).isEmpty());
+
+        assertTrue(index.remove(name));
+        assertFalse(index.remove(name));
+        assertTrue(index.get(SUBJECT_ID, STRING_TYPE).isEmpty());
+    }
+
+    public void testContextLookup() throws Exception {
+
+        String request = TestUtil.createRequest("basic", "3", "request_0002_01.xml");
+        EvaluationCtx context = EvaluationCtxFactory.getFactory().getEvaluationCtx(
+                RequestCtxFactory.getFactory().getRequestCtx(request.replaceAll(">\\s+<", "><")),
+                Balana.getInstance().getPdpConfig());
+        URI category = URI.create(XACMLConstants.SUBJECT_CATEGORY);
+
+        EvaluationResult result = context.getAttribute(STRING_TYPE, SUBJECT_ID, null, category);
+        BagAttribute bag = (BagAttribute) result.getAttributeValue();
+        assertEquals(1, bag.size());
+        assertTrue(bag.contains(new StringAttribute("bob")));
+
+        // the data type and issuer must match as well
+        result = context.getAttribute(INTEGER_TYPE, SUBJECT_ID, null, category);
+        assertTrue(((BagAttribute) result.getAttributeValue()).isEmpty());
+        result = context.getAttribute(STRING_TYPE, SUBJECT_ID, "issuer", category);
+        assertTrue(((BagAttribute) result.getAttributeValue()).isEmpty());
+    }
+}
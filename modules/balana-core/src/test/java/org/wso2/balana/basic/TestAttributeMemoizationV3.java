@@ -0,0 +1,130 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.finder.AttributeFinder;
+import org.wso2.balana.finder.AttributeFinderModule;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This would test that the evaluation context resolves a designator through the attribute finder
+ * only once per request.
+ */
+public class TestAttributeMemoizationV3 extends TestCase {
+
+    private static final URI STRING_TYPE = URI.create(StringAttribute.identifier);
+
+    private static final URI ROLE_ID = URI.create("http://wso2.org/claims/role");
+
+    private static final URI SUBJECT_CATEGORY = URI.create(XACMLConstants.SUBJECT_CATEGORY);
+
+    public void testMemoizedModule() throws Exception {
+
+        CountingModule module = new CountingModule(true);
+        EvaluationCtx context = getEvaluationCtx(module);
+
+        for (int i = 0; i < 3; i++) {
+            EvaluationResult result = context.getAttribute(STRING_TYPE, ROLE_ID, null,
+                    SUBJECT_CATEGORY);
+            assertEquals(1, ((BagAttribute) result.getAttributeValue()).size());
+        }
+        // lookups that find nothing are memoized as well
+        for (int i = 0; i < 3; i++) {
+            EvaluationResult result = context.getAttribute(STRING_TYPE, ROLE_ID, "unknown",
+                    SUBJECT_CATEGORY);
+            assertTrue(((BagAttribute) result.getAttributeValue()).isEmpty());
+        }
+        assertEquals(2, module.count);
+    }
+
+    public void testNotMemoizedModule() throws Exception {
+
+        CountingModule module = new CountingModule(false);
+        EvaluationCtx context = getEvaluationCtx(module);
+
+        for (int i = 0; i < 3; i++) {
+            context.getAttribute(STRING_TYPE, ROLE_ID, null, SUBJECT_CATEGORY);
+        }
+        assertEquals(3, module.count);
+    }
+
+    private static EvaluationCtx getEvaluationCtx(AttributeFinderModule module) throws Exception {
+
+        AttributeFinder attributeFinder = new AttributeFinder();
+        List<AttributeFinderModule> modules = new ArrayList<AttributeFinderModule>();
+        modules.add(module);
+        attributeFinder.setModules(modules);
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        pdpConfig = new PDPConfig(attributeFinder, pdpConfig.getPolicyFinder(),
+                pdpConfig.getResourceFinder(), true);
+
+        String request = TestUtil.createRequest("basic", "3", "request_0002_01.xml");
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(RequestCtxFactory.getFactory().
+                getRequestCtx(request.replaceAll(">\\s+<", "><")), pdpConfig);
+    }
+
+    /**
+     * Attribute finder module that counts how often it is asked for a value
+     */
+    private static class CountingModule extends AttributeFinderModule {
+
+        private final boolean memoizable;
+
+        private int count;
+
+        CountingModule(boolean memoizable) {
+            this.memoizable = memoizable;
+        }
+
+        @Override
+        public boolean isDesignatorSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean isMemoizable() {
+            return memoizable;
+        }
+
+        @Override
+        public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
+                                              URI category, EvaluationCtx context) {
+            count++;
+            if (issuer != null) {
+                return new EvaluationResult(BagAttribute.createEmptyBag(attributeType));
+            }
+            List<AttributeValue> values = new ArrayList<AttributeValue>();
+            values.add(new StringAttribute("admin"));
+            return new EvaluationResult(new BagAttribute(attributeType, values));
+        }
+    }
+}
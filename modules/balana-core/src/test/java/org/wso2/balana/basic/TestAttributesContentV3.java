@@ -0,0 +1,109 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.finder.impl.SelectorModule;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Attributes;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * This would test that the content of an <code>Attributes</code> element is copied only when it is used
+ */
+public class TestAttributesContentV3 extends TestCase {
+
+    private static final String RESOURCE_CATEGORY =
+            "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+    private static final String ATTRIBUTES = "<Attributes Category=\"" + RESOURCE_CATEGORY + "\">" +
+            "<Content><record><patient><patientId>p111</patientId></patient></record></Content>" +
+            "</Attributes>";
+
+    private static final URI STRING_TYPE = URI.create(StringAttribute.identifier);
+
+    public void testContentCopiedOnFirstUse() throws Exception {
+
+        Document request = Utils.getSecuredDocumentBuilder().parse(
+                new ByteArrayInputStream(ATTRIBUTES.getBytes("UTF-8")));
+        Attributes attributes = Attributes.getInstance(request.getDocumentElement());
+        assertTrue(attributes.hasContent());
+
+        Node content = attributes.getContent();
+        assertEquals("record", content.getNodeName());
+        assertEquals(Node.DOCUMENT_NODE, content.getParentNode().getNodeType());
+        assertNotSame(request, content.getOwnerDocument());
+        assertSame(content, attributes.getContent());
+
+        // a copy of the attributes shares the content that was already copied
+        Attributes copy = new Attributes(attributes.getCategory(), attributes, new HashSet<Attribute>());
+        assertSame(content, copy.getContent());
+    }
+
+    public void testDocumentElementNotCopied() throws Exception {
+
+        Document doc = Utils.getSecuredDocumentBuilder().newDocument();
+        Element record = doc.createElement("record");
+        doc.appendChild(record);
+
+        Attributes attributes = new Attributes(new URI(RESOURCE_CATEGORY), record,
+                new HashSet<Attribute>(), null);
+        assertSame(record, attributes.getContent());
+
+        Attributes empty = new Attributes(new URI(RESOURCE_CATEGORY), new HashSet<Attribute>());
+        assertFalse(empty.hasContent());
+        assertNull(empty.getContent());
+    }
+
+    public void testContextSelectorPaths() throws Exception {
+
+        Document request = Utils.getSecuredDocumentBuilder().parse(
+                new ByteArrayInputStream(ATTRIBUTES.getBytes("UTF-8")));
+        Node root = Attributes.getInstance(request.getDocumentElement()).getContent();
+        SelectorModule module = new SelectorModule();
+
+        // a relative path is evaluated on the selected node
+        assertValue("p111", module.findAttribute("patientId/text()", STRING_TYPE,
+                "//patient", root, null, null));
+        // an absolute path sees the selected node as the root
+        assertValue("p111", module.findAttribute("/patient/patientId/text()",
+                STRING_TYPE, "//patient", root, null, null));
+    }
+
+    private static void assertValue(String expected, EvaluationResult result) {
+
+        assertFalse(result.indeterminate());
+        Iterator it = ((BagAttribute) result.getAttributeValue()).iterator();
+        assertTrue(it.hasNext());
+        assertEquals(expected, ((StringAttribute) it.next()).getValue());
+        assertFalse(it.hasNext());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This would test the concurrent batch evaluation of independent requests by a single PDP.
+ */
+public class TestBatchEvaluationV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    /**
+     * number of times each request is repeated in the batch
+     */
+    private final static int REPEAT = 25;
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(TestBatchEvaluationV3.class);
+
+    public void testEvaluateAll() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", executor);
+
+            List<AbstractRequestCtx> requests = new ArrayList<AbstractRequestCtx>();
+            List<ResponseCtx> expectedResponses = new ArrayList<ResponseCtx>();
+            for (int n = 0; n < REPEAT; n++) {
+                for (int i = 1; i < 4; i++) {
+                    String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                            "request_0002_0" + i + ".xml");
+                    assertNotNull("Request read from file is Null", request);
+                    requests.add(RequestCtxFactory.getFactory().
+                            getRequestCtx(request.replaceAll(">\\s+<", "><")));
+                    expectedResponses.add(TestUtil.createResponse(ROOT_DIRECTORY,
+                            VERSION_DIRECTORY, "response_0002_0" + i + ".xml"));
+                }
+            }
+
+            log.info("Evaluating a batch of " + requests.size() + " requests");
+            List<ResponseCtx> responses = pdp.evaluateAll(requests);
+
+            assertEquals(requests.size(), responses.size());
+            for (int i = 0; i < responses.size(); i++) {
+                assertTrue(TestUtil.isMatching(responses.get(i), expectedResponses.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy
+     *
+     * @param policy   XACML policy file name
+     * @param executor executor used for the concurrent evaluation
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(String policy, ExecutorService executor) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        Balana balana = Balana.getInstance();
+        PDPConfig pdpConfig = balana.getPdpConfig();
+        pdpConfig = new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true);
+        return new PDP(pdpConfig, executor);
+    }
+}
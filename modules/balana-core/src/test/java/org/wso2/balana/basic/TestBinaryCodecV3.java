@@ -0,0 +1,201 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.BinaryCodec;
+import org.wso2.balana.ctx.JSONRequestParser;
+import org.wso2.balana.ctx.JSONResponseEncoder;
+import org.wso2.balana.ctx.MissingAttributeDetail;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.Status;
+import org.wso2.balana.ctx.StatusDetail;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.ctx.xacml3.Result;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This would test the binary encoding of requests and responses
+ */
+public class TestBinaryCodecV3 extends TestCase {
+
+    /**
+     * request_0002_01.xml, asking for the policy ids so that they are encoded in the response
+     */
+    private static final String REQUEST_0002_01 = TestUtil.JSON_REQUEST_0002_01.replace(
+            "{\"Request\":{", "{\"Request\":{\"ReturnPolicyIdList\":true,");
+
+    public void testRequestRoundTrip() throws Exception {
+
+        RequestCtx request = (RequestCtx) RequestCtxFactory.getFactory().getStreamingRequestCtx(
+                TestUtil.createRequest("basic", "3", "request_0002_01.xml"));
+        RequestCtx decoded = roundTrip(request);
+        assertEquals(TestUtil.describe(request), TestUtil.describe(decoded));
+        assertEquals(request.isReturnPolicyIdList(), decoded.isReturnPolicyIdList());
+
+        request = JSONRequestParser.parse("{\"Request\":{\"CombinedDecision\":true,\"Resource\":{" +
+                "\"Attribute\":[{\"AttributeId\":\"integers\",\"Value\":[1,-70000]}," +
+                "{\"AttributeId\":\"doubles\",\"Value\":[1,2.5e1],\"Issuer\":\"issuer\"}," +
+                "{\"AttributeId\":\"flag\",\"Value\":false,\"IncludeInResult\":true}," +
+                "{\"AttributeId\":\"date\",\"Value\":\"2002-09-24\",\"DataType\":\"date\"}," +
+                "{\"AttributeId\":\"text\",\"Value\":\"caf\\u00e9\"}]}," +
+                "\"Category\":{\"CategoryId\":\"custom-category\",\"Attribute\":" +
+                "{\"AttributeId\":\"integers\",\"Value\":7}}}}");
+        decoded = roundTrip(request);
+        assertEquals(TestUtil.describe(request), TestUtil.describe(decoded));
+        assertTrue(decoded.isCombinedDecision());
+        assertFalse(decoded.isReturnPolicyIdList());
+    }
+
+    public void testContentRequest() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0008.xml");
+        for (int i = 0; i < TestUtil.CONTENT_PATIENTS.length; i++) {
+            String json = TestUtil.createJSONContentRequest(TestUtil.CONTENT_PATIENTS[i]);
+            ResponseCtx response = pdp.evaluate(roundTrip(JSONRequestParser.parse(json)));
+            AbstractResult result = response.getResults().iterator().next();
+            assertEquals(TestUtil.CONTENT_DECISIONS[i], AbstractResult.DECISIONS[result.getDecision()]);
+        }
+    }
+
+    public void testResponseRoundTrip() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml");
+        ResponseCtx response = pdp.evaluate(JSONRequestParser.parse(REQUEST_0002_01));
+        String expected = JSONResponseEncoder.encode(response);
+        assertTrue(expected, expected.contains("permitPolicyObligation"));
+        assertEquals(expected, JSONResponseEncoder.encode(roundTrip(response)));
+
+        List<AttributeValue> values = new ArrayList<AttributeValue>();
+        values.add(new StringAttribute("bob"));
+        MissingAttributeDetail missing = new MissingAttributeDetail(
+                new URI("urn:oasis:names:tc:xacml:1.0:subject:subject-id"),
+                new URI(StringAttribute.identifier), new URI(XACMLConstants.SUBJECT_CATEGORY), null,
+                values, XACMLConstants.XACML_VERSION_3_0);
+        Status status = new Status(Collections.singletonList(Status.STATUS_MISSING_ATTRIBUTE),
+                "subject is missing", new StatusDetail(Arrays.asList(missing)));
+        response = new ResponseCtx(new Result(AbstractResult.DECISION_INDETERMINATE, status));
+        expected = JSONResponseEncoder.encode(response);
+        assertTrue(expected, expected.contains("MissingAttributeDetail"));
+        assertEquals(expected, JSONResponseEncoder.encode(roundTrip(response)));
+    }
+
+    public void testSeveralFrames() throws Exception {
+
+        RequestCtx first = JSONRequestParser.parse(REQUEST_0002_01);
+        RequestCtx second = (RequestCtx) RequestCtxFactory.getFactory().getStreamingRequestCtx(
+                TestUtil.createRequest("basic", "3", "request_0002_01.xml"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeRequest(first, out);
+        BinaryCodec.writeRequest(second, out);
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(TestUtil.describe(first), TestUtil.describe(BinaryCodec.readRequest(in)));
+        assertEquals(TestUtil.describe(second), TestUtil.describe(BinaryCodec.readRequest(in)));
+        assertNull(BinaryCodec.readRequest(in));
+    }
+
+    public void testInvalidFrame() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeRequest(JSONRequestParser.parse(REQUEST_0002_01), out);
+        byte[] frame = out.toByteArray();
+
+        try {
+            BinaryCodec.readRequest(new ByteArrayInputStream(frame, 0, frame.length - 1));
+            fail("A truncated frame was accepted");
+        } catch (ParsingException e) {
+            // expected
+        }
+        try {
+            BinaryCodec.readResponse(new ByteArrayInputStream(frame));
+            fail("A request frame was accepted as a response");
+        } catch (ParsingException e) {
+            // expected
+        }
+
+        // a result that claims more obligations than there are bytes in the frame
+        byte[] crafted = {0, 0, 0, 11, 2, 1, 1, (byte) XACMLConstants.XACML_VERSION_3_0,
+                AbstractResult.DECISION_PERMIT, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 7};
+        try {
+            BinaryCodec.readResponse(new ByteArrayInputStream(crafted));
+            fail("A frame with an impossible number of obligations was accepted");
+        } catch (ParsingException e) {
+            // expected
+        }
+    }
+
+    private static RequestCtx roundTrip(RequestCtx request) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeRequest(request, out);
+        return BinaryCodec.readRequest(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static ResponseCtx roundTrip(ResponseCtx response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResponse(response, out);
+        return BinaryCodec.readResponse(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy
+     *
+     * @param policy XACML policy file name
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + "basic" + File.separator + "3" +
+                File.separator + TestConstants.POLICY_DIRECTORY + File.separator + policy);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        Balana balana = Balana.getInstance();
+        PDPConfig pdpConfig = balana.getPdpConfig();
+        pdpConfig = new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true);
+        return new PDP(pdpConfig);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+/**
+ * This would test the folding of constant expressions when policies are compiled. The compiled
+ * policy must give the same decisions as the policy it was compiled from.
+ */
+public class TestConstantFoldingV3 extends TestCase {
+
+    private static final String STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+    private static final String BOOLEAN = "http://www.w3.org/2001/XMLSchema#boolean";
+
+    private static final String FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:";
+
+    private static final String SUBJECT_ID = "<Apply FunctionId=\"" + FUNCTION + "string-one-and-only\">" +
+            "<AttributeDesignator AttributeId=\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\" " +
+            "Category=\"urn:oasis:names:tc:xacml:1.0:subject-category:access-subject\" " +
+            "DataType=\"" + STRING + "\" MustBePresent=\"false\"/></Apply>";
+
+    private static final String POLICY =
+            "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"folding\" " +
+            "RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable\" " +
+            "Version=\"1.0\"><Target/>" +
+            "<VariableDefinition VariableId=\"owner\">" +
+            "<Apply FunctionId=\"" + FUNCTION + "string-one-and-only\">" +
+            "<Apply FunctionId=\"" + FUNCTION + "string-bag\">" +
+            "<AttributeValue DataType=\"" + STRING + "\">bob</AttributeValue></Apply></Apply>" +
+            "</VariableDefinition>" +
+            // the first argument is always false, so this rule never applies
+            "<Rule RuleId=\"never\" Effect=\"Permit\"><Condition>" +
+            "<Apply FunctionId=\"" + FUNCTION + "and\">" +
+            "<Apply FunctionId=\"" + FUNCTION + "string-equal\"><VariableReference VariableId=\"owner\"/>" +
+            "<AttributeValue DataType=\"" + STRING + "\">alice</AttributeValue></Apply>" +
+            "<Apply FunctionId=\"" + FUNCTION + "string-equal\">" + SUBJECT_ID +
+            "<AttributeValue DataType=\"" + STRING + "\">alice</AttributeValue></Apply>" +
+            "</Apply></Condition></Rule>" +
+            "<Rule RuleId=\"owner\" Effect=\"Deny\"><Condition>" +
+            "<Apply FunctionId=\"" + FUNCTION + "or\">" +
+            "<AttributeValue DataType=\"" + BOOLEAN + "\">false</AttributeValue>" +
+            "<Apply FunctionId=\"" + FUNCTION + "string-equal\">" + SUBJECT_ID +
+            "<VariableReference VariableId=\"owner\"/></Apply>" +
+            "</Apply></Condition></Rule>" +
+            "<Rule RuleId=\"others\" Effect=\"Permit\"/>" +
+            "</Policy>";
+
+    public void testFoldedPolicy() throws Exception {
+
+        Policy policy = loadPolicy();
+        Policy compiled = loadPolicy();
+        assertEquals(2, PolicyCompiler.compile(compiled));
+
+        // the rule that never applies is removed
+        assertEquals(3, policy.getChildren().size());
+        assertEquals(2, compiled.getChildren().size());
+
+        for (String subject : new String[]{"bob", "alice"}) {
+            EvaluationCtx context = createContext(subject);
+            AbstractResult expected = policy.evaluate(context);
+            AbstractResult result = compiled.evaluate(createContext(subject));
+            assertEquals(expected.getDecision(), result.getDecision());
+        }
+
+        assertEquals(AbstractResult.DECISION_DENY, compiled.evaluate(createContext("bob")).getDecision());
+        assertEquals(AbstractResult.DECISION_PERMIT, compiled.evaluate(createContext("alice")).getDecision());
+    }
+
+    private static Policy loadPolicy() throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(POLICY.getBytes("UTF-8")));
+        return Policy.getInstance(doc.getDocumentElement());
+    }
+
+    private static EvaluationCtx createContext(String subject) throws Exception {
+
+        String request = TestUtil.createRequest("basic", "3", "request_0002_01.xml");
+        request = request.replace(">bob<", ">" + subject + "<").replaceAll(">\\s+<", "><");
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(RequestCtxFactory.getFactory().
+                getRequestCtx(request), Balana.getInstance().getPdpConfig());
+    }
+}
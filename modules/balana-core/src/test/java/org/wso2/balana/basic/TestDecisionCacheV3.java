@@ -0,0 +1,281 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.AttributeFinder;
+import org.wso2.balana.finder.AttributeFinderModule;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This would test the decision cache of the PDP
+ */
+public class TestDecisionCacheV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    /**
+     * policy that permits every request depending on the current time of the PDP
+     */
+    private final static String TIME_POLICY =
+            "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"TimePolicy\" " +
+            "RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable\" " +
+            "Version=\"1.0\"><Target/><Rule RuleId=\"rule1\" Effect=\"Permit\"><Condition>" +
+            "<Apply FunctionId=\"urn:oasis:names:tc:xacml:1.0:function:time-greater-than-or-equal\">" +
+            "<Apply FunctionId=\"urn:oasis:names:tc:xacml:1.0:function:time-one-and-only\">" +
+            "<AttributeDesignator MustBePresent=\"false\" " +
+            "Category=\"urn:oasis:names:tc:xacml:3.0:attribute-category:environment\" " +
+            "AttributeId=\"urn:oasis:names:tc:xacml:1.0:environment:current-time\" " +
+            "DataType=\"http://www.w3.org/2001/XMLSchema#time\"/></Apply>" +
+            "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#time\">00:00:00</AttributeValue>" +
+            "</Apply></Condition></Rule></Policy>";
+
+    /**
+     * policy that permits every request whose subject has the admin role, which is not part of
+     * the request and is found by an attribute finder module
+     */
+    private final static String ROLE_POLICY =
+            "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"RolePolicy\" " +
+            "RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable\" " +
+            "Version=\"1.0\"><Target/><Rule RuleId=\"rule1\" Effect=\"Permit\"><Condition>" +
+            "<Apply FunctionId=\"urn:oasis:names:tc:xacml:1.0:function:string-is-in\">" +
+            "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">admin</AttributeValue>" +
+            "<AttributeDesignator MustBePresent=\"false\" " +
+            "Category=\"urn:oasis:names:tc:xacml:1.0:subject-category:access-subject\" " +
+            "AttributeId=\"urn:example:role\" " +
+            "DataType=\"http://www.w3.org/2001/XMLSchema#string\"/></Apply>" +
+            "</Condition></Rule><Rule RuleId=\"rule2\" Effect=\"Deny\"/></Policy>";
+
+    public void testRepeatedRequest() throws Exception {
+
+        DecisionCache cache = new DecisionCache(10, 60000);
+        PolicyFinder finder = getPolicyFinder(getPolicyLocation("TestPolicy_0002.xml"));
+        PDP pdp = getPDPNewInstance(finder, cache);
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml");
+        assertNotNull("Request read from file is Null", request);
+        ResponseCtx expectedResponseCtx = TestUtil.createResponse(ROOT_DIRECTORY,
+                VERSION_DIRECTORY, "response_0002_01.xml");
+
+        ResponseCtx first = pdp.evaluateReturnResponseCtx(request);
+        ResponseCtx second = pdp.evaluateReturnResponseCtx(request);
+        assertTrue(TestUtil.isMatching(first, expectedResponseCtx));
+        assertSame(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // reloading the policies must flush the cache
+        finder.init();
+        ResponseCtx third = pdp.evaluateReturnResponseCtx(request);
+        assertNotSame(first, third);
+        assertTrue(TestUtil.isMatching(third, expectedResponseCtx));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    public void testTimeDependentRequest() throws Exception {
+
+        File policyFile = File.createTempFile("TimePolicy", ".xml");
+        policyFile.deleteOnExit();
+        OutputStream output = new FileOutputStream(policyFile);
+        try {
+            output.write(TIME_POLICY.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+
+        DecisionCache cache = new DecisionCache(10, 60000);
+        PDP pdp = getPDPNewInstance(getPolicyFinder(policyFile.getCanonicalPath()), cache);
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml");
+
+        for (int i = 0; i < 2; i++) {
+            ResponseCtx response = pdp.evaluateReturnResponseCtx(request);
+            AbstractResult result = response.getResults().iterator().next();
+            assertEquals(AbstractResult.DECISION_PERMIT, result.getDecision());
+        }
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.size());
+    }
+
+    public void testAttributeFinderValues() throws Exception {
+
+        String policyLocation = writePolicy("RolePolicy", ROLE_POLICY);
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml");
+
+        // the role may change between requests, so the decision is not cached
+        RoleModule module = new RoleModule(false);
+        DecisionCache cache = new DecisionCache(10, 60000);
+        PDP pdp = getPDPNewInstance(getPolicyFinder(policyLocation), cache, module);
+        assertEquals(AbstractResult.DECISION_PERMIT, evaluate(pdp, request));
+        module.role = "guest";
+        assertEquals(AbstractResult.DECISION_DENY, evaluate(pdp, request));
+        assertEquals(0, cache.size());
+
+        // a module that declares its values decision cacheable lets the decision be cached
+        module = new RoleModule(true);
+        cache = new DecisionCache(10, 60000);
+        pdp = getPDPNewInstance(getPolicyFinder(policyLocation), cache, module);
+        assertEquals(AbstractResult.DECISION_PERMIT, evaluate(pdp, request));
+        assertEquals(1, cache.size());
+    }
+
+    private static int evaluate(PDP pdp, String request) {
+        return pdp.evaluateReturnResponseCtx(request).getResults().iterator().next().getDecision();
+    }
+
+    private static String writePolicy(String name, String policy) throws Exception {
+        File policyFile = File.createTempFile(name, ".xml");
+        policyFile.deleteOnExit();
+        OutputStream output = new FileOutputStream(policyFile);
+        try {
+            output.write(policy.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        return policyFile.getCanonicalPath();
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new policy finder with the given XACML policy
+     *
+     * @param policyLocation XACML policy file location
+     * @return a  PolicyFinder instance
+     */
+    private static PolicyFinder getPolicyFinder(String policyLocation) {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyLocation);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+        return finder;
+    }
+
+    /**
+     * Returns a new PDP instance with the given policy finder and decision cache
+     *
+     * @param finder policy finder of the PDP
+     * @param cache decision cache of the PDP
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(PolicyFinder finder, DecisionCache cache) {
+
+        Balana balana = Balana.getInstance();
+        PDPConfig pdpConfig = balana.getPdpConfig();
+        pdpConfig = new PDPConfig.Builder().attributeFinder(pdpConfig.getAttributeFinder())
+                .policyFinder(finder).resourceFinder(pdpConfig.getResourceFinder())
+                .decisionCache(cache).build();
+        return new PDP(pdpConfig);
+    }
+
+    /**
+     * Returns a new PDP instance with the given policy finder, decision cache and attribute finder
+     * module
+     *
+     * @param finder policy finder of the PDP
+     * @param cache decision cache of the PDP
+     * @param module the only attribute finder module of the PDP
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(PolicyFinder finder, DecisionCache cache,
+                                         AttributeFinderModule module) {
+
+        AttributeFinder attributeFinder = new AttributeFinder();
+        List<AttributeFinderModule> modules = new ArrayList<AttributeFinderModule>();
+        modules.add(module);
+        attributeFinder.setModules(modules);
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig.Builder().attributeFinder(attributeFinder)
+                .policyFinder(finder).resourceFinder(pdpConfig.getResourceFinder())
+                .decisionCache(cache).build());
+    }
+
+    /**
+     * Attribute finder module that finds the role of every subject, like a directory would
+     */
+    private static class RoleModule extends AttributeFinderModule {
+
+        private final boolean decisionCacheable;
+
+        private volatile String role = "admin";
+
+        RoleModule(boolean decisionCacheable) {
+            this.decisionCacheable = decisionCacheable;
+        }
+
+        @Override
+        public boolean isDesignatorSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean isDecisionCacheable() {
+            return decisionCacheable;
+        }
+
+        @Override
+        public EvaluationResult findAttribute(URI attributeType, URI attributeId, String issuer,
+                                              URI category, EvaluationCtx context) {
+            List<AttributeValue> values = new ArrayList<AttributeValue>();
+            if ("urn:example:role".equals(attributeId.toString())) {
+                values.add(new StringAttribute(role));
+            }
+            return new EvaluationResult(new BagAttribute(attributeType, values));
+        }
+    }
+}
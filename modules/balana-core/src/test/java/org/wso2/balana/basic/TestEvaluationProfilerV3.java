@@ -0,0 +1,151 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+import org.wso2.balana.metrics.EvaluationProfiler;
+import org.wso2.balana.metrics.ProfileEntry;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This would test the profiles of policies, rules, conditions and target matches that are
+ * recorded while requests are evaluated
+ */
+public class TestEvaluationProfilerV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    public void testProfiles() throws Exception {
+
+        EvaluationProfiler profiler = new EvaluationProfiler();
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", profiler);
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml");
+        assertNotNull("Request read from file is Null", request);
+
+        ResponseCtx response = pdp.evaluateReturnResponseCtx(request);
+        int decision = response.getResults().iterator().next().getDecision();
+        pdp.evaluate(request);
+
+        ProfileEntry policy = profiler.getEntry(EvaluationProfiler.POLICY, "TestPolicy0002");
+        assertNotNull(policy);
+        assertEquals(2, policy.getCount());
+        assertEquals(2, policy.getOutcomeCount(decision));
+        assertTrue(policy.getTotalTime() > 0);
+
+        ProfileEntry rule = profiler.getEntry(EvaluationProfiler.RULE, "TestPolicy0002/rule1");
+        assertNotNull(rule);
+        assertEquals(2, rule.getCount());
+
+        // the time of the policy includes the time of its rules
+        List<ProfileEntry> rules = profiler.getTopEntries(EvaluationProfiler.RULE, 10);
+        assertFalse(rules.isEmpty());
+        assertTrue(policy.getTotalTime() >= rules.get(0).getTotalTime());
+        for (int i = 1; i < rules.size(); i++) {
+            assertTrue(rules.get(i - 1).getTotalTime() >= rules.get(i).getTotalTime());
+        }
+        assertEquals(1, profiler.getTopEntries(EvaluationProfiler.RULE, 1).size());
+
+        assertFalse(profiler.getTopEntries(EvaluationProfiler.MATCH, 10).isEmpty());
+
+        String report = profiler.getReport(5);
+        assertTrue(report.contains("TestPolicy0002"));
+        assertTrue(report.contains("TestPolicy0002/rule1"));
+
+        profiler.reset();
+        assertNull(profiler.getEntry(EvaluationProfiler.POLICY, "TestPolicy0002"));
+        assertEquals("", profiler.getReport(5));
+    }
+
+    public void testProfileConditions() throws Exception {
+
+        EvaluationProfiler profiler = new EvaluationProfiler();
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", profiler);
+        pdp.evaluate(TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY, "request_0002_01.xml"));
+
+        long conditions = 0;
+        for (ProfileEntry entry : profiler.getTopEntries(EvaluationProfiler.CONDITION, 10)) {
+            assertEquals(entry.getCount(), entry.getOutcomeCount(EvaluationProfiler.CONDITION_TRUE) +
+                    entry.getOutcomeCount(EvaluationProfiler.CONDITION_FALSE) +
+                    entry.getOutcomeCount(EvaluationProfiler.CONDITION_INDETERMINATE));
+            // a condition is only evaluated when the target of its rule matched
+            ProfileEntry rule = profiler.getEntry(EvaluationProfiler.RULE, entry.getId());
+            assertNotNull(rule);
+            assertEquals(rule.getCount(), entry.getCount());
+            conditions += entry.getCount();
+        }
+        assertTrue(conditions > 0);
+    }
+
+    public void testWithoutProfiler() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", null);
+        String response = pdp.evaluate(TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml"));
+        assertTrue(response.contains("Permit"));
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy and profiler
+     *
+     * @param policy XACML policy file name
+     * @param profiler profiler of the evaluation, or null
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy, EvaluationProfiler profiler) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(getPolicyLocation(policy));
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig.Builder().attributeFinder(pdpConfig.getAttributeFinder())
+                .policyFinder(finder).resourceFinder(pdpConfig.getResourceFinder())
+                .profiler(profiler).build());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AnyURIAttribute;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.DoubleAttribute;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.ctx.JSONRequestParser;
+import org.wso2.balana.ctx.JSONResponseEncoder;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.Status;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.ctx.xacml3.Result;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This would test requests and responses in the JSON Profile of XACML 3.0
+ */
+public class TestJSONProfileV3 extends TestCase {
+
+    public void testShorthandRequest() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml");
+        assertEquals("{\"Response\":[{\"Decision\":\"Permit\",\"Status\":{\"StatusCode\":" +
+                "{\"Value\":\"urn:oasis:names:tc:xacml:1.0:status:ok\"}},\"Obligations\":[" +
+                "{\"Id\":\"permitPolicyObligation\",\"AttributeAssignment\":[{\"AttributeId\":" +
+                "\"urn:oasis:names:tc:xacml:2.0:example:attribute:text\"," +
+                "\"Value\":\"permitObligation\"}]}]}]}", pdp.evaluateJSON(TestUtil.JSON_REQUEST_0002_01));
+    }
+
+    public void testSameAsXmlRequest() throws Exception {
+
+        String json = "{\"Request\":{\"ReturnPolicyIdList\":false,\"CombinedDecision\":false," +
+                "\"Category\":[{\"CategoryId\":" +
+                "\"urn:oasis:names:tc:xacml:1.0:subject-category:access-subject\"," +
+                "\"Attribute\":[{\"AttributeId\":\"urn:oasis:names:tc:xacml:1.0:subject:subject-id\"," +
+                "\"DataType\":\"http://www.w3.org/2001/XMLSchema#string\",\"Value\":\"bob\"," +
+                "\"IncludeInResult\":false}]}," +
+                "{\"CategoryId\":\"Resource\",\"Attribute\":[{\"AttributeId\":" +
+                "\"urn:oasis:names:tc:xacml:1.0:resource:resource-id\",\"Value\":\"foo/foo1\"}]}," +
+                "{\"CategoryId\":\"urn:oasis:names:tc:xacml:3.0:attribute-category:action\"," +
+                "\"Attribute\":[{\"AttributeId\":\"urn:oasis:names:tc:xacml:1.0:action:action-id\"," +
+                "\"Value\":\"bar1\",\"DataType\":\"string\"}]}]}}";
+
+        RequestCtx fromJson = JSONRequestParser.parse(json);
+        RequestCtx fromXml = (RequestCtx) RequestCtxFactory.getFactory().getStreamingRequestCtx(
+                TestUtil.createRequest("basic", "3", "request_0002_01.xml"));
+        assertEquals(TestUtil.describe(fromXml), TestUtil.describe(fromJson));
+        assertEquals(TestUtil.describe(JSONRequestParser.parse(TestUtil.JSON_REQUEST_0002_01)),
+                TestUtil.describe(fromJson));
+    }
+
+    public void testContent() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0008.xml");
+        for (int i = 0; i < TestUtil.CONTENT_PATIENTS.length; i++) {
+            String json = TestUtil.createJSONContentRequest(TestUtil.CONTENT_PATIENTS[i]);
+            ResponseCtx response = pdp.evaluate(JSONRequestParser.parse(json));
+            AbstractResult result = response.getResults().iterator().next();
+            assertEquals(TestUtil.CONTENT_DECISIONS[i], AbstractResult.DECISIONS[result.getDecision()]);
+        }
+    }
+
+    public void testValueDataTypes() throws Exception {
+
+        RequestCtx request = JSONRequestParser.parse("{\"Request\":{\"Resource\":{\"Attribute\":[" +
+                "{\"AttributeId\":\"numbers\",\"Value\":[1,2.5e1]}," +
+                "{\"AttributeId\":\"flag\",\"Value\":true}," +
+                "{\"Value\":\"http://example.com\",\"AttributeId\":\"uri\",\"DataType\":\"anyURI\"}]}}}");
+
+        Map<String, Attribute> attributes = new HashMap<String, Attribute>();
+        for (Attribute attribute : request.getAttributesSet().iterator().next().getAttributes()) {
+            attributes.put(attribute.getId().toString(), attribute);
+        }
+        assertEquals(DoubleAttribute.identifier, attributes.get("numbers").getType().toString());
+        assertEquals(2, attributes.get("numbers").getValues().size());
+        assertEquals(BooleanAttribute.identifier, attributes.get("flag").getType().toString());
+        assertEquals(AnyURIAttribute.identifier, attributes.get("uri").getType().toString());
+
+        try {
+            JSONRequestParser.parse("{\"Request\":{\"Resource\":{\"Attribute\":" +
+                    "{\"AttributeId\":\"mixed\",\"Value\":[1,\"one\"]}}}}");
+            fail("Values of different types were accepted");
+        } catch (ParsingException e) {
+            // expected
+        }
+    }
+
+    public void testIncludedAttributesEscaped() throws Exception {
+
+        RequestCtx request = JSONRequestParser.parse("{\"Request\":{\"Resource\":{\"Attribute\":" +
+                "{\"AttributeId\":\"name\",\"Value\":\"a \\\"quoted\\\"\\n\\u00e9\"," +
+                "\"IncludeInResult\":true}}}}");
+        Result result = new Result(AbstractResult.DECISION_NOT_APPLICABLE, null, null, null, null,
+                request.getAttributesSet());
+        assertEquals("{\"Response\":[{\"Decision\":\"NotApplicable\",\"Status\":{\"StatusCode\":" +
+                "{\"Value\":\"" + Status.STATUS_OK + "\"}},\"Category\":[{\"CategoryId\":" +
+                "\"" + XACMLConstants.RESOURCE_CATEGORY + "\",\"Attribute\":[{\"AttributeId\":\"name\"," +
+                "\"Value\":\"a \\\"quoted\\\"\\n\u00e9\"}]}]}]}",
+                JSONResponseEncoder.encode(new ResponseCtx(result)));
+    }
+
+    public void testInvalidRequest() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml");
+        String[] invalid = {"{\"Request\":", "{\"Request\":{}}", "[1]", "{\"Request\":{\"Resource\":" +
+                "{\"Attribute\":[{\"Value\":\"x\"}]}}}", TestUtil.JSON_REQUEST_0002_01 + "}"};
+        for (String request : invalid) {
+            String response = pdp.evaluateJSON(request);
+            assertTrue(response, response.startsWith("{\"Response\":[{\"Decision\":\"Indeterminate\"," +
+                    "\"Status\":{\"StatusCode\":{\"Value\":\"" + Status.STATUS_SYNTAX_ERROR + "\"}"));
+        }
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy
+     *
+     * @param policy XACML policy file name
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + "basic" + File.separator + "3" +
+                File.separator + TestConstants.POLICY_DIRECTORY + File.separator + policy);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        Balana balana = Balana.getInstance();
+        PDPConfig pdpConfig = balana.getPdpConfig();
+        pdpConfig = new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true);
+        return new PDP(pdpConfig);
+    }
+}
@@ -22,14 +22,30 @@ import junit.framework.TestCase;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.balana.*;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.Attribute;
 import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.Status;
+import org.wso2.balana.ctx.xacml3.Result;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.PolicyFinderModule;
 import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Attributes;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -94,6 +110,93 @@ public class TestMultipleRequestV3 extends TestCase {
         }
     }
 
+    public void testParallelMultipleRequest() throws Exception {
+
+        Set<String> policies = new HashSet<String>();
+        policies.add("TestPolicy_0014.xml");
+        log.info("Parallel Basic Test 0014 is started");
+
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0014_01.xml");
+        assertNotNull("Request read from file is Null", request);
+
+        ResponseCtx sequentialResponse = TestUtil.evaluate(getPDPNewInstance(policies), request);
+        ResponseCtx parallelResponse = TestUtil.evaluate(getPDPNewInstance(policies, 4), request);
+        log.info("Response that is received from the PDP :  " + parallelResponse.encode());
+
+        ResponseCtx expectedResponseCtx = TestUtil.createResponse(ROOT_DIRECTORY,
+                VERSION_DIRECTORY, "response_0014_01.xml");
+        assertNotNull("Response read from file is Null", expectedResponseCtx);
+        assertEquals(sequentialResponse.getResults().size(), parallelResponse.getResults().size());
+        assertTrue(TestUtil.isMatching(parallelResponse, expectedResponseCtx));
+
+        log.info("Parallel Basic Test 0014 is finished");
+    }
+
+    public void testClosedPDP() throws Exception {
+
+        Set<String> policies = new HashSet<String>();
+        policies.add("TestPolicy_0014.xml");
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0014_01.xml");
+        ResponseCtx expectedResponseCtx = TestUtil.createResponse(ROOT_DIRECTORY,
+                VERSION_DIRECTORY, "response_0014_01.xml");
+
+        // once the pool is shut down, the decisions are evaluated sequentially
+        PDP pdp = getPDPNewInstance(policies, 4);
+        pdp.close();
+        assertTrue(TestUtil.isMatching(TestUtil.evaluate(pdp, request), expectedResponseCtx));
+        pdp.close();
+    }
+
+    public void testStreamingResponseEncoding() throws Exception {
+
+        Set<String> policies = new HashSet<String>();
+        policies.add("TestPolicy_0014.xml");
+
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0014_01.xml");
+        assertNotNull("Request read from file is Null", request);
+        ResponseCtx response = TestUtil.evaluate(getPDPNewInstance(policies), request);
+        String expected = response.encode();
+
+        StringWriter writer = new StringWriter();
+        response.encode(writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.encode(output, Charset.forName("UTF-8"));
+        assertEquals(expected, new String(output.toByteArray(), "UTF-8"));
+    }
+
+    public void testResponseEncodingEscaped() throws Exception {
+
+        List<AttributeValue> values = new ArrayList<AttributeValue>();
+        values.add(new StringAttribute("a < b & \"c\""));
+        Set<Attribute> attributeSet = new HashSet<Attribute>();
+        attributeSet.add(new Attribute(new URI("urn:example:name"), new URI(StringAttribute.identifier),
+                "issuer \"x\"", null, values, true, XACMLConstants.XACML_VERSION_3_0));
+        Set<Attributes> attributes = new HashSet<Attributes>();
+        attributes.add(new Attributes(new URI(XACMLConstants.RESOURCE_CATEGORY), attributeSet));
+        Status status = new Status(Collections.singletonList(Status.STATUS_OK), "ok & <done>");
+        ResponseCtx response = new ResponseCtx(new Result(AbstractResult.DECISION_PERMIT, status,
+                null, null, null, attributes));
+
+        String encoded = response.encode();
+        assertTrue(encoded, encoded.contains("<StatusMessage>ok &amp; &lt;done&gt;</StatusMessage>"));
+        assertTrue(encoded, encoded.contains(" Issuer=\"issuer &quot;x&quot;\""));
+        assertTrue(encoded, encoded.contains(">a &lt; b &amp; \"c\"</AttributeValue>"));
+
+        StringWriter writer = new StringWriter();
+        response.encode(writer);
+        assertEquals(encoded, writer.toString());
+
+        // the escaped response is well formed and reads back the same values
+        ResponseCtx parsed = ResponseCtx.getInstance(Utils.getSecuredDocumentBuilder().parse(
+                new ByteArrayInputStream(encoded.getBytes("UTF-8"))).getDocumentElement());
+        assertEquals("ok & <done>", parsed.getResults().iterator().next().getStatus().getMessage());
+    }
+
     /**
      * Returns a new PDP instance with new XACML policies
      *
@@ -102,6 +205,17 @@ public class TestMultipleRequestV3 extends TestCase {
      */
 
     private static PDP getPDPNewInstance(Set<String> policies) {
+        return getPDPNewInstance(policies, 1);
+    }
+
+    /**
+     * Returns a new PDP instance with new XACML policies
+     *
+     * @param policies Set of XACML policy file names
+     * @param parallelism number of individual decisions evaluated in parallel
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(Set<String> policies, int parallelism) {
 
         PolicyFinder finder = new PolicyFinder();
         Set<String> policyLocations = new HashSet<String>();
@@ -125,8 +239,9 @@ public class TestMultipleRequestV3 extends TestCase {
 
         Balana balana = Balana.getInstance();
         PDPConfig pdpConfig = balana.getPdpConfig();
-        pdpConfig = new PDPConfig(pdpConfig.getAttributeFinder(), finder,
-                pdpConfig.getResourceFinder(), true);
+        pdpConfig = new PDPConfig.Builder().attributeFinder(pdpConfig.getAttributeFinder())
+                .policyFinder(finder).resourceFinder(pdpConfig.getResourceFinder())
+                .multipleRequestParallelism(parallelism).build();
         return new PDP(pdpConfig);
 
     }
@@ -0,0 +1,191 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.finder.AttributeFinder;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+import org.wso2.balana.metrics.InMemoryMetrics;
+import org.wso2.balana.metrics.JMXMetrics;
+import org.wso2.balana.metrics.LatencyHistogram;
+import org.wso2.balana.metrics.PDPMetrics;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This would test the measurements that the PDP reports to its metrics
+ */
+public class TestPDPMetricsV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    public void testInMemoryMetrics() throws Exception {
+
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", new DecisionCache(10, 60000), metrics);
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY,
+                "request_0002_01.xml");
+        assertNotNull("Request read from file is Null", request);
+
+        pdp.evaluate(request);
+        pdp.evaluate(request);
+        pdp.evaluate("<Request");
+
+        assertEquals(3, metrics.getRequestCount());
+        assertEquals(2, metrics.getParseLatency().getCount());
+        assertEquals(2, metrics.getDecisionCount(AbstractResult.DECISION_PERMIT));
+        assertEquals(1, metrics.getDecisionCount(AbstractResult.DECISION_INDETERMINATE));
+
+        // the second request is answered from the decision cache, without finding the policies
+        assertEquals(1, metrics.getPolicyFinderLatency().getCount());
+        assertEquals(1, metrics.getCacheHitCount(PDPMetrics.DECISION_CACHE));
+        assertEquals(1, metrics.getCacheMissCount(PDPMetrics.DECISION_CACHE));
+        assertEquals(0.5, metrics.getCacheHitRatio(PDPMetrics.DECISION_CACHE), 0.0001);
+
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount());
+        assertTrue(metrics.getDecisionCounts().isEmpty());
+    }
+
+    public void testJMXMetrics() throws Exception {
+
+        JMXMetrics metrics = new JMXMetrics("TestPDPMetricsV3");
+        try {
+            PDP pdp = getPDPNewInstance("TestPolicy_0002.xml", null, metrics);
+            pdp.evaluate(TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY, "request_0002_01.xml"));
+
+            Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(metrics.getObjectName(),
+                    "RequestCount");
+            assertEquals(1L, count);
+            assertTrue(metrics.getRequestLatencyMax() > 0);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()));
+    }
+
+    public void testSharedAttributeFinder() throws Exception {
+
+        // both PDPs use the same attribute finder, each reports to its own metrics
+        AttributeFinder attributeFinder = new AttributeFinder();
+        attributeFinder.setModules(Balana.getInstance().getPdpConfig().getAttributeFinder().getModules());
+        InMemoryMetrics first = new InMemoryMetrics();
+        InMemoryMetrics second = new InMemoryMetrics();
+        PDP firstPdp = getPDPNewInstance("TestPolicy_0002.xml", attributeFinder, null, first);
+        PDP secondPdp = getPDPNewInstance("TestPolicy_0002.xml", attributeFinder, null, second);
+        assertNull(attributeFinder.getMetrics());
+
+        // the attributes of the policy are not in the request, so the finder is asked for them
+        String request = "<Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" " +
+                "CombinedDecision=\"false\" ReturnPolicyIdList=\"false\">" +
+                "<Attributes Category=\"urn:oasis:names:tc:xacml:1.0:subject-category:access-subject\"/>" +
+                "</Request>";
+        firstPdp.evaluate(request);
+        assertFalse(first.getAttributeFinderLatencies().isEmpty());
+        assertTrue(second.getAttributeFinderLatencies().isEmpty());
+
+        secondPdp.evaluate(request);
+        assertEquals(first.getAttributeFinderLatencies().keySet(),
+                second.getAttributeFinderLatencies().keySet());
+    }
+
+    public void testLatencyHistogram() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500.0, histogram.getMean(), 0.0001);
+
+        // percentiles are the upper bounds of power of two buckets
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 50000 && median < 100000);
+        assertEquals(100000, histogram.getPercentile(100));
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy, decision cache and metrics
+     *
+     * @param policy XACML policy file name
+     * @param cache decision cache of the PDP, or null
+     * @param metrics metrics of the PDP
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy, DecisionCache cache, PDPMetrics metrics)
+            throws Exception {
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        AttributeFinder attributeFinder = new AttributeFinder();
+        attributeFinder.setModules(pdpConfig.getAttributeFinder().getModules());
+        return getPDPNewInstance(policy, attributeFinder, cache, metrics);
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy, attribute finder, decision cache and
+     * metrics
+     *
+     * @param policy XACML policy file name
+     * @param attributeFinder attribute finder of the PDP
+     * @param cache decision cache of the PDP, or null
+     * @param metrics metrics of the PDP
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy, AttributeFinder attributeFinder,
+                                         DecisionCache cache, PDPMetrics metrics) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(getPolicyLocation(policy));
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig.Builder().attributeFinder(attributeFinder).policyFinder(finder)
+                .resourceFinder(pdpConfig.getResourceFinder()).decisionCache(cache)
+                .metrics(metrics).build());
+    }
+}
@@ -0,0 +1,262 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Element;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.PolicyFinderResult;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This would test that <code>FileBasedPolicyFinderModule</code> loads the same policies whether the
+ * policy files are parsed sequentially or in parallel
+ */
+public class TestParallelPolicyLoadingV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    /**
+     * the type and id of the root element of a policy file
+     */
+    private static final Pattern ROOT_ID = Pattern.compile("<(Policy|PolicySet)\\s[^>]*?Policy(?:Set)?Id=\"([^\"]*)\"");
+
+    private File policyDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        policyDirectory = Files.createTempDirectory("balana-load").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = policyDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        policyDirectory.delete();
+    }
+
+    public void testParallelLoading() throws Exception {
+
+        File policies = new File(getPolicyLocation(""));
+        PolicyFinder sequential = getPolicyFinder(policies, 1);
+        PolicyFinder parallel = getPolicyFinder(policies, 4);
+
+        int count = 0;
+        for (String name : policies.list()) {
+            Matcher matcher = ROOT_ID.matcher(readPolicy(name));
+            assertTrue(matcher.find());
+            int type = matcher.group(1).equals("PolicySet") ? PolicyReference.POLICYSET_REFERENCE :
+                    PolicyReference.POLICY_REFERENCE;
+            URI id = new URI(matcher.group(2));
+
+            AbstractPolicy policy = findPolicy(sequential, id, type);
+            assertNotNull(name, policy);
+            AbstractPolicy parallelPolicy = findPolicy(parallel, id, type);
+            assertNotNull(name, parallelPolicy);
+            assertEquals(getChildIds(policy), getChildIds(parallelPolicy));
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    public void testIdCollision() throws Exception {
+
+        // both files contain a policy with the same id, the file listed last wins
+        String policy = readPolicy("TestPolicy_0002.xml");
+        writePolicy("a.xml", policy);
+        writePolicy("b.xml", policy.replace("Effect=\"Permit\"", "Effect=\"Deny\""));
+
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY, "request_0002_01.xml");
+        for (int i = 0; i < 10; i++) {
+            PDP pdp = getPDPNewInstance(getPolicyFinder(policyDirectory, 4));
+            int decision = pdp.evaluate(RequestCtxFactory.getFactory().getRequestCtx(request)).
+                    getResults().iterator().next().getDecision();
+            assertEquals(AbstractResult.DECISION_DENY, decision);
+        }
+    }
+
+    public void testLoadErrors() throws Exception {
+
+        writePolicy("a.xml", readPolicy("TestPolicy_0001.xml"));
+        writePolicy("b.xml", "<Policy");
+        writePolicy("c.xml", readPolicy("TestPolicy_0002.xml"));
+        writePolicy("d.xml", "<PolicySet xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\"/>");
+
+        FileBasedPolicyFinderModule module = getPolicyFinderModule(policyDirectory, 4, new PolicyFinder());
+        assertEquals(2, module.getLoadErrors().size());
+        List<String> failed = new ArrayList<String>(module.getLoadErrors().keySet());
+        assertTrue(failed.get(0).endsWith("b.xml"));
+        assertTrue(failed.get(1).endsWith("d.xml"));
+
+        PolicyFinder finder = getPolicyFinder(policyDirectory, 4);
+        assertNotNull(findPolicy(finder, new URI("TestPolicy0001")));
+        assertNotNull(findPolicy(finder, new URI("TestPolicy0002")));
+    }
+
+    public void testReadPolicyOverride() throws Exception {
+
+        writePolicy("a.xml", readPolicy("TestPolicy_0001.xml"));
+        writePolicy("b.xml", readPolicy("TestPolicy_0002.xml"));
+        writePolicy("c.xml", readPolicy("TestPolicy_0003.xml"));
+
+        // every file is read through the hook, whichever thread reads it
+        final AtomicInteger reads = new AtomicInteger();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyDirectory.getAbsolutePath());
+        FileBasedPolicyFinderModule module = new FileBasedPolicyFinderModule(policyLocations) {
+            @Override
+            protected AbstractPolicy readPolicy(String policyFile) throws Exception {
+                reads.incrementAndGet();
+                return policyFile.endsWith("b.xml") ? null : super.readPolicy(policyFile);
+            }
+        };
+        module.setLoadParallelism(4);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        PolicyFinder finder = new PolicyFinder();
+        finder.setModules(policyModules);
+        finder.init();
+
+        assertEquals(3, reads.get());
+        assertNotNull(findPolicy(finder, new URI("TestPolicy0001")));
+        assertNull(findPolicy(finder, new URI("TestPolicy0002")));
+        assertNotNull(findPolicy(finder, new URI("TestPolicy0003")));
+    }
+
+    public void testLoadPolicyOverride() throws Exception {
+
+        writePolicy("a.xml", readPolicy("TestPolicy_0001.xml"));
+        writePolicy("b.xml", readPolicy("TestPolicy_0002.xml"));
+
+        // a subclass written for the sequential loading still decides how the files are loaded
+        final AtomicInteger loads = new AtomicInteger();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyDirectory.getAbsolutePath());
+        FileBasedPolicyFinderModule module = new FileBasedPolicyFinderModule(policyLocations) {
+            @Override
+            protected Element loadPolicy(String policyFile, PolicyFinder finder) {
+                loads.incrementAndGet();
+                return policyFile.endsWith("b.xml") ? null : super.loadPolicy(policyFile, finder);
+            }
+        };
+        module.setLoadParallelism(4);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        PolicyFinder finder = new PolicyFinder();
+        finder.setModules(policyModules);
+        finder.init();
+
+        assertEquals(2, loads.get());
+        assertNotNull(findPolicy(finder, new URI("TestPolicy0001")));
+        assertNull(findPolicy(finder, new URI("TestPolicy0002")));
+    }
+
+    private static List<URI> getChildIds(AbstractPolicy policy) {
+        List<URI> ids = new ArrayList<URI>();
+        for (Object child : policy.getChildren()) {
+            ids.add(((PolicyTreeElement) child).getId());
+        }
+        return ids;
+    }
+
+    private static AbstractPolicy findPolicy(PolicyFinder finder, URI id) {
+        return findPolicy(finder, id, PolicyReference.POLICY_REFERENCE);
+    }
+
+    private static AbstractPolicy findPolicy(PolicyFinder finder, URI id, int type) {
+        PolicyFinderResult result = finder.findPolicy(id, type, null, new PolicyMetaData());
+        return result.notApplicable() || result.indeterminate() ? null : result.getPolicy();
+    }
+
+    private static PolicyFinder getPolicyFinder(File location, int loadParallelism) {
+        PolicyFinder finder = new PolicyFinder();
+        getPolicyFinderModule(location, loadParallelism, finder);
+        return finder;
+    }
+
+    private static FileBasedPolicyFinderModule getPolicyFinderModule(File location, int loadParallelism,
+                                                                     PolicyFinder finder) {
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(location.getAbsolutePath());
+        FileBasedPolicyFinderModule module = new FileBasedPolicyFinderModule(policyLocations);
+        module.setLoadParallelism(loadParallelism);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        finder.setModules(policyModules);
+        finder.init();
+        return module;
+    }
+
+    private void writePolicy(String fileName, String policy) throws Exception {
+        Files.write(new File(policyDirectory, fileName).toPath(), policy.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private static String readPolicy(String policy) throws Exception {
+        return new String(Files.readAllBytes(new File(getPolicyLocation(policy)).toPath()),
+                Charset.forName("UTF-8"));
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new PDP instance with the given policy finder
+     *
+     * @param finder policy finder of the PDP
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(PolicyFinder finder) {
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true));
+    }
+}
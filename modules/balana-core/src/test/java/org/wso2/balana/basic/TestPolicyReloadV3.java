@@ -0,0 +1,165 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This would test that the policies of <code>FileBasedPolicyFinderModule</code> can be reloaded
+ * while requests are evaluated
+ */
+public class TestPolicyReloadV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    private static final String POLICY = "TestPolicy_0002.xml";
+
+    private File policyDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        policyDirectory = Files.createTempDirectory("balana-reload").toFile();
+        Files.copy(new File(getPolicyLocation(POLICY)).toPath(), new File(policyDirectory, POLICY).toPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = policyDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        policyDirectory.delete();
+    }
+
+    public void testReload() throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        FileBasedPolicyFinderModule module = getPolicyFinderModule(finder);
+        PDP pdp = getPDPNewInstance(finder);
+        AbstractRequestCtx request = getRequest();
+
+        assertEquals(AbstractResult.DECISION_PERMIT, evaluate(pdp, request));
+
+        long generation = finder.getGeneration();
+        assertTrue(new File(policyDirectory, POLICY).delete());
+        module.reloadPolicies();
+        assertTrue(finder.getGeneration() > generation);
+        assertEquals(AbstractResult.DECISION_NOT_APPLICABLE, evaluate(pdp, request));
+    }
+
+    public void testReloadWhileEvaluating() throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        final FileBasedPolicyFinderModule module = getPolicyFinderModule(finder);
+        final PDP pdp = getPDPNewInstance(finder);
+        final AbstractRequestCtx request = getRequest();
+
+        final AtomicInteger evaluations = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 200; j++) {
+                        evaluations.incrementAndGet();
+                        if (evaluate(pdp, request) != AbstractResult.DECISION_PERMIT) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (int i = 0; i < 20; i++) {
+            module.reloadPolicies();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(800, evaluations.get());
+        assertEquals("requests were not evaluated against the policies", 0, failures.get());
+    }
+
+    private FileBasedPolicyFinderModule getPolicyFinderModule(PolicyFinder finder) {
+
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyDirectory.getAbsolutePath());
+        FileBasedPolicyFinderModule module = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        finder.setModules(policyModules);
+        finder.init();
+        return module;
+    }
+
+    private static AbstractRequestCtx getRequest() throws Exception {
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY, "request_0002_01.xml");
+        assertNotNull("Request read from file is Null", request);
+        return RequestCtxFactory.getFactory().getRequestCtx(request);
+    }
+
+    private static int evaluate(PDP pdp, AbstractRequestCtx request) {
+        return pdp.evaluate(request).getResults().iterator().next().getDecision();
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new PDP instance with the given policy finder
+     *
+     * @param finder policy finder of the PDP
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(PolicyFinder finder) {
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.finder.impl.PolicyTargetIndex;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies that the target index of the file based policy finder never drops a policy that would
+ * match (or fail to match with an error) a request.
+ */
+public class TestPolicyTargetIndexV3 extends TestCase {
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(TestPolicyTargetIndexV3.class);
+
+    public void testCandidatesCoverMatchingPolicies() throws Exception {
+
+        List<AbstractPolicy> policies = new ArrayList<AbstractPolicy>();
+        policies.addAll(loadPolicies("basic"));
+        policies.addAll(loadPolicies("conformance"));
+        PolicyTargetIndex index = new PolicyTargetIndex(policies);
+        assertTrue("No policy was indexed", index.getUnindexedCount() < index.size());
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        int pruned = 0;
+
+        for (String rootDirectory : new String[]{"basic", "conformance"}) {
+            for (File requestFile : listFiles(rootDirectory, TestConstants.REQUEST_DIRECTORY)) {
+                String request = TestUtil.createRequest(rootDirectory, "3", requestFile.getName());
+                AbstractRequestCtx requestCtx;
+                try {
+                    requestCtx = RequestCtxFactory.getFactory().
+                            getRequestCtx(request.replaceAll(">\\s+<", "><"));
+                } catch (ParsingException e) {
+                    // some of the requests are invalid on purpose
+                    continue;
+                }
+                EvaluationCtx context = EvaluationCtxFactory.getFactory().
+                        getEvaluationCtx(requestCtx, pdpConfig);
+
+                List<AbstractPolicy> candidates = index.getCandidates(context);
+                for (AbstractPolicy policy : policies) {
+                    if (policy.match(context).getResult() != MatchResult.NO_MATCH) {
+                        assertTrue("Policy " + policy.getId() + " is missing for request " +
+                                requestFile.getName(), candidates.contains(policy));
+                    }
+                }
+                pruned += policies.size() - candidates.size();
+            }
+        }
+
+        log.info("Target index pruned " + pruned + " policy matches");
+        assertTrue("Target index did not prune any policy", pruned > 0);
+    }
+
+    private static List<AbstractPolicy> loadPolicies(String rootDirectory) throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setIgnoringComments(true);
+        factory.setNamespaceAware(true);
+
+        List<AbstractPolicy> policies = new ArrayList<AbstractPolicy>();
+        for (File policyFile : listFiles(rootDirectory, TestConstants.POLICY_DIRECTORY)) {
+            Document doc = factory.newDocumentBuilder().parse(policyFile);
+            Element root = doc.getDocumentElement();
+            if ("Policy".equals(DOMHelper.getLocalName(root))) {
+                policies.add(Policy.getInstance(root));
+            } else if ("PolicySet".equals(DOMHelper.getLocalName(root))) {
+                policies.add(PolicySet.getInstance(root));
+            }
+        }
+        return policies;
+    }
+
+    private static File[] listFiles(String rootDirectory, String directory) throws Exception {
+
+        File dir = new File((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + rootDirectory + File.separator + "3" +
+                File.separator + directory);
+        File[] files = dir.listFiles();
+        assertNotNull(files);
+        return files;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.AnyURIAttribute;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.BooleanAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.cond.Apply;
+import org.wso2.balana.cond.Evaluatable;
+import org.wso2.balana.cond.Function;
+import org.wso2.balana.cond.FunctionFactory;
+import org.wso2.balana.cond.MatchFunction;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This would test the regular expression match functions, with literal regular expressions that
+ * are compiled when the policy is parsed and with regular expressions that are only known when
+ * the function is evaluated.
+ */
+public class TestRegexpMatchV3 extends TestCase {
+
+    private EvaluationCtx context;
+
+    protected void setUp() throws Exception {
+        String request = TestUtil.createRequest("basic", "3", "request_0002_01.xml");
+        context = EvaluationCtxFactory.getFactory().getEvaluationCtx(RequestCtxFactory.getFactory().
+                getRequestCtx(request.replaceAll(">\\s+<", "><")), Balana.getInstance().getPdpConfig());
+    }
+
+    public void testLiteralExpression() throws Exception {
+
+        String expression = "^https://api\\.example\\.com/orders/[0-9]+$";
+        assertTrue(applyMatch(MatchFunction.NAME_ANYURI_REGEXP_MATCH, expression,
+                new AnyURIAttribute(new URI("https://api.example.com/orders/42"))));
+        assertFalse(applyMatch(MatchFunction.NAME_ANYURI_REGEXP_MATCH, expression,
+                new AnyURIAttribute(new URI("https://api.example.com/orders/42/items"))));
+
+        // without anchors any substring may match
+        assertTrue(applyMatch(MatchFunction.NAME_STRING_REGEXP_MATCH, "order",
+                new StringAttribute("all orders")));
+        // unicode blocks and character class subtraction
+        assertTrue(applyMatch(MatchFunction.NAME_STRING_REGEXP_MATCH, "^\\p{IsBasicLatin}+$",
+                new StringAttribute("latin")));
+        assertFalse(applyMatch(MatchFunction.NAME_STRING_REGEXP_MATCH, "^[a-z-[aeiou]]+$",
+                new StringAttribute("latin")));
+        assertTrue(applyMatch(MatchFunction.NAME_STRING_REGEXP_MATCH, "^[a-z-[aeiou]]+$",
+                new StringAttribute("ltn")));
+    }
+
+    public void testPatternKeptOnApply() throws Exception {
+
+        Function function = FunctionFactory.getGeneralInstance().
+                createFunction(MatchFunction.NAME_STRING_REGEXP_MATCH);
+        List<Evaluatable> inputs = new ArrayList<Evaluatable>();
+        inputs.add(new StringAttribute("^a+$"));
+        inputs.add(new StringAttribute("aaa"));
+        Apply apply = new Apply(function, inputs);
+
+        // each Apply with a literal expression has its own function holding the pattern, and the
+        // shared function is left as it was
+        assertNotSame(function, apply.getFunction());
+        assertEquals(function.getIdentifier(), apply.getFunction().getIdentifier());
+        assertTrue(((BooleanAttribute) apply.evaluate(context).getAttributeValue()).getValue());
+
+        // the function of the Apply still evaluates other expressions
+        inputs.set(0, new StringAttribute("^b+$"));
+        assertFalse(((BooleanAttribute) apply.getFunction().evaluate(inputs, context).
+                getAttributeValue()).getValue());
+    }
+
+    public void testDynamicExpression() throws Exception {
+
+        Function function = FunctionFactory.getGeneralInstance().
+                createFunction(MatchFunction.NAME_STRING_REGEXP_MATCH);
+        for (int i = 0; i < MatchFunction.MAX_DYNAMIC_PATTERNS + 10; i++) {
+            // the inputs are not checked, so the expressions are compiled during evaluation
+            List<Evaluatable> inputs = new ArrayList<Evaluatable>();
+            inputs.add(new StringAttribute("^user-" + i + "$"));
+            inputs.add(new StringAttribute("user-" + i));
+            BooleanAttribute result = (BooleanAttribute) function.evaluate(inputs, context).
+                    getAttributeValue();
+            assertTrue(result.getValue());
+        }
+    }
+
+    public void testConcurrentDynamicExpressions() throws Exception {
+
+        final Function function = FunctionFactory.getGeneralInstance().
+                createFunction(MatchFunction.NAME_STRING_REGEXP_MATCH);
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t * MatchFunction.MAX_DYNAMIC_PATTERNS / 2;
+            Thread thread = new Thread() {
+                public void run() {
+                    for (int i = offset; i < offset + MatchFunction.MAX_DYNAMIC_PATTERNS; i++) {
+                        List<Evaluatable> inputs = new ArrayList<Evaluatable>();
+                        inputs.add(new StringAttribute("^user-" + i + "$"));
+                        inputs.add(new StringAttribute("user-" + (i % 2 == 0 ? i : i + 1)));
+                        BooleanAttribute result = (BooleanAttribute) function.evaluate(inputs,
+                                context).getAttributeValue();
+                        if (result.getValue() != (i % 2 == 0)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+        assertEquals(0, failures.get());
+    }
+
+    private boolean applyMatch(String functionId, String expression, AttributeValue value)
+            throws Exception {
+
+        Function function = FunctionFactory.getGeneralInstance().createFunction(functionId);
+        List<AttributeValue> inputs = new ArrayList<AttributeValue>();
+        inputs.add(new StringAttribute(expression));
+        inputs.add(value);
+        Apply apply = new Apply(function, inputs);
+        return ((BooleanAttribute) apply.evaluate(context).getAttributeValue()).getValue();
+    }
+}
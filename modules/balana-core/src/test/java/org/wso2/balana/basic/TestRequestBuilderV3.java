@@ -0,0 +1,172 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.wso2.balana.*;
+import org.wso2.balana.attr.IntegerAttribute;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.xacml3.RequestBuilder;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+import org.wso2.balana.utils.Utils;
+import org.wso2.balana.xacml3.Attributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This would test the building of requests in code
+ */
+public class TestRequestBuilderV3 extends TestCase {
+
+    public void testSameAsXmlRequest() throws Exception {
+
+        RequestCtx built = new RequestBuilder()
+                .subject().attribute(RequestBuilder.SUBJECT_ID, "bob")
+                .resource().attribute(XACMLConstants.RESOURCE_ID, "foo/foo1")
+                .action().attribute(RequestBuilder.ACTION_ID, "bar1")
+                .build();
+        RequestCtx fromXml = (RequestCtx) RequestCtxFactory.getFactory().getStreamingRequestCtx(
+                TestUtil.createRequest("basic", "3", "request_0002_01.xml"));
+        assertEquals(TestUtil.describe(fromXml), TestUtil.describe(built));
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0002.xml");
+        ResponseCtx response = pdp.evaluate(built);
+        assertEquals(AbstractResult.DECISION_PERMIT, response.getResults().iterator().next().getDecision());
+    }
+
+    public void testEvaluationCtx() throws Exception {
+
+        PDPConfig pdpConfig = getPDPConfig("TestPolicy_0002.xml");
+        PDP pdp = new PDP(pdpConfig);
+        RequestBuilder builder = new RequestBuilder()
+                .subject().attribute(RequestBuilder.SUBJECT_ID, "bob")
+                .resource().attribute(XACMLConstants.RESOURCE_ID, "foo/foo1")
+                .action().attribute(RequestBuilder.ACTION_ID, "bar1");
+        ResponseCtx response = pdp.evaluate(builder.buildEvaluationCtx(pdpConfig));
+        assertEquals(AbstractResult.DECISION_PERMIT, response.getResults().iterator().next().getDecision());
+
+        // each request gets its own attributes, so the builder can be used again
+        RequestCtx first = builder.build();
+        RequestCtx second = builder.build();
+        assertNotSame(first.getAttributesSet().iterator().next().getAttributes(),
+                second.getAttributesSet().iterator().next().getAttributes());
+        assertEquals(TestUtil.describe(first), TestUtil.describe(second));
+    }
+
+    public void testContent() throws Exception {
+
+        PDP pdp = getPDPNewInstance("TestPolicy_0008.xml");
+        for (int i = 0; i < TestUtil.CONTENT_PATIENTS.length; i++) {
+            String record = TestUtil.createPatientRecord(TestUtil.CONTENT_PATIENTS[i]);
+            Document document = Utils.getSecuredDocumentBuilder().parse(
+                    new ByteArrayInputStream(record.getBytes("UTF-8")));
+            RequestCtx request = new RequestBuilder()
+                    .subject().attribute(RequestBuilder.SUBJECT_ID, TestUtil.CONTENT_SUBJECT)
+                    .resource().content(document.getDocumentElement())
+                    .action().attribute(RequestBuilder.ACTION_ID, "read")
+                    .build();
+            AbstractResult result = pdp.evaluate(request).getResults().iterator().next();
+            assertEquals(TestUtil.CONTENT_DECISIONS[i], AbstractResult.DECISIONS[result.getDecision()]);
+        }
+    }
+
+    public void testTypedValues() throws Exception {
+
+        RequestCtx request = new RequestBuilder()
+                .category("custom-category")
+                .attribute("age", 42)
+                .attribute("flag", true)
+                .attribute("names", "issuer", true, new StringAttribute("a"), new StringAttribute("b"))
+                .build();
+
+        Attributes attributes = request.getAttributesSet().iterator().next();
+        assertSame(RequestBuilder.getURI("custom-category"), attributes.getCategory());
+        for (Attribute attribute : attributes.getAttributes()) {
+            assertSame(RequestBuilder.getURI(attribute.getId().toString()), attribute.getId());
+            if ("age".equals(attribute.getId().toString())) {
+                assertEquals(IntegerAttribute.identifier, attribute.getType().toString());
+                assertEquals(42, ((IntegerAttribute) attribute.getValues().get(0)).getValue());
+            } else if ("names".equals(attribute.getId().toString())) {
+                assertEquals(2, attribute.getValues().size());
+                assertEquals("issuer", attribute.getIssuer());
+                assertTrue(attribute.isIncludeInResult());
+            }
+        }
+
+        try {
+            new RequestBuilder().attribute("age", 42);
+            fail("An attribute was added without a category");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            new RequestBuilder().resource().attribute("mixed", null, false, new StringAttribute("a"),
+                    new IntegerAttribute(1));
+            fail("Values of different types were accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy
+     *
+     * @param policy XACML policy file name
+     * @return a  PDP instance
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDP getPDPNewInstance(String policy) throws Exception {
+        return new PDP(getPDPConfig(policy));
+    }
+
+    /**
+     * Returns a new PDP configuration with the given XACML policy
+     *
+     * @param policy XACML policy file name
+     * @return a PDP configuration
+     * @throws Exception if the policy location can not be resolved
+     */
+    private static PDPConfig getPDPConfig(String policy) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + "basic" + File.separator + "3" +
+                File.separator + TestConstants.POLICY_DIRECTORY + File.separator + policy);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDPConfig(pdpConfig.getAttributeFinder(), finder, pdpConfig.getResourceFinder(), true);
+    }
+}
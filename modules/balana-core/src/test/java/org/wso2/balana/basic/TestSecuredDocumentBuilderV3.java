@@ -0,0 +1,120 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.wso2.balana.utils.Utils;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This would test the secured <code>DocumentBuilder</code>s that are reused by each thread, and
+ * the ones that are shared by all threads through a pool
+ */
+public class TestSecuredDocumentBuilderV3 extends TestCase {
+
+    private static final String COMMENT = "<Request><!-- comment --></Request>";
+
+    public void testReusedByThread() throws Exception {
+
+        final DocumentBuilder builder = Utils.getSecuredDocumentBuilder();
+        assertSame(builder, Utils.getSecuredDocumentBuilder());
+        assertNotSame(builder, Utils.getSecuredDocumentBuilder(true));
+
+        final AtomicReference<DocumentBuilder> other = new AtomicReference<DocumentBuilder>();
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    other.set(Utils.getSecuredDocumentBuilder());
+                } catch (Exception e) {
+                    // the builder stays null
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(builder, other.get());
+    }
+
+    public void testExternalEntityNotResolved() throws Exception {
+
+        File secret = File.createTempFile("balana-secret", ".txt");
+        try {
+            Files.write(secret.toPath(), "secret".getBytes("UTF-8"));
+            String request = "<!DOCTYPE Request [<!ENTITY a SYSTEM \"" + secret.toURI() + "\">]>" +
+                    "<Request>&a;</Request>";
+
+            // the protection must hold for a builder that was already used
+            for (int i = 0; i < 2; i++) {
+                Document doc = Utils.getSecuredDocumentBuilder().parse(
+                        new ByteArrayInputStream(request.getBytes("UTF-8")));
+                assertFalse(doc.getDocumentElement().getTextContent().contains("secret"));
+            }
+        } finally {
+            secret.delete();
+        }
+    }
+
+    public void testIgnoringComments() throws Exception {
+
+        Document doc = Utils.getSecuredDocumentBuilder().parse(new ByteArrayInputStream(COMMENT.getBytes("UTF-8")));
+        assertEquals(1, doc.getDocumentElement().getChildNodes().getLength());
+
+        doc = Utils.getSecuredDocumentBuilder(true).parse(new ByteArrayInputStream(COMMENT.getBytes("UTF-8")));
+        assertEquals(0, doc.getDocumentElement().getChildNodes().getLength());
+    }
+
+    public void testPooledParse() throws Exception {
+
+        final String request = "<Request><!-- comment --><Attributes/></Request>";
+        final int[] children = new int[8];
+        Thread[] threads = new Thread[children.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            // the builders of both kinds are reused, without mixing them up
+                            boolean ignoringComments = j % 2 == 0;
+                            Document doc = Utils.parseSecuredDocument(new ByteArrayInputStream(
+                                    request.getBytes("UTF-8")), ignoringComments);
+                            children[index] += doc.getDocumentElement().getChildNodes()
+                                    .getLength();
+                        }
+                    } catch (Exception e) {
+                        children[index] = -1;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertEquals(25 * 1 + 25 * 2, children[i]);
+        }
+        assertNotNull(Utils.createNewDocument());
+    }
+}
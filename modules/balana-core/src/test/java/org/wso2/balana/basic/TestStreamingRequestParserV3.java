@@ -0,0 +1,130 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Verifies that the streaming request parser creates the same requests as the DOM based parser.
+ */
+public class TestStreamingRequestParserV3 extends TestCase {
+
+    /**
+     * the logger we'll use for all messages
+     */
+    private static final Log log = LogFactory.getLog(TestStreamingRequestParserV3.class);
+
+    public void testSameAsDomParser() throws Exception {
+
+        int compared = 0;
+        for (String rootDirectory : new String[]{"basic", "conformance", "advance"}) {
+            File dir = new File((new File(".")).getCanonicalPath() + File.separator +
+                    TestConstants.RESOURCE_PATH + File.separator + rootDirectory + File.separator +
+                    "3" + File.separator + TestConstants.REQUEST_DIRECTORY);
+            File[] files = dir.listFiles();
+            assertNotNull(files);
+
+            for (File requestFile : files) {
+                String request = TestUtil.createRequest(rootDirectory, "3", requestFile.getName());
+                AbstractRequestCtx expected = null;
+                AbstractRequestCtx actual = null;
+                try {
+                    expected = RequestCtxFactory.getFactory().
+                            getRequestCtx(request.replaceAll(">\\s+<", "><"));
+                } catch (ParsingException e) {
+                    // some of the requests are invalid on purpose
+                }
+                try {
+                    actual = RequestCtxFactory.getFactory().getStreamingRequestCtx(request);
+                } catch (ParsingException e) {
+                    assertNull("Streaming parser failed on " + requestFile.getName() + " : " +
+                            e.getMessage(), expected);
+                }
+                if (expected == null) {
+                    assertNull("Streaming parser accepted " + requestFile.getName(), actual);
+                    continue;
+                }
+
+                assertEquals(requestFile.getName(), TestUtil.describe(expected),
+                        TestUtil.describe(actual));
+                compared++;
+            }
+        }
+
+        log.info("Compared " + compared + " requests parsed by the streaming parser");
+        assertTrue(compared > 0);
+    }
+
+    public void testContentEvaluation() throws Exception {
+
+        for (int policy = 7; policy < 12; policy++) {
+            String policyNo = policy < 10 ? "000" + policy : "00" + policy;
+            PDP pdp = getPDPNewInstance("TestPolicy_" + policyNo + ".xml");
+            for (int i = 1; i < 4; i++) {
+                String request = TestUtil.createRequest("basic", "3",
+                        "request_" + policyNo + "_0" + i + ".xml");
+                assertNotNull("Request read from file is Null", request);
+                ResponseCtx response = pdp.evaluateReturnResponseCtx(request);
+                ResponseCtx expectedResponseCtx = TestUtil.createResponse("basic", "3",
+                        "response_" + policyNo + "_0" + i + ".xml");
+                assertNotNull("Response read from file is Null", expectedResponseCtx);
+                assertTrue(TestUtil.isMatching(response, expectedResponseCtx));
+            }
+        }
+    }
+
+    /**
+     * Returns a new PDP instance with the given XACML policy
+     *
+     * @param policy XACML policy file name
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(String policy) throws Exception {
+
+        PolicyFinder finder = new PolicyFinder();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add((new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + "basic" + File.separator + "3" +
+                File.separator + TestConstants.POLICY_DIRECTORY + File.separator + policy);
+
+        FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(testPolicyFinderModule);
+        finder.setModules(policyModules);
+
+        Balana balana = Balana.getInstance();
+        PDPConfig pdpConfig = balana.getPdpConfig();
+        pdpConfig = new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true);
+        return new PDP(pdpConfig);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+*  Copyright (c) WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package org.wso2.balana.basic;
+
+import junit.framework.TestCase;
+import org.wso2.balana.*;
+import org.wso2.balana.ctx.AbstractResult;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.finder.PolicyFinder;
+import org.wso2.balana.finder.PolicyFinderModule;
+import org.wso2.balana.finder.PolicyFinderResult;
+import org.wso2.balana.finder.impl.WatchingPolicyFinderModule;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This would test that <code>WatchingPolicyFinderModule</code> loads the policy files that are
+ * added, modified or deleted
+ */
+public class TestWatchingPolicyFinderV3 extends TestCase {
+
+    /**
+     * directory name that states the test type
+     */
+    private final static String ROOT_DIRECTORY = "basic";
+
+    /**
+     * directory name that states XACML version
+     */
+    private final static String VERSION_DIRECTORY = "3";
+
+    /**
+     * the longest time to wait for a change to be loaded, in milliseconds
+     */
+    private static final long TIMEOUT = 30000;
+
+    private File policyDirectory;
+
+    private PolicyFinder finder;
+
+    private WatchingPolicyFinderModule module;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        policyDirectory = Files.createTempDirectory("balana-watch").toFile();
+        copyPolicy("TestPolicy_0001.xml", "TestPolicy_0001.xml");
+
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyDirectory.getAbsolutePath());
+        module = new WatchingPolicyFinderModule(policyLocations, 50);
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        finder = new PolicyFinder();
+        finder.setModules(policyModules);
+        finder.init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        module.stop();
+        File[] files = policyDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        policyDirectory.delete();
+    }
+
+    public void testWatchChanges() throws Exception {
+
+        PDP pdp = getPDPNewInstance(finder);
+        AbstractRequestCtx request = getRequest();
+        AbstractPolicy unchanged = findPolicy("TestPolicy0001");
+        assertNotNull(unchanged);
+        assertNull(findPolicy("TestPolicy0002"));
+
+        // added
+        copyPolicy("TestPolicy_0002.xml", "TestPolicy_0002.xml");
+        waitForPolicy("TestPolicy0002", true);
+        assertEquals(AbstractResult.DECISION_PERMIT, evaluate(pdp, request));
+
+        // the files that did not change are not parsed again
+        assertSame(unchanged, findPolicy("TestPolicy0001"));
+
+        // modified, the file now contains another policy
+        copyPolicy("TestPolicy_0003.xml", "TestPolicy_0002.xml");
+        waitForPolicy("TestPolicy0003", true);
+        assertNull(findPolicy("TestPolicy0002"));
+
+        // deleted
+        assertTrue(new File(policyDirectory, "TestPolicy_0002.xml").delete());
+        waitForPolicy("TestPolicy0003", false);
+        assertSame(unchanged, findPolicy("TestPolicy0001"));
+    }
+
+    public void testCoalesceChanges() throws Exception {
+
+        AbstractPolicy unchanged = findPolicy("TestPolicy0001");
+        for (int i = 2; i <= 9; i++) {
+            copyPolicy("TestPolicy_000" + i + ".xml", "TestPolicy_000" + i + ".xml");
+        }
+        waitForPolicy("TestPolicy0009", true);
+        waitForQuiescence();
+
+        // every file of the burst is loaded, and the file that did not change is kept
+        for (int i = 2; i <= 9; i++) {
+            assertNotNull(findPolicy("TestPolicy000" + i));
+        }
+        assertSame(unchanged, findPolicy("TestPolicy0001"));
+    }
+
+    public void testReloadFiles() throws Exception {
+
+        module.stop();
+        copyPolicy("TestPolicy_0002.xml", "TestPolicy_0002.xml");
+        assertNull(findPolicy("TestPolicy0002"));
+
+        Set<Path> changed = new HashSet<Path>();
+        changed.add(new File(policyDirectory, "TestPolicy_0002.xml").toPath());
+        module.reloadFiles(changed);
+        assertNotNull(findPolicy("TestPolicy0002"));
+    }
+
+    public void testReloadInvalidFile() throws Exception {
+
+        module.stop();
+        AbstractPolicy loaded = findPolicy("TestPolicy0001");
+        assertNotNull(loaded);
+
+        // a file that can not be parsed, such as one that is half written, keeps its policy
+        File file = new File(policyDirectory, "TestPolicy_0001.xml");
+        Files.write(file.toPath(), "<Policy xmlns=".getBytes("UTF-8"));
+        Set<Path> changed = new HashSet<Path>();
+        changed.add(file.toPath());
+        module.reloadFiles(changed);
+        assertSame(loaded, findPolicy("TestPolicy0001"));
+
+        // a deleted file loses it
+        assertTrue(file.delete());
+        module.reloadFiles(changed);
+        assertNull(findPolicy("TestPolicy0001"));
+    }
+
+    public void testReadPolicyOverride() throws Exception {
+
+        module.stop();
+        final AtomicInteger reads = new AtomicInteger();
+        Set<String> policyLocations = new HashSet<String>();
+        policyLocations.add(policyDirectory.getAbsolutePath());
+        module = new WatchingPolicyFinderModule(policyLocations, 50) {
+            @Override
+            protected AbstractPolicy readPolicy(String policyFile) throws Exception {
+                reads.incrementAndGet();
+                return super.readPolicy(policyFile);
+            }
+        };
+        Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
+        policyModules.add(module);
+        finder = new PolicyFinder();
+        finder.setModules(policyModules);
+        finder.init();
+        module.stop();
+        assertEquals(1, reads.get());
+        assertNotNull(findPolicy("TestPolicy0001"));
+
+        copyPolicy("TestPolicy_0002.xml", "TestPolicy_0002.xml");
+        Set<Path> changed = new HashSet<Path>();
+        changed.add(new File(policyDirectory, "TestPolicy_0002.xml").toPath());
+        module.reloadFiles(changed);
+        assertEquals(2, reads.get());
+        assertNotNull(findPolicy("TestPolicy0002"));
+    }
+
+    private AbstractPolicy findPolicy(String id) throws Exception {
+        PolicyFinderResult result = finder.findPolicy(new URI(id), PolicyReference.POLICY_REFERENCE,
+                null, new PolicyMetaData());
+        return result.notApplicable() || result.indeterminate() ? null : result.getPolicy();
+    }
+
+    private void waitForPolicy(String id, boolean present) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while ((findPolicy(id) != null) != present) {
+            assertTrue("the change of " + id + " was not loaded", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private void waitForQuiescence() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        long generation = finder.getGeneration();
+        long quietSince = System.currentTimeMillis();
+        while (System.currentTimeMillis() - quietSince < 500) {
+            assertTrue("the policies did not stop changing", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+            if (finder.getGeneration() != generation) {
+                generation = finder.getGeneration();
+                quietSince = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void copyPolicy(String policy, String fileName) throws Exception {
+        Files.copy(new File(getPolicyLocation(policy)).toPath(), new File(policyDirectory, fileName).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static AbstractRequestCtx getRequest() throws Exception {
+        String request = TestUtil.createRequest(ROOT_DIRECTORY, VERSION_DIRECTORY, "request_0002_01.xml");
+        assertNotNull("Request read from file is Null", request);
+        return RequestCtxFactory.getFactory().getRequestCtx(request);
+    }
+
+    private static int evaluate(PDP pdp, AbstractRequestCtx request) {
+        return pdp.evaluate(request).getResults().iterator().next().getDecision();
+    }
+
+    private static String getPolicyLocation(String policy) throws Exception {
+        return (new File(".")).getCanonicalPath() + File.separator +
+                TestConstants.RESOURCE_PATH + File.separator + ROOT_DIRECTORY + File.separator +
+                VERSION_DIRECTORY + File.separator + TestConstants.POLICY_DIRECTORY +
+                File.separator + policy;
+    }
+
+    /**
+     * Returns a new PDP instance with the given policy finder
+     *
+     * @param finder policy finder of the PDP
+     * @return a  PDP instance
+     */
+    private static PDP getPDPNewInstance(PolicyFinder finder) {
+
+        PDPConfig pdpConfig = Balana.getInstance().getPdpConfig();
+        return new PDP(new PDPConfig(pdpConfig.getAttributeFinder(), finder,
+                pdpConfig.getResourceFinder(), true));
+    }
+}
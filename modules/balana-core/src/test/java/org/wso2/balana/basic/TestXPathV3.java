@@ -25,10 +25,17 @@ import org.wso2.balana.ctx.ResponseCtx;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.PolicyFinderModule;
 import org.wso2.balana.finder.impl.FileBasedPolicyFinderModule;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathExpressionException;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -252,6 +259,51 @@ public class TestXPathV3 extends TestCase {
         }
     }
 
+    public void testCompiledExpressionCache() throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().parse(new InputSource(
+                new StringReader("<md:record xmlns:md=\"urn:example:med:schemas:record\">"
+                        + "<md:patient><md:patientDoB>1992-03-21</md:patientDoB></md:patient>"
+                        + "</md:record>")));
+
+        final Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put("md", "urn:example:med:schemas:record");
+        final String path = "md:record/md:patient/md:patientDoB";
+
+        assertEquals(1, XPathExpressionCache.evaluate(path, namespaces, document).getLength());
+
+        // the same prefix bound to another namespace is another expression
+        Map<String, String> other = new HashMap<String, String>();
+        other.put("md", "urn:example:med:schemas:other");
+        assertEquals(0, XPathExpressionCache.evaluate(path, other, document).getLength());
+
+        // compiled expressions are shared between threads, but never used by two at a time
+        final int[] matches = new int[8];
+        Thread[] threads = new Thread[matches.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            matches[index] += XPathExpressionCache.evaluate(path,
+                                    namespaces, document).getLength();
+                        }
+                    } catch (XPathExpressionException e) {
+                        log.error(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertEquals(100, matches[i]);
+        }
+    }
+
     /**
      * Returns a new PDP instance with new XACML policies
      *
@@ -70,6 +70,18 @@ public class ConformanceTestV3 extends TestCase {
 
 
     public void testConformanceTestA() throws Exception {
+        runConformanceTestA(false);
+    }
+
+    /**
+     * Runs the same tests with policies whose conditions are compiled into evaluation plans,
+     * which must give the same responses
+     */
+    public void testCompiledConformanceTestA() throws Exception {
+        runConformanceTestA(true);
+    }
+
+    private void runConformanceTestA(boolean compilePolicies) throws Exception {
 
         String policyNumber;
 
@@ -91,7 +103,8 @@ public class ConformanceTestV3 extends TestCase {
                 log.info("Request that is sent to the PDP :  " + request);
                 Set<String> policies = new HashSet<String>();
                 policies.add("IIIA" + policyNumber + "Policy.xacml3.xml");
-                ResponseCtx response = TestUtil.evaluate(getPDPNewInstance(policies), request);
+                ResponseCtx response = TestUtil.evaluate(getPDPNewInstance(policies,
+                        compilePolicies), request);
                 if(response != null){
                     ResponseCtx expectedResponseCtx = TestUtil.createResponse(ROOT_DIRECTORY,
                                         VERSION_DIRECTORY, "IIIA" + policyNumber + "Response.xacml3.xml");
@@ -117,9 +130,10 @@ public class ConformanceTestV3 extends TestCase {
      * Returns a new PDP instance with new XACML policies
      *
      * @param policies  Set of XACML policy file names
+     * @param compilePolicies whether the conditions of the policies are compiled
      * @return a  PDP instance
      */
-    private static PDP getPDPNewInstance(Set<String> policies){
+    private static PDP getPDPNewInstance(Set<String> policies, boolean compilePolicies){
 
         PolicyFinder finder= new PolicyFinder();
         Set<String> policyLocations = new HashSet<String>();
@@ -137,6 +151,7 @@ public class ConformanceTestV3 extends TestCase {
         }
 
         FileBasedPolicyFinderModule testPolicyFinderModule = new FileBasedPolicyFinderModule(policyLocations);
+        testPolicyFinderModule.setCompilePolicies(compilePolicies);
         Set<PolicyFinderModule> policyModules = new HashSet<PolicyFinderModule>();
         policyModules.add(testPolicyFinderModule);
         finder.setModules(policyModules);
@@ -59,6 +59,10 @@ public class PolicyConstants {
 
     public static final String TARGET_ELEMENT = "Target";
 
+    public static final String POLICY_DEFAULTS_ELEMENT = "PolicyDefaults";
+
+    public static final String XPATH_VERSION_ELEMENT = "XPathVersion";
+
     public static final String ANY_OF_ELEMENT = "AnyOf";
 
     public static final String ALL_OF_ELEMENT = "AllOf";
@@ -97,6 +101,10 @@ public class PolicyConstants {
 
     public static final String REQUEST_CONTEXT_PATH = "RequestContextPath";
 
+    public static final String PATH = "Path";
+
+    public static final String CONTENT = "Content";
+
     public static final String MATCH_ID = "MatchId";
 
     public static final String RULE_ID = "RuleId";
@@ -26,6 +26,7 @@ import org.wso2.balana.utils.Constants.PolicyConstants;
 import org.wso2.balana.utils.exception.PolicyBuilderException;
 import org.wso2.balana.utils.policy.dto.*;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -86,6 +87,16 @@ public class PolicyUtils {
             policyElement.appendChild(descriptionElement);
         }
 
+        if(policyElementDTO.getXPathVersion() != null && policyElementDTO.getXPathVersion().
+                trim().length() > 0) {
+            // required by the policies that use attribute selectors
+            Element defaultsElement = doc.createElement(PolicyConstants.POLICY_DEFAULTS_ELEMENT);
+            Element xPathVersionElement = doc.createElement(PolicyConstants.XPATH_VERSION_ELEMENT);
+            xPathVersionElement.setTextContent(policyElementDTO.getXPathVersion());
+            defaultsElement.appendChild(xPathVersionElement);
+            policyElement.appendChild(defaultsElement);
+        }
+
         TargetElementDTO targetElementDTO = policyElementDTO.getTargetElementDTO();
         List<RuleElementDTO> ruleElementDTOs = policyElementDTO.getRuleElementDTOs();
         List<ObligationElementDTO> obligationElementDTOs = policyElementDTO.getObligationElementDTOs();
@@ -193,12 +204,16 @@ public class PolicyUtils {
         
         List<String> policySets = policyElementDTO.getPolicySets();
         if(policySets != null && policySets.size() > 0){
-           // TODO 
+            for(String policySet : policySets){
+                policyElement.appendChild(importElement(policySet, doc));
+            }
         }
 
         List<String> policies = policyElementDTO.getPolicies();
         if(policies != null && policies.size() > 0){
-            // TODO    
+            for(String policy : policies){
+                policyElement.appendChild(importElement(policy, doc));
+            }
         }
         
         List<String> policySetIds = policyElementDTO.getPolicySetIdReferences();
@@ -255,7 +270,14 @@ public class PolicyUtils {
         List<AttributesElementDTO>  attributesElementDTOs = requestElementDTO.getAttributesElementDTOs();
         if(attributesElementDTOs != null && attributesElementDTOs.size() > 0){
             for(AttributesElementDTO dto : attributesElementDTOs){
-                requestElement.appendChild(createAttributesElement(dto,doc));
+                Element attributesElement = createAttributesElement(dto,doc);
+                if(dto.getContent() != null && dto.getContent().trim().length() > 0){
+                    // the content comes before the attributes of the category
+                    Element contentElement = doc.createElement(PolicyConstants.CONTENT);
+                    contentElement.appendChild(importElement(dto.getContent(), doc));
+                    attributesElement.insertBefore(contentElement, attributesElement.getFirstChild());
+                }
+                requestElement.appendChild(attributesElement);
             }
         }
         return requestElement;
@@ -463,7 +485,32 @@ public class PolicyUtils {
         Element attributeSelectorElement = doc.createElement(PolicyConstants.
                 ATTRIBUTE_SELECTOR);
 
-        if(attributeSelectorDTO.getAttributeSelectorRequestContextPath() != null &&
+        if(attributeSelectorDTO.getPath() != null && attributeSelectorDTO.getPath().trim().length() > 0) {
+
+            // XACML 3.0 selector, that selects from the content of a category
+            attributeSelectorElement.setAttribute(PolicyConstants.CATEGORY,
+                    attributeSelectorDTO.getCategory());
+            attributeSelectorElement.setAttribute(PolicyConstants.PATH,
+                    attributeSelectorDTO.getPath());
+
+            if(attributeSelectorDTO.getAttributeSelectorDataType() != null &&
+                    attributeSelectorDTO.getAttributeSelectorDataType().trim().length() > 0) {
+                attributeSelectorElement.setAttribute(PolicyConstants.DATA_TYPE,
+                        attributeSelectorDTO.getAttributeSelectorDataType());
+            } else {
+                attributeSelectorElement.setAttribute(PolicyConstants.DATA_TYPE,
+                        PolicyConstants.STRING_DATA_TYPE);
+            }
+
+            if(attributeSelectorDTO.getAttributeSelectorMustBePresent() != null &&
+                    attributeSelectorDTO.getAttributeSelectorMustBePresent().trim().length() > 0) {
+                attributeSelectorElement.setAttribute(PolicyConstants.MUST_BE_PRESENT,
+                        attributeSelectorDTO.getAttributeSelectorMustBePresent());
+            } else {
+                attributeSelectorElement.setAttribute(PolicyConstants.MUST_BE_PRESENT, "false");
+            }
+
+        } else if(attributeSelectorDTO.getAttributeSelectorRequestContextPath() != null &&
                 attributeSelectorDTO.getAttributeSelectorRequestContextPath().trim().length() > 0) {
 
             attributeSelectorElement.setAttribute(PolicyConstants.REQUEST_CONTEXT_PATH,
@@ -849,4 +896,23 @@ public class PolicyUtils {
         }
         return applyElement;
     }
+
+    /**
+     * This imports an element, that is given in its XML form, into the given document
+     *
+     * @param element XML form of the element
+     * @param doc Document
+     * @return DOM element
+     * @throws PolicyBuilderException throws if the element is not valid XML
+     */
+    private static Element importElement(String element, Document doc) throws PolicyBuilderException {
+
+        try {
+            Document elementDoc = Utils.parseSecuredDocument(
+                    new ByteArrayInputStream(element.getBytes("UTF-8")), false);
+            return (Element) doc.importNode(elementDoc.getDocumentElement(), true);
+        } catch (Exception e) {
+            throw new PolicyBuilderException("Error while parsing XML element", e);
+        }
+    }
 }
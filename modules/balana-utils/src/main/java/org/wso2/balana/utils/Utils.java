@@ -23,11 +23,14 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.xerces.util.SecurityManager;
 import org.apache.xerces.impl.Constants;
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -35,7 +38,12 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  *
@@ -56,6 +64,39 @@ public class Utils {
     private static String JAVAX_TRANSFORMER_PROP_VAL =
             "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl";
 
+    /**
+     * maximum number of idle secured document builders that are kept for reuse, of each kind
+     */
+    private static final int MAX_IDLE_DOCUMENT_BUILDERS = 32;
+
+    /**
+     * secured document builders of each platform thread, that keep comments
+     */
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+
+    /**
+     * secured document builders of each platform thread, that ignore comments
+     */
+    private static final ThreadLocal<DocumentBuilder> commentIgnoringDocumentBuilders =
+            new ThreadLocal<DocumentBuilder>();
+
+    /**
+     * idle secured document builders, shared by all threads, that keep comments
+     */
+    private static final BlockingQueue<DocumentBuilder> idleDocumentBuilders =
+            new ArrayBlockingQueue<DocumentBuilder>(MAX_IDLE_DOCUMENT_BUILDERS);
+
+    /**
+     * idle secured document builders, shared by all threads, that ignore comments
+     */
+    private static final BlockingQueue<DocumentBuilder> idleCommentIgnoringDocumentBuilders =
+            new ArrayBlockingQueue<DocumentBuilder>(MAX_IDLE_DOCUMENT_BUILDERS);
+
+    /**
+     * <code>Thread.isVirtual</code>, or null when virtual threads are not available
+     */
+    private static final Method isVirtualMethod = getIsVirtualMethod();
+
     /**
      * Convert Document element to a String object
      * @param doc Document element
@@ -84,12 +125,152 @@ public class Utils {
      */
     public static Document createNewDocument() throws ParserConfigurationException {
 
-        DocumentBuilderFactory docFactory = getSecuredDocumentBuilderFactory();
-        DocumentBuilder docBuilder = null;
-        Document doc = null;
-        docBuilder = docFactory.newDocumentBuilder();
-        doc = docBuilder.newDocument();
-        return doc;
+        DocumentBuilder builder = borrowDocumentBuilder(false);
+        try {
+            return builder.newDocument();
+        } finally {
+            idleDocumentBuilders.offer(builder);
+        }
+    }
+
+    /**
+     * Parses the given stream with a secured document builder from the shared pool. This is
+     * preferred over <code>getSecuredDocumentBuilder</code>, as the builder is given back to the
+     * pool once the document is parsed, whichever thread parses it.
+     *
+     * @param stream stream of the XML document
+     * @param ignoringComments whether the comments are left out of the document
+     * @return the parsed Document
+     * @throws ParserConfigurationException throws, if the builder can not be created
+     * @throws SAXException throws, if the document is not valid XML
+     * @throws IOException throws, if the stream can not be read
+     */
+    public static Document parseSecuredDocument(InputStream stream, boolean ignoringComments)
+            throws ParserConfigurationException, SAXException, IOException {
+
+        return parseSecuredDocument(new InputSource(stream), ignoringComments);
+    }
+
+    /**
+     * Parses the given source with a secured document builder from the shared pool. This is
+     * preferred over <code>getSecuredDocumentBuilder</code>, as the builder is given back to the
+     * pool once the document is parsed, whichever thread parses it.
+     *
+     * @param source source of the XML document
+     * @param ignoringComments whether the comments are left out of the document
+     * @return the parsed Document
+     * @throws ParserConfigurationException throws, if the builder can not be created
+     * @throws SAXException throws, if the document is not valid XML
+     * @throws IOException throws, if the source can not be read
+     */
+    public static Document parseSecuredDocument(InputSource source, boolean ignoringComments)
+            throws ParserConfigurationException, SAXException, IOException {
+
+        DocumentBuilder builder = borrowDocumentBuilder(ignoringComments);
+        try {
+            return builder.parse(source);
+        } finally {
+            (ignoringComments ? idleCommentIgnoringDocumentBuilders : idleDocumentBuilders)
+                    .offer(builder);
+        }
+    }
+
+    /**
+     * Returns a namespace aware DocumentBuilder with the XXE prevention measurements of
+     * <code>getSecuredDocumentBuilderFactory</code>. On a platform thread the builder belongs to
+     * the calling thread and is reused by the next call on that thread, so it must not be kept or
+     * given to another thread, and its error handler and entity resolver must not be changed. On a
+     * virtual thread, which is usually used for a single request, it is not kept for the thread,
+     * and a builder is taken from the shared pool without being given back, so
+     * <code>parseSecuredDocument</code> and <code>createNewDocument</code> should be used instead.
+     *
+     * @return DocumentBuilder of the calling thread
+     * @throws ParserConfigurationException throws, if the builder can not be created
+     */
+    public static DocumentBuilder getSecuredDocumentBuilder() throws ParserConfigurationException {
+
+        return getSecuredDocumentBuilder(false);
+    }
+
+    /**
+     * Returns a namespace aware DocumentBuilder with the XXE prevention measurements of
+     * <code>getSecuredDocumentBuilderFactory</code>. On a platform thread the builder belongs to
+     * the calling thread and is reused by the next call on that thread, so it must not be kept or
+     * given to another thread, and its error handler and entity resolver must not be changed. On a
+     * virtual thread, which is usually used for a single request, it is not kept for the thread,
+     * and a builder is taken from the shared pool without being given back, so
+     * <code>parseSecuredDocument</code> and <code>createNewDocument</code> should be used instead.
+     *
+     * @param ignoringComments whether the builder leaves the comments out of the documents
+     * @return DocumentBuilder of the calling thread
+     * @throws ParserConfigurationException throws, if the builder can not be created
+     */
+    public static DocumentBuilder getSecuredDocumentBuilder(boolean ignoringComments)
+            throws ParserConfigurationException {
+
+        if (isVirtualThread()) {
+            // a thread local would only keep the builder alive with its thread
+            return borrowDocumentBuilder(ignoringComments);
+        }
+        ThreadLocal<DocumentBuilder> builders = ignoringComments ? commentIgnoringDocumentBuilders :
+                documentBuilders;
+        DocumentBuilder builder = builders.get();
+        if (builder == null) {
+            builder = newSecuredDocumentBuilder(ignoringComments);
+            builders.set(builder);
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    /**
+     * Takes an idle secured document builder from the shared pool, or creates one if none is idle
+     *
+     * @param ignoringComments whether the builder leaves the comments out of the documents
+     * @return DocumentBuilder that may be used by the calling thread only
+     * @throws ParserConfigurationException throws, if the builder can not be created
+     */
+    private static DocumentBuilder borrowDocumentBuilder(boolean ignoringComments)
+            throws ParserConfigurationException {
+
+        DocumentBuilder builder = (ignoringComments ? idleCommentIgnoringDocumentBuilders :
+                idleDocumentBuilders).poll();
+        if (builder == null) {
+            builder = newSecuredDocumentBuilder(ignoringComments);
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    private static DocumentBuilder newSecuredDocumentBuilder(boolean ignoringComments)
+            throws ParserConfigurationException {
+
+        DocumentBuilderFactory factory = getSecuredDocumentBuilderFactory();
+        factory.setIgnoringComments(ignoringComments);
+        return factory.newDocumentBuilder();
+    }
+
+    private static boolean isVirtualThread() {
+
+        if (isVirtualMethod == null) {
+            return false;
+        }
+        try {
+            return (Boolean) isVirtualMethod.invoke(Thread.currentThread());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Method getIsVirtualMethod() {
+
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
     }
 
     /**
@@ -120,6 +301,23 @@ public class Utils {
 
         return dbf;
     }
+
+
+    /**
+     * Create XMLInputFactory with the XXE prevention measurements. DTDs and external entities are
+     * not supported by the returned factory.
+     *
+     * @return XMLInputFactory instance
+     */
+    public static XMLInputFactory getSecuredXMLInputFactory() {
+
+        XMLInputFactory xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        xif.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return xif;
+    }
     
     
 //    public static Element createElement(String xmlInput) {
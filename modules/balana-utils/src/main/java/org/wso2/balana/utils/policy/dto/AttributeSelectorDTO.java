@@ -25,6 +25,10 @@ public class AttributeSelectorDTO {
 
     private String attributeSelectorRequestContextPath;
 
+    private String category;
+
+    private String path;
+
     private String attributeSelectorDataType;
 
     private String attributeSelectorMustBePresent;
@@ -35,6 +39,22 @@ public class AttributeSelectorDTO {
 
     private int elementNumber;
 
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
     public String getAttributeSelectorRequestContextPath() {
         return attributeSelectorRequestContextPath;
     }
@@ -27,6 +27,8 @@ public class AttributesElementDTO {
 
     private String category;
 
+    private String content;
+
     private List<AttributeElementDTO> attributeElementDTOs = new ArrayList<AttributeElementDTO>();
 
     public String getCategory() {
@@ -37,6 +39,14 @@ public class AttributesElementDTO {
         this.category = category;
     }
 
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
     public List<AttributeElementDTO> getAttributeElementDTOs() {
         return attributeElementDTOs;
     }
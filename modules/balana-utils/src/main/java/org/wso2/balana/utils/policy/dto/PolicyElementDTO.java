@@ -33,6 +33,8 @@ public class PolicyElementDTO {
     private String policyDescription;
 
     private String version;
+
+    private String xPathVersion;
     
     private TargetElementDTO targetElementDTO;
     
@@ -72,6 +74,14 @@ public class PolicyElementDTO {
         this.version = version;
     }
 
+    public String getXPathVersion() {
+        return xPathVersion;
+    }
+
+    public void setXPathVersion(String xPathVersion) {
+        this.xPathVersion = xPathVersion;
+    }
+
     public TargetElementDTO getTargetElementDTO() {
         return targetElementDTO;
     }